@@ -36,6 +36,7 @@ import java.util.List;
 
 import foundation.e.bliss.folder.GridFolderController;
 import foundation.e.bliss.multimode.MultiModeController;
+import foundation.e.bliss.suggestions.RetrofitService;
 
 public class LauncherAppMonitor extends LauncherApps.Callback
         implements
@@ -456,6 +457,7 @@ public class LauncherAppMonitor extends LauncherApps.Callback
                 cb.dump(prefix, fd, w, isAll);
             }
         }
+        RetrofitService.INSTANCE.dump(prefix, w);
     }
 
     @Override
@@ -0,0 +1,153 @@
+/*
+ * Copyright © MURENA SAS 2023.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ */
+package foundation.e.bliss.blur
+
+import android.content.Context
+import android.graphics.Bitmap
+import foundation.e.bliss.utils.Logger
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+
+/**
+ * Disk cache of the blurred wallpapers, so that a cold start or an orientation change can show
+ * the blur without decoding and blurring the wallpaper again.
+ *
+ * Each entry is a single raw file holding a small header followed by the pixels of every
+ * [BlurWallpaperProvider.BlurSizes] bitmap, which is memory mapped when read. Entries are evicted
+ * in least recently used order once the cache is larger than [MAX_SIZE_BYTES].
+ */
+class BlurDiskCache(context: Context) {
+
+    private val dir = File(context.cacheDir, DIR_NAME)
+
+    /** Cached blur and the size of the wallpaper it was made from. */
+    class Entry(val blurSizes: BlurWallpaperProvider.BlurSizes, val width: Int, val height: Int)
+
+    /**
+     * Returns the key of the current wallpaper for the given screen, which changes whenever the
+     * wallpaper, the screen or the blur configs change.
+     */
+    fun getKey(wallpaperId: Int, width: Int, height: Int, orientation: Int): String {
+        val configs = BLUR_CONFIGS.joinToString("_") { "${it.scale}-${it.radius}" }
+        return "${wallpaperId}_${width}x${height}_${orientation}_${configs}_v$VERSION"
+    }
+
+    @Synchronized
+    fun get(key: String): Entry? {
+        val file = File(dir, key)
+        if (!file.exists()) return null
+        return try {
+            RandomAccessFile(file, "r").use { raf ->
+                val buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length())
+                buffer.order(ByteOrder.nativeOrder())
+                if (buffer.int != MAGIC) throw IllegalStateException("Bad magic")
+                val width = buffer.int
+                val height = buffer.int
+                val bitmaps = ArrayList<Bitmap>(BLUR_CONFIGS.size)
+                try {
+                    repeat(BLUR_CONFIGS.size) { bitmaps.add(readBitmap(buffer)) }
+                } catch (t: Throwable) {
+                    bitmaps.forEach(Bitmap::recycle)
+                    throw t
+                }
+                file.setLastModified(System.currentTimeMillis())
+                Entry(
+                    BlurWallpaperProvider.BlurSizes(bitmaps[0], bitmaps[1], bitmaps[2], bitmaps[3]),
+                    width,
+                    height
+                )
+            }
+        } catch (e: Exception) {
+            Logger.w(TAG, "Failed to read blur cache $key", e)
+            file.delete()
+            null
+        }
+    }
+
+    @Synchronized
+    fun put(key: String, entry: Entry) {
+        val bitmaps = entry.blurSizes.toList()
+        if (bitmaps.any { it.config != Bitmap.Config.ARGB_8888 }) return
+
+        dir.mkdirs()
+        val file = File(dir, key)
+        val tmp = File(dir, "$key.tmp")
+        try {
+            val size = HEADER_SIZE + bitmaps.sumOf { BITMAP_HEADER_SIZE + it.byteCount.toLong() }
+            RandomAccessFile(tmp, "rw").use { raf ->
+                raf.setLength(size)
+                val buffer = raf.channel.map(FileChannel.MapMode.READ_WRITE, 0, size)
+                buffer.order(ByteOrder.nativeOrder())
+                buffer.putInt(MAGIC).putInt(entry.width).putInt(entry.height)
+                bitmaps.forEach { writeBitmap(buffer, it) }
+                buffer.force()
+            }
+            if (!tmp.renameTo(file)) throw IllegalStateException("Rename failed")
+        } catch (e: Exception) {
+            Logger.w(TAG, "Failed to write blur cache $key", e)
+            tmp.delete()
+            return
+        }
+        trim()
+    }
+
+    private fun trim() {
+        val files = dir.listFiles() ?: return
+        var total = files.sumOf { it.length() }
+        if (total <= MAX_SIZE_BYTES) return
+        for (file in files.sortedBy { it.lastModified() }) {
+            if (total <= MAX_SIZE_BYTES) break
+            total -= file.length()
+            file.delete()
+        }
+    }
+
+    private fun readBitmap(buffer: ByteBuffer): Bitmap {
+        val width = buffer.int
+        val height = buffer.int
+        val byteCount = width * height * 4
+        val pixels = buffer.slice()
+        pixels.limit(byteCount)
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888).apply {
+            copyPixelsFromBuffer(pixels)
+            buffer.position(buffer.position() + byteCount)
+        }
+    }
+
+    private fun writeBitmap(buffer: ByteBuffer, bitmap: Bitmap) {
+        buffer.putInt(bitmap.width).putInt(bitmap.height)
+        bitmap.copyPixelsToBuffer(buffer)
+    }
+
+    private fun BlurWallpaperProvider.BlurSizes.toList() =
+        listOf(background, dock, appGroup, widget)
+
+    companion object {
+        private const val TAG = "BlurDiskCache"
+        private const val DIR_NAME = "blur_wallpapers"
+
+        private const val MAGIC = 0x424c5552 // "BLUR"
+        private const val VERSION = 1
+        private const val HEADER_SIZE = 12L
+        private const val BITMAP_HEADER_SIZE = 8L
+
+        // Enough for a few wallpapers in both orientations
+        private const val MAX_SIZE_BYTES = 48L * 1024 * 1024
+
+        private val BLUR_CONFIGS =
+            listOf(
+                BlurWallpaperProvider.blurConfigBackground,
+                BlurWallpaperProvider.blurConfigDock,
+                BlurWallpaperProvider.blurConfigAppGroup,
+                BlurWallpaperProvider.blurConfigWidget
+            )
+    }
+}
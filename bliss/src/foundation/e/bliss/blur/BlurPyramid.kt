@@ -0,0 +1,118 @@
+/*
+ * Copyright © MURENA SAS 2023.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ */
+package foundation.e.bliss.blur
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.PorterDuff
+import android.graphics.PorterDuffXfermode
+import android.graphics.Rect
+import android.util.SparseArray
+
+/**
+ * Downsampled copies of a wallpaper, one level per distinct [BlurWallpaperProvider.BlurConfig]
+ * scale. The wallpaper is only downsampled once, every smaller level is derived from the closest
+ * larger one. Level bitmaps are pooled and reused for the next wallpaper of the same size.
+ *
+ * Not thread safe, callers must synchronize on the pyramid.
+ */
+class BlurPyramid {
+
+    private val levels = SparseArray<Bitmap>()
+    private val pool = ArrayList<Bitmap>()
+    private val canvas = Canvas()
+    private val paint =
+        Paint(Paint.FILTER_BITMAP_FLAG).apply {
+            xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC)
+        }
+    private val dstRect = Rect()
+
+    /** Bytes allocated by the last [build], zero when all the levels came from the pool. */
+    var allocatedBytes = 0L
+        private set
+
+    /** Bytes currently held by the levels and the pool. */
+    val retainedBytes: Long
+        get() {
+            var bytes = 0L
+            for (i in 0 until levels.size()) bytes += levels.valueAt(i).allocationByteCount
+            pool.forEach { bytes += it.allocationByteCount }
+            return bytes
+        }
+
+    /**
+     * Builds a level for each of [scales]. The size of each level is the size of [wallpaper]
+     * divided by its scale, same as scaling the wallpaper directly.
+     */
+    fun build(wallpaper: Bitmap, scales: IntArray) {
+        release()
+        allocatedBytes = 0
+
+        var source = wallpaper
+        for (scale in scales.distinct().sorted()) {
+            if (scale <= 1) {
+                levels.put(scale, wallpaper)
+                continue
+            }
+            val width = (wallpaper.width / scale).coerceAtLeast(1)
+            val height = (wallpaper.height / scale).coerceAtLeast(1)
+            val level = acquire(width, height)
+            canvas.setBitmap(level)
+            dstRect.set(0, 0, width, height)
+            canvas.drawBitmap(source, null, dstRect, paint)
+            canvas.setBitmap(null)
+            levels.put(scale, level)
+            source = level
+        }
+    }
+
+    /** Returns the level for [scale], which must be one of the scales of the last [build]. */
+    fun getLevel(scale: Int): Bitmap =
+        checkNotNull(levels[scale.coerceAtLeast(1)]) { "No pyramid level for scale $scale" }
+
+    /** Returns the levels of the last [build] to the pool. */
+    fun release() {
+        for (i in 0 until levels.size()) {
+            // Level 1 is the wallpaper itself, which is not owned by the pyramid
+            if (levels.keyAt(i) > 1) pool.add(levels.valueAt(i))
+        }
+        levels.clear()
+        while (pool.size > MAX_POOL_SIZE) {
+            pool.removeAt(0).recycle()
+        }
+    }
+
+    private fun acquire(width: Int, height: Int): Bitmap {
+        pool
+            .indexOfFirst { it.width == width && it.height == height }
+            .takeIf { it >= 0 }
+            ?.let {
+                return pool.removeAt(it)
+            }
+
+        val bytes = width * height * 4
+        pool
+            .indexOfFirst { it.allocationByteCount >= bytes }
+            .takeIf { it >= 0 }
+            ?.let {
+                return pool.removeAt(it).apply {
+                    reconfigure(width, height, Bitmap.Config.ARGB_8888)
+                }
+            }
+
+        allocatedBytes += bytes
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+    }
+
+    companion object {
+        // Enough for the owned levels of both orientations: the blur configs use the scales 2 and
+        // 6, and level 1 is the wallpaper itself, which is never pooled
+        private const val MAX_POOL_SIZE = 4
+    }
+}
@@ -9,11 +9,22 @@ package foundation.e.bliss.blur
 
 import android.content.Context
 import android.graphics.Bitmap
+import android.os.SystemClock
 import com.hoko.blur.HokoBlur
+import foundation.e.bliss.blur.BlurWallpaperProvider.BlurConfig
+import java.io.PrintWriter
 
 class BlurWallpaperFilter(private val context: Context) :
     WallpaperFilter<BlurWallpaperProvider.BlurSizes> {
 
+    private val pyramid = BlurPyramid()
+
+    // Stats of the last apply, guarded by the pyramid
+    private val levelTimes = LinkedHashMap<String, Long>()
+    private var pyramidTime = 0L
+    private var peakBytes = 0L
+    private var allocatedBytes = 0L
+
     override fun apply(
         wallpaper: Bitmap
     ): WallpaperFilter.ApplyTask<BlurWallpaperProvider.BlurSizes> {
@@ -23,19 +34,30 @@ class BlurWallpaperFilter(private val context: Context) :
             var blurAppGroup: Bitmap? = null
             var blurWidget: Bitmap? = null
             try {
-                blurBackground = blur(wallpaper, BlurWallpaperProvider.blurConfigBackground)
-                blurDock = blur(wallpaper, BlurWallpaperProvider.blurConfigDock)
-                blurAppGroup = blur(wallpaper, BlurWallpaperProvider.blurConfigAppGroup)
-                blurWidget = blur(wallpaper, BlurWallpaperProvider.blurConfigWidget)
+                synchronized(pyramid) {
+                    levelTimes.clear()
+                    val start = SystemClock.elapsedRealtime()
+                    pyramid.build(wallpaper, LEVELS.map { it.second.scale }.toIntArray())
+                    pyramidTime = SystemClock.elapsedRealtime() - start
+                    peakBytes = pyramid.retainedBytes
+                    allocatedBytes = pyramid.allocatedBytes
+
+                    blurBackground = blur(LEVELS[0])
+                    blurDock = blur(LEVELS[1])
+                    blurAppGroup = blur(LEVELS[2])
+                    blurWidget = blur(LEVELS[3])
+                    pyramid.release()
+                }
                 emitter.onSuccess(
                     BlurWallpaperProvider.BlurSizes(
-                        blurBackground,
-                        blurDock,
-                        blurAppGroup,
-                        blurWidget
+                        blurBackground!!,
+                        blurDock!!,
+                        blurAppGroup!!,
+                        blurWidget!!
                     )
                 )
             } catch (t: Throwable) {
+                synchronized(pyramid) { pyramid.release() }
                 blurBackground?.recycle()
                 blurDock?.recycle()
                 blurAppGroup?.recycle()
@@ -45,25 +67,42 @@ class BlurWallpaperFilter(private val context: Context) :
         }
     }
 
-    private fun blur(wallpaper: Bitmap, config: BlurWallpaperProvider.BlurConfig): Bitmap {
-        val source =
-            if (config.scale == 1) {
-                wallpaper
-            } else {
-                Bitmap.createScaledBitmap(
-                    wallpaper,
-                    wallpaper.width / config.scale,
-                    wallpaper.height / config.scale,
-                    true
-                )
-            }
+    private fun blur(level: Pair<String, BlurConfig>): Bitmap {
+        val (name, config) = level
+        val start = SystemClock.elapsedRealtime()
+        // Levels are shared between configs, they must not be blurred in place
+        val result =
+            HokoBlur.with(context)
+                .scheme(HokoBlur.SCHEME_NATIVE)
+                .mode(HokoBlur.MODE_STACK)
+                .radius(config.radius)
+                .forceCopy(true)
+                .processor()
+                .blur(pyramid.getLevel(config.scale))
+        levelTimes[name] = SystemClock.elapsedRealtime() - start
+        peakBytes += result.allocationByteCount
+        allocatedBytes += result.allocationByteCount
+        return result
+    }
+
+    fun dump(prefix: String, writer: PrintWriter) {
+        synchronized(pyramid) {
+            writer.println(
+                "${prefix}BlurWallpaperFilter: pyramid=${pyramidTime}ms" +
+                    " peak=${peakBytes / 1024}KB allocated=${allocatedBytes / 1024}KB" +
+                    " pooled=${pyramid.retainedBytes / 1024}KB"
+            )
+            levelTimes.forEach { (name, time) -> writer.println("$prefix  $name: ${time}ms") }
+        }
+    }
 
-        return HokoBlur.with(context)
-            .scheme(HokoBlur.SCHEME_NATIVE)
-            .mode(HokoBlur.MODE_STACK)
-            .radius(config.radius)
-            .forceCopy(false)
-            .processor()
-            .blur(source)
+    companion object {
+        private val LEVELS =
+            listOf(
+                "background" to BlurWallpaperProvider.blurConfigBackground,
+                "dock" to BlurWallpaperProvider.blurConfigDock,
+                "appGroup" to BlurWallpaperProvider.blurConfigAppGroup,
+                "widget" to BlurWallpaperProvider.blurConfigWidget
+            )
     }
 }
@@ -17,10 +17,12 @@ import android.widget.Toast
 import androidx.core.graphics.drawable.toBitmap
 import com.android.launcher3.Utilities
 import com.android.launcher3.util.Executors
+import com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR
 import com.android.launcher3.util.MainThreadInitializedObject
 import foundation.e.bliss.utils.Logger
 import foundation.e.bliss.utils.runOnMainThread
 import foundation.e.bliss.utils.safeForEach
+import java.io.PrintWriter
 import kotlin.math.ceil
 
 @SuppressLint("NewApi")
@@ -34,7 +36,8 @@ class BlurWallpaperProvider(val context: Context) {
     var wallpapers: BlurSizes? = null
         private set(value) {
             if (field != value) {
-                field?.recycle()
+                // Don't recycle the bitmaps while they are written to the cache
+                synchronized(blurCache) { field?.recycle() }
                 field = value
             }
         }
@@ -54,6 +57,7 @@ class BlurWallpaperProvider(val context: Context) {
     private val mUpdateRunnable = Runnable { updateWallpaper() }
 
     private val wallpaperFilter = BlurWallpaperFilter(context)
+    private val blurCache = BlurDiskCache(context)
     private var applyTask: WallpaperFilter.ApplyTask<BlurSizes>? = null
 
     private var updatePending = false
@@ -91,6 +95,22 @@ class BlurWallpaperProvider(val context: Context) {
             runOnMainThread { mListeners.safeForEach(Listener::onEnabledChanged) }
         }
 
+        val wallpaperId = mWallpaperManager.getWallpaperId(WallpaperManager.FLAG_SYSTEM)
+        val cacheKey =
+            if (isEnabled && wallpaperId >= 0) {
+                val orientation = context.resources.configuration.orientation
+                blurCache.getKey(wallpaperId, width, height, orientation)
+            } else null
+        cacheKey
+            ?.let { blurCache.get(it) }
+            ?.let {
+                Logger.d(TAG, "using cached blur")
+                onWallpaperSizeChanged(it.width, it.height, display.height)
+                wallpapers = it.blurSizes
+                runOnMainThread(::notifyWallpaperChanged)
+                return
+            }
+
         var wallpaper =
             try {
                 mWallpaperManager.drawable.toBitmap()
@@ -104,13 +124,9 @@ class BlurWallpaperProvider(val context: Context) {
             }
 
         wallpaper = scaleAndCropToScreenSize(wallpaper)
-        mWallpaperWidth = wallpaper.width
-
-        var offsetY = 0f
-        if (wallpaper.height > height) {
-            offsetY = (wallpaper.height - display.height) * 0.5f
-            mListeners.forEach { it.onOffsetChanged(offsetY) }
-        }
+        val wallpaperWidth = wallpaper.width
+        val wallpaperHeight = wallpaper.height
+        onWallpaperSizeChanged(wallpaperWidth, wallpaperHeight, display.height)
 
         wallpaper = applyVibrancy(wallpaper)
         Logger.d(TAG, "starting blur")
@@ -121,6 +137,14 @@ class BlurWallpaperProvider(val context: Context) {
                     this@BlurWallpaperProvider.wallpapers = result
                     runOnMainThread(::notifyWallpaperChanged)
                     wallpaper.recycle()
+                    // Write the cache once the blur is shown. If the blur is replaced and
+                    // recycled before, the write fails and nothing is cached.
+                    cacheKey?.let {
+                        val entry = BlurDiskCache.Entry(result!!, wallpaperWidth, wallpaperHeight)
+                        UI_HELPER_EXECUTOR.execute {
+                            synchronized(blurCache) { blurCache.put(it, entry) }
+                        }
+                    }
                 } else {
                     if (error is OutOfMemoryError) {
                         runOnMainThread {
@@ -138,6 +162,18 @@ class BlurWallpaperProvider(val context: Context) {
         }
     }
 
+    private fun onWallpaperSizeChanged(
+        wallpaperWidth: Int,
+        wallpaperHeight: Int,
+        displayHeight: Int
+    ) {
+        mWallpaperWidth = wallpaperWidth
+        if (wallpaperHeight > mDisplayMetrics.heightPixels) {
+            val offsetY = (wallpaperHeight - displayHeight) * 0.5f
+            mListeners.forEach { it.onOffsetChanged(offsetY) }
+        }
+    }
+
     private fun notifyWallpaperChanged() {
         mListeners.forEach(Listener::onWallpaperChanged)
     }
@@ -213,6 +249,20 @@ class BlurWallpaperProvider(val context: Context) {
         updateWallpaper()
     }
 
+    fun dump(prefix: String, writer: PrintWriter) {
+        writer.println()
+        writer.println("${prefix}BlurWallpaperProvider: enabled=$isEnabled")
+        wallpapers?.let {
+            writer.println(
+                "$prefix  background=${it.background.width}x${it.background.height}" +
+                    " dock=${it.dock.width}x${it.dock.height}" +
+                    " appGroup=${it.appGroup.width}x${it.appGroup.height}" +
+                    " widget=${it.widget.width}x${it.widget.height}"
+            )
+        }
+        wallpaperFilter.dump("$prefix  ", writer)
+    }
+
     interface Listener {
         fun onWallpaperChanged() {}
         fun onEnabledChanged() {}
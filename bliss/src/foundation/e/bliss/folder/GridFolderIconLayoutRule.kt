@@ -35,7 +35,6 @@ class GridFolderIconLayoutRule(context: Context) : ClippedFolderIconLayoutRule()
         val transX: Float
         val transY: Float
         val scale = scaleForItem(index)
-        val point = FloatArray(2)
 
         if (index < maxNumItemsInPreview) {
             var baseX = index % mGridCountX
@@ -51,14 +50,12 @@ class GridFolderIconLayoutRule(context: Context) : ClippedFolderIconLayoutRule()
             if (paddingY < 0) {
                 paddingY = 0f
             }
-            point[0] = (baseX + 1) * paddingX + baseX * (iconSize * scale)
-            point[1] = (baseY + 1) * paddingY + baseY * (iconSize * scale)
+            transX = (baseX + 1) * paddingX + baseX * (iconSize * scale)
+            transY = (baseY + 1) * paddingY + baseY * (iconSize * scale)
         } else {
-            point[1] = mAvailableSpace / 2 - (iconSize * scale) / 2
-            point[0] = point[1]
+            transY = mAvailableSpace / 2 - (iconSize * scale) / 2
+            transX = transY
         }
-        transX = point[0]
-        transY = point[1]
         if (params == null) {
             return PreviewItemDrawingParams(transX, transY, scale)
         }
@@ -10,8 +10,8 @@ package foundation.e.bliss.multimode
 import android.content.Context
 import com.android.launcher3.InvariantDeviceProfile
 import com.android.launcher3.LauncherPrefs
+import com.android.launcher3.model.ModelTaskScheduler
 import com.android.launcher3.model.data.AppInfo
-import com.android.launcher3.util.Executors.MODEL_EXECUTOR
 import foundation.e.bliss.BaseController
 import foundation.e.bliss.LauncherAppMonitor
 import foundation.e.bliss.LauncherAppMonitorCallback
@@ -25,15 +25,11 @@ class MultiModeController(val context: Context, val monitor: LauncherAppMonitor)
     private val mAppMonitorCallback: LauncherAppMonitorCallback =
         object : LauncherAppMonitorCallback {
             override fun onLoadAllAppsEnd(apps: ArrayList<AppInfo?>?) {
-                MODEL_EXECUTOR.submit(
-                    VerifyIdleAppTask(
-                        context,
-                        apps,
-                        null,
-                        null,
-                        false,
-                        monitor.launcher.model.mBgDataModel
-                    )
+                val model = monitor.launcher.model
+                model.taskScheduler.schedule(
+                    VerifyIdleAppTask(context, apps, null, null, false, model.mBgDataModel),
+                    ModelTaskScheduler.PRIORITY_BULK,
+                    null
                 )
             }
 
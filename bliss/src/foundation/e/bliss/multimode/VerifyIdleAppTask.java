@@ -7,7 +7,6 @@
  */
 package foundation.e.bliss.multimode;
 
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
@@ -23,7 +22,6 @@ import com.android.launcher3.model.ItemInstallQueue;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.util.ComponentKey;
-import com.android.launcher3.util.ItemInfoMatcher;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,7 +31,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.function.Predicate;
+import java.util.Set;
 
 import foundation.e.bliss.utils.Logger;
 
@@ -41,7 +39,7 @@ import foundation.e.bliss.utils.Logger;
 public class VerifyIdleAppTask implements Runnable {
     private static final String TAG = "VerifyIdleAppTask";
 
-    private final List<String> mBlacklistedApps;
+    private final Set<String> mBlacklistedApps;
 
     private final Context mContext;
     private final Collection<AppInfo> mApps;
@@ -60,7 +58,8 @@ public class VerifyIdleAppTask implements Runnable {
         mUser = user;
         mIsAddPackage = isAdd;
         mBgdataModel = bgDataModel;
-        mBlacklistedApps = Arrays.asList(context.getResources().getStringArray(R.array.blacklisted_apps));
+        mBlacklistedApps = new HashSet<>(
+                Arrays.asList(context.getResources().getStringArray(R.array.blacklisted_apps)));
     }
 
     private static void verifyShortcutHighRes(Context context, AppInfo appInfo) {
@@ -82,8 +81,8 @@ public class VerifyIdleAppTask implements Runnable {
             // All apps loading, we ignore loaded.
             mIgnoreLoaded = true;
             for (AppInfo app : mApps) {
-                if (mBlacklistedApps.stream().noneMatch(
-                        pkg -> pkg.equals(Objects.requireNonNull(app.getTargetPackage()).trim().toLowerCase()))) {
+                if (!mBlacklistedApps.contains(
+                        Objects.requireNonNull(app.getTargetPackage()).trim().toLowerCase())) {
                     map.put(new ComponentKey(app.componentName, app.user), app);
                 }
             }
@@ -107,10 +106,7 @@ public class VerifyIdleAppTask implements Runnable {
         synchronized (mBgdataModel) {
             for (Map.Entry<ComponentKey, Object> entry : map.entrySet()) {
                 ComponentKey componentKey = entry.getKey();
-                HashSet<ComponentName> components = new HashSet<>(1);
-                components.add(componentKey.componentName);
-                Predicate<ItemInfo> matcher = ItemInfoMatcher.ofComponents(components, componentKey.user);
-                if (mBgdataModel.workspaceItems.stream().noneMatch(matcher)) {
+                if (!mBgdataModel.hasItemForComponent(componentKey)) {
                     Object obj = entry.getValue();
                     if (obj instanceof AppInfo) {
                         verifyShortcutHighRes(context, (AppInfo) obj);
@@ -7,80 +7,186 @@
  */
 package foundation.e.bliss.suggestions
 
-import android.app.usage.UsageStats
+import android.app.usage.UsageEvents
 import android.app.usage.UsageStatsManager
 import android.content.Context
-import android.content.Intent
+import android.content.SharedPreferences
 import android.content.pm.PackageManager
-import android.provider.Settings
-import android.widget.Toast
+import android.os.SystemClock
 import com.android.launcher3.R
+import com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR
+import com.android.launcher3.util.MainThreadInitializedObject
 import foundation.e.bliss.utils.Logger
+import foundation.e.bliss.utils.runOnMainThread
 import java.util.Calendar
 
-class AppUsageStats(private val mContext: Context) {
-    private val mUsageStatsManager
-        get() = mContext.getSystemService(Context.USAGE_STATS_SERVICE) as UsageStatsManager
-
-    val usageStats: List<UsageStats>
-        get() {
-            val usageStats = mutableListOf<UsageStats>()
-            val cal = Calendar.getInstance()
-            cal.add(Calendar.YEAR, -1)
-
-            val stats =
-                mUsageStatsManager.queryUsageStats(
-                    UsageStatsManager.INTERVAL_BEST,
-                    cal.timeInMillis,
-                    System.currentTimeMillis()
-                )
-
-            val aggregatedStats = mutableMapOf<String, UsageStats>()
-            val statCount = stats.size
-
-            for (i in 0 until statCount) {
-                val newStat = stats[i]
-                val existingStat = aggregatedStats[newStat.packageName]
-
-                if (existingStat == null) {
-                    aggregatedStats[newStat.packageName] = newStat
-                } else {
-                    existingStat.add(newStat)
+/**
+ * Ranks apps by their time in foreground, for the suggested apps of [BlissInput].
+ *
+ * The total time of each package is persisted along with a checkpoint, so that a refresh only
+ * reads the usage events since the last checkpoint instead of the stats of the past year. The
+ * ranking is kept in memory: [topPackages] never makes a binder call and is safe on the UI path.
+ */
+class AppUsageStats private constructor(private val mContext: Context) {
+
+    private val mUsageStatsManager by lazy {
+        mContext.getSystemService(Context.USAGE_STATS_SERVICE) as UsageStatsManager
+    }
+    private val mPrefs: SharedPreferences by lazy {
+        mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+    }
+    private val mBlacklist by lazy {
+        mContext.resources.getStringArray(R.array.blacklisted_apps).toHashSet()
+    }
+    private val mListeners = ArrayList<() -> Unit>()
+
+    // Only accessed on UI_HELPER_EXECUTOR
+    private var mTotals: HashMap<String, Long>? = null
+    private var mLastRefreshTime = 0L
+
+    /** Packages ordered by decreasing time in foreground, at most [MAX_RANKED] of them. */
+    @Volatile
+    var topPackages: List<String> = emptyList()
+        private set
+
+    /** Whether the usage access was granted as of the last refresh. */
+    @Volatile
+    var isPermissionGranted = true
+        private set
+
+    /** Adds a listener called on the main thread when the ranking or the permission changes. */
+    fun addListener(listener: () -> Unit) = mListeners.add(listener)
+
+    fun removeListener(listener: () -> Unit) = mListeners.remove(listener)
+
+    /** Pulls the usage events since the last refresh, unless it was done very recently. */
+    fun refreshAsync() {
+        UI_HELPER_EXECUTOR.execute {
+            val now = SystemClock.elapsedRealtime()
+            if (mTotals != null && now - mLastRefreshTime < MIN_REFRESH_INTERVAL_MS) {
+                return@execute
+            }
+            mLastRefreshTime = now
+            refresh()
+        }
+    }
+
+    private fun refresh() {
+        val granted =
+            mContext.checkCallingOrSelfPermission(
+                android.Manifest.permission.PACKAGE_USAGE_STATS
+            ) == PackageManager.PERMISSION_GRANTED
+        if (!granted) {
+            Logger.i(TAG, "The user may not allow the access to apps usage.")
+            if (isPermissionGranted) {
+                isPermissionGranted = false
+                runOnMainThread { mListeners.forEach { it() } }
+            }
+            return
+        }
+        isPermissionGranted = true
+
+        val now = System.currentTimeMillis()
+        val totals = mTotals ?: readTotals()
+        val checkpoint = mPrefs.getLong(KEY_CHECKPOINT, 0L)
+        if (checkpoint <= 0L || checkpoint > now) {
+            totals.clear()
+            aggregateStats(totals, now)
+        } else {
+            aggregateEvents(totals, checkpoint, now)
+        }
+        mTotals = totals
+        writeTotals(totals, now)
+
+        val ranked =
+            totals.entries
+                .asSequence()
+                .filter { it.value > 0 && it.key !in mBlacklist }
+                .sortedByDescending { it.value }
+                .take(MAX_RANKED)
+                .map { it.key }
+                .toList()
+        if (ranked != topPackages) {
+            topPackages = ranked
+            runOnMainThread { mListeners.forEach { it() } }
+        }
+    }
+
+    /** Bootstraps the totals with the aggregated stats of the past year. */
+    private fun aggregateStats(totals: HashMap<String, Long>, now: Long) {
+        val cal = Calendar.getInstance()
+        cal.add(Calendar.YEAR, -1)
+        val stats =
+            mUsageStatsManager.queryUsageStats(
+                UsageStatsManager.INTERVAL_BEST,
+                cal.timeInMillis,
+                now
+            )
+        for (stat in stats) {
+            totals[stat.packageName] =
+                (totals[stat.packageName] ?: 0L) + stat.totalTimeInForeground
+        }
+        if (totals.isEmpty()) {
+            Logger.i(TAG, "The aggregatedStats are empty can't do much")
+        }
+    }
+
+    /**
+     * Adds the time in foreground between [from] and [to]. An app paused without being resumed in
+     * the window was in foreground since [from], and an app not paused by the end of the window
+     * is counted until [to], so that consecutive windows add up exactly.
+     */
+    @Suppress("DEPRECATION")
+    private fun aggregateEvents(totals: HashMap<String, Long>, from: Long, to: Long) {
+        val events = mUsageStatsManager.queryEvents(from, to) ?: return
+        val resumed = HashMap<String, Long>()
+        val event = UsageEvents.Event()
+        while (events.hasNextEvent()) {
+            events.getNextEvent(event)
+            when (event.eventType) {
+                UsageEvents.Event.MOVE_TO_FOREGROUND -> {
+                    resumed.putIfAbsent(event.packageName, event.timeStamp)
+                }
+                UsageEvents.Event.MOVE_TO_BACKGROUND -> {
+                    val start = resumed.remove(event.packageName) ?: from
+                    totals[event.packageName] =
+                        (totals[event.packageName] ?: 0L) + (event.timeStamp - start)
                 }
             }
+        }
+        resumed.forEach { (packageName, start) ->
+            totals[packageName] = (totals[packageName] ?: 0L) + (to - start)
+        }
+    }
 
-            if (
-                mContext.checkCallingOrSelfPermission(
-                    android.Manifest.permission.PACKAGE_USAGE_STATS
-                ) != PackageManager.PERMISSION_GRANTED
-            ) {
-                Logger.i(TAG, "The user may not allow the access to apps usage.")
-                Toast.makeText(mContext, "Permission not allowed!", Toast.LENGTH_LONG).show()
-                mContext.startActivity(Intent(Settings.ACTION_USAGE_ACCESS_SETTINGS))
-            } else if (aggregatedStats.isNotEmpty()) {
-                val statsMap = aggregatedStats.entries
-
-                statsMap
-                    .toList()
-                    .filter {
-                        !mContext.resources
-                            .getStringArray(R.array.blacklisted_apps)
-                            .contains(it.key)
-                    }
-                    .apply {
-                        sortedWith(
-                            Comparator.comparingLong { (_, stat) -> stat.totalTimeInForeground }
-                        )
-                        forEach { (_, stat) -> usageStats.add(stat) }
-                    }
-            } else {
-                Logger.i(TAG, "The aggregatedStats are empty can't do much")
+    private fun readTotals(): HashMap<String, Long> {
+        val totals = HashMap<String, Long>()
+        mPrefs.all.forEach { (key, value) ->
+            if (key.startsWith(KEY_PACKAGE_PREFIX) && value is Long) {
+                totals[key.substring(KEY_PACKAGE_PREFIX.length)] = value
             }
+        }
+        return totals
+    }
 
-            return usageStats
+    private fun writeTotals(totals: Map<String, Long>, checkpoint: Long) {
+        val editor = mPrefs.edit().clear()
+        totals.forEach { (packageName, total) ->
+            editor.putLong(KEY_PACKAGE_PREFIX + packageName, total)
         }
+        editor.putLong(KEY_CHECKPOINT, checkpoint).apply()
+    }
 
     companion object {
         private const val TAG = "AppUsageStats"
+        private const val PREFS_NAME = "app_usage_stats"
+        private const val KEY_CHECKPOINT = "checkpoint"
+        private const val KEY_PACKAGE_PREFIX = "pkg:"
+
+        private const val MAX_RANKED = 20
+        private const val MIN_REFRESH_INTERVAL_MS = 60_000L
+
+        @JvmField
+        val INSTANCE = MainThreadInitializedObject { context: Context -> AppUsageStats(context) }
     }
 }
@@ -11,6 +11,7 @@ import android.annotation.SuppressLint
 import android.content.Context
 import android.content.Intent
 import android.graphics.Color
+import android.provider.Settings
 import android.util.AttributeSet
 import android.view.DragEvent
 import android.view.KeyEvent
@@ -19,8 +20,8 @@ import android.view.View
 import android.widget.GridLayout
 import android.widget.ImageView
 import android.widget.LinearLayout
+import android.widget.Toast
 import androidx.core.widget.doAfterTextChanged
-import androidx.core.widget.doOnTextChanged
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.android.launcher3.BubbleTextView
@@ -38,31 +39,44 @@ import com.android.launcher3.testing.shared.ResourceUtils
 import foundation.e.bliss.LauncherAppMonitor
 import foundation.e.bliss.utils.Logger
 import foundation.e.bliss.widgets.SwipeSearchContainer
-import java.util.Timer
-import java.util.TimerTask
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.async
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.debounce
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.mapLatest
+import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 
 @SuppressLint("CheckResult")
 class BlissInput(context: Context, attrs: AttributeSet) :
     LinearLayout(context, attrs), SearchCallback<AdapterItem>, OnUpdateListener, OnBackKeyListener {
-    private val mSearchAlgorithm = DefaultAppSearchAlgorithm(context, true)
+    private val mSearchSession = DefaultAppSearchAlgorithm(context, true).startSession()
     private val appMonitor = LauncherAppMonitor.getInstance(context)
-    private val suggestionProvider by lazy { SearchSuggestionUtil.getSuggestionProvider(context) }
+    private val suggestionProviderLazy = lazy {
+        SearchSuggestionUtil.getSuggestionProvider(context)
+    }
+    private val suggestionProvider by suggestionProviderLazy
     private val suggestionAdapter by lazy { AutoCompleteAdapter(context) }
     private val idp by lazy { InvariantDeviceProfile.INSTANCE.get(context) }
-    private val appUsageStats by lazy { AppUsageStats(context).usageStats }
+    private val appUsageStats by lazy { AppUsageStats.INSTANCE.get(context) }
+    private val usageStatsListener = ::onUsageStatsChanged
+    private var usageAccessRequested = false
     private val mAppsStore by lazy { appMonitor.launcher.appsView.appsStore }
 
-    private var results: SuggestionsResult? = null
     private lateinit var mSearchInput: ExtendedEditText
     private lateinit var mIconGrid: GridLayout
     private lateinit var mAppsLayout: View
     private lateinit var mClearButton: ImageView
     private lateinit var mSuggestionRv: RecyclerView
-    private var timer: Timer? = null
+    private val suggestionQueries = MutableStateFlow("")
+    private var suggestionScope: CoroutineScope? = null
 
     override fun onAttachedToWindow() {
         super.onAttachedToWindow()
@@ -73,8 +87,6 @@ class BlissInput(context: Context, attrs: AttributeSet) :
         mSuggestionRv = mAppsLayout.findViewById(R.id.suggestionRecyclerView)
 
         mSearchInput.apply {
-            doOnTextChanged { _, _, _, _ -> timer?.cancel() }
-
             doAfterTextChanged { text ->
                 if (text.isNullOrEmpty()) {
                     clearSearchResult()
@@ -83,20 +95,8 @@ class BlissInput(context: Context, attrs: AttributeSet) :
                 }
 
                 mClearButton.visibility = View.VISIBLE
-                mSearchAlgorithm.cancel(false)
-                mSearchAlgorithm.doSearch(text.trim().toString(), this@BlissInput)
-
-                if (text.toString() != results?.queryText) {
-                    timer = Timer()
-                    timer?.schedule(
-                        object : TimerTask() {
-                            override fun run() {
-                                loadSearchSuggestions(text.toString())
-                            }
-                        },
-                        500
-                    )
-                }
+                mSearchSession.doSearch(text.trim().toString(), this@BlissInput)
+                suggestionQueries.value = text.toString()
             }
 
             setOnKeyListener { _, keyCode, _ ->
@@ -130,15 +130,59 @@ class BlissInput(context: Context, attrs: AttributeSet) :
         }
 
         mAppsStore.addUpdateListener(this)
+        appUsageStats.addListener(usageStatsListener)
+        startSuggestionSession()
+    }
+
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+        appUsageStats.removeListener(usageStatsListener)
+        suggestionScope?.cancel()
+        suggestionScope = null
+    }
+
+    /**
+     * Loads the network suggestions of the latest query: cached suggestions are shown right away,
+     * and the provider is only queried once typing pauses. A request is cancelled as soon as the
+     * query changes.
+     */
+    @OptIn(FlowPreview::class, ExperimentalCoroutinesApi::class)
+    private fun startSuggestionSession() {
+        suggestionScope?.cancel()
+        suggestionScope =
+            CoroutineScope(SupervisorJob() + Dispatchers.Main).apply {
+                launch {
+                    suggestionQueries
+                        .onEach { query ->
+                            if (query.isNotEmpty() && suggestionProviderLazy.isInitialized()) {
+                                suggestionProvider.cache.peek(query)?.let(::showSuggestions)
+                            }
+                        }
+                        .debounce { if (it.isEmpty()) 0L else SUGGESTION_DEBOUNCE_MS }
+                        .mapLatest { query ->
+                            if (query.isEmpty()) SuggestionsResult(query)
+                            else withContext(Dispatchers.IO) { querySuggestions(query) }
+                        }
+                        .filterNotNull()
+                        .collect { showSuggestions(it) }
+                }
+            }
     }
 
-    private fun loadSearchSuggestions(query: String) =
-        CoroutineScope(Dispatchers.Main).launch {
-            val task = async(Dispatchers.IO) { suggestionProvider.query(query) }
-            results = task.await()
-            results?.let { suggestionAdapter.updateSuggestions(it.networkItems, it.queryText) }
+    private suspend fun querySuggestions(query: String): SuggestionsResult? =
+        try {
+            suggestionProvider.query(query)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Logger.w(TAG, "Failed to load suggestions", e)
+            null
         }
 
+    private fun showSuggestions(result: SuggestionsResult) {
+        suggestionAdapter.updateSuggestions(result.networkItems, result.queryText)
+    }
+
     override fun onDragEvent(event: DragEvent): Boolean {
         // Without this drag/drop apps won't work on API <24.
         // EditTexts seem to interfere with drag/drop.
@@ -197,12 +241,22 @@ class BlissInput(context: Context, attrs: AttributeSet) :
 
         mIconGrid.removeAllViews()
         if (appsList.isNotEmpty()) {
-            if (appUsageStats.isNotEmpty()) {
-                appUsageStats
-                    .mapNotNull { pkg -> appsList.find { it.targetPackage == pkg.packageName } }
-                    .take(idp.numColumns)
-                    .forEachIndexed { index, it -> mIconGrid.addView(createAppView(it), index) }
-            }
+            appUsageStats.topPackages
+                .mapNotNull { pkg -> appsList.find { it.targetPackage == pkg } }
+                .take(idp.numColumns)
+                .forEachIndexed { index, it -> mIconGrid.addView(createAppView(it), index) }
+        }
+        // The ranking is updated in the background, suggestions reload when it changes
+        appUsageStats.refreshAsync()
+    }
+
+    private fun onUsageStatsChanged() {
+        if (appUsageStats.isPermissionGranted) {
+            loadSuggestions()
+        } else if (!usageAccessRequested) {
+            usageAccessRequested = true
+            Toast.makeText(context, "Permission not allowed!", Toast.LENGTH_LONG).show()
+            context.startActivity(Intent(Settings.ACTION_USAGE_ACCESS_SETTINGS))
         }
     }
 
@@ -216,7 +270,9 @@ class BlissInput(context: Context, attrs: AttributeSet) :
     }
 
     override fun clearSearchResult() {
+        mSearchSession.reset()
         mIconGrid.removeAllViews()
+        suggestionQueries.value = ""
         suggestionAdapter.updateSuggestions(emptyList(), "")
         mSearchInput.text?.clear()
         mClearButton.visibility = View.GONE
@@ -251,5 +307,6 @@ class BlissInput(context: Context, attrs: AttributeSet) :
 
     companion object {
         private const val TAG = "BlissInput"
+        private const val SUGGESTION_DEBOUNCE_MS = 300L
     }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright © MURENA SAS 2023.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ */
+package foundation.e.bliss.suggestions
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+
+/**
+ * [SuggestionProvider] answering from a [SuggestionCache] when possible. Identical queries in
+ * flight at the same time share a single network request, which is cancelled once nobody waits
+ * for it anymore.
+ */
+class CachedSuggestionProvider(
+    private val provider: SuggestionProvider,
+    val cache: SuggestionCache
+) : SuggestionProvider {
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val inFlight = HashMap<String, InFlightQuery>()
+
+    override suspend fun query(query: String): SuggestionsResult {
+        cache.get(query)?.let {
+            return it
+        }
+
+        val request =
+            synchronized(inFlight) {
+                inFlight
+                    .getOrPut(query) {
+                        InFlightQuery(
+                            scope.async { provider.query(query).also { cache.put(it) } }
+                        )
+                    }
+                    .also { it.waiters++ }
+            }
+        try {
+            return request.result.await()
+        } finally {
+            synchronized(inFlight) {
+                if (--request.waiters == 0) {
+                    if (inFlight[query] === request) inFlight.remove(query)
+                    request.result.cancel()
+                }
+            }
+        }
+    }
+
+    private class InFlightQuery(val result: Deferred<SuggestionsResult>) {
+        var waiters = 0
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © MURENA SAS 2023.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ */
+package foundation.e.bliss.suggestions
+
+import android.os.SystemClock
+import java.io.IOException
+import java.io.PrintWriter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import okhttp3.Call
+import okhttp3.EventListener
+import okhttp3.Response
+
+/**
+ * Collects the latency, cache and traffic metrics of the suggestion requests.
+ */
+class NetworkMetrics : EventListener() {
+
+    private val callStartTimes = ConcurrentHashMap<Call, Long>()
+    private val latencyHistogram = AtomicLongArray(LATENCY_BUCKETS_MS.size + 1)
+
+    private val calls = AtomicLong()
+    private val failures = AtomicLong()
+    private val cacheHits = AtomicLong()
+    private val conditionalCacheHits = AtomicLong()
+    private val cacheMisses = AtomicLong()
+    private val bytesReceived = AtomicLong()
+
+    override fun callStart(call: Call) {
+        calls.incrementAndGet()
+        callStartTimes[call] = SystemClock.elapsedRealtime()
+    }
+
+    override fun callEnd(call: Call) = recordLatency(call)
+
+    override fun callFailed(call: Call, ioe: IOException) {
+        failures.incrementAndGet()
+        recordLatency(call)
+    }
+
+    override fun canceled(call: Call) {
+        callStartTimes.remove(call)
+    }
+
+    override fun cacheHit(call: Call, response: Response) {
+        cacheHits.incrementAndGet()
+    }
+
+    override fun cacheConditionalHit(call: Call, cachedResponse: Response) {
+        conditionalCacheHits.incrementAndGet()
+    }
+
+    override fun cacheMiss(call: Call) {
+        cacheMisses.incrementAndGet()
+    }
+
+    override fun responseBodyEnd(call: Call, byteCount: Long) {
+        bytesReceived.addAndGet(byteCount)
+    }
+
+    private fun recordLatency(call: Call) {
+        val start = callStartTimes.remove(call) ?: return
+        val latency = SystemClock.elapsedRealtime() - start
+        var bucket = LATENCY_BUCKETS_MS.indexOfFirst { latency < it }
+        if (bucket < 0) bucket = LATENCY_BUCKETS_MS.size
+        latencyHistogram.incrementAndGet(bucket)
+    }
+
+    fun dump(prefix: String, writer: PrintWriter) {
+        val hits = cacheHits.get() + conditionalCacheHits.get()
+        val lookups = hits + cacheMisses.get()
+        val hitRatio = if (lookups == 0L) 0f else hits.toFloat() / lookups
+        writer.println(
+            "${prefix}NetworkMetrics: calls=${calls.get()} failures=${failures.get()}" +
+                " cacheHits=${cacheHits.get()} conditionalHits=${conditionalCacheHits.get()}" +
+                " misses=${cacheMisses.get()} hitRatio=${"%.2f".format(hitRatio)}" +
+                " bytesReceived=${bytesReceived.get()}"
+        )
+        val histogram = StringBuilder("${prefix}  latency:")
+        for (i in 0 until latencyHistogram.length()) {
+            val label =
+                if (i < LATENCY_BUCKETS_MS.size) "<${LATENCY_BUCKETS_MS[i]}ms"
+                else ">=${LATENCY_BUCKETS_MS.last()}ms"
+            histogram.append(' ').append(label).append('=').append(latencyHistogram.get(i))
+        }
+        writer.println(histogram)
+    }
+
+    companion object {
+        private val LATENCY_BUCKETS_MS = longArrayOf(50, 100, 200, 500, 1000, 2000)
+    }
+}
@@ -7,32 +7,97 @@
  */
 package foundation.e.bliss.suggestions
 
+import android.content.Context
+import com.android.launcher3.BuildConfig
+import java.io.File
+import java.io.PrintWriter
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
+import okhttp3.Cache
+import okhttp3.ConnectionPool
 import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
 
+/**
+ * Network layer of the suggestion providers: a single pooled [OkHttpClient] with an on-disk HTTP
+ * cache, shared by one cached [Retrofit] instance per base url.
+ */
 object RetrofitService {
-    private var okHttpClient: OkHttpClient
-
-    init {
-        val logging = HttpLoggingInterceptor()
-        logging.setLevel(HttpLoggingInterceptor.Level.BODY)
-        okHttpClient =
-            OkHttpClient.Builder()
-                .addInterceptor(logging)
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
+    private const val CACHE_DIR = "suggestions_http"
+    private const val CACHE_SIZE_BYTES = 2L * 1024 * 1024
+
+    // Autocomplete requests come in short bursts while typing, keep a couple of connections
+    // alive between keystrokes but not much longer.
+    private const val MAX_IDLE_CONNECTIONS = 2
+    private const val KEEP_ALIVE_SECONDS = 60L
+    private const val TIMEOUT_SECONDS = 10L
+
+    // Suggestions are cached this long when the server does not say otherwise
+    private const val DEFAULT_MAX_AGE_SECONDS = 10 * 60
+
+    val metrics = NetworkMetrics()
+
+    @Volatile private var okHttpClient: OkHttpClient? = null
+    private val retrofits = ConcurrentHashMap<String, Retrofit>()
+
+    fun getInstance(context: Context, url: String): Retrofit {
+        return retrofits.getOrPut(url) {
+            Retrofit.Builder()
+                .baseUrl(url)
+                .client(getClient(context))
+                .addConverterFactory(GsonConverterFactory.create())
                 .build()
+        }
+    }
+
+    private fun getClient(context: Context): OkHttpClient {
+        okHttpClient?.let {
+            return it
+        }
+        synchronized(this) {
+            okHttpClient?.let {
+                return it
+            }
+            val builder =
+                OkHttpClient.Builder()
+                    .cache(Cache(File(context.cacheDir, CACHE_DIR), CACHE_SIZE_BYTES))
+                    .connectionPool(
+                        ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS)
+                    )
+                    .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .writeTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .eventListener(metrics)
+                    .addNetworkInterceptor { chain ->
+                        val response = chain.proceed(chain.request())
+                        if (response.header("Cache-Control") == null) {
+                            response
+                                .newBuilder()
+                                .header("Cache-Control", "max-age=$DEFAULT_MAX_AGE_SECONDS")
+                                .build()
+                        } else response
+                    }
+            if (BuildConfig.DEBUG) {
+                builder.addInterceptor(
+                    HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BASIC)
+                )
+            }
+            return builder.build().also { okHttpClient = it }
+        }
     }
 
-    fun getInstance(url: String): Retrofit {
-        return Retrofit.Builder()
-            .baseUrl(url)
-            .client(okHttpClient)
-            .addConverterFactory(GsonConverterFactory.create())
-            .build()
+    fun dump(prefix: String, writer: PrintWriter) {
+        writer.println()
+        writer.println("${prefix}RetrofitService: services=${retrofits.keys}")
+        okHttpClient?.let {
+            writer.println(
+                "$prefix  connections=${it.connectionPool.connectionCount()}" +
+                    " idle=${it.connectionPool.idleConnectionCount()}" +
+                    " cacheSize=${it.cache?.size() ?: 0}"
+            )
+        }
+        metrics.dump("$prefix  ", writer)
     }
 }
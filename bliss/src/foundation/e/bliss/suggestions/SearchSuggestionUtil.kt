@@ -15,11 +15,19 @@ import foundation.e.bliss.suggestions.qwant.QwantProvider
 
 object SearchSuggestionUtil {
 
-    fun getSuggestionProvider(context: Context): SuggestionProvider {
+    fun getSuggestionProvider(context: Context): CachedSuggestionProvider {
         return with(defaultSearchEngine(context)) {
             when {
-                contains(Providers.QWANT.key, true) -> QwantProvider()
-                else -> DuckDuckGoProvider()
+                contains(Providers.QWANT.key, true) ->
+                    CachedSuggestionProvider(
+                        QwantProvider(context),
+                        SuggestionCache(context, Providers.QWANT.key)
+                    )
+                else ->
+                    CachedSuggestionProvider(
+                        DuckDuckGoProvider(context),
+                        SuggestionCache(context, Providers.DUCKDUCKGO.key)
+                    )
             }
         }
     }
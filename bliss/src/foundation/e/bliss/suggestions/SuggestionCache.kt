@@ -0,0 +1,94 @@
+/*
+ * Copyright © MURENA SAS 2023.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/gpl.html
+ */
+package foundation.e.bliss.suggestions
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.util.LruCache
+import java.util.Locale
+
+/**
+ * Cache of [SuggestionsResult] in front of a [SuggestionProvider]: an in-memory LRU cache backed
+ * by a small persistent cache whose entries expire after [TTL_MS].
+ */
+class SuggestionCache(context: Context, providerKey: String) {
+
+    private val memory = LruCache<String, List<String?>>(MEMORY_SIZE)
+    private val prefs: SharedPreferences by lazy {
+        context.getSharedPreferences("$PREFS_NAME_PREFIX$providerKey", Context.MODE_PRIVATE)
+    }
+
+    /** Returns the cached result for [query], or null if it is not cached or expired. */
+    fun get(query: String): SuggestionsResult? {
+        val key = normalize(query)
+        val items = memory.get(key) ?: readPersisted(key)?.also { memory.put(key, it) }
+        return items?.let { SuggestionsResult(query).apply { networkItems = it } }
+    }
+
+    /**
+     * Returns a result to show for [query] until the actual result is known: the cached result,
+     * or else the cached suggestions of the longest cached prefix of [query] which still match.
+     * Only the in-memory cache is used, so that it can be called on the main thread.
+     */
+    fun peek(query: String): SuggestionsResult? {
+        val key = normalize(query)
+        for (length in key.length downTo 1) {
+            val items = memory.get(key.substring(0, length)) ?: continue
+            if (length == key.length) {
+                return SuggestionsResult(query).apply { networkItems = items }
+            }
+            val matching = items.filter { it != null && normalize(it).startsWith(key) }
+            if (matching.isNotEmpty()) {
+                return SuggestionsResult(query).apply { networkItems = matching }
+            }
+        }
+        return null
+    }
+
+    fun put(result: SuggestionsResult) {
+        // Empty results are usually network failures, which should be retried
+        if (result.networkItems.isEmpty()) return
+        val key = normalize(result.queryText)
+        memory.put(key, result.networkItems)
+
+        val entries = prefs.all
+        val editor = prefs.edit()
+        if (entries.size >= PERSISTED_SIZE && !entries.containsKey(key)) {
+            // Drop the oldest entries
+            entries.entries
+                .sortedBy { (it.value as? String)?.substringBefore(SEPARATOR)?.toLongOrNull() ?: 0 }
+                .take(entries.size - PERSISTED_SIZE + 1)
+                .forEach { editor.remove(it.key) }
+        }
+        val value =
+            (listOf(System.currentTimeMillis().toString()) + result.networkItems.map { it ?: "" })
+                .joinToString(SEPARATOR)
+        editor.putString(key, value).apply()
+    }
+
+    private fun readPersisted(key: String): List<String?>? {
+        val parts = prefs.getString(key, null)?.split(SEPARATOR) ?: return null
+        val time = parts[0].toLongOrNull() ?: 0
+        if (System.currentTimeMillis() - time !in 0..TTL_MS) {
+            prefs.edit().remove(key).apply()
+            return null
+        }
+        return parts.drop(1)
+    }
+
+    private fun normalize(query: String) = query.trim().lowercase(Locale.getDefault())
+
+    companion object {
+        private const val PREFS_NAME_PREFIX = "suggestions_cache_"
+        private const val SEPARATOR = "\u0000"
+
+        private const val MEMORY_SIZE = 64
+        private const val PERSISTED_SIZE = 100
+        private const val TTL_MS = 24 * 60 * 60 * 1000L
+    }
+}
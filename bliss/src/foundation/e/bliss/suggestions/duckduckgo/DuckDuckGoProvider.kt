@@ -7,19 +7,23 @@
  */
 package foundation.e.bliss.suggestions.duckduckgo
 
-import android.util.Log
+import android.content.Context
 import foundation.e.bliss.suggestions.RetrofitService
 import foundation.e.bliss.suggestions.SuggestionProvider
 import foundation.e.bliss.suggestions.SuggestionsResult
+import foundation.e.bliss.utils.Logger
 
-class DuckDuckGoProvider : SuggestionProvider {
-    private val suggestionService: DuckDuckGoApi
-        get() =
-            RetrofitService.getInstance(DuckDuckGoApi.BASE_URL).create(DuckDuckGoApi::class.java)
+class DuckDuckGoProvider(
+    private val context: Context,
+    private val baseUrl: String = DuckDuckGoApi.BASE_URL
+) : SuggestionProvider {
+    private val suggestionService: DuckDuckGoApi by lazy {
+        RetrofitService.getInstance(context, baseUrl).create(DuckDuckGoApi::class.java)
+    }
 
     override suspend fun query(query: String): SuggestionsResult {
         val result = kotlin.runCatching { suggestionService.query(query) }
-        Log.d("DuckDuckGoProvider", "Result: $result")
+        Logger.d("DuckDuckGoProvider", "Result: $result")
         val suggestions = SuggestionsResult(query)
         return if (result.isSuccess) {
             suggestions.apply {
@@ -7,19 +7,24 @@
  */
 package foundation.e.bliss.suggestions.qwant
 
-import android.util.Log
+import android.content.Context
 import foundation.e.bliss.suggestions.RetrofitService
 import foundation.e.bliss.suggestions.SuggestionProvider
 import foundation.e.bliss.suggestions.SuggestionsResult
+import foundation.e.bliss.utils.Logger
 
-class QwantProvider : SuggestionProvider {
+class QwantProvider(
+    private val context: Context,
+    private val baseUrl: String = QwantApi.BASE_URL
+) : SuggestionProvider {
 
-    private val suggestionService: QwantApi
-        get() = RetrofitService.getInstance(QwantApi.BASE_URL).create(QwantApi::class.java)
+    private val suggestionService: QwantApi by lazy {
+        RetrofitService.getInstance(context, baseUrl).create(QwantApi::class.java)
+    }
 
     override suspend fun query(query: String): SuggestionsResult {
         val result = suggestionService.query(query)
-        Log.d("QwantProvider", "Result: $result")
+        Logger.d("QwantProvider", "Result: $result")
         return SuggestionsResult(query).apply {
             networkItems =
                 if (result.status == "success") {
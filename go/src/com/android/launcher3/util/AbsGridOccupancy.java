@@ -27,28 +27,30 @@ public abstract class AbsGridOccupancy {
      * Find the first vacant cell, if there is one.
      *
      * @param vacantOut Holds the x and y coordinate of the vacant cell
+     * @param rows Occupancy of each row, with the bit x set if the cell (x, y) is occupied.
      * @param spanX Horizontal cell span.
      * @param spanY Vertical cell span.
      *
      * @return true if a vacant cell was found
      */
-    protected boolean findVacantCell(int[] vacantOut, boolean[][] cells, int countX, int countY,
+    protected boolean findVacantCell(int[] vacantOut, long[] rows, int countX, int countY,
             int spanX, int spanY) {
+        long rowMask = GridOccupancy.spanMask(countX);
         for (int y = 0; (y + spanY) <= countY; y++) {
-            for (int x = 0; (x + spanX) <= countX; x++) {
-                boolean available = !cells[x][y];
-                out:
-                for (int i = x; i < x + spanX; i++) {
-                    for (int j = y; j < y + spanY; j++) {
-                        available = available && !cells[i][j];
-                        if (!available) break out;
-                    }
-                }
-                if (available) {
-                    vacantOut[0] = x;
-                    vacantOut[1] = y;
-                    return true;
-                }
+            long occupied = 0;
+            for (int j = y; j < y + spanY; j++) {
+                occupied |= rows[j];
+            }
+            // Keep the bit x only if the cells x to x + spanX - 1 are all vacant
+            long vacant = ~occupied & rowMask;
+            long starts = vacant;
+            for (int i = 1; i < spanX && starts != 0; i++) {
+                starts &= vacant >>> i;
+            }
+            if (starts != 0) {
+                vacantOut[0] = Long.numberOfTrailingZeros(starts);
+                vacantOut[1] = y;
+                return true;
             }
         }
         return false;
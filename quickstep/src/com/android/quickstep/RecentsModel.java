@@ -30,6 +30,7 @@ import android.os.Build;
 import android.os.Process;
 import android.os.UserHandle;
 
+import androidx.annotation.UiThread;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.icons.IconProvider;
@@ -37,6 +38,8 @@ import com.android.launcher3.icons.IconProvider.IconChangeListener;
 import com.android.launcher3.util.Executors.SimpleThreadFactory;
 import com.android.launcher3.util.MainThreadInitializedObject;
 import com.android.quickstep.util.GroupTask;
+import com.android.quickstep.util.TaskDataBatchExecutor;
+import com.android.quickstep.util.TaskDataPrefetcher;
 import com.android.quickstep.util.TaskVisualsChangeListener;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.ThumbnailData;
@@ -72,6 +75,8 @@ public class RecentsModel implements IconChangeListener, TaskStackChangeListener
     private final RecentTasksList mTaskList;
     private final TaskIconCache mIconCache;
     private final TaskThumbnailCache mThumbnailCache;
+    private final TaskDataPrefetcher mTaskDataPrefetcher;
+    private final TaskDataBatchExecutor mTaskDataExecutor;
 
     private RecentsModel(Context context) {
         mContext = context;
@@ -79,10 +84,12 @@ public class RecentsModel implements IconChangeListener, TaskStackChangeListener
                 context.getSystemService(KeyguardManager.class),
                 SystemUiProxy.INSTANCE.get(context));
 
+        mTaskDataExecutor = new TaskDataBatchExecutor(RECENTS_MODEL_EXECUTOR, MAIN_EXECUTOR);
         IconProvider iconProvider = new IconProvider(context);
-        mIconCache = new TaskIconCache(context, RECENTS_MODEL_EXECUTOR, iconProvider);
+        mIconCache = new TaskIconCache(context, mTaskDataExecutor, iconProvider);
         mIconCache.registerTaskVisualsChangeListener(this);
-        mThumbnailCache = new TaskThumbnailCache(context, RECENTS_MODEL_EXECUTOR);
+        mThumbnailCache = new TaskThumbnailCache(context, mTaskDataExecutor);
+        mTaskDataPrefetcher = new TaskDataPrefetcher(mThumbnailCache, mIconCache);
 
         TaskStackChangeListeners.getInstance().registerTaskStackListener(this);
         iconProvider.registerIconChangeListener(this, MAIN_EXECUTOR.getHandler());
@@ -96,6 +103,28 @@ public class RecentsModel implements IconChangeListener, TaskStackChangeListener
         return mThumbnailCache;
     }
 
+    public TaskDataPrefetcher getTaskDataPrefetcher() {
+        return mTaskDataPrefetcher;
+    }
+
+    /**
+     * Starts gathering the thumbnail and icon requests into a single background job, until the
+     * matching call to {@link #endTaskDataBatch()}. The results of the batch are delivered
+     * together, so that they show in the same frame.
+     */
+    @UiThread
+    public void startTaskDataBatch() {
+        mTaskDataExecutor.startBatch();
+    }
+
+    /**
+     * Ends the batch started by {@link #startTaskDataBatch()}, and loads its requests.
+     */
+    @UiThread
+    public void endTaskDataBatch() {
+        mTaskDataExecutor.endBatch();
+    }
+
     /**
      * Fetches the list of recent tasks. Tasks are ordered by recency, with the latest active tasks
      * at the end of the list.
@@ -210,9 +239,10 @@ public class RecentsModel implements IconChangeListener, TaskStackChangeListener
         if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
             mThumbnailCache.getHighResLoadingState().setVisible(false);
         }
+        mThumbnailCache.onTrimMemory(level);
         if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
             // Clear everything once we reach a low-mem situation
-            mThumbnailCache.clear();
+            mTaskDataPrefetcher.clear();
             mIconCache.clearCache();
         }
     }
@@ -254,6 +284,9 @@ public class RecentsModel implements IconChangeListener, TaskStackChangeListener
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentsModel:");
         mTaskList.dump("  ", writer);
+        mThumbnailCache.dump("  ", writer);
+        mTaskDataExecutor.dump("  ", writer);
+        mTaskDataPrefetcher.dump("  ", writer);
     }
 
     /**
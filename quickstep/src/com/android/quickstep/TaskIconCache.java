@@ -45,7 +45,8 @@ import com.android.launcher3.util.DisplayController;
 import com.android.launcher3.util.DisplayController.DisplayInfoChangeListener;
 import com.android.launcher3.util.DisplayController.Info;
 import com.android.launcher3.util.Preconditions;
-import com.android.quickstep.util.CancellableTask;
+import com.android.quickstep.util.CancellableRequest;
+import com.android.quickstep.util.SharedTaskDataLoad;
 import com.android.quickstep.util.TaskKeyLruCache;
 import com.android.quickstep.util.TaskVisualsChangeListener;
 import com.android.systemui.shared.recents.model.Task;
@@ -65,6 +66,8 @@ public class TaskIconCache implements DisplayInfoChangeListener {
 
     private final Context mContext;
     private final TaskKeyLruCache<TaskCacheEntry> mIconCache;
+    // Icon loads which are not done yet, by task id
+    private final SparseArray<IconLoad> mPendingLoads = new SparseArray<>();
     private final SparseArray<BitmapInfo> mDefaultIcons = new SparseArray<>();
     private BitmapInfo mDefaultIconBase = null;
 
@@ -103,29 +106,26 @@ public class TaskIconCache implements DisplayInfoChangeListener {
      * @param callback The callback to receive the task after its data has been populated.
      * @return A cancelable handle to the request
      */
-    public CancellableTask updateIconInBackground(Task task, Consumer<Task> callback) {
+    public CancellableRequest updateIconInBackground(Task task, Consumer<Task> callback) {
         Preconditions.assertUIThread();
         if (task.icon != null) {
             // Nothing to load, the icon is already loaded
             callback.accept(task);
             return null;
         }
-        CancellableTask<TaskCacheEntry> request = new CancellableTask<TaskCacheEntry>() {
-            @Override
-            public TaskCacheEntry getResultOnBg() {
-                return getCacheEntry(task);
-            }
 
-            @Override
-            public void handleResult(TaskCacheEntry result) {
-                task.icon = result.icon;
-                task.titleDescription = result.contentDescription;
-                callback.accept(task);
-                dispatchIconUpdate(task.key.id);
-            }
-        };
-        mBgExecutor.execute(request);
-        return request;
+        // Share the pending load of the icon, like a prefetch for the same task
+        IconLoad load = mPendingLoads.get(task.key.id);
+        if (load == null || !load.canServe(task.key)) {
+            load = new IconLoad(task);
+            mPendingLoads.put(task.key.id, load);
+            mBgExecutor.execute(load);
+        }
+        return load.addRequest(result -> {
+            task.icon = result.icon;
+            task.titleDescription = result.contentDescription;
+            callback.accept(task);
+        });
     }
 
     /**
@@ -276,6 +276,39 @@ public class TaskIconCache implements DisplayInfoChangeListener {
         mIconCache.evictAll();
     }
 
+    /**
+     * Loads the icon of a task for one or more requests.
+     */
+    private class IconLoad extends SharedTaskDataLoad<TaskCacheEntry> {
+
+        private final Task mTask;
+
+        IconLoad(Task task) {
+            mTask = task;
+        }
+
+        boolean canServe(TaskKey key) {
+            return mTask.key.lastActiveTime == key.lastActiveTime;
+        }
+
+        @Override
+        public TaskCacheEntry getResultOnBg() {
+            return getCacheEntry(mTask);
+        }
+
+        @Override
+        protected void onFinished() {
+            if (mPendingLoads.get(mTask.key.id) == this) {
+                mPendingLoads.remove(mTask.key.id);
+            }
+        }
+
+        @Override
+        protected void onResultDelivered(TaskCacheEntry result) {
+            dispatchIconUpdate(mTask.key.id);
+        }
+    }
+
     private static class TaskCacheEntry {
         public Drawable icon;
         public String contentDescription = "";
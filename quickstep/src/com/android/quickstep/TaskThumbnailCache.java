@@ -15,29 +15,46 @@
  */
 package com.android.quickstep;
 
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+
 import android.content.Context;
 import android.content.res.Resources;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
 
 import com.android.launcher3.R;
 import com.android.launcher3.util.Preconditions;
-import com.android.quickstep.util.CancellableTask;
-import com.android.quickstep.util.TaskKeyLruCache;
+import com.android.quickstep.util.CancellableRequest;
+import com.android.quickstep.util.SharedTaskDataLoad;
+import com.android.quickstep.util.ThumbnailLruCache;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 import com.android.systemui.shared.recents.model.ThumbnailData;
 import com.android.systemui.shared.system.ActivityManagerWrapper;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 public class TaskThumbnailCache {
 
+    // Scale of the low-res thumbnails, if the device doesn't configure it
+    private static final float DEFAULT_LOW_RES_THUMBNAIL_SCALE = 0.5f;
+
     private final Executor mBgExecutor;
 
     private final int mCacheSize;
-    private final TaskKeyLruCache<ThumbnailData> mCache;
+    private final ThumbnailLruCache mCache;
     private final HighResLoadingState mHighResLoadingState;
+    private final long mLowResThumbnailSizeEstimate;
+    // Loads which are not finished, by task id, so that requests of the same thumbnail share them
+    private final SparseArray<ThumbnailLoad> mPendingLoads = new SparseArray<>();
     private final boolean mEnableTaskSnapshotPreloading;
 
     public static class HighResLoadingState {
@@ -54,7 +71,7 @@ public class TaskThumbnailCache {
         private HighResLoadingState(Context context) {
             // If the device does not support low-res thumbnails, only attempt to load high-res
             // thumbnails
-            mForceHighResThumbnails = !supportsLowResThumbnails();
+            mForceHighResThumbnails = getLowResThumbnailScale() <= 0;
         }
 
         public void addCallback(HighResLoadingStateChangedCallback callback) {
@@ -97,7 +114,15 @@ public class TaskThumbnailCache {
         Resources res = context.getResources();
         mCacheSize = res.getInteger(R.integer.recentsThumbnailCacheSize);
         mEnableTaskSnapshotPreloading = res.getBoolean(R.bool.config_enableTaskSnapshotPreloading);
-        mCache = new TaskKeyLruCache<>(mCacheSize);
+        mCache = new ThumbnailLruCache(
+                res.getInteger(R.integer.recentsThumbnailCacheSizeKb) * 1024L,
+                getLowResThumbnailScale(), bgExecutor);
+
+        // Devices without low-res thumbnails only load high-res ones
+        float lowResScale = getLowResThumbnailScale() > 0 ? getLowResThumbnailScale() : 1;
+        DisplayMetrics displayMetrics = res.getDisplayMetrics();
+        mLowResThumbnailSizeEstimate = 4L * Math.round(displayMetrics.widthPixels * lowResScale)
+                * Math.round(displayMetrics.heightPixels * lowResScale);
     }
 
     /**
@@ -129,7 +154,7 @@ public class TaskThumbnailCache {
      * @param callback The callback to receive the task after its data has been populated.
      * @return A cancelable handle to the request
      */
-    public CancellableTask updateThumbnailInBackground(
+    public CancellableRequest updateThumbnailInBackground(
             Task task, Consumer<ThumbnailData> callback) {
         Preconditions.assertUIThread();
 
@@ -148,33 +173,25 @@ public class TaskThumbnailCache {
         });
     }
 
-    private CancellableTask updateThumbnailInBackground(TaskKey key, boolean lowResolution,
+    private CancellableRequest updateThumbnailInBackground(TaskKey key, boolean lowResolution,
             Consumer<ThumbnailData> callback) {
         Preconditions.assertUIThread();
 
-        ThumbnailData cachedThumbnail = mCache.getAndInvalidateIfModified(key);
-        if (cachedThumbnail != null &&  cachedThumbnail.thumbnail != null
-                && (!cachedThumbnail.reducedResolution || lowResolution)) {
+        ThumbnailData cachedThumbnail = mCache.get(key, lowResolution);
+        if (cachedThumbnail != null && cachedThumbnail.thumbnail != null) {
             // Already cached, lets use that thumbnail
             callback.accept(cachedThumbnail);
             return null;
         }
 
-        CancellableTask<ThumbnailData> request = new CancellableTask<ThumbnailData>() {
-            @Override
-            public ThumbnailData getResultOnBg() {
-                return ActivityManagerWrapper.getInstance().getTaskThumbnail(
-                        key.id, lowResolution);
-            }
-
-            @Override
-            public void handleResult(ThumbnailData result) {
-                mCache.put(key, result);
-                callback.accept(result);
-            }
-        };
-        mBgExecutor.execute(request);
-        return request;
+        // Share the pending load of the thumbnail, if it has the requested resolution
+        ThumbnailLoad load = mPendingLoads.get(key.id);
+        if (load == null || !load.canServe(key, lowResolution)) {
+            load = new ThumbnailLoad(key, lowResolution);
+            mPendingLoads.put(key.id, load);
+            mBgExecutor.execute(load);
+        }
+        return load.addRequest(callback);
     }
 
     /**
@@ -184,6 +201,20 @@ public class TaskThumbnailCache {
         mCache.evictAll();
     }
 
+    /**
+     * Shrinks the cache according to the trim memory {@param level}.
+     */
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mCache.evictAll();
+        } else if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_LOW) {
+            mCache.demoteAll();
+            mCache.trimToSize(mCache.getMaxBytes() / 2);
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_MODERATE) {
+            mCache.demoteAll();
+        }
+    }
+
     /**
      * Removes the cached thumbnail for the given task.
      */
@@ -212,19 +243,66 @@ public class TaskThumbnailCache {
         return mEnableTaskSnapshotPreloading && mHighResLoadingState.mVisible;
     }
 
+    public void dump(String prefix, PrintWriter writer) {
+        mCache.dump(prefix, writer);
+    }
+
+    /**
+     * @return The expected size of a low-res thumbnail in bytes, before any is loaded.
+     */
+    public long getLowResThumbnailSizeEstimate() {
+        return mLowResThumbnailSizeEstimate;
+    }
+
     /**
-     * @return Whether device supports low-res thumbnails. Low-res files are an optimization
-     * for faster load times of snapshots. Devices can optionally disable low-res files so that
-     * they only store snapshots at high-res scale. The actual scale can be configured in
-     * frameworks/base config overlay.
+     * @return The scale of the low-res thumbnails, or 0 if the device doesn't support them.
+     * Low-res files are an optimization for faster load times of snapshots. Devices can
+     * optionally disable low-res files so that they only store snapshots at high-res scale. The
+     * actual scale can be configured in frameworks/base config overlay.
      */
-    private static boolean supportsLowResThumbnails() {
+    private static float getLowResThumbnailScale() {
         Resources res = Resources.getSystem();
         int resId = res.getIdentifier("config_lowResTaskSnapshotScale", "dimen", "android");
         if (resId != 0) {
-            return 0 < res.getFloat(resId);
+            return res.getFloat(resId);
         }
-        return true;
+        return DEFAULT_LOW_RES_THUMBNAIL_SCALE;
     }
 
+    /**
+     * Loads a thumbnail for one or more requests, and puts it in the cache.
+     */
+    private class ThumbnailLoad extends SharedTaskDataLoad<ThumbnailData> {
+
+        private final TaskKey mKey;
+        private final boolean mLowResolution;
+
+        ThumbnailLoad(TaskKey key, boolean lowResolution) {
+            mKey = key;
+            mLowResolution = lowResolution;
+        }
+
+        boolean canServe(TaskKey key, boolean lowResolution) {
+            return mKey.windowingMode == key.windowingMode
+                    && mKey.lastActiveTime == key.lastActiveTime
+                    && (!mLowResolution || lowResolution);
+        }
+
+        @Override
+        public ThumbnailData getResultOnBg() {
+            return ActivityManagerWrapper.getInstance().getTaskThumbnail(mKey.id, mLowResolution);
+        }
+
+        @Override
+        protected void onFinished() {
+            if (mPendingLoads.get(mKey.id) == this) {
+                mPendingLoads.remove(mKey.id);
+            }
+        }
+
+        @Override
+        protected void onResultDelivered(ThumbnailData result) {
+            mCache.put(mKey, result);
+        }
+    }
 }
@@ -26,22 +26,39 @@ import androidx.annotation.WorkerThread;
 public abstract class CancellableTask<T> implements Runnable {
 
     private boolean mCancelled = false;
+    private T mResult;
 
     @Override
     public final void run() {
+        if (loadResult()) {
+            MAIN_EXECUTOR.execute(this::deliverResult);
+        }
+    }
+
+    /**
+     * Loads the result on the worker thread.
+     * @return false if the request was cancelled, in which case there is no result to deliver
+     */
+    @WorkerThread
+    boolean loadResult() {
         if (mCancelled) {
-            return;
+            return false;
         }
-        T result = getResultOnBg();
+        mResult = getResultOnBg();
+        return !mCancelled;
+    }
+
+    /**
+     * Passes the loaded result to {@link #handleResult(Object)}, unless the request was cancelled
+     */
+    @UiThread
+    void deliverResult() {
+        T result = mResult;
+        mResult = null;
         if (mCancelled) {
             return;
         }
-        MAIN_EXECUTOR.execute(() -> {
-            if (mCancelled) {
-                return;
-            }
-            handleResult(result);
-        });
+        handleResult(result);
     }
 
     /**
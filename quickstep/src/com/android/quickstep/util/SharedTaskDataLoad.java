@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import androidx.annotation.UiThread;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A {@link CancellableTask} which loads data for one or more requests, which get its result. The
+ * load is cancelled once all its requests are cancelled.
+ */
+public abstract class SharedTaskDataLoad<T> extends CancellableTask<T> {
+
+    private final ArrayList<Request> mRequests = new ArrayList<>();
+
+    /**
+     * Adds a request for the result of this load.
+     *
+     * @param callback The callback to receive the result.
+     * @return A cancelable handle to the request
+     */
+    @UiThread
+    public CancellableRequest addRequest(Consumer<T> callback) {
+        Request request = new Request(callback);
+        mRequests.add(request);
+        return request;
+    }
+
+    @Override
+    public final void handleResult(T result) {
+        onFinished();
+        ArrayList<Request> requests = new ArrayList<>(mRequests);
+        mRequests.clear();
+        for (Request request : requests) {
+            request.mCallback.accept(result);
+        }
+        onResultDelivered(result);
+    }
+
+    /**
+     * Called on the UI thread once the load completes, or is cancelled, so that new requests no
+     * longer join it.
+     */
+    @UiThread
+    protected abstract void onFinished();
+
+    /**
+     * Called on the UI thread after the result was passed to all the requests.
+     */
+    @UiThread
+    protected void onResultDelivered(T result) { }
+
+    private void removeRequest(Request request) {
+        if (mRequests.remove(request) && mRequests.isEmpty()) {
+            cancel();
+            onFinished();
+        }
+    }
+
+    private class Request implements CancellableRequest {
+
+        private final Consumer<T> mCallback;
+
+        Request(Consumer<T> callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void cancel() {
+            removeRequest(this);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import androidx.annotation.UiThread;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor of the task thumbnail and icon requests, which can gather the requests made during a
+ * batch into a single background job.
+ *
+ * Outside of a batch, the requests run on the background executor as they come. The
+ * {@link CancellableTask} requests made during a batch are loaded one after the other when the
+ * batch ends, and their results are delivered together in a single post to the result executor,
+ * so that they show in the same frame. Other runnables are never delayed.
+ */
+public class TaskDataBatchExecutor implements Executor {
+
+    private final Executor mBgExecutor;
+    private final Executor mResultExecutor;
+
+    private int mBatchDepth;
+    private ArrayList<CancellableTask<?>> mPendingRequests = new ArrayList<>();
+
+    private int mBatchCount;
+    private int mBatchedRequestCount;
+
+    /**
+     * @param bgExecutor The executor to load the requests on
+     * @param resultExecutor The executor to deliver the results of a batch on, which should be
+     *                       the UI thread executor
+     */
+    public TaskDataBatchExecutor(Executor bgExecutor, Executor resultExecutor) {
+        mBgExecutor = bgExecutor;
+        mResultExecutor = resultExecutor;
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        synchronized (this) {
+            if (mBatchDepth > 0 && runnable instanceof CancellableTask) {
+                mPendingRequests.add((CancellableTask<?>) runnable);
+                return;
+            }
+        }
+        mBgExecutor.execute(runnable);
+    }
+
+    /**
+     * Starts gathering the requests, until the matching call to {@link #endBatch()}. Batches can
+     * be nested, in which case the requests are loaded at the end of the outermost batch.
+     */
+    @UiThread
+    public synchronized void startBatch() {
+        mBatchDepth++;
+    }
+
+    /**
+     * Ends the batch started by {@link #startBatch()}, and loads the gathered requests.
+     */
+    @UiThread
+    public void endBatch() {
+        ArrayList<CancellableTask<?>> requests;
+        synchronized (this) {
+            mBatchDepth--;
+            if (mBatchDepth > 0 || mPendingRequests.isEmpty()) {
+                return;
+            }
+            requests = mPendingRequests;
+            mPendingRequests = new ArrayList<>();
+            mBatchCount++;
+            mBatchedRequestCount += requests.size();
+        }
+        mBgExecutor.execute(() -> loadBatch(requests));
+    }
+
+    private void loadBatch(ArrayList<CancellableTask<?>> requests) {
+        ArrayList<CancellableTask<?>> loaded = new ArrayList<>(requests.size());
+        for (CancellableTask<?> request : requests) {
+            if (request.loadResult()) {
+                loaded.add(request);
+            }
+        }
+        if (!loaded.isEmpty()) {
+            mResultExecutor.execute(() -> {
+                for (CancellableTask<?> request : loaded) {
+                    request.deliverResult();
+                }
+            });
+        }
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "TaskDataBatchExecutor: batches=" + mBatchCount
+                + " batchedRequests=" + mBatchedRequestCount
+                + " pending=" + mPendingRequests.size());
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import com.android.quickstep.TaskIconCache;
+import com.android.quickstep.TaskThumbnailCache;
+import com.android.systemui.shared.recents.model.Task;
+import com.android.systemui.shared.recents.model.ThumbnailData;
+
+import java.io.PrintWriter;
+
+/**
+ * Loads the thumbnails and icons of the tasks which are about to scroll into the visible range of
+ * the recents view, so that they are ready when the task views show.
+ *
+ * A prefetched thumbnail is kept on its {@link Task} until the task becomes visible, and released
+ * if the task moves away first. The prefetched thumbnails held at once are limited to a memory
+ * budget. The requests of tasks which move away before they are loaded are cancelled.
+ */
+public class TaskDataPrefetcher {
+
+    // Maximum size of the prefetched thumbnails which are held, or being loaded, at once
+    private static final long MAX_PREFETCHED_BYTES = 24L * 1024 * 1024;
+
+    private final TaskThumbnailCache mThumbnailCache;
+    private final TaskIconCache mIconCache;
+
+    private final SparseArray<Prefetch> mPrefetches = new SparseArray<>();
+    private long mPrefetchedBytes;
+    private int mPendingThumbnailCount;
+    // Size of the last loaded thumbnail, or the expected size before any is loaded, to account
+    // for the thumbnails being loaded
+    private long mThumbnailSizeEstimate;
+
+    private int mRequestCount;
+    private int mHitCount;
+    private int mLateCount;
+    private int mWasteCount;
+    private int mCancelCount;
+    private int mOverBudgetCount;
+
+    public TaskDataPrefetcher(TaskThumbnailCache thumbnailCache, TaskIconCache iconCache) {
+        mThumbnailCache = thumbnailCache;
+        mIconCache = iconCache;
+        mThumbnailSizeEstimate = thumbnailCache.getLowResThumbnailSizeEstimate();
+    }
+
+    /**
+     * Loads the data of {@param task}, which is expected to become visible soon.
+     */
+    @UiThread
+    public void prefetch(Task task) {
+        if (mPrefetches.get(task.key.id) != null) {
+            return;
+        }
+        boolean needsThumbnail = task.thumbnail == null || task.thumbnail.thumbnail == null;
+        boolean needsIcon = task.icon == null;
+        if (!needsThumbnail && !needsIcon) {
+            return;
+        }
+        if (needsThumbnail && mPrefetchedBytes
+                + (mPendingThumbnailCount + 1) * mThumbnailSizeEstimate > MAX_PREFETCHED_BYTES) {
+            mOverBudgetCount++;
+            return;
+        }
+
+        Prefetch prefetch = new Prefetch(task);
+        mPrefetches.put(task.key.id, prefetch);
+        mRequestCount++;
+        if (needsThumbnail) {
+            mPendingThumbnailCount++;
+            prefetch.thumbnailPending = true;
+            prefetch.thumbnailRequest = mThumbnailCache.updateThumbnailInBackground(task,
+                    thumbnail -> onThumbnailLoaded(prefetch, thumbnail));
+        }
+        if (needsIcon) {
+            prefetch.iconPending = true;
+            prefetch.iconRequest = mIconCache.updateIconInBackground(task, t -> {
+                prefetch.iconPending = false;
+                prefetch.iconRequest = null;
+            });
+        }
+    }
+
+    private void onThumbnailLoaded(Prefetch prefetch, ThumbnailData thumbnail) {
+        prefetch.thumbnailPending = false;
+        prefetch.thumbnailRequest = null;
+        mPendingThumbnailCount--;
+        prefetch.thumbnail = thumbnail;
+        if (thumbnail != null && thumbnail.thumbnail != null) {
+            prefetch.thumbnailBytes = thumbnail.thumbnail.getAllocationByteCount();
+            mThumbnailSizeEstimate = prefetch.thumbnailBytes;
+            mPrefetchedBytes += prefetch.thumbnailBytes;
+        }
+    }
+
+    /**
+     * Called when {@param task} becomes visible, after its view requested its data. The view takes
+     * over the prefetched data, or shares the pending thumbnail and icon loads if they are not
+     * ready yet.
+     */
+    @UiThread
+    public void onTaskVisible(Task task) {
+        Prefetch prefetch = removePrefetch(task.key.id);
+        if (prefetch == null) {
+            return;
+        }
+        if (prefetch.isPending()) {
+            // The loads go on for the requests of the view, which share them, only the prefetch
+            // stops waiting for them
+            prefetch.cancelPending();
+            mLateCount++;
+        } else {
+            mHitCount++;
+        }
+    }
+
+    /**
+     * Called when {@param task} is no longer expected to become visible soon, to cancel or
+     * release its prefetched data.
+     */
+    @UiThread
+    public void cancel(Task task) {
+        Prefetch prefetch = removePrefetch(task.key.id);
+        if (prefetch == null) {
+            return;
+        }
+        release(prefetch);
+    }
+
+    /**
+     * Cancels or releases all the prefetched data.
+     */
+    @UiThread
+    public void clear() {
+        for (int i = mPrefetches.size() - 1; i >= 0; i--) {
+            Prefetch prefetch = mPrefetches.valueAt(i);
+            mPrefetches.removeAt(i);
+            release(prefetch);
+        }
+        mPrefetchedBytes = 0;
+        mPendingThumbnailCount = 0;
+    }
+
+    private void release(Prefetch prefetch) {
+        if (prefetch.isPending()) {
+            prefetch.cancelPending();
+            mCancelCount++;
+        } else {
+            mWasteCount++;
+        }
+        if (prefetch.thumbnail != null && prefetch.task.thumbnail == prefetch.thumbnail) {
+            // The thumbnail stays in the thumbnail cache, if it fits
+            prefetch.task.thumbnail = null;
+        }
+    }
+
+    @Nullable
+    private Prefetch removePrefetch(int taskId) {
+        Prefetch prefetch = mPrefetches.get(taskId);
+        if (prefetch != null) {
+            mPrefetches.remove(taskId);
+            mPrefetchedBytes -= prefetch.thumbnailBytes;
+        }
+        return prefetch;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "TaskDataPrefetcher: requests=" + mRequestCount
+                + " hits=" + mHitCount
+                + " late=" + mLateCount
+                + " wasted=" + mWasteCount
+                + " cancelled=" + mCancelCount
+                + " overBudget=" + mOverBudgetCount
+                + " hitRatio=" + ratio(mHitCount, mRequestCount)
+                + " wasteRatio=" + ratio(mWasteCount, mRequestCount)
+                + " heldBytes=" + mPrefetchedBytes
+                + " prefetches=" + mPrefetches.size());
+    }
+
+    private static float ratio(int count, int total) {
+        return total == 0 ? 0 : (float) count / total;
+    }
+
+    private class Prefetch {
+        final Task task;
+
+        boolean thumbnailPending;
+        @Nullable CancellableRequest thumbnailRequest;
+        @Nullable ThumbnailData thumbnail;
+        long thumbnailBytes;
+
+        boolean iconPending;
+        @Nullable CancellableRequest iconRequest;
+
+        Prefetch(Task task) {
+            this.task = task;
+        }
+
+        boolean isPending() {
+            return thumbnailPending || iconPending;
+        }
+
+        void cancelPending() {
+            if (thumbnailPending) {
+                thumbnailPending = false;
+                mPendingThumbnailCount--;
+                if (thumbnailRequest != null) {
+                    thumbnailRequest.cancel();
+                    thumbnailRequest = null;
+                }
+            }
+            if (iconPending) {
+                iconPending = false;
+                if (iconRequest != null) {
+                    iconRequest.cancel();
+                    iconRequest = null;
+                }
+            }
+        }
+    }
+}
@@ -19,54 +19,65 @@ import android.util.Log;
 
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
 /**
- * A simple LRU cache for task key entries
+ * A simple LRU cache for task key entries, which can be read and written from any thread without
+ * locking.
+ *
+ * The least recently used order is approximate: each read stamps the entry with an increasing
+ * access count, and a put over the size evicts the entry with the oldest stamp. Concurrent puts
+ * may evict one entry too many.
  * @param <V> The type of the value
  */
 public class TaskKeyLruCache<V> {
 
-    private final MyLinkedHashMap<V> mMap;
+    private final ConcurrentHashMap<Integer, Entry<V>> mMap = new ConcurrentHashMap<>();
+    private final AtomicLong mAccessCount = new AtomicLong();
+    private final int mMaxSize;
 
     public TaskKeyLruCache(int maxSize) {
-        mMap = new MyLinkedHashMap<>(maxSize);
+        mMaxSize = maxSize;
     }
 
     /**
      * Removes all entries from the cache
      */
-    public synchronized void evictAll() {
+    public void evictAll() {
         mMap.clear();
     }
 
     /**
      * Removes a particular entry from the cache
      */
-    public synchronized void remove(TaskKey key) {
+    public void remove(TaskKey key) {
         mMap.remove(key.id);
     }
 
     /**
      * Removes all entries matching keyCheck
      */
-    public synchronized void removeAll(Predicate<TaskKey> keyCheck) {
-        mMap.entrySet().removeIf(e -> keyCheck.test(e.getValue().mKey));
+    public void removeAll(Predicate<TaskKey> keyCheck) {
+        mMap.values().removeIf(e -> keyCheck.test(e.mKey));
     }
 
     /**
      * Gets the entry if it is still valid
      */
-    public synchronized V getAndInvalidateIfModified(TaskKey key) {
+    public V getAndInvalidateIfModified(TaskKey key) {
         Entry<V> entry = mMap.get(key.id);
-
-        if (entry != null && entry.mKey.windowingMode == key.windowingMode
+        if (entry == null) {
+            return null;
+        }
+        if (entry.mKey.windowingMode == key.windowingMode
                 && entry.mKey.lastActiveTime == key.lastActiveTime) {
+            entry.mLastAccess = mAccessCount.incrementAndGet();
             return entry.mValue;
         } else {
-            remove(key);
+            // Only remove this entry, in case it was replaced in the meantime
+            mMap.remove(key.id, entry);
             return null;
         }
     }
@@ -74,9 +85,12 @@ public class TaskKeyLruCache<V> {
     /**
      * Adds an entry to the cache, optionally evicting the last accessed entry
      */
-    public final synchronized void put(TaskKey key, V value) {
+    public final void put(TaskKey key, V value) {
         if (key != null && value != null) {
-            mMap.put(key.id, new Entry<>(key, value));
+            mMap.put(key.id, new Entry<>(key, value, mAccessCount.incrementAndGet()));
+            while (mMap.size() > mMaxSize) {
+                evictEldest();
+            }
         } else {
             Log.e("TaskKeyCache", "Unexpected null key or value: " + key + ", " + value);
         }
@@ -85,41 +99,35 @@ public class TaskKeyLruCache<V> {
     /**
      * Updates the cache entry if it is already present in the cache
      */
-    public synchronized void updateIfAlreadyInCache(int taskId, V data) {
+    public void updateIfAlreadyInCache(int taskId, V data) {
         Entry<V> entry = mMap.get(taskId);
         if (entry != null) {
             entry.mValue = data;
         }
     }
 
-    private static class Entry<V> {
-
-        final TaskKey mKey;
-        V mValue;
-
-        Entry(TaskKey key, V value) {
-            mKey = key;
-            mValue = value;
+    private void evictEldest() {
+        Entry<V> eldest = null;
+        for (Entry<V> entry : mMap.values()) {
+            if (eldest == null || entry.mLastAccess < eldest.mLastAccess) {
+                eldest = entry;
+            }
         }
-
-        @Override
-        public int hashCode() {
-            return mKey.id;
+        if (eldest != null) {
+            mMap.remove(eldest.mKey.id, eldest);
         }
     }
 
-    private static class MyLinkedHashMap<V> extends LinkedHashMap<Integer, Entry<V>> {
-
-        private final int mMaxSize;
+    private static class Entry<V> {
 
-        MyLinkedHashMap(int maxSize) {
-            super(0, 0.75f, true /* accessOrder */);
-            mMaxSize = maxSize;
-        }
+        final TaskKey mKey;
+        volatile V mValue;
+        volatile long mLastAccess;
 
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Integer, TaskKeyLruCache.Entry<V>> eldest) {
-            return size() > mMaxSize;
+        Entry(TaskKey key, V value, long lastAccess) {
+            mKey = key;
+            mValue = value;
+            mLastAccess = lastAccess;
         }
     }
 }
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+import com.android.systemui.shared.recents.model.ThumbnailData;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * An LRU cache of task thumbnails, limited by the size of the thumbnail bitmaps instead of their
+ * number.
+ *
+ * The low-resolution and high-resolution thumbnails are accounted as separate tiers. When the
+ * cache is over its size, the least recently used thumbnail leaves first, but a high-resolution
+ * thumbnail is demoted to a scaled down low-resolution copy instead of being evicted. The copy is
+ * made in the background, and the thumbnail is not available until it is done. The copy replaces
+ * the thumbnail in place, so that it keeps its position in the LRU order.
+ */
+public class ThumbnailLruCache {
+
+    private static final String TAG = "ThumbnailLruCache";
+
+    private static final int TIER_LOW_RES = 0;
+    private static final int TIER_HIGH_RES = 1;
+
+    private final long mMaxBytes;
+    // Scale of the demoted copies, or 0 if high-resolution thumbnails are not demoted
+    private final float mDemoteScale;
+    private final Executor mBgExecutor;
+
+    private final LinkedHashMap<Integer, Entry> mMap =
+            new LinkedHashMap<>(0, 0.75f, true /* accessOrder */);
+    // High-resolution entries being scaled down, by task id. They stay in the map, but their size
+    // is not counted anymore.
+    private final SparseArray<Entry> mDemotions = new SparseArray<>();
+    private long mBytes;
+
+    private final TierStats[] mStats = {new TierStats("lowRes"), new TierStats("highRes")};
+
+    public ThumbnailLruCache(long maxBytes, float demoteScale, Executor bgExecutor) {
+        mMaxBytes = maxBytes;
+        mDemoteScale = demoteScale > 0 && demoteScale < 1 ? demoteScale : 0;
+        mBgExecutor = bgExecutor;
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    public synchronized void evictAll() {
+        mMap.clear();
+        mDemotions.clear();
+        mBytes = 0;
+        for (TierStats stats : mStats) {
+            stats.bytes = 0;
+            stats.count = 0;
+        }
+    }
+
+    /**
+     * Removes a particular entry from the cache
+     */
+    public synchronized void remove(TaskKey key) {
+        removeEntry(key.id);
+    }
+
+    /**
+     * Gets the thumbnail of {@param key} if it is still valid, and if it is high-resolution or
+     * {@param lowResolution} is true.
+     */
+    @Nullable
+    public synchronized ThumbnailData get(TaskKey key, boolean lowResolution) {
+        TierStats requested = mStats[lowResolution ? TIER_LOW_RES : TIER_HIGH_RES];
+        Entry entry = mMap.get(key.id);
+        if (entry != null && (entry.key.windowingMode != key.windowingMode
+                || entry.key.lastActiveTime != key.lastActiveTime)) {
+            removeEntry(key.id);
+            entry = null;
+        }
+        if (entry == null || entry.demoting || (entry.tier == TIER_LOW_RES && !lowResolution)) {
+            requested.misses++;
+            return null;
+        }
+        mStats[entry.tier].hits++;
+        return entry.value;
+    }
+
+    /**
+     * Adds an entry to the cache, demoting or evicting the least recently used entries if the
+     * cache gets over its size
+     */
+    public synchronized void put(TaskKey key, ThumbnailData value) {
+        if (key == null || value == null) {
+            Log.e(TAG, "Unexpected null key or value: " + key + ", " + value);
+            return;
+        }
+        removeEntry(key.id);
+        addEntry(new Entry(key, value));
+        trimToSize(mMaxBytes);
+    }
+
+    /**
+     * Updates the cache entry if it is already present in the cache
+     */
+    public synchronized void updateIfAlreadyInCache(int taskId, ThumbnailData data) {
+        Entry entry = mMap.get(taskId);
+        if (entry != null) {
+            put(entry.key, data);
+        }
+    }
+
+    /**
+     * Demotes or evicts the least recently used entries until the cache is not larger than
+     * {@param maxBytes}.
+     */
+    public synchronized void trimToSize(long maxBytes) {
+        ArrayList<Entry> demoted = new ArrayList<>();
+        Iterator<Entry> iterator = mMap.values().iterator();
+        while (mBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.demoting && !startDemotion(entry, demoted)) {
+                iterator.remove();
+            }
+        }
+        // Demote after iterating, as a finished demotion trims the cache again
+        demoted.forEach(this::demote);
+    }
+
+    /**
+     * Demotes all the high-resolution entries, or evicts them if they can't be demoted.
+     */
+    public synchronized void demoteAll() {
+        ArrayList<Entry> demoted = new ArrayList<>();
+        Iterator<Entry> iterator = mMap.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.tier == TIER_HIGH_RES && !entry.demoting
+                    && !startDemotion(entry, demoted)) {
+                iterator.remove();
+            }
+        }
+        demoted.forEach(this::demote);
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    @VisibleForTesting
+    public synchronized long getSizeBytes() {
+        return mBytes;
+    }
+
+    /**
+     * Stops counting the size of {@param entry}, which is either added to {@param demoted} to be
+     * demoted, or evicted.
+     * @return whether the entry is demoted, in which case it stays in the map until it is done
+     */
+    private boolean startDemotion(Entry entry, ArrayList<Entry> demoted) {
+        onEntryRemoved(entry);
+        if (entry.tier != TIER_HIGH_RES || mDemoteScale == 0 || entry.value.thumbnail == null) {
+            mStats[entry.tier].evictions++;
+            return false;
+        }
+        entry.demoting = true;
+        mDemotions.put(entry.key.id, entry);
+        demoted.add(entry);
+        return true;
+    }
+
+    private void demote(Entry entry) {
+        mStats[TIER_HIGH_RES].demotions++;
+        mBgExecutor.execute(() -> {
+            ThumbnailData demoted = scaleDown(entry.value, mDemoteScale);
+            synchronized (ThumbnailLruCache.this) {
+                if (mDemotions.get(entry.key.id) != entry) {
+                    // Replaced or removed in the meantime
+                    return;
+                }
+                mDemotions.remove(entry.key.id);
+                entry.demoting = false;
+                if (demoted == null) {
+                    mMap.remove(entry.key.id);
+                    mStats[TIER_HIGH_RES].evictions++;
+                    return;
+                }
+                // Replace the value without putting the entry again, which would make it the
+                // most recently used
+                entry.setValue(demoted);
+                onEntryAdded(entry);
+                trimToSize(mMaxBytes);
+            }
+        });
+    }
+
+    private void addEntry(Entry entry) {
+        mMap.put(entry.key.id, entry);
+        onEntryAdded(entry);
+    }
+
+    private void onEntryAdded(Entry entry) {
+        mBytes += entry.bytes;
+        TierStats stats = mStats[entry.tier];
+        stats.bytes += entry.bytes;
+        stats.count++;
+    }
+
+    private void removeEntry(int taskId) {
+        mDemotions.remove(taskId);
+        Entry entry = mMap.remove(taskId);
+        if (entry != null && !entry.demoting) {
+            onEntryRemoved(entry);
+        }
+    }
+
+    private void onEntryRemoved(Entry entry) {
+        mBytes -= entry.bytes;
+        TierStats stats = mStats[entry.tier];
+        stats.bytes -= entry.bytes;
+        stats.count--;
+    }
+
+    /**
+     * Returns a low-resolution copy of {@param data}, with its bitmap scaled by {@param scale}.
+     */
+    @Nullable
+    private static ThumbnailData scaleDown(ThumbnailData data, float scale) {
+        Bitmap bitmap = data.thumbnail;
+        int width = Math.round(bitmap.getWidth() * scale);
+        int height = Math.round(bitmap.getHeight() * scale);
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        ThumbnailData result = new ThumbnailData();
+        try {
+            result.thumbnail = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unable to scale down thumbnail", e);
+            return null;
+        }
+        // The insets are relative to the task, and the scale maps them to the bitmap
+        result.insets = new Rect(data.insets);
+        result.letterboxInsets = new Rect(data.letterboxInsets);
+        result.scale = data.scale * width / bitmap.getWidth();
+        result.orientation = data.orientation;
+        result.rotation = data.rotation;
+        result.reducedResolution = true;
+        result.isRealSnapshot = data.isRealSnapshot;
+        result.isTranslucent = data.isTranslucent;
+        result.windowingMode = data.windowingMode;
+        result.appearance = data.appearance;
+        result.snapshotId = data.snapshotId;
+        return result;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ThumbnailLruCache: bytes=" + mBytes + " maxBytes=" + mMaxBytes
+                + " demoteScale=" + mDemoteScale + " demoting=" + mDemotions.size());
+        for (TierStats stats : mStats) {
+            writer.println(prefix + "  " + stats.name + ": count=" + stats.count
+                    + " bytes=" + stats.bytes
+                    + " hits=" + stats.hits
+                    + " misses=" + stats.misses
+                    + " evictions=" + stats.evictions
+                    + " demotions=" + stats.demotions);
+        }
+    }
+
+    private static class Entry {
+
+        final TaskKey key;
+        ThumbnailData value;
+        int tier;
+        long bytes;
+        boolean demoting;
+
+        Entry(TaskKey key, ThumbnailData value) {
+            this.key = key;
+            setValue(value);
+        }
+
+        void setValue(ThumbnailData value) {
+            this.value = value;
+            tier = value.reducedResolution ? TIER_LOW_RES : TIER_HIGH_RES;
+            bytes = value.thumbnail == null ? 0 : value.thumbnail.getAllocationByteCount();
+        }
+    }
+
+    private static class TierStats {
+
+        final String name;
+        int count;
+        long bytes;
+
+        int hits;
+        int misses;
+        int evictions;
+        int demotions;
+
+        TierStats(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -47,7 +47,7 @@ import com.android.launcher3.util.RunnableList;
 import com.android.quickstep.RecentsModel;
 import com.android.quickstep.SystemUiProxy;
 import com.android.quickstep.TaskThumbnailCache;
-import com.android.quickstep.util.CancellableTask;
+import com.android.quickstep.util.CancellableRequest;
 import com.android.quickstep.util.RecentsOrientedState;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.ThumbnailData;
@@ -89,7 +89,7 @@ public class DesktopTaskView extends TaskView {
     /** Maps {@code taskIds} to corresponding {@link TaskThumbnailView}s */
     private final SparseArray<TaskThumbnailView> mSnapshotViewMap = new SparseArray<>();
 
-    private final ArrayList<CancellableTask<?>> mPendingThumbnailRequests = new ArrayList<>();
+    private final ArrayList<CancellableRequest> mPendingThumbnailRequests = new ArrayList<>();
 
     private View mBackgroundView;
 
@@ -249,7 +249,7 @@ public class DesktopTaskView extends TaskView {
 
             if (needsUpdate(changes, FLAG_UPDATE_THUMBNAIL)) {
                 for (Task task : mTasks) {
-                    CancellableTask<?> thumbLoadRequest =
+                    CancellableRequest thumbLoadRequest =
                             thumbnailCache.updateThumbnailInBackground(task, thumbnailData -> {
                                 TaskThumbnailView thumbnailView = mSnapshotViewMap.get(task.key.id);
                                 if (thumbnailView != null) {
@@ -291,8 +291,8 @@ public class DesktopTaskView extends TaskView {
 
     @Override
     protected void cancelPendingLoadTasks() {
-        for (CancellableTask<?> cancellableTask : mPendingThumbnailRequests) {
-            cancellableTask.cancel();
+        for (CancellableRequest cancellableRequest : mPendingThumbnailRequests) {
+            cancellableRequest.cancel();
         }
         mPendingThumbnailRequests.clear();
     }
@@ -25,7 +25,7 @@ import com.android.launcher3.util.TransformingTouchDelegate;
 import com.android.quickstep.RecentsModel;
 import com.android.quickstep.TaskIconCache;
 import com.android.quickstep.TaskThumbnailCache;
-import com.android.quickstep.util.CancellableTask;
+import com.android.quickstep.util.CancellableRequest;
 import com.android.quickstep.util.RecentsOrientedState;
 import com.android.quickstep.util.SplitSelectStateController;
 import com.android.quickstep.util.TaskViewSimulator;
@@ -54,9 +54,9 @@ public class GroupedTaskView extends TaskView {
     private TaskThumbnailView mSnapshotView2;
     private IconView mIconView2;
     @Nullable
-    private CancellableTask<ThumbnailData> mThumbnailLoadRequest2;
+    private CancellableRequest mThumbnailLoadRequest2;
     @Nullable
-    private CancellableTask mIconLoadRequest2;
+    private CancellableRequest mIconLoadRequest2;
     private final float[] mIcon2CenterCoords = new float[2];
     private TransformingTouchDelegate mIcon2TouchDelegate;
     @Nullable private SplitBounds mSplitBoundsConfig;
@@ -191,6 +191,7 @@ import com.android.quickstep.util.SplitAnimationTimings;
 import com.android.quickstep.util.SplitSelectStateController;
 import com.android.quickstep.util.SurfaceTransaction;
 import com.android.quickstep.util.SurfaceTransactionApplier;
+import com.android.quickstep.util.TaskDataPrefetcher;
 import com.android.quickstep.util.TaskViewSimulator;
 import com.android.quickstep.util.TaskVisualsChangeListener;
 import com.android.quickstep.util.TransformParams;
@@ -426,6 +427,8 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
     private static final int DEFAULT_ACTIONS_VIEW_ALPHA_ANIMATION_DURATION = 300;
 
     private static final int DISMISS_TASK_DURATION = 300;
+    // How far ahead of a fling the task data is loaded, in time of the fling
+    private static final int PREFETCH_LOOKAHEAD_MS = 250;
     private static final int ADDITION_TASK_DURATION = 200;
     private static final float INITIAL_DISMISS_TRANSLATION_INTERPOLATION_OFFSET = 0.55f;
     private static final float ADDITIONAL_DISMISS_TRANSLATION_INTERPOLATION_OFFSET = 0.05f;
@@ -488,6 +491,12 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
 
     // Keeps track of the previously known visible tasks for purposes of loading/unloading task data
     private final SparseBooleanArray mHasVisibleTaskData = new SparseBooleanArray();
+    // Distance the scroller is expected to travel soon, signed in the direction of the scroll.
+    // The data of the tasks which will be visible after that distance is prefetched.
+    private int mPrefetchScrollDistance;
+    // Tasks to prefetch, or to cancel the prefetch of, once the visible task data is requested
+    private final ArrayList<Task> mTmpPrefetchTasks = new ArrayList<>();
+    private final ArrayList<Task> mTmpCancelledPrefetchTasks = new ArrayList<>();
 
     private final InvariantDeviceProfile mIdp;
 
@@ -2069,6 +2078,7 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         boolean scrolling = super.computeScrollHelper();
         boolean isFlingingFast = false;
         updateCurveProperties();
+        mPrefetchScrollDistance = scrolling ? getPredictedScrollDistance() : 0;
         if (scrolling || isHandlingTouch()) {
             if (scrolling) {
                 // Check if we are flinging quickly to disable high res thumbnail loading
@@ -2087,6 +2097,16 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         return scrolling;
     }
 
+    /**
+     * Returns the distance the scroller is expected to travel in the next
+     * {@link #PREFETCH_LOOKAHEAD_MS}, up to the end of the scroll.
+     */
+    private int getPredictedScrollDistance() {
+        int remaining = mScroller.getFinalX() - mScroller.getCurrX();
+        int lookahead = (int) (mScroller.getCurrVelocity() * PREFETCH_LOOKAHEAD_MS / 1000);
+        return remaining > 0 ? Math.min(remaining, lookahead) : Math.max(remaining, -lookahead);
+    }
+
     private void updateActionsViewFocusedScroll() {
         if (showAsGrid()) {
             float actionsViewAlphaValue = isFocusedTaskInExpectedScrollPosition() ? 1 : 0;
@@ -2153,6 +2173,9 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
     /**
      * Iterates through all the tasks, and loads the associated task data for newly visible tasks,
      * and unloads the associated task data for tasks that are no longer visible.
+     *
+     * While flinging, the data of the tasks about to become visible is prefetched, and the
+     * prefetch of the tasks moving away is cancelled.
      */
     public void loadVisibleTaskData(@TaskView.TaskDataChanges int dataChanges) {
         boolean hasLeftOverview = !mOverviewStateEnabled && mScroller.isFinished();
@@ -2166,6 +2189,10 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
         int upper = 0;
         int visibleStart = 0;
         int visibleEnd = 0;
+        int prefetchLower = 0;
+        int prefetchUpper = 0;
+        int prefetchStart = 0;
+        int prefetchEnd = 0;
         if (showAsGrid()) {
             int screenStart = mOrientationHandler.getPrimaryScroll(this);
             int pageOrientedSize = mOrientationHandler.getMeasuredSize(this);
@@ -2173,58 +2200,103 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
             // Use +/- 50% screen width as visible area.
             visibleStart = screenStart - halfScreenSize;
             visibleEnd = screenStart + pageOrientedSize + halfScreenSize;
+            // Extend the visible area in the direction of the scroll
+            prefetchStart = visibleStart + Math.min(mPrefetchScrollDistance, 0);
+            prefetchEnd = visibleEnd + Math.max(mPrefetchScrollDistance, 0);
         } else {
             int centerPageIndex = getPageNearestToCenterOfScreen();
             int numChildren = getChildCount();
             lower = Math.max(0, centerPageIndex - 2);
             upper = Math.min(centerPageIndex + 2, numChildren - 1);
+            // Add the pages around the page which will be centered after the predicted scroll
+            prefetchLower = lower;
+            prefetchUpper = upper;
+            if (mPrefetchScrollDistance != 0) {
+                int predictedCenterPageIndex = getPageNearestToCenterOfScreen(
+                        mOrientationHandler.getPrimaryScroll(this) + mPrefetchScrollDistance);
+                prefetchLower = Math.min(lower, Math.max(0, predictedCenterPageIndex - 2));
+                prefetchUpper = Math.max(upper,
+                        Math.min(predictedCenterPageIndex + 2, numChildren - 1));
+            }
         }
+        TaskDataPrefetcher prefetcher = mModel.getTaskDataPrefetcher();
 
-        // Update the task data for the in/visible children
-        for (int i = 0; i < getTaskViewCount(); i++) {
-            TaskView taskView = requireTaskViewAt(i);
-            Task task = taskView.getTask();
-            if (task == null) {
-                continue;
-            }
-            int index = indexOfChild(taskView);
-            boolean visible;
-            if (showAsGrid()) {
-                visible = isTaskViewWithinBounds(taskView, visibleStart, visibleEnd);
-            } else {
-                visible = lower <= index && index <= upper;
-            }
-            if (visible) {
-                boolean skipLoadingTask = false;
-                if (mTmpRunningTasks != null) {
-                    for (Task t : mTmpRunningTasks) {
-                        if (task == t) {
-                            // Skip loading if this is the task that we are animating into
-                            skipLoadingTask = true;
-                            break;
-                        }
-                    }
-                }
-                if (skipLoadingTask) {
+        // Update the task data for the in/visible children, loading it in a single batch
+        mModel.startTaskDataBatch();
+        try {
+            for (int i = 0; i < getTaskViewCount(); i++) {
+                TaskView taskView = requireTaskViewAt(i);
+                Task task = taskView.getTask();
+                if (task == null) {
                     continue;
                 }
-                if (!mHasVisibleTaskData.get(task.key.id)) {
-                    // Ignore thumbnail update if it's current running task during the gesture
-                    // We snapshot at end of gesture, it will update then
-                    int changes = dataChanges;
-                    if (taskView == getRunningTaskView() && mGestureActive) {
-                        changes &= ~TaskView.FLAG_UPDATE_THUMBNAIL;
-                    }
-                    taskView.onTaskListVisibilityChanged(true /* visible */, changes);
+                int index = indexOfChild(taskView);
+                boolean visible;
+                if (showAsGrid()) {
+                    visible = isTaskViewWithinBounds(taskView, visibleStart, visibleEnd);
+                } else {
+                    visible = lower <= index && index <= upper;
                 }
-                mHasVisibleTaskData.put(task.key.id, visible);
-            } else {
-                if (mHasVisibleTaskData.get(task.key.id)) {
-                    taskView.onTaskListVisibilityChanged(false /* visible */, dataChanges);
+                if (visible) {
+                    boolean skipLoadingTask = false;
+                    if (mTmpRunningTasks != null) {
+                        for (Task t : mTmpRunningTasks) {
+                            if (task == t) {
+                                // Skip loading if this is the task that we are animating into
+                                skipLoadingTask = true;
+                                break;
+                            }
+                        }
+                    }
+                    if (skipLoadingTask) {
+                        continue;
+                    }
+                    if (!mHasVisibleTaskData.get(task.key.id)) {
+                        // Ignore thumbnail update if it's current running task during the gesture
+                        // We snapshot at end of gesture, it will update then
+                        int changes = dataChanges;
+                        if (taskView == getRunningTaskView() && mGestureActive) {
+                            changes &= ~TaskView.FLAG_UPDATE_THUMBNAIL;
+                        }
+                        taskView.onTaskListVisibilityChanged(true /* visible */, changes);
+                        // After the view requested its data, so that it shares the pending
+                        // prefetch
+                        prefetcher.onTaskVisible(task);
+                    }
+                    mHasVisibleTaskData.put(task.key.id, visible);
+                } else {
+                    if (mHasVisibleTaskData.get(task.key.id)) {
+                        taskView.onTaskListVisibilityChanged(false /* visible */, dataChanges);
+                    }
+                    mHasVisibleTaskData.delete(task.key.id);
+
+                    boolean prefetch;
+                    if (showAsGrid()) {
+                        prefetch = isTaskViewWithinBounds(taskView, prefetchStart, prefetchEnd);
+                    } else {
+                        prefetch = prefetchLower <= index && index <= prefetchUpper;
+                    }
+                    if (prefetch) {
+                        mTmpPrefetchTasks.add(task);
+                    } else {
+                        mTmpCancelledPrefetchTasks.add(task);
+                    }
                 }
-                mHasVisibleTaskData.delete(task.key.id);
             }
+        } finally {
+            mModel.endTaskDataBatch();
+        }
+
+        // Prefetch after the batch, so that the visible task data doesn't wait for it. Cancel
+        // first, to release the prefetch budget.
+        for (int i = 0; i < mTmpCancelledPrefetchTasks.size(); i++) {
+            prefetcher.cancel(mTmpCancelledPrefetchTasks.get(i));
+        }
+        for (int i = 0; i < mTmpPrefetchTasks.size(); i++) {
+            prefetcher.prefetch(mTmpPrefetchTasks.get(i));
         }
+        mTmpCancelledPrefetchTasks.clear();
+        mTmpPrefetchTasks.clear();
     }
 
     /**
@@ -2240,21 +2312,27 @@ public abstract class RecentsView<ACTIVITY_TYPE extends StatefulActivity<STATE_T
             }
         }
         mHasVisibleTaskData.clear();
+        mModel.getTaskDataPrefetcher().clear();
     }
 
     @Override
     public void onHighResLoadingStateChanged(boolean enabled) {
         // Whenever the high res loading state changes, poke each of the visible tasks to see if
         // they want to updated their thumbnail state
-        for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
-            if (mHasVisibleTaskData.valueAt(i)) {
-                TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
-                if (taskView != null) {
-                    // Poke the view again, which will trigger it to load high res if the state
-                    // is enabled
-                    taskView.onTaskListVisibilityChanged(true /* visible */);
+        mModel.startTaskDataBatch();
+        try {
+            for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
+                if (mHasVisibleTaskData.valueAt(i)) {
+                    TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
+                    if (taskView != null) {
+                        // Poke the view again, which will trigger it to load high res if the
+                        // state is enabled
+                        taskView.onTaskListVisibilityChanged(true /* visible */);
+                    }
                 }
             }
+        } finally {
+            mModel.endTaskDataBatch();
         }
     }
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link SharedTaskDataLoad}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SharedTaskDataLoadTest {
+
+    private final ArrayList<String> mResults = new ArrayList<>();
+
+    @Test
+    public void resultIsDeliveredToAllRequestsOnce() {
+        Load load = new Load("a");
+        load.addRequest(r -> mResults.add("1" + r));
+        load.addRequest(r -> mResults.add("2" + r));
+
+        assertTrue(load.loadResult());
+        load.deliverResult();
+        assertEquals(List.of("1a", "2a", "delivered a"), mResults);
+        assertEquals(1, load.mFinishedCount);
+        assertEquals(1, load.mLoadCount);
+    }
+
+    @Test
+    public void cancelledRequestIsNotDelivered() {
+        Load load = new Load("a");
+        CancellableRequest cancelled = load.addRequest(r -> mResults.add("1" + r));
+        load.addRequest(r -> mResults.add("2" + r));
+
+        assertTrue(load.loadResult());
+        cancelled.cancel();
+        load.deliverResult();
+        assertEquals(List.of("2a", "delivered a"), mResults);
+        assertEquals(1, load.mFinishedCount);
+    }
+
+    @Test
+    public void loadIsCancelledWithAllItsRequests() {
+        Load load = new Load("a");
+        CancellableRequest first = load.addRequest(r -> mResults.add("1" + r));
+        CancellableRequest second = load.addRequest(r -> mResults.add("2" + r));
+
+        first.cancel();
+        assertEquals(0, load.mFinishedCount);
+        second.cancel();
+        second.cancel();
+        assertEquals(1, load.mFinishedCount);
+
+        assertFalse(load.loadResult());
+        assertEquals(0, load.mLoadCount);
+        assertTrue(mResults.isEmpty());
+    }
+
+    private class Load extends SharedTaskDataLoad<String> {
+
+        private final String mResult;
+        int mLoadCount;
+        int mFinishedCount;
+
+        Load(String result) {
+            mResult = result;
+        }
+
+        @Override
+        public String getResultOnBg() {
+            mLoadCount++;
+            return mResult;
+        }
+
+        @Override
+        protected void onFinished() {
+            mFinishedCount++;
+        }
+
+        @Override
+        protected void onResultDelivered(String result) {
+            mResults.add("delivered " + result);
+        }
+    }
+}
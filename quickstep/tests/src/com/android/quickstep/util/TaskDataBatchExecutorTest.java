@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link TaskDataBatchExecutor}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TaskDataBatchExecutorTest {
+
+    private final ArrayList<Runnable> mBgQueue = new ArrayList<>();
+    private final ArrayList<Runnable> mResultQueue = new ArrayList<>();
+    private final ArrayList<String> mResults = new ArrayList<>();
+
+    private TaskDataBatchExecutor mExecutor;
+
+    @Before
+    public void setup() {
+        mExecutor = new TaskDataBatchExecutor(mBgQueue::add, mResultQueue::add);
+    }
+
+    @Test
+    public void batchedRequestsLoadInOneJob() {
+        mExecutor.startBatch();
+        mExecutor.execute(new Request("a"));
+        mExecutor.execute(new Request("b"));
+        assertTrue(mBgQueue.isEmpty());
+        mExecutor.endBatch();
+
+        assertEquals(1, mBgQueue.size());
+        runAll(mBgQueue);
+        assertEquals(1, mResultQueue.size());
+        assertTrue(mResults.isEmpty());
+        runAll(mResultQueue);
+        assertEquals(List.of("a", "b"), mResults);
+    }
+
+    @Test
+    public void nestedBatchesLoadAtTheEnd() {
+        mExecutor.startBatch();
+        mExecutor.execute(new Request("a"));
+        mExecutor.startBatch();
+        mExecutor.execute(new Request("b"));
+        mExecutor.endBatch();
+        assertTrue(mBgQueue.isEmpty());
+        mExecutor.endBatch();
+
+        assertEquals(1, mBgQueue.size());
+        runAll(mBgQueue);
+        runAll(mResultQueue);
+        assertEquals(List.of("a", "b"), mResults);
+    }
+
+    @Test
+    public void cancelledRequestIsNotDelivered() {
+        Request cancelled = new Request("a");
+        mExecutor.startBatch();
+        mExecutor.execute(cancelled);
+        mExecutor.execute(new Request("b"));
+        mExecutor.endBatch();
+
+        runAll(mBgQueue);
+        cancelled.cancel();
+        runAll(mResultQueue);
+        assertEquals(List.of("b"), mResults);
+    }
+
+    @Test
+    public void otherRunnablesAreNotBatched() {
+        mExecutor.startBatch();
+        mExecutor.execute(() -> mResults.add("runnable"));
+        assertEquals(1, mBgQueue.size());
+        mExecutor.endBatch();
+
+        assertEquals(1, mBgQueue.size());
+        runAll(mBgQueue);
+        assertEquals(List.of("runnable"), mResults);
+    }
+
+    private static void runAll(ArrayList<Runnable> queue) {
+        ArrayList<Runnable> runnables = new ArrayList<>(queue);
+        queue.clear();
+        runnables.forEach(Runnable::run);
+    }
+
+    private class Request extends CancellableTask<String> {
+
+        private final String mResult;
+
+        Request(String result) {
+            mResult = result;
+        }
+
+        @Override
+        public String getResultOnBg() {
+            return mResult;
+        }
+
+        @Override
+        public void handleResult(String result) {
+            mResults.add(result);
+        }
+    }
+}
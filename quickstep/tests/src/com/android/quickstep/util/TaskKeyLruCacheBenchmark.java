@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Measures the latency of {@link TaskKeyLruCache#getAndInvalidateIfModified} on the UI thread,
+ * while background threads put entries like the task loaders do, and compares it to a cache
+ * which locks on every call.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class TaskKeyLruCacheBenchmark {
+
+    private static final String TAG = "TaskKeyLruCacheBenchmark";
+
+    private static final int CACHE_SIZE = 12;
+    private static final int TASK_COUNT = 24;
+    private static final int WRITER_COUNT = 2;
+    private static final int GETS = 20000;
+
+    @Test
+    public void getUnderConcurrentPuts() throws Exception {
+        TaskKey[] keys = new TaskKey[TASK_COUNT];
+        for (int i = 0; i < TASK_COUNT; i++) {
+            keys[i] = new TaskKey(i, 0, new Intent(), null, 0, 0);
+        }
+
+        TaskKeyLruCache<Object> cache = new TaskKeyLruCache<>(CACHE_SIZE);
+        int hits = measure("TaskKeyLruCache", keys, cache::getAndInvalidateIfModified,
+                cache::put);
+
+        LockedLruCache lockedCache = new LockedLruCache();
+        measure("Locked baseline", keys, lockedCache::getAndInvalidateIfModified,
+                lockedCache::put);
+
+        assertTrue("Gets should find the entries put by the writers", hits > 0);
+    }
+
+    /**
+     * Runs the gets on the UI thread while the writers put entries, and returns the hit count.
+     */
+    private static int measure(String name, TaskKey[] keys, Function<TaskKey, Object> get,
+            BiConsumer<TaskKey, Object> put) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] writers = new Thread[WRITER_COUNT];
+        for (int i = 0; i < WRITER_COUNT; i++) {
+            int offset = i;
+            writers[i] = new Thread(() -> {
+                int index = offset;
+                while (running.get()) {
+                    put.accept(keys[index % TASK_COUNT], new Object());
+                    index += WRITER_COUNT;
+                }
+            });
+            writers[i].start();
+        }
+
+        long[] latencies = new long[GETS];
+        int[] hits = new int[1];
+        getInstrumentation().runOnMainSync(() -> {
+            for (int i = 0; i < GETS; i++) {
+                TaskKey key = keys[i % TASK_COUNT];
+                long start = System.nanoTime();
+                Object value = get.apply(key);
+                latencies[i] = System.nanoTime() - start;
+                if (value != null) {
+                    hits[0]++;
+                }
+            }
+        });
+
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        Arrays.sort(latencies);
+        Log.d(TAG, name + ": p50=" + latencies[GETS / 2] + "ns p99=" + latencies[GETS * 99 / 100]
+                + "ns max=" + latencies[GETS - 1] + "ns hits=" + hits[0]);
+        return hits[0];
+    }
+
+    /**
+     * The cache implementation which synchronizes every call, for comparison.
+     */
+    private static class LockedLruCache {
+
+        private final LinkedHashMap<Integer, Object> mMap =
+                new LinkedHashMap<Integer, Object>(0, 0.75f, true /* accessOrder */) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Integer, Object> eldest) {
+                        return size() > CACHE_SIZE;
+                    }
+                };
+
+        synchronized Object getAndInvalidateIfModified(TaskKey key) {
+            return mMap.get(key.id);
+        }
+
+        synchronized void put(TaskKey key, Object value) {
+            mMap.put(key.id, value);
+        }
+    }
+}
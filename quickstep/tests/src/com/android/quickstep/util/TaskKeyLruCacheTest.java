@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.content.Intent;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit tests for {@link TaskKeyLruCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TaskKeyLruCacheTest {
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(2);
+        TaskKey key1 = createKey(1, 0);
+        TaskKey key2 = createKey(2, 0);
+        cache.put(key1, "1");
+        cache.put(key2, "2");
+        assertEquals("1", cache.getAndInvalidateIfModified(key1));
+        cache.put(createKey(3, 0), "3");
+
+        assertEquals("1", cache.getAndInvalidateIfModified(key1));
+        assertNull(cache.getAndInvalidateIfModified(key2));
+    }
+
+    @Test
+    public void modifiedTaskIsInvalidated() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(2);
+        cache.put(createKey(1, 0), "1");
+
+        assertNull(cache.getAndInvalidateIfModified(createKey(1, 1000)));
+        assertNull(cache.getAndInvalidateIfModified(createKey(1, 0)));
+    }
+
+    @Test
+    public void updateOnlyReplacesCachedValue() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(2);
+        TaskKey key1 = createKey(1, 0);
+        cache.put(key1, "1");
+        cache.updateIfAlreadyInCache(1, "updated");
+        cache.updateIfAlreadyInCache(2, "2");
+
+        assertEquals("updated", cache.getAndInvalidateIfModified(key1));
+        assertNull(cache.getAndInvalidateIfModified(createKey(2, 0)));
+    }
+
+    private static TaskKey createKey(int id, long lastActiveTime) {
+        return new TaskKey(id, 0, new Intent(), null, 0, lastActiveTime);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+import com.android.systemui.shared.recents.model.ThumbnailData;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+/**
+ * Unit tests for {@link ThumbnailLruCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailLruCacheTest {
+
+    private static final int SIZE = 100;
+    // Size of a high-res thumbnail
+    private static final long THUMBNAIL_BYTES = SIZE * SIZE * 4;
+    // Size of the cache, which fits two high-res thumbnails and a demoted one
+    private static final long CACHE_BYTES = 2 * THUMBNAIL_BYTES + THUMBNAIL_BYTES / 2;
+
+    @Test
+    public void highResIsDemotedUnderPressure() {
+        ThumbnailLruCache cache = new ThumbnailLruCache(CACHE_BYTES, 0.5f, Runnable::run);
+        TaskKey key1 = createKey(1);
+        cache.put(key1, createThumbnail(false));
+        cache.put(createKey(2), createThumbnail(false));
+        cache.put(createKey(3), createThumbnail(false));
+
+        assertNull(cache.get(key1, false));
+        ThumbnailData demoted = cache.get(key1, true);
+        assertNotNull(demoted);
+        assertTrue(demoted.reducedResolution);
+        assertEquals(SIZE / 2, demoted.thumbnail.getWidth());
+        assertEquals(0.5f, demoted.scale, 0.01f);
+        assertTrue(cache.getSizeBytes() <= CACHE_BYTES);
+    }
+
+    @Test
+    public void demotedKeepsLruPosition() {
+        ThumbnailLruCache cache = new ThumbnailLruCache(CACHE_BYTES, 0.5f, Runnable::run);
+        TaskKey key1 = createKey(1);
+        TaskKey key2 = createKey(2);
+        TaskKey key3 = createKey(3);
+        cache.put(key1, createThumbnail(false));
+        cache.put(key2, createThumbnail(false));
+        // Demotes the first entry, which stays the least recently used
+        cache.put(key3, createThumbnail(false));
+        assertEquals(2 * THUMBNAIL_BYTES + THUMBNAIL_BYTES / 4, cache.getSizeBytes());
+
+        // Evicts the demoted entry, then demotes the second one
+        cache.put(createKey(4), createThumbnail(true));
+
+        assertNull(cache.get(key1, true));
+        assertNull(cache.get(key2, false));
+        assertTrue(cache.get(key2, true).reducedResolution);
+        assertNotNull(cache.get(key3, false));
+        assertEquals(2 * THUMBNAIL_BYTES + THUMBNAIL_BYTES / 4, cache.getSizeBytes());
+    }
+
+    @Test
+    public void lowResIsEvictedUnderPressure() {
+        ThumbnailLruCache cache = new ThumbnailLruCache(2 * THUMBNAIL_BYTES, 0.5f, Runnable::run);
+        TaskKey key1 = createKey(1);
+        TaskKey key2 = createKey(2);
+        cache.put(key1, createThumbnail(true));
+        cache.put(key2, createThumbnail(true));
+        // Make the first entry the most recently used
+        assertNotNull(cache.get(key1, true));
+        cache.put(createKey(3), createThumbnail(true));
+
+        assertNotNull(cache.get(key1, true));
+        assertNull(cache.get(key2, true));
+        assertEquals(2 * THUMBNAIL_BYTES, cache.getSizeBytes());
+    }
+
+    @Test
+    public void highResIsEvictedWithoutDemoteScale() {
+        ThumbnailLruCache cache = new ThumbnailLruCache(THUMBNAIL_BYTES, 0, Runnable::run);
+        TaskKey key1 = createKey(1);
+        cache.put(key1, createThumbnail(false));
+        cache.put(createKey(2), createThumbnail(false));
+
+        assertNull(cache.get(key1, true));
+        assertEquals(THUMBNAIL_BYTES, cache.getSizeBytes());
+    }
+
+    @Test
+    public void removedDuringDemotionIsNotAdded() {
+        ArrayList<Runnable> pending = new ArrayList<>();
+        ThumbnailLruCache cache = new ThumbnailLruCache(THUMBNAIL_BYTES, 0.5f, pending::add);
+        TaskKey key1 = createKey(1);
+        cache.put(key1, createThumbnail(false));
+        cache.put(createKey(2), createThumbnail(false));
+        assertEquals(1, pending.size());
+
+        cache.remove(key1);
+        pending.get(0).run();
+        assertNull(cache.get(key1, true));
+        assertEquals(THUMBNAIL_BYTES, cache.getSizeBytes());
+    }
+
+    @Test
+    public void modifiedTaskIsInvalidated() {
+        ThumbnailLruCache cache = new ThumbnailLruCache(THUMBNAIL_BYTES, 0.5f, Runnable::run);
+        cache.put(createKey(1), createThumbnail(false));
+
+        TaskKey modified = new TaskKey(1, 0, new Intent(), null, 0, 1000);
+        assertNull(cache.get(modified, true));
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    private static TaskKey createKey(int id) {
+        return new TaskKey(id, 0, new Intent(), null, 0, 0);
+    }
+
+    private static ThumbnailData createThumbnail(boolean reducedResolution) {
+        ThumbnailData data = new ThumbnailData();
+        data.thumbnail = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        data.reducedResolution = reducedResolution;
+        data.scale = 1;
+        return data;
+    }
+}
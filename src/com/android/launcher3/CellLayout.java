@@ -57,6 +57,7 @@ import android.view.ViewGroup;
 import android.view.accessibility.AccessibilityEvent;
 
 import androidx.annotation.IntDef;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.graphics.ColorUtils;
 import androidx.core.view.ViewCompat;
 
@@ -66,6 +67,7 @@ import com.android.launcher3.anim.Interpolators;
 import com.android.launcher3.celllayout.CellLayoutLayoutParams;
 import com.android.launcher3.celllayout.CellPosMapper.CellPos;
 import com.android.launcher3.celllayout.ReorderAlgorithm;
+import com.android.launcher3.celllayout.ReorderSolutionCache;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.dragndrop.DraggableView;
 import com.android.launcher3.folder.PreviewBackground;
@@ -87,7 +89,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Map;
-import java.util.Stack;
 
 import foundation.e.bliss.multimode.MultiModeController;
 
@@ -206,6 +207,22 @@ public class CellLayout extends ViewGroup {
     public final int[] mDirectionVector = new int[2];
 
     ItemConfiguration mPreviousSolution = null;
+    // Copy of the previous solution, which is not changed by the next reorder searches
+    private final ItemConfiguration mPreviousSolutionCopy = new ItemConfiguration();
+    private ReorderAlgorithm mReorderAlgorithm;
+    private final ReorderSolutionCache mReorderSolutionCache = new ReorderSolutionCache();
+    private final int[] mReorderTargetCell = new int[2];
+    private final int[] mReorderTargetSpan = new int[2];
+    private int[] mReorderKey = new int[0];
+
+    // Temporary objects of the reorder, to not allocate on every drag over
+    private int[] mValidRegions = new int[0];
+    private final int[] mTmpDropTarget = new int[2];
+    private final int[] mTmpVacantCell = new int[2];
+    private final Rect mTmpDragRect = new Rect();
+    private final Rect mTmpDropRegionRect = new Rect();
+    private final Rect mTmpIntersectRect = new Rect();
+    private ViewCluster mTmpViewCluster;
     private static final int INVALID_DIRECTION = -100;
 
     private final Rect mTempRect = new Rect();
@@ -511,7 +528,7 @@ public class CellLayout extends ViewGroup {
             debugPaint.setStrokeWidth(Utilities.dpToPx(1));
             for (int x = 0; x < mCountX; x++) {
                 for (int y = 0; y < mCountY; y++) {
-                    if (!mOccupied.cells[x][y]) {
+                    if (!mOccupied.isOccupied(x, y)) {
                         continue;
                     }
                     targetCell[0] = x;
@@ -821,6 +838,7 @@ public class CellLayout extends ViewGroup {
     @Override
     public void removeAllViews() {
         mOccupied.clear();
+        mReorderSolutionCache.invalidate();
         mShortcutsAndWidgets.removeAllViews();
     }
 
@@ -828,6 +846,7 @@ public class CellLayout extends ViewGroup {
     public void removeAllViewsInLayout() {
         if (mShortcutsAndWidgets.getChildCount() > 0) {
             mOccupied.clear();
+            mReorderSolutionCache.invalidate();
             mShortcutsAndWidgets.removeAllViewsInLayout();
         }
     }
@@ -1310,8 +1329,7 @@ public class CellLayout extends ViewGroup {
         // Keep track of best-scoring drop area
         final int[] bestXY = result != null ? result : new int[2];
         double bestDistance = Double.MAX_VALUE;
-        final Rect bestRect = new Rect(-1, -1, -1, -1);
-        final Stack<Rect> validRegions = new Stack<>();
+        int bestLeft = -1, bestTop = -1, bestRight = -1, bestBottom = -1;
 
         final int countX = mCountX;
         final int countY = mCountY;
@@ -1321,6 +1339,13 @@ public class CellLayout extends ViewGroup {
             return bestXY;
         }
 
+        // Candidate regions, stored as left, top, right and bottom
+        int regionCount = 0;
+        if (mValidRegions.length < countX * countY * 4) {
+            mValidRegions = new int[countX * countY * 4];
+        }
+        final int[] validRegions = mValidRegions;
+
         for (int y = 0; y < countY - (minSpanY - 1); y++) {
             inner:
             for (int x = 0; x < countX - (minSpanX - 1); x++) {
@@ -1328,12 +1353,8 @@ public class CellLayout extends ViewGroup {
                 int xSize = -1;
                 if (!ignoreOccupied) {
                     // First, let's see if this thing fits anywhere
-                    for (int i = 0; i < minSpanX; i++) {
-                        for (int j = 0; j < minSpanY; j++) {
-                            if (mOccupied.cells[x + i][y + j]) {
-                                continue inner;
-                            }
-                        }
+                    if (!mOccupied.isRegionVacant(x, y, minSpanX, minSpanY)) {
+                        continue inner;
                     }
                     xSize = minSpanX;
                     ySize = minSpanY;
@@ -1346,21 +1367,17 @@ public class CellLayout extends ViewGroup {
                     boolean hitMaxY = ySize >= spanY;
                     while (!(hitMaxX && hitMaxY)) {
                         if (incX && !hitMaxX) {
-                            for (int j = 0; j < ySize; j++) {
-                                if (x + xSize > countX -1 || mOccupied.cells[x + xSize][y + j]) {
-                                    // We can't move out horizontally
-                                    hitMaxX = true;
-                                }
+                            if (!mOccupied.isRegionVacant(x + xSize, y, 1, ySize)) {
+                                // We can't move out horizontally
+                                hitMaxX = true;
                             }
                             if (!hitMaxX) {
                                 xSize++;
                             }
                         } else if (!hitMaxY) {
-                            for (int i = 0; i < xSize; i++) {
-                                if (y + ySize > countY - 1 || mOccupied.cells[x + i][y + ySize]) {
-                                    // We can't move out vertically
-                                    hitMaxY = true;
-                                }
+                            if (!mOccupied.isRegionVacant(x, y + ySize, xSize, 1)) {
+                                // We can't move out vertically
+                                hitMaxY = true;
                             }
                             if (!hitMaxY) {
                                 ySize++;
@@ -1377,19 +1394,24 @@ public class CellLayout extends ViewGroup {
                 // We verify that the current rect is not a sub-rect of any of our previous
                 // candidates. In this case, the current rect is disqualified in favour of the
                 // containing rect.
-                Rect currentRect = new Rect(x, y, x + xSize, y + ySize);
+                int right = x + xSize;
+                int bottom = y + ySize;
                 boolean contained = false;
-                for (Rect r : validRegions) {
-                    if (r.contains(currentRect)) {
+                for (int i = 0; i < regionCount; i += 4) {
+                    if (rectContains(validRegions[i], validRegions[i + 1], validRegions[i + 2],
+                            validRegions[i + 3], x, y, right, bottom)) {
                         contained = true;
                         break;
                     }
                 }
-                validRegions.push(currentRect);
+                validRegions[regionCount++] = x;
+                validRegions[regionCount++] = y;
+                validRegions[regionCount++] = right;
+                validRegions[regionCount++] = bottom;
                 double distance = Math.hypot(cellXY[0] - relativeXPos,  cellXY[1] - relativeYPos);
 
-                if ((distance <= bestDistance && !contained) ||
-                        currentRect.contains(bestRect)) {
+                if ((distance <= bestDistance && !contained) || rectContains(x, y, right, bottom,
+                        bestLeft, bestTop, bestRight, bestBottom)) {
                     bestDistance = distance;
                     bestXY[0] = x;
                     bestXY[1] = y;
@@ -1397,7 +1419,10 @@ public class CellLayout extends ViewGroup {
                         resultSpan[0] = xSize;
                         resultSpan[1] = ySize;
                     }
-                    bestRect.set(currentRect);
+                    bestLeft = x;
+                    bestTop = y;
+                    bestRight = right;
+                    bestBottom = bottom;
                 }
             }
         }
@@ -1410,6 +1435,15 @@ public class CellLayout extends ViewGroup {
         return bestXY;
     }
 
+    /**
+     * Same as {@link Rect#contains(Rect)}, without the rects.
+     */
+    private static boolean rectContains(int left, int top, int right, int bottom,
+            int otherLeft, int otherTop, int otherRight, int otherBottom) {
+        return left < right && top < bottom && left <= otherLeft && top <= otherTop
+                && right >= otherRight && bottom >= otherBottom;
+    }
+
     public GridOccupancy getOccupied() {
         return mOccupied;
     }
@@ -1795,7 +1829,7 @@ public class CellLayout extends ViewGroup {
      *         nearest the requested location.
      */
     private int[] findNearestArea(int cellX, int cellY, int spanX, int spanY, int[] direction,
-            boolean[][] occupied, boolean blockOccupied[][], int[] result) {
+            GridOccupancy occupied, GridOccupancy blockOccupied, int[] result) {
         // Keep track of best-scoring drop area
         final int[] bestXY = result != null ? result : new int[2];
         float bestDistance = Float.MAX_VALUE;
@@ -1808,12 +1842,10 @@ public class CellLayout extends ViewGroup {
             inner:
             for (int x = 0; x < countX - (spanX - 1); x++) {
                 // First, let's see if this thing fits anywhere
-                for (int i = 0; i < spanX; i++) {
-                    for (int j = 0; j < spanY; j++) {
-                        if (occupied[x + i][y + j] && (blockOccupied == null || blockOccupied[i][j])) {
-                            continue inner;
-                        }
-                    }
+                if (blockOccupied == null
+                        ? !occupied.isRegionVacant(x, y, spanX, spanY)
+                        : !occupied.isRegionVacant(x, y, blockOccupied)) {
+                    continue inner;
                 }
 
                 float distance = (float) Math.hypot(x - cellX, y - cellY);
@@ -1850,12 +1882,12 @@ public class CellLayout extends ViewGroup {
         mTmpOccupied.markCells(rectOccupiedByPotentialDrop, true);
 
         findNearestArea(c.cellX, c.cellY, c.spanX, c.spanY, direction,
-                mTmpOccupied.cells, null, mTempLocation);
+                mTmpOccupied, null, mTempLocation);
 
-        int[] vacantCell = new int[2];
+        int[] vacantCell = mTmpVacantCell;
         mTmpOccupied.findVacantCell(vacantCell, c.spanX, c.spanY);
         if (vacantCell[0] >= 0 && vacantCell[1] >= 0) {
-            if (!mTmpOccupied.cells[vacantCell[0]][vacantCell[1]]) {
+            if (!mTmpOccupied.isOccupied(vacantCell[0], vacantCell[1])) {
                 mTempLocation[0] = vacantCell[0];
                 mTempLocation[1] = vacantCell[1];
             }
@@ -1874,7 +1906,11 @@ public class CellLayout extends ViewGroup {
             int[] direction, View dragView, ItemConfiguration currentState) {
         int countX = mCountX;
         int countY = mCountY;
-        ViewCluster cluster = new ViewCluster(views, currentState);
+        if (mTmpViewCluster == null) {
+            mTmpViewCluster = new ViewCluster();
+        }
+        ViewCluster cluster = mTmpViewCluster;
+        cluster.init(views, currentState);
         Rect clusterRect = cluster.getBoundingRect();
         int whichEdge;
         int pushDistance;
@@ -1902,8 +1938,8 @@ public class CellLayout extends ViewGroup {
         }
 
         // Mark the occupied state as false for the group of views we want to move.
-        for (View v: views) {
-            CellAndSpan c = currentState.map.get(v);
+        for (int i = 0; i < views.size(); i++) {
+            CellAndSpan c = currentState.map.get(views.get(i));
             mTmpOccupied.markCells(c, false);
         }
 
@@ -1949,7 +1985,8 @@ public class CellLayout extends ViewGroup {
         }
 
         while (pushDistance > 0 && !fail) {
-            for (View v: currentState.sortedViews) {
+            for (int i = 0; i < currentState.sortedViews.size(); i++) {
+                View v = currentState.sortedViews.get(i);
                 // For each view that isn't in the cluster, we see if the leading edge of the
                 // cluster is contacting the edge of that view. If so, we add that view to the
                 // cluster.
@@ -1998,8 +2035,8 @@ public class CellLayout extends ViewGroup {
         }
 
         // In either case, we set the occupied array as marked for the location of the views
-        for (View v: cluster.views) {
-            CellAndSpan c = currentState.map.get(v);
+        for (int i = 0; i < cluster.views.size(); i++) {
+            CellAndSpan c = currentState.map.get(cluster.views.get(i));
             mTmpOccupied.markCells(c, true);
         }
 
@@ -2018,21 +2055,41 @@ public class CellLayout extends ViewGroup {
         final static int RIGHT = 1 << 2;
         final static int BOTTOM = 1 << 3;
 
-        final ArrayList<View> views;
-        final ItemConfiguration config;
+        final ArrayList<View> views = new ArrayList<>();
+        ItemConfiguration config;
         final Rect boundingRect = new Rect();
 
-        final int[] leftEdge = new int[mCountY];
-        final int[] rightEdge = new int[mCountY];
-        final int[] topEdge = new int[mCountX];
-        final int[] bottomEdge = new int[mCountX];
+        int[] leftEdge = new int[0];
+        int[] rightEdge = new int[0];
+        int[] topEdge = new int[0];
+        int[] bottomEdge = new int[0];
         int dirtyEdges;
         boolean boundingRectDirty;
 
-        @SuppressWarnings("unchecked")
+        ViewCluster() { }
+
         public ViewCluster(ArrayList<View> views, ItemConfiguration config) {
-            this.views = (ArrayList<View>) views.clone();
+            init(views, config);
+        }
+
+        /**
+         * Sets the views and configuration of this cluster, so that it can be reused for another
+         * push.
+         */
+        void init(ArrayList<View> views, ItemConfiguration config) {
+            this.views.clear();
+            for (int i = 0; i < views.size(); i++) {
+                this.views.add(views.get(i));
+            }
             this.config = config;
+            if (leftEdge.length < mCountY) {
+                leftEdge = new int[mCountY];
+                rightEdge = new int[mCountY];
+            }
+            if (topEdge.length < mCountX) {
+                topEdge = new int[mCountX];
+                bottomEdge = new int[mCountX];
+            }
             resetEdges();
         }
 
@@ -2132,8 +2189,8 @@ public class CellLayout extends ViewGroup {
         }
 
         void shift(int whichEdge, int delta) {
-            for (View v: views) {
-                CellAndSpan c = config.map.get(v);
+            for (int i = 0; i < views.size(); i++) {
+                CellAndSpan c = config.map.get(views.get(i));
                 switch (whichEdge) {
                     case LEFT:
                         c.cellX -= delta;
@@ -2319,15 +2376,15 @@ public class CellLayout extends ViewGroup {
             int spanY, View dragView, int[] resultDirection) {
 
         //TODO(adamcohen) b/151776141 use the items visual center for the direction vector
-        int[] targetDestination = new int[2];
+        int[] targetDestination = mTmpDropTarget;
 
         findNearestAreaIgnoreOccupied(dragViewCenterX, dragViewCenterY, spanX, spanY,
                 targetDestination);
-        Rect dragRect = new Rect();
+        Rect dragRect = mTmpDragRect;
         cellToRect(targetDestination[0], targetDestination[1], spanX, spanY, dragRect);
         dragRect.offset(dragViewCenterX - dragRect.centerX(), dragViewCenterY - dragRect.centerY());
 
-        Rect dropRegionRect = new Rect();
+        Rect dropRegionRect = mTmpDropRegionRect;
         getViewsIntersectingRegion(targetDestination[0], targetDestination[1], spanX, spanY,
                 dragView, dropRegionRect, mIntersectingViews);
 
@@ -2385,7 +2442,7 @@ public class CellLayout extends ViewGroup {
 
         findNearestArea(boundingRect.left, boundingRect.top, boundingRect.width(),
                 boundingRect.height(), direction,
-                mTmpOccupied.cells, blockOccupied.cells, mTempLocation);
+                mTmpOccupied, blockOccupied, mTempLocation);
 
         // If we successfully found a location by pushing the block of views, we commit it
         if (mTempLocation[0] >= 0 && mTempLocation[1] >= 0) {
@@ -2423,11 +2480,12 @@ public class CellLayout extends ViewGroup {
                 c.cellY = cellY;
             }
         }
-        Rect r0 = new Rect(cellX, cellY, cellX + spanX, cellY + spanY);
-        Rect r1 = new Rect();
-        for (View child : solution.map.keySet()) {
+        Rect r0 = mOccupiedRect;
+        Rect r1 = mTmpIntersectRect;
+        for (int i = 0; i < solution.map.size(); i++) {
+            View child = solution.map.keyAt(i);
             if (child == ignoreView) continue;
-            CellAndSpan c = solution.map.get(child);
+            CellAndSpan c = solution.map.valueAt(i);
             CellLayoutLayoutParams lp = (CellLayoutLayoutParams) child.getLayoutParams();
             r1.set(c.cellX, c.cellY, c.cellX + c.spanX, c.cellY + c.spanY);
             if (Rect.intersects(r0, r1)) {
@@ -2441,7 +2499,7 @@ public class CellLayout extends ViewGroup {
                 mIntersectingViews.add(child);
             }
         }
-        solution.intersectingViews = new ArrayList<>(mIntersectingViews);
+        solution.setIntersectingViews(mIntersectingViews);
 
         return !mIntersectingViews.isEmpty();
     }
@@ -2465,7 +2523,8 @@ public class CellLayout extends ViewGroup {
 
         // Ok, they couldn't move as a block, let's move them individually
         boolean success = false;
-        for (View v : mIntersectingViews) {
+        for (int i = 0; i < mIntersectingViews.size(); i++) {
+            View v = mIntersectingViews.get(i);
             if (!addViewToTempLocation(v, mOccupiedRect, direction, solution)) {
                 return false;
             } else {
@@ -2562,30 +2621,44 @@ public class CellLayout extends ViewGroup {
         return new ReorderAlgorithm(this);
     }
 
+    /**
+     * Returns the reorder algorithm of this layout, which is created once and reused by all the
+     * reorders to keep its temporary objects.
+     */
+    public ReorderAlgorithm getReorderAlgorithm() {
+        if (mReorderAlgorithm == null) {
+            mReorderAlgorithm = createReorderAlgorithm();
+        }
+        return mReorderAlgorithm;
+    }
+
     protected ItemConfiguration findReorderSolution(int pixelX, int pixelY, int minSpanX,
             int minSpanY, int spanX, int spanY, int[] direction, View dragView, boolean decX,
             ItemConfiguration solution) {
-        return createReorderAlgorithm().findReorderSolution(pixelX, pixelY, minSpanX, minSpanY,
+        return getReorderAlgorithm().findReorderSolution(pixelX, pixelY, minSpanX, minSpanY,
                 spanX, spanY, direction, dragView, decX, solution);
     }
 
     public void copyCurrentStateToSolution(ItemConfiguration solution, boolean temp) {
         mWidgetCellAndSpanList.clear();
+        solution.reset();
         int childCount = mShortcutsAndWidgets.getChildCount();
         for (int i = 0; i < childCount; i++) {
             View child = mShortcutsAndWidgets.getChildAt(i);
             CellLayoutLayoutParams lp = (CellLayoutLayoutParams) child.getLayoutParams();
             CellAndSpan c;
             if (temp) {
-                c = new CellAndSpan(lp.getTmpCellX(), lp.getTmpCellY(), lp.cellHSpan, lp.cellVSpan);
+                c = solution.put(child, lp.getTmpCellX(), lp.getTmpCellY(), lp.cellHSpan,
+                        lp.cellVSpan);
             } else {
-                c = new CellAndSpan(lp.getCellX(), lp.getCellY(), lp.cellHSpan, lp.cellVSpan);
+                c = solution.put(child, lp.getCellX(), lp.getCellY(), lp.cellHSpan,
+                        lp.cellVSpan);
             }
             if (child instanceof LauncherAppWidgetHostView) {
                 mWidgetCellAndSpanList.add(c);
             }
-            solution.add(child, c);
         }
+        solution.removeStaleViews();
     }
 
     /**
@@ -2601,12 +2674,58 @@ public class CellLayout extends ViewGroup {
      * @param spanY occupied vertical span
      * @param dragView the view of the item being draged
      * @return returns a solution for the given parameters, the solution contains all the icons and
-     *         the locations they should be in the given solution.
+     *         the locations they should be in the given solution. The solution is changed by the
+     *         next call.
      */
     public ItemConfiguration calculateReorder(int pixelX, int pixelY, int minSpanX, int minSpanY,
             int spanX, int spanY, View dragView) {
-        return createReorderAlgorithm().calculateReorder(pixelX, pixelY, minSpanX, minSpanY,
-                spanX, spanY, dragView);
+        // The drag over events which lead to the same cells of an unchanged layout get the same
+        // solution, like the drop gets the solution of the last hint.
+        int keySize = computeReorderKey(pixelX, pixelY, minSpanX, minSpanY, spanX, spanY);
+        if (!mReorderSolutionCache.matches(this, mReorderKey, keySize, minSpanX, minSpanY, spanX,
+                spanY, dragView)) {
+            ItemConfiguration solution = getReorderAlgorithm().calculateReorder(pixelX, pixelY,
+                    minSpanX, minSpanY, spanX, spanY, dragView);
+            mReorderSolutionCache.put(this, mReorderKey, keySize, minSpanX, minSpanY, spanX,
+                    spanY, dragView, solution);
+        }
+        // A copy, as the solutions of the reorder algorithm are reused by its next search
+        return mReorderSolutionCache.getSolution();
+    }
+
+    /**
+     * Fills {@link #mReorderKey} with the cells which the reorder search derives from the drag
+     * position: the nearest cell for each span the item can be shrunk to, and the nearest vacant
+     * area. The search gives the same solution for the same cells of an unchanged layout.
+     *
+     * @return the number of values of the key
+     */
+    private int computeReorderKey(int pixelX, int pixelY, int minSpanX, int minSpanY, int spanX,
+            int spanY) {
+        int size = 2 * Math.max(0, spanX - minSpanX + 1) * Math.max(0, spanY - minSpanY + 1) + 4;
+        if (mReorderKey.length < size) {
+            mReorderKey = new int[size];
+        }
+        int i = 0;
+        for (int x = minSpanX; x <= spanX; x++) {
+            for (int y = minSpanY; y <= spanY; y++) {
+                findNearestAreaIgnoreOccupied(pixelX, pixelY, x, y, mReorderTargetCell);
+                mReorderKey[i++] = mReorderTargetCell[0];
+                mReorderKey[i++] = mReorderTargetCell[1];
+            }
+        }
+        findNearestVacantArea(pixelX, pixelY, minSpanX, minSpanY, spanX, spanY,
+                mReorderTargetCell, mReorderTargetSpan);
+        mReorderKey[i++] = mReorderTargetCell[0];
+        mReorderKey[i++] = mReorderTargetCell[1];
+        mReorderKey[i++] = mReorderTargetSpan[0];
+        mReorderKey[i++] = mReorderTargetSpan[1];
+        return i;
+    }
+
+    @VisibleForTesting
+    public ReorderSolutionCache getReorderSolutionCache() {
+        return mReorderSolutionCache;
     }
 
     int[] performReorder(int pixelX, int pixelY, int minSpanX, int minSpanY, int spanX, int spanY,
@@ -2625,6 +2744,10 @@ public class CellLayout extends ViewGroup {
         if (mode == MODE_SHOW_REORDER_HINT || mPreviousSolution == null) {
             finalSolution = calculateReorder(pixelX, pixelY, minSpanX, minSpanY, spanX, spanY,
                     dragView);
+            if (finalSolution != null) {
+                mPreviousSolutionCopy.set(finalSolution);
+                finalSolution = mPreviousSolutionCopy;
+            }
             mPreviousSolution = finalSolution;
         } else {
             finalSolution = mPreviousSolution;
@@ -2713,21 +2836,107 @@ public class CellLayout extends ViewGroup {
         public final ArrayList<View> sortedViews = new ArrayList<>();
         public ArrayList<View> intersectingViews;
         public boolean isSolution = false;
+        // Backing list of intersectingViews, kept when the configuration is reused
+        private final ArrayList<View> mIntersectingViewsList = new ArrayList<>();
 
         public void save() {
             // Copy current state into savedMap
-            for (View v: map.keySet()) {
-                savedMap.get(v).copyFrom(map.get(v));
+            for (int i = map.size() - 1; i >= 0; i--) {
+                savedMap.get(map.keyAt(i)).copyFrom(map.valueAt(i));
             }
         }
 
         public void restore() {
             // Restore current state from savedMap
-            for (View v: savedMap.keySet()) {
-                map.get(v).copyFrom(savedMap.get(v));
+            for (int i = savedMap.size() - 1; i >= 0; i--) {
+                map.get(savedMap.keyAt(i)).copyFrom(savedMap.valueAt(i));
+            }
+        }
+
+        /**
+         * Clears the result and the order of the views, so that this configuration can be filled
+         * again with {@link #put}. The cells of the views are kept to be reused.
+         */
+        public void reset() {
+            cellX = cellY = -1;
+            spanX = spanY = 1;
+            isSolution = false;
+            intersectingViews = null;
+            sortedViews.clear();
+        }
+
+        /**
+         * Copies {@param other} into this configuration, reusing the cells of the views.
+         */
+        public void set(ItemConfiguration other) {
+            reset();
+            for (int i = 0; i < other.sortedViews.size(); i++) {
+                View v = other.sortedViews.get(i);
+                CellAndSpan c = other.map.get(v);
+                put(v, c.cellX, c.cellY, c.spanX, c.spanY);
+            }
+            removeStaleViews();
+            copyFrom(other);
+            isSolution = other.isSolution;
+            if (other.intersectingViews != null) {
+                setIntersectingViews(other.intersectingViews);
+            }
+        }
+
+        /**
+         * Clears the configuration, including the views it keeps for reuse.
+         */
+        public void clear() {
+            reset();
+            map.clear();
+            savedMap.clear();
+            mIntersectingViewsList.clear();
+        }
+
+        /**
+         * Adds {@param v} at the given cell, reusing its previous {@link CellAndSpan} if any.
+         */
+        public CellAndSpan put(View v, int cellX, int cellY, int spanX, int spanY) {
+            CellAndSpan c = map.get(v);
+            if (c == null) {
+                add(v, new CellAndSpan(cellX, cellY, spanX, spanY));
+                return map.get(v);
+            }
+            c.cellX = cellX;
+            c.cellY = cellY;
+            c.spanX = spanX;
+            c.spanY = spanY;
+            sortedViews.add(v);
+            return c;
+        }
+
+        /**
+         * Removes the views which were not added again since the last {@link #reset}.
+         */
+        public void removeStaleViews() {
+            if (map.size() == sortedViews.size()) {
+                return;
+            }
+            for (int i = map.size() - 1; i >= 0; i--) {
+                View v = map.keyAt(i);
+                if (!sortedViews.contains(v)) {
+                    map.removeAt(i);
+                    savedMap.remove(v);
+                }
             }
         }
 
+        /**
+         * Sets {@link #intersectingViews} to a copy of {@param views}.
+         */
+        public void setIntersectingViews(ArrayList<View> views) {
+            mIntersectingViewsList.clear();
+            for (int i = 0; i < views.size(); i++) {
+                mIntersectingViewsList.add(views.get(i));
+            }
+            intersectingViews = mIntersectingViewsList;
+        }
+
         public void add(View v, CellAndSpan cs) {
             map.put(v, cs);
             savedMap.put(v, new CellAndSpan());
@@ -2740,8 +2949,8 @@ public class CellLayout extends ViewGroup {
 
         public void getBoundingRectForViews(ArrayList<View> views, Rect outRect) {
             boolean first = true;
-            for (View v: views) {
-                CellAndSpan c = map.get(v);
+            for (int i = 0; i < views.size(); i++) {
+                CellAndSpan c = map.get(views.get(i));
                 if (first) {
                     outRect.set(c.cellX, c.cellY, c.cellX + c.spanX, c.cellY + c.spanY);
                     first = false;
@@ -2844,6 +3053,8 @@ public class CellLayout extends ViewGroup {
 
         // Invalidate the drag data
         mPreviousSolution = null;
+        mPreviousSolutionCopy.clear();
+        mReorderSolutionCache.invalidate();
         mDragCell[0] = mDragCell[1] = -1;
         mDragCellSpan[0] = mDragCellSpan[1] = -1;
         mDragOutlineAnims[mDragOutlineCurrent].animateOut();
@@ -2902,12 +3113,14 @@ public class CellLayout extends ViewGroup {
             LauncherAppWidgetInfo info = (LauncherAppWidgetInfo) view.getTag();
             CellPos pos = mActivity.getCellPosMapper().mapModelToPresenter(info);
             mOccupied.markCells(pos.cellX, pos.cellY, info.spanX, info.spanY, true);
+            mReorderSolutionCache.invalidate();
             return;
         }
         if (view == null || view.getParent() != mShortcutsAndWidgets) return;
         CellLayoutLayoutParams
                 lp = (CellLayoutLayoutParams) view.getLayoutParams();
         mOccupied.markCells(lp.getCellX(), lp.getCellY(), lp.cellHSpan, lp.cellVSpan, true);
+        mReorderSolutionCache.invalidate();
     }
 
     public void markCellsAsUnoccupiedForView(View view) {
@@ -2916,12 +3129,14 @@ public class CellLayout extends ViewGroup {
             LauncherAppWidgetInfo info = (LauncherAppWidgetInfo) view.getTag();
             CellPos pos = mActivity.getCellPosMapper().mapModelToPresenter(info);
             mOccupied.markCells(pos.cellX, pos.cellY, info.spanX, info.spanY, false);
+            mReorderSolutionCache.invalidate();
             return;
         }
         if (view == null || view.getParent() != mShortcutsAndWidgets) return;
         CellLayoutLayoutParams
                 lp = (CellLayoutLayoutParams) view.getLayoutParams();
         mOccupied.markCells(lp.getCellX(), lp.getCellY(), lp.cellHSpan, lp.cellVSpan, false);
+        mReorderSolutionCache.invalidate();
     }
 
     public int getDesiredWidth() {
@@ -2936,7 +3151,7 @@ public class CellLayout extends ViewGroup {
 
     public boolean isOccupied(int x, int y) {
         if (x < mCountX && y < mCountY) {
-            return mOccupied.cells[x][y];
+            return mOccupied.isOccupied(x, y);
         } else {
             throw new RuntimeException("Position exceeds the bound of this CellLayout");
         }
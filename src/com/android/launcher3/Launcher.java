@@ -169,6 +169,7 @@ import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.logging.InstanceId;
 import com.android.launcher3.logging.InstanceIdSequence;
 import com.android.launcher3.logging.StatsLogManager;
+import com.android.launcher3.logging.TimingTraceBuffer;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.ItemInstallQueue;
 import com.android.launcher3.model.ModelUtils;
@@ -230,6 +231,8 @@ import com.android.launcher3.widget.PendingAddWidgetInfo;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
 import com.android.launcher3.widget.WidgetAddFlowHandler;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetPreviewCache;
+import com.android.launcher3.widget.WidgetPreviewScheduler;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.picker.WidgetsFullSheet;
@@ -1340,6 +1343,8 @@ public class Launcher extends StatefulActivity<LauncherState>
     protected void onPause() {
         // Ensure that items added to Launcher are queued until Launcher returns
         ItemInstallQueue.INSTANCE.get(this).pauseModelPush(FLAG_ACTIVITY_PAUSED);
+        // Persist any coalesced item updates before Launcher goes to the background
+        mModel.getWriteQueue().flushAsync();
 
         mAppMonitor.onLauncherPrePause();
         super.onPause();
@@ -3157,9 +3162,15 @@ public class Launcher extends StatefulActivity<LauncherState>
 
     /**
      * $ adb shell dumpsys activity com.android.launcher3.Launcher [--all]
+     * $ adb shell dumpsys activity com.android.launcher3.Launcher --trace-json > trace.json
      */
     @Override
     public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (args.length > 0 && TextUtils.equals(args[0], "--trace-json")) {
+            // Only the trace, so that the output can be opened as is
+            TimingTraceBuffer.INSTANCE.exportJson(writer);
+            return;
+        }
         super.dump(prefix, fd, writer, args);
 
         if (args.length > 0 && TextUtils.equals(args[0], "--all")) {
@@ -3199,6 +3210,14 @@ public class Launcher extends StatefulActivity<LauncherState>
         mDragLayer.dump(prefix, writer);
         mStateManager.dump(prefix, writer);
         mPopupDataProvider.dump(prefix, writer);
+        WidgetPreviewCache previewCache = WidgetPreviewCache.INSTANCE.getNoCreate();
+        if (previewCache != null) {
+            previewCache.dump(prefix, writer);
+        }
+        WidgetPreviewScheduler previewScheduler = WidgetPreviewScheduler.INSTANCE.getNoCreate();
+        if (previewScheduler != null) {
+            previewScheduler.dump(prefix, writer);
+        }
         mDeviceProfile.dump(this, prefix, writer);
 
         try {
@@ -3214,6 +3233,7 @@ public class Launcher extends StatefulActivity<LauncherState>
         }
         mOverlayManager.dump(prefix, writer);
         mAppMonitor.dump(prefix, fd, writer, args);
+        BlurWallpaperProvider.Companion.getInstance(this).dump(prefix, writer);
     }
 
     @Override
@@ -41,6 +41,7 @@ import com.android.launcher3.celllayout.CellPosMapper;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.logging.TimingTraceBuffer;
 import com.android.launcher3.model.AddWorkspaceItemsTask;
 import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.BaseModelUpdateTask;
@@ -49,8 +50,11 @@ import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.CacheDataUpdatedTask;
 import com.android.launcher3.model.ItemInstallQueue;
 import com.android.launcher3.model.LauncherBinder;
+import com.android.launcher3.model.LoaderPhaseTimer;
 import com.android.launcher3.model.LoaderTask;
+import com.android.launcher3.model.ModelTaskScheduler;
 import com.android.launcher3.model.ModelDelegate;
+import com.android.launcher3.model.ModelWriteQueue;
 import com.android.launcher3.model.ModelWriter;
 import com.android.launcher3.model.PackageIncrementalDownloadUpdatedTask;
 import com.android.launcher3.model.PackageInstallStateChangedTask;
@@ -77,6 +81,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
@@ -101,6 +106,15 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     @Nullable
     private LoaderTask mLoaderTask;
     private boolean mIsLoaderTaskRunning;
+    @Nullable
+    private volatile LoaderPhaseTimer mLastLoaderPhaseTimer;
+
+    @NonNull
+    private final ModelWriteQueue mWriteQueue;
+
+    @NonNull
+    private final ModelTaskScheduler mTaskScheduler =
+            new ModelTaskScheduler(MODEL_EXECUTOR.getHandler());
 
     // Indicates whether the current model data is valid or not.
     // We start off with everything not loaded. After that, we assume that
@@ -146,6 +160,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             @NonNull final IconCache iconCache, @NonNull final AppFilter appFilter,
             final boolean isPrimaryInstance) {
         mApp = app;
+        mWriteQueue = new ModelWriteQueue(context);
         mBgAllAppsList = new AllAppsList(iconCache, appFilter);
         mModelDelegate = ModelDelegate.newInstance(context, app, mBgAllAppsList, mBgDataModel,
                 isPrimaryInstance);
@@ -188,6 +203,22 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         enqueueModelUpdateTask(addWorkspaceItemsTask);
     }
 
+    /**
+     * Returns the queue through which all {@link ModelWriter}s write item updates
+     */
+    @NonNull
+    public ModelWriteQueue getWriteQueue() {
+        return mWriteQueue;
+    }
+
+    /**
+     * Returns the queue through which all {@link ModelUpdateTask}s are run
+     */
+    @NonNull
+    public ModelTaskScheduler getTaskScheduler() {
+        return mTaskScheduler;
+    }
+
     @NonNull
     public ModelWriter getWriter(final boolean hasVerticalHotseat, final boolean verifyChanges,
             CellPosMapper cellPosMapper, @Nullable final Callbacks owner) {
@@ -633,7 +664,7 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             return;
         }
         task.init(mApp, this, mBgDataModel, mBgAllAppsList, MAIN_EXECUTOR);
-        MODEL_EXECUTOR.execute(task);
+        mTaskScheduler.schedule(task, task.getPriority(), task.getCoalesceKey());
     }
 
     /**
@@ -657,6 +688,21 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
                 @NonNull BgDataModel dataModel, @NonNull AllAppsList allAppsList,
                 @NonNull Executor uiExecutor);
 
+        /**
+         * Returns the priority of the task in {@link ModelTaskScheduler}.
+         */
+        default int getPriority() {
+            return ModelTaskScheduler.PRIORITY_DEFAULT;
+        }
+
+        /**
+         * Returns the targets and the kind of change of the task, such as the packages and the
+         * operation, to coalesce it with an identical pending task, or null.
+         */
+        @Nullable
+        default Pair<? extends Set<?>, ?> getCoalesceKey() {
+            return null;
+        }
     }
 
     public void updateAndBindWorkspaceItem(@NonNull final WorkspaceItemInfo si,
@@ -708,10 +754,24 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
             }
             writer.println();
         }
+        mWriteQueue.dump(prefix, writer);
+        mTaskScheduler.dump(prefix, writer);
+        LoaderPhaseTimer phaseTimer = mLastLoaderPhaseTimer;
+        if (phaseTimer != null) {
+            phaseTimer.dump(prefix, writer);
+        }
+        TimingTraceBuffer.INSTANCE.dump(prefix, writer);
         mModelDelegate.dump(prefix, fd, writer, args);
         mBgDataModel.dump(prefix, fd, writer, args);
     }
 
+    /**
+     * Records the phase timings of the last successful loader run, to be included in dumps
+     */
+    public void setLastLoaderPhaseTimer(@NonNull LoaderPhaseTimer phaseTimer) {
+        mLastLoaderPhaseTimer = phaseTimer;
+    }
+
     /**
      * Returns true if there are any callbacks attached to the model
      */
@@ -25,7 +25,6 @@ import android.view.View;
 import com.android.launcher3.celllayout.CellLayoutLayoutParams;
 import com.android.launcher3.celllayout.MulticellReorderAlgorithm;
 import com.android.launcher3.celllayout.ReorderAlgorithm;
-import com.android.launcher3.util.CellAndSpan;
 import com.android.launcher3.util.GridOccupancy;
 
 /**
@@ -71,7 +70,7 @@ public class MultipageCellLayout extends CellLayout {
             cellX++;
         }
         int finalCellX = cellX;
-        return ((MulticellReorderAlgorithm) createReorderAlgorithm()).simulateSeam(
+        return ((MulticellReorderAlgorithm) getReorderAlgorithm()).simulateSeam(
                 () -> super.createAreaForResize(finalCellX, cellY, spanX, spanY, dragView,
                         direction, commit));
     }
@@ -83,15 +82,16 @@ public class MultipageCellLayout extends CellLayout {
 
     @Override
     public void copyCurrentStateToSolution(ItemConfiguration solution, boolean temp) {
+        solution.reset();
         int childCount = mShortcutsAndWidgets.getChildCount();
         for (int i = 0; i < childCount; i++) {
             View child = mShortcutsAndWidgets.getChildAt(i);
             CellLayoutLayoutParams lp = (CellLayoutLayoutParams) child.getLayoutParams();
             int seamOffset = lp.getCellX() >= mCountX / 2 && lp.canReorder ? 1 : 0;
-            CellAndSpan c = new CellAndSpan(lp.getCellX() + seamOffset, lp.getCellY(), lp.cellHSpan,
+            solution.put(child, lp.getCellX() + seamOffset, lp.getCellY(), lp.cellHSpan,
                     lp.cellVSpan);
-            solution.add(child, c);
         }
+        solution.removeStaleViews();
     }
 
     @Override
@@ -1730,7 +1730,7 @@ public abstract class PagedView<T extends View & PageIndicator> extends ViewGrou
         return getPageNearestToCenterOfScreen(mOrientationHandler.getPrimaryScroll(this));
     }
 
-    private int getPageNearestToCenterOfScreen(int primaryScroll) {
+    protected int getPageNearestToCenterOfScreen(int primaryScroll) {
         int screenCenter = getScreenCenter(primaryScroll);
         int minDistanceFromScreenCenter = Integer.MAX_VALUE;
         int minDistanceFromScreenCenterIndex = -1;
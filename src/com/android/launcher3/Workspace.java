@@ -234,6 +234,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
 
     protected final int[] mTempXY = new int[2];
     private final float[] mTempFXY = new float[2];
+    private final int[] mTempSpan = new int[2];
     private final Rect mTempRect = new Rect();
     @Thunk
     float[] mDragViewVisualCenter = new float[2];
@@ -2596,7 +2597,7 @@ public class Workspace<T extends View & PageIndicator> extends PagedView<T>
         ItemInfo item = d.dragInfo;
         final View child = (mDragInfo == null) ? null : mDragInfo.cell;
         if (!nearestDropOccupied) {
-            int[] span = new int[2];
+            int[] span = mTempSpan;
             mDragTargetLayout.performReorder((int) mDragViewVisualCenter[0],
                     (int) mDragViewVisualCenter[1], minSpanX, minSpanY, item.spanX, item.spanY,
                     child, mTargetCell, span, CellLayout.MODE_SHOW_REORDER_HINT);
@@ -15,25 +15,28 @@
  */
 package com.android.launcher3.allapps;
 
+import static com.android.launcher3.model.data.AppInfo.COMPONENT_KEY_COMPARATOR;
+
 import android.content.Context;
+import android.text.TextUtils;
 
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.DiffUtil;
 
 import com.android.launcher3.R;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.icons.BitmapInfo;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.views.ActivityContext;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.TreeMap;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import foundation.e.bliss.LauncherAppMonitor;
 
@@ -47,6 +50,9 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
 
     public static final String TAG = "AlphabeticalAppsList";
 
+    // Maximum number of app changes applied one by one, beyond which the list is rebuilt
+    private static final int MAX_INCREMENTAL_CHANGES = 16;
+
     private final WorkProfileManager mWorkProviderManager;
 
     /**
@@ -56,8 +62,8 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
     public static class FastScrollSectionInfo {
         // The section name
         public final String sectionName;
-        // The item position
-        public final int position;
+        // The item position, which is shifted when apps are added or removed before the section
+        public int position;
 
         public FastScrollSectionInfo(String sectionName, int position) {
             this.sectionName = sectionName;
@@ -79,11 +85,29 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
     private final ArrayList<AdapterItem> mAdapterItems = new ArrayList<>();
     // The set of sections that we allow fast-scrolling to (includes non-merged sections)
     private final List<FastScrollSectionInfo> mFastScrollerSections = new ArrayList<>();
+    // Whether mAdapterItems ends with an item for each app of mApps
+    private boolean mAdapterShowsApps;
+
+    // The apps of mApps, in the order of the store and in the order of mApps
+    private ArrayList<AppEntry> mEntriesByKey = new ArrayList<>();
+    private ArrayList<AppEntry> mNextEntriesByKey = new ArrayList<>();
+    private final ArrayList<AppEntry> mSortedEntries = new ArrayList<>();
+    // Whether the entries are the apps of the store filtered with mEntriesFilter, in which case
+    // the changes of the store can be applied to the list one by one
+    private boolean mEntriesValid;
+    private Predicate<ItemInfo> mEntriesFilter;
+    // Changes between the entries and the store
+    private final ArrayList<AppEntry> mRemovedEntries = new ArrayList<>();
+    private final ArrayList<AppEntry> mAddedEntries = new ArrayList<>();
+    private final ArrayList<AppEntry> mMovedEntries = new ArrayList<>();
+    private final ArrayList<AppEntry> mChangedEntries = new ArrayList<>();
 
     // The of ordered component names as a result of a search query
     private final ArrayList<AdapterItem> mSearchResults = new ArrayList<>();
     private BaseAllAppsAdapter<T> mAdapter;
     private AppInfoComparator mAppNameComparator;
+    private final LabelComparator mSectionComparator = new LabelComparator();
+    private final Comparator<AppEntry> mEntryComparator = this::compareEntries;
     private final int mNumAppsPerRowAllApps;
     private int mNumAppRowsInAdapter;
     private Predicate<ItemInfo> mItemFilter;
@@ -188,36 +212,49 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
 
     /**
      * Updates internals when the set of apps are updated.
+     *
+     * A few added, removed or changed apps are applied to the current list one by one, with
+     * binary insertion, and notified to the adapter as such. The list is rebuilt otherwise.
      */
     @Override
     public void onAppsUpdated() {
         if (mAllAppsStore == null) {
             return;
         }
-        // Sort the list of apps
-        mApps.clear();
+        AppInfo[] apps = mAllAppsStore.getApps();
+        if (!mEntriesValid || hasSearchResults() || mEntriesFilter != mItemFilter
+                // The adapter items were changed from outside
+                || (mAdapterShowsApps && mAdapterItems.size() < mApps.size())
+                || !computeChanges(apps)) {
+            rebuildApps(apps);
+            return;
+        }
+        applyChanges();
+        LauncherAppMonitor.getInstance(mActivityContext).onAllAppsListUpdated(mApps);
+    }
 
-        Stream<AppInfo> appSteam = Stream.of(mAllAppsStore.getApps());
-        if (!hasSearchResults() && mItemFilter != null) {
-            appSteam = appSteam.filter(mItemFilter);
+    private void rebuildApps(AppInfo[] apps) {
+        boolean filter = !hasSearchResults() && mItemFilter != null;
+        mEntriesByKey.clear();
+        for (AppInfo info : apps) {
+            if (!filter || mItemFilter.test(info)) {
+                mEntriesByKey.add(new AppEntry(info));
+            }
+        }
+        // Sort the list of apps. As a special case for some languages (currently only Simplified
+        // Chinese), the sections may not follow the order of the apps, in which case the apps are
+        // sorted by section first.
+        mSortedEntries.clear();
+        mSortedEntries.addAll(mEntriesByKey);
+        mSortedEntries.sort(mEntryComparator);
+        mApps.clear();
+        for (int i = 0; i < mSortedEntries.size(); i++) {
+            mApps.add(mSortedEntries.get(i).info);
         }
-        appSteam = appSteam.sorted(mAppNameComparator);
+        // The apps are not filtered while searching
+        mEntriesValid = !hasSearchResults();
+        mEntriesFilter = mItemFilter;
 
-        // As a special case for some languages (currently only Simplified Chinese), we may need to
-        // coalesce sections
-        if (mSortSections) {
-            // Compute the section headers. We use a TreeMap with the section name comparator to
-            // ensure that the sections are ordered when we iterate over it later
-            appSteam = appSteam.collect(Collectors.groupingBy(
-                    info -> info.sectionName,
-                    () -> new TreeMap<>(new LabelComparator()),
-                    Collectors.toCollection(ArrayList::new)))
-                    .values()
-                    .stream()
-                    .flatMap(ArrayList::stream);
-        }
-
-        appSteam.forEachOrdered(mApps::add);
         LauncherAppMonitor.getInstance(mActivityContext).onAllAppsListUpdated(mApps);
         // Recompose the set of adapter items from the current set of apps
         if (mSearchResults.isEmpty()) {
@@ -225,6 +262,230 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         }
     }
 
+    /**
+     * Computes the changes between the current entries and {@param apps}, which are sorted with
+     * {@link AppInfo#COMPONENT_KEY_COMPARATOR} like the entries.
+     *
+     * @return false if there are too many changes to apply them one by one.
+     */
+    private boolean computeChanges(AppInfo[] apps) {
+        mRemovedEntries.clear();
+        mAddedEntries.clear();
+        mMovedEntries.clear();
+        mChangedEntries.clear();
+        mNextEntriesByKey.clear();
+
+        int oldIndex = 0;
+        int oldCount = mEntriesByKey.size();
+        for (AppInfo info : apps) {
+            if (mItemFilter != null && !mItemFilter.test(info)) {
+                continue;
+            }
+            AppEntry entry = null;
+            while (oldIndex < oldCount) {
+                AppEntry oldEntry = mEntriesByKey.get(oldIndex);
+                int result = COMPONENT_KEY_COMPARATOR.compare(oldEntry.sortKey, info);
+                if (result > 0) {
+                    break;
+                }
+                oldIndex++;
+                if (result == 0) {
+                    entry = oldEntry;
+                    break;
+                }
+                mRemovedEntries.add(oldEntry);
+            }
+
+            if (entry == null) {
+                entry = new AppEntry(info);
+                mAddedEntries.add(entry);
+            } else if (entry.isOrderChanged(info)) {
+                entry.pendingInfo = info;
+                mMovedEntries.add(entry);
+            } else if (entry.isContentChanged(info)) {
+                entry.pendingInfo = info;
+                mChangedEntries.add(entry);
+            }
+            mNextEntriesByKey.add(entry);
+        }
+        while (oldIndex < oldCount) {
+            mRemovedEntries.add(mEntriesByKey.get(oldIndex++));
+        }
+
+        return mRemovedEntries.size() + mAddedEntries.size() + mMovedEntries.size()
+                + mChangedEntries.size() <= MAX_INCREMENTAL_CHANGES;
+    }
+
+    /**
+     * Applies the changes found by {@link #computeChanges} to the apps, the adapter items and the
+     * fast scroller sections.
+     */
+    private void applyChanges() {
+        ArrayList<AppEntry> entriesByKey = mEntriesByKey;
+        mEntriesByKey = mNextEntriesByKey;
+        mNextEntriesByKey = entriesByKey;
+        mNextEntriesByKey.clear();
+
+        for (int i = 0; i < mRemovedEntries.size(); i++) {
+            removeApp(indexOfEntry(mRemovedEntries.get(i)));
+        }
+        for (int i = 0; i < mMovedEntries.size(); i++) {
+            AppEntry entry = mMovedEntries.get(i);
+            removeApp(indexOfEntry(entry));
+            entry.update(entry.pendingInfo);
+            addApp(entry);
+        }
+        for (int i = 0; i < mAddedEntries.size(); i++) {
+            addApp(mAddedEntries.get(i));
+        }
+        for (int i = 0; i < mChangedEntries.size(); i++) {
+            AppEntry entry = mChangedEntries.get(i);
+            entry.update(entry.pendingInfo);
+            int index = indexOfEntry(entry);
+            mApps.set(index, entry.info);
+            if (mAdapterShowsApps) {
+                int position = getAppsStartPosition() + index;
+                AdapterItem item = AdapterItem.asApp(entry.info);
+                item.rowIndex = mAdapterItems.get(position).rowIndex;
+                item.rowAppIndex = mAdapterItems.get(position).rowAppIndex;
+                mAdapterItems.set(position, item);
+                if (mAdapter != null) {
+                    mAdapter.notifyItemChanged(position);
+                }
+            }
+        }
+
+        if (mAdapterShowsApps && (!mRemovedEntries.isEmpty() || !mAddedEntries.isEmpty()
+                || !mMovedEntries.isEmpty())) {
+            updateAccessibilityResultsCount();
+            updateRowIndices();
+        }
+        mRemovedEntries.clear();
+        mAddedEntries.clear();
+        mMovedEntries.clear();
+        mChangedEntries.clear();
+    }
+
+    private void addApp(AppEntry entry) {
+        int index = Collections.binarySearch(mSortedEntries, entry, mEntryComparator);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        int position = getAppsStartPosition() + index;
+        mSortedEntries.add(index, entry);
+        mApps.add(index, entry.info);
+        if (!mAdapterShowsApps) {
+            return;
+        }
+        mAdapterItems.add(position, AdapterItem.asApp(entry.info));
+
+        // Shift the following sections, and add the section of the app if it starts one
+        String sectionName = entry.sortKey.sectionName;
+        boolean prevSame = index > 0 && sectionName.equals(getSectionName(index - 1));
+        boolean nextSame = index + 1 < mSortedEntries.size()
+                && sectionName.equals(getSectionName(index + 1));
+        int sectionIndex = shiftSections(position, 1);
+        if (prevSame) {
+            // The app is added to the section of the previous app
+        } else if (nextSame) {
+            // The app is the new start of the section of the next app
+            mFastScrollerSections.get(sectionIndex).position = position;
+        } else {
+            mFastScrollerSections.add(sectionIndex,
+                    new FastScrollSectionInfo(sectionName, position));
+            if (index > 0 && index + 1 < mSortedEntries.size()
+                    && getSectionName(index - 1).equals(getSectionName(index + 1))) {
+                // The app splits a section in two
+                mFastScrollerSections.add(sectionIndex + 1,
+                        new FastScrollSectionInfo(getSectionName(index + 1), position + 1));
+            }
+        }
+        if (mAdapter != null) {
+            mAdapter.notifyItemInserted(position);
+        }
+    }
+
+    private void removeApp(int index) {
+        int position = getAppsStartPosition() + index;
+        AppEntry entry = mSortedEntries.remove(index);
+        mApps.remove(index);
+        if (!mAdapterShowsApps) {
+            return;
+        }
+        mAdapterItems.remove(position);
+
+        // Shift the following sections, and remove the section of the app if it was the only app
+        // of the section
+        String sectionName = entry.sortKey.sectionName;
+        boolean prevSame = index > 0 && sectionName.equals(getSectionName(index - 1));
+        boolean nextSame = index < mSortedEntries.size()
+                && sectionName.equals(getSectionName(index));
+        int sectionIndex = shiftSections(position + 1, -1);
+        if (!prevSame && !nextSame) {
+            // The section of the app is the last one before the shifted sections
+            mFastScrollerSections.remove(sectionIndex - 1);
+            if (index > 0 && index < mSortedEntries.size()
+                    && getSectionName(index - 1).equals(getSectionName(index))) {
+                // The removal merges the previous and the next sections
+                mFastScrollerSections.remove(sectionIndex - 1);
+            }
+        }
+        if (mAdapter != null) {
+            mAdapter.notifyItemRemoved(position);
+        }
+    }
+
+    /**
+     * Shifts the position of the fast scroller sections starting at or after {@param position}
+     * by {@param delta}.
+     *
+     * @return the index of the first section which starts at or after {@param position}.
+     */
+    private int shiftSections(int position, int delta) {
+        int low = 0;
+        int high = mFastScrollerSections.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mFastScrollerSections.get(mid).position < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < mFastScrollerSections.size(); i++) {
+            mFastScrollerSections.get(i).position += delta;
+        }
+        return low;
+    }
+
+    private String getSectionName(int index) {
+        return mSortedEntries.get(index).sortKey.sectionName;
+    }
+
+    private int getAppsStartPosition() {
+        return mAdapterItems.size() - mApps.size();
+    }
+
+    private int indexOfEntry(AppEntry entry) {
+        int index = Collections.binarySearch(mSortedEntries, entry, mEntryComparator);
+        return index >= 0 && mSortedEntries.get(index) == entry
+                ? index : mSortedEntries.indexOf(entry);
+    }
+
+    private int compareEntries(AppEntry a, AppEntry b) {
+        if (a == b) {
+            return 0;
+        }
+        if (mSortSections) {
+            int result = mSectionComparator.compare(a.sortKey.sectionName, a.sortKey.sectionKey,
+                    b.sortKey.sectionName, b.sortKey.sectionKey);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return mAppNameComparator.compare(a.sortKey, b.sortKey);
+    }
+
     /**
      * Updates the set of filtered apps with the current filter. At this point, we expect
      * mCachedSectionNames to have been calculated for the set of all apps in mApps.
@@ -235,6 +496,7 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         mFastScrollerSections.clear();
         mAdapterItems.clear();
         mAccessibilityResultsCount = 0;
+        mAdapterShowsApps = false;
 
         // Recreate the filtered and sectioned apps (for convenience for the grid layout) from the
         // ordered set of sections
@@ -248,6 +510,7 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
                 addApps = mWorkProviderManager.shouldShowWorkApps();
             }
             if (addApps) {
+                mAdapterShowsApps = true;
                 String lastSectionName = null;
                 for (AppInfo info : mApps) {
                     mAdapterItems.add(AdapterItem.asApp(info));
@@ -262,16 +525,34 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
                 }
             }
         }
-        mAccessibilityResultsCount = (int) mAdapterItems.stream()
-                .filter(AdapterItem::isCountedForAccessibility).count();
+        updateAccessibilityResultsCount();
+        updateRowIndices();
 
+        if (mAdapter != null) {
+            DiffUtil.calculateDiff(new MyDiffCallback(oldItems, mAdapterItems), false)
+                    .dispatchUpdatesTo(mAdapter);
+        }
+    }
+
+    private void updateAccessibilityResultsCount() {
+        int count = 0;
+        for (int i = 0; i < mAdapterItems.size(); i++) {
+            if (mAdapterItems.get(i).isCountedForAccessibility()) {
+                count++;
+            }
+        }
+        mAccessibilityResultsCount = count;
+    }
+
+    private void updateRowIndices() {
         if (mNumAppsPerRowAllApps != 0) {
             // Update the number of rows in the adapter after we do all the merging (otherwise, we
             // would have to shift the values again)
             int numAppsInSection = 0;
             int numAppsInRow = 0;
             int rowIndex = -1;
-            for (AdapterItem item : mAdapterItems) {
+            for (int i = 0; i < mAdapterItems.size(); i++) {
+                AdapterItem item = mAdapterItems.get(i);
                 item.rowIndex = 0;
                 if (BaseAllAppsAdapter.isDividerViewType(item.viewType)) {
                     numAppsInSection = 0;
@@ -288,10 +569,56 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
             }
             mNumAppRowsInAdapter = rowIndex + 1;
         }
+    }
 
-        if (mAdapter != null) {
-            DiffUtil.calculateDiff(new MyDiffCallback(oldItems, mAdapterItems), false)
-                    .dispatchUpdatesTo(mAdapter);
+    /**
+     * An app of the list, with a copy of the values it was sorted and bound with, as the apps of
+     * the store can be changed in place.
+     */
+    private static class AppEntry {
+
+        // Copy of the fields used to sort the app
+        final AppInfo sortKey = new AppInfo();
+
+        AppInfo info;
+        CharSequence contentDescription;
+        BitmapInfo bitmap;
+        int runtimeStatusFlags;
+        int progressLevel;
+
+        // The app replacing info, until the change is applied
+        AppInfo pendingInfo;
+
+        AppEntry(AppInfo info) {
+            update(info);
+        }
+
+        void update(AppInfo info) {
+            this.info = info;
+            sortKey.title = info.title;
+            sortKey.titleKey = info.titleKey;
+            sortKey.sectionName = info.sectionName;
+            sortKey.sectionKey = info.sectionKey;
+            sortKey.componentName = info.componentName;
+            sortKey.user = info.user;
+            contentDescription = info.contentDescription;
+            bitmap = info.bitmap;
+            runtimeStatusFlags = info.runtimeStatusFlags;
+            progressLevel = info.getProgressLevel();
+            pendingInfo = null;
+        }
+
+        boolean isOrderChanged(AppInfo info) {
+            return !TextUtils.equals(sortKey.title, info.title)
+                    || !sortKey.sectionName.equals(info.sectionName);
+        }
+
+        boolean isContentChanged(AppInfo info) {
+            return info != this.info
+                    || !TextUtils.equals(contentDescription, info.contentDescription)
+                    || bitmap != info.bitmap
+                    || runtimeStatusFlags != info.runtimeStatusFlags
+                    || progressLevel != info.getProgressLevel();
         }
     }
 
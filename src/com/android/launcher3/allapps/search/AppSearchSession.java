@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.AllAppsList;
+import com.android.launcher3.model.BaseModelUpdateTask;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.ModelTaskScheduler;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.AppSearchIndex;
+import com.android.launcher3.search.SearchAlgorithm.SearchSession;
+import com.android.launcher3.search.SearchCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Search session over all apps, where each query refines the matches of the previous queries.
+ *
+ * The matches of every query typed so far are kept as a chain where each query extends the
+ * previous one. When the query grows, the matches of the longest cached prefix are refined
+ * instead of searching all apps, and when it shrinks, the cached matches are reused directly.
+ * The chain is dropped when the app titles change.
+ *
+ * Only the latest query is run: queries which did not start yet are removed from the model
+ * task queue, and the results of queries replaced while running are never delivered.
+ */
+public class AppSearchSession implements SearchSession<AdapterItem> {
+
+    private final LauncherAppState mAppState;
+    private final Handler mResultHandler;
+    private final int mMaxResults;
+    private final Function<String, AdapterItem> mEmptyResultFactory;
+
+    // Guarded by this
+    private int mGeneration;
+    private SearchTask mPendingTask;
+
+    // Only accessed on the model thread
+    private final ArrayList<CachedQuery> mCachedQueries = new ArrayList<>();
+    private int mIndexVersion;
+
+    /**
+     * @param emptyResultFactory if not null, creates the item to return when nothing matches
+     */
+    public AppSearchSession(LauncherAppState appState, Handler resultHandler, int maxResults,
+            Function<String, AdapterItem> emptyResultFactory) {
+        mAppState = appState;
+        mResultHandler = resultHandler;
+        mMaxResults = maxResults;
+        mEmptyResultFactory = emptyResultFactory;
+    }
+
+    @Override
+    public void doSearch(String query, SearchCallback<AdapterItem> callback) {
+        SearchTask task;
+        synchronized (this) {
+            cancelPendingTaskLocked();
+            task = new SearchTask(query, callback, ++mGeneration);
+            mPendingTask = task;
+        }
+        mAppState.getModel().enqueueModelUpdateTask(task);
+    }
+
+    @Override
+    public void reset() {
+        synchronized (this) {
+            cancelPendingTaskLocked();
+            mGeneration++;
+        }
+        // Through the scheduler, so that it runs before the next queries, which are scheduled
+        // ahead of the tasks posted to the model thread
+        mAppState.getModel().getTaskScheduler().schedule(mCachedQueries::clear,
+                ModelTaskScheduler.PRIORITY_INTERACTIVE, null);
+    }
+
+    private void cancelPendingTaskLocked() {
+        if (mPendingTask != null) {
+            mAppState.getModel().getTaskScheduler().cancel(mPendingTask);
+            mPendingTask = null;
+        }
+    }
+
+    private synchronized boolean isLatest(int generation) {
+        return generation == mGeneration;
+    }
+
+    @WorkerThread
+    private List<AppInfo> getMatches(AllAppsList apps, String query) {
+        AppSearchIndex index = apps.getSearchIndex();
+        int version = index.sync(apps.data);
+        if (version != mIndexVersion) {
+            mIndexVersion = version;
+            mCachedQueries.clear();
+        }
+
+        // Drop the cached queries which are not a prefix of this query
+        for (int i = mCachedQueries.size() - 1; i >= 0; i--) {
+            if (AppSearchIndex.canRefine(mCachedQueries.get(i).query, query)) {
+                break;
+            }
+            mCachedQueries.remove(i);
+        }
+
+        List<AppInfo> matches;
+        if (mCachedQueries.isEmpty()) {
+            matches = index.search(apps.data, query, Integer.MAX_VALUE);
+        } else {
+            CachedQuery previous = mCachedQueries.get(mCachedQueries.size() - 1);
+            if (previous.query.equals(query)) {
+                return previous.matches;
+            }
+            matches = index.refine(previous.matches, query);
+        }
+        mCachedQueries.add(new CachedQuery(query, matches));
+        return matches;
+    }
+
+    private static class CachedQuery {
+        final String query;
+        final List<AppInfo> matches;
+
+        CachedQuery(String query, List<AppInfo> matches) {
+            this.query = query;
+            this.matches = matches;
+        }
+    }
+
+    private class SearchTask extends BaseModelUpdateTask {
+
+        private final String mQuery;
+        private final SearchCallback<AdapterItem> mCallback;
+        private final int mTaskGeneration;
+
+        SearchTask(String query, SearchCallback<AdapterItem> callback, int generation) {
+            mQuery = query;
+            mCallback = callback;
+            mTaskGeneration = generation;
+        }
+
+        @Override
+        public int getPriority() {
+            return ModelTaskScheduler.PRIORITY_INTERACTIVE;
+        }
+
+        @Override
+        public void execute(@NonNull LauncherAppState app, @NonNull BgDataModel dataModel,
+                @NonNull AllAppsList apps) {
+            synchronized (AppSearchSession.this) {
+                if (mPendingTask == this) {
+                    mPendingTask = null;
+                }
+            }
+            if (!isLatest(mTaskGeneration)) {
+                return;
+            }
+
+            List<AppInfo> matches = getMatches(apps, mQuery.toLowerCase());
+            ArrayList<AdapterItem> result = new ArrayList<>();
+            for (int i = 0, count = Math.min(matches.size(), mMaxResults); i < count; i++) {
+                result.add(AdapterItem.asApp(matches.get(i)));
+            }
+            if (mEmptyResultFactory != null && result.isEmpty()) {
+                result.add(mEmptyResultFactory.apply(mQuery));
+            }
+            mResultHandler.post(() -> {
+                if (isLatest(mTaskGeneration)) {
+                    mCallback.onSearchResult(mQuery, result);
+                }
+            });
+        }
+    }
+}
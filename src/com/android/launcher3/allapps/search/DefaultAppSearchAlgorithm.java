@@ -23,14 +23,18 @@ import android.os.Handler;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.BaseModelUpdateTask;
 import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.ModelTaskScheduler;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.search.SearchAlgorithm;
+import com.android.launcher3.search.SearchAlgorithm.SearchSession;
 import com.android.launcher3.search.SearchCallback;
 import com.android.launcher3.search.StringMatcherUtility;
 
@@ -65,18 +69,35 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         }
     }
 
+    @Override
+    public SearchSession<AdapterItem> startSession() {
+        if (!FeatureFlags.ENABLE_APP_SEARCH_INDEX.get()) {
+            return SearchAlgorithm.super.startSession();
+        }
+        return new AppSearchSession(mAppState, mResultHandler, MAX_RESULTS_COUNT,
+                mAddNoResultsMessage
+                        ? DefaultAppSearchAlgorithm::getEmptyMessageAdapterItem : null);
+    }
+
     @Override
     public void doSearch(String query, SearchCallback<AdapterItem> callback) {
         mAppState.getModel().enqueueModelUpdateTask(new BaseModelUpdateTask() {
             @Override
             public void execute(@NonNull final LauncherAppState app,
                     @NonNull final BgDataModel dataModel, @NonNull final AllAppsList apps) {
-                ArrayList<AdapterItem> result = getTitleMatchResult(apps.data, query);
+                ArrayList<AdapterItem> result = FeatureFlags.ENABLE_APP_SEARCH_INDEX.get()
+                        ? getIndexedTitleMatchResult(apps, query)
+                        : getTitleMatchResult(apps.data, query);
                 if (mAddNoResultsMessage && result.isEmpty()) {
                     result.add(getEmptyMessageAdapterItem(query));
                 }
                 mResultHandler.post(() -> callback.onSearchResult(query, result));
             }
+
+            @Override
+            public int getPriority() {
+                return ModelTaskScheduler.PRIORITY_INTERACTIVE;
+            }
         });
     }
 
@@ -89,6 +110,19 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         return item;
     }
 
+    /**
+     * Same as {@link #getTitleMatchResult}, using the search index of {@param apps}
+     */
+    @WorkerThread
+    public static ArrayList<AdapterItem> getIndexedTitleMatchResult(
+            AllAppsList apps, String query) {
+        final ArrayList<AdapterItem> result = new ArrayList<>();
+        for (AppInfo info : apps.getSearchIndex().search(apps.data, query, MAX_RESULTS_COUNT)) {
+            result.add(AdapterItem.asApp(info));
+        }
+        return result;
+    }
+
     /**
      * Filters {@link AppInfo}s matching specified query
      */
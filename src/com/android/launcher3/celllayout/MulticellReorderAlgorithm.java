@@ -116,9 +116,9 @@ public class MulticellReorderAlgorithm extends ReorderAlgorithm {
             for (int y = 0; y < mCellLayout.getCountY(); y++) {
                 int offset = x >= mCellLayout.getCountX() / 2 ? 1 : 0;
                 if (x == mCellLayout.getCountX() / 2) {
-                    grid.cells[x][y] = true;
+                    grid.markCells(x, y, 1, 1, true);
                 } else {
-                    grid.cells[x][y] = gridOccupancy.cells[x - offset][y];
+                    grid.markCells(x, y, 1, 1, gridOccupancy.isOccupied(x - offset, y));
                 }
             }
         }
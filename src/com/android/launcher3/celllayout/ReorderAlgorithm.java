@@ -24,11 +24,27 @@ import com.android.launcher3.CellLayout;
  *
  * The content of this class was extracted from {@link CellLayout} and should mimic the exact
  * same behaviour.
+ *
+ * The configurations returned by {@link #dropInPlaceSolution}, {@link #closestEmptySpaceReorder}
+ * and {@link #calculateReorder} are reused by the next calls, so that a drag doesn't allocate
+ * new configurations on every move.
  */
 public class ReorderAlgorithm {
 
     CellLayout mCellLayout;
 
+    private final CellLayout.ItemConfiguration mDropInPlaceSolution =
+            new CellLayout.ItemConfiguration();
+    private final CellLayout.ItemConfiguration mSwapSolution = new CellLayout.ItemConfiguration();
+    private final CellLayout.ItemConfiguration mClosestSpaceSolution =
+            new CellLayout.ItemConfiguration();
+    private final CellLayout.ItemConfiguration mFullGridSolution =
+            new CellLayout.ItemConfiguration();
+
+    private final int[] mResult = new int[2];
+    private final int[] mNearestResult = new int[2];
+    private final int[] mResultSpan = new int[2];
+
     public ReorderAlgorithm(CellLayout cellLayout) {
         mCellLayout = cellLayout;
     }
@@ -67,14 +83,14 @@ public class ReorderAlgorithm {
 
         // We find the nearest cell into which we would place the dragged item, assuming there's
         // nothing in its way.
-        int[] result = new int[2];
-        result = mCellLayout.findNearestAreaIgnoreOccupied(pixelX, pixelY, spanX, spanY, result);
+        int[] result = mCellLayout.findNearestAreaIgnoreOccupied(pixelX, pixelY, spanX, spanY,
+                mResult);
 
         boolean success;
         // First we try the exact nearest position of the item being dragged,
         // we will then want to try to move this around to other neighbouring positions
         if (!mCellLayout.intersectingViewsExists(result[0], result[1], spanX, spanY, direction, dragView, solution)) {
-            int[] nearestResult = new int[2];
+            int[] nearestResult = mNearestResult;
             mCellLayout.markCellsAsOccupiedForView(dragView);
             mCellLayout.findCellForSpan(nearestResult, spanX, spanY);
             if (nearestResult[1] <= result[1]) {
@@ -127,16 +143,16 @@ public class ReorderAlgorithm {
      * @param spanX    horizontal cell span
      * @param spanY    vertical cell span
      * @param dragView view being dragged in reorder
-     * @return the configuration that represents the found reorder
+     * @return the configuration that represents the found reorder, reused by the next call
      */
     public CellLayout.ItemConfiguration dropInPlaceSolution(int pixelX, int pixelY, int spanX,
             int spanY, View dragView) {
-        int[] result = new int[2];
+        int[] result = mResult;
         if (mCellLayout.isNearestDropLocationOccupied(pixelX, pixelY, spanX, spanY, dragView,
                 result)) {
             result[0] = result[1] = -1;
         }
-        CellLayout.ItemConfiguration solution = new CellLayout.ItemConfiguration();
+        CellLayout.ItemConfiguration solution = mDropInPlaceSolution;
         mCellLayout.copyCurrentStateToSolution(solution, false);
         solution.isSolution = result[0] != -1;
         if (!solution.isSolution) {
@@ -157,13 +173,14 @@ public class ReorderAlgorithm {
      * @param pixelY Y coordinate in pixels in the screen
      * @param spanX  horizontal cell span
      * @param spanY  vertical cell span
-     * @return the configuration that represents the found reorder
+     * @return the configuration that represents the found reorder, reused by the next call
      */
     public CellLayout.ItemConfiguration closestEmptySpaceReorder(int pixelX, int pixelY,
             int minSpanX, int minSpanY, int spanX, int spanY) {
-        CellLayout.ItemConfiguration solution = new CellLayout.ItemConfiguration();
-        int[] result = new int[2];
-        int[] resultSpan = new int[2];
+        CellLayout.ItemConfiguration solution = mClosestSpaceSolution;
+        solution.reset();
+        int[] result = mResult;
+        int[] resultSpan = mResultSpan;
         mCellLayout.findNearestVacantArea(pixelX, pixelY, minSpanX, minSpanY, spanX, spanY, result,
                 resultSpan);
         if (result[0] >= 0 && result[1] >= 0) {
@@ -192,18 +209,19 @@ public class ReorderAlgorithm {
      * @param spanY    occupied vertical span
      * @param dragView the view of the item being draged
      * @return returns a solution for the given parameters, the solution contains all the icons and
-     * the locations they should be in the given solution.
+     * the locations they should be in the given solution. It is reused by the next call.
      */
     public CellLayout.ItemConfiguration calculateReorder(int pixelX, int pixelY, int minSpanX,
             int minSpanY, int spanX, int spanY, View dragView) {
         mCellLayout.getDirectionVectorForDrop(pixelX, pixelY, spanX, spanY, dragView,
                 mCellLayout.mDirectionVector);
 
-        int[] vacantCell = new int[2];
+        int[] vacantCell = mResult;
         boolean isVacantCellAvailable = mCellLayout.findCellForSpan(vacantCell, minSpanX, minSpanY);
         if (!mCellLayout.isWidget() && !isVacantCellAvailable &&
                 !mCellLayout.isOccupied(vacantCell[0], vacantCell[1])) {
-            CellLayout.ItemConfiguration solution = new CellLayout.ItemConfiguration();
+            CellLayout.ItemConfiguration solution = mFullGridSolution;
+            solution.reset();
             solution.cellX = solution.cellY = solution.spanX = solution.spanY = -1;
             solution.isSolution =  true;
             return solution;
@@ -221,7 +239,7 @@ public class ReorderAlgorithm {
         // Find a solution involving pushing / displacing any items in the way
         CellLayout.ItemConfiguration swapSolution = findReorderSolution(pixelX, pixelY, minSpanX,
                 minSpanY, spanX, spanY, mCellLayout.mDirectionVector, dragView, true,
-                new CellLayout.ItemConfiguration());
+                mSwapSolution);
 
         // We attempt the approach which doesn't shuffle views at all
         CellLayout.ItemConfiguration closestSpaceSolution = closestEmptySpaceReorder(
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.CellLayout;
+import com.android.launcher3.CellLayout.ItemConfiguration;
+import com.android.launcher3.ShortcutAndWidgetContainer;
+import com.android.launcher3.util.GridOccupancy;
+
+/**
+ * Remembers the last reorder solution of a {@link CellLayout}, so that the drag over events
+ * which target the same cell don't search for a reorder again.
+ *
+ * The solution is kept for a key, spans and dragged view, and as long as the children of the
+ * layout, their cells and the occupied cells don't change. The key holds the cells which the
+ * search derives from the drag position, so that moves which lead to the same cells share the
+ * solution. The reorder always pushes the items in the same direction, so the direction is not
+ * part of the key. The solution is copied, as the reorder algorithm reuses its configurations.
+ * Checking the layout doesn't allocate, once the snapshot arrays are large enough.
+ */
+public class ReorderSolutionCache {
+
+    // Values stored per child: cellX, cellY, spanX, spanY, canReorder
+    private static final int CHILD_STRIDE = 5;
+
+    private boolean mValid;
+    private int[] mKey = new int[0];
+    private int mKeySize;
+    private int mMinSpanX, mMinSpanY, mSpanX, mSpanY;
+    @Nullable private View mDragView;
+    private final ItemConfiguration mSolution = new ItemConfiguration();
+    private boolean mHasSolution;
+
+    private int mChildCount;
+    private View[] mChildren = new View[0];
+    private int[] mChildCells = new int[0];
+    @Nullable private GridOccupancy mOccupied;
+    private int mOccupiedCountX;
+    private int mOccupiedCountY;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * Returns true if a solution was stored for the first {@param keySize} values of {@param key},
+     * the given spans and the current state of {@param layout}, in which case it can be read with
+     * {@link #getSolution()}.
+     */
+    public boolean matches(CellLayout layout, int[] key, int keySize, int minSpanX, int minSpanY,
+            int spanX, int spanY, @Nullable View dragView) {
+        boolean matches = mValid && keyMatches(key, keySize)
+                && mMinSpanX == minSpanX && mMinSpanY == minSpanY
+                && mSpanX == spanX && mSpanY == spanY && mDragView == dragView
+                && layoutMatches(layout);
+        if (matches) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the copy of the stored solution, which can be null if there was no possible
+     * reorder. The copy is changed by the next {@link #put}.
+     */
+    @Nullable
+    public ItemConfiguration getSolution() {
+        return mHasSolution ? mSolution : null;
+    }
+
+    /**
+     * Stores a copy of {@param solution} for the first {@param keySize} values of {@param key},
+     * the given spans and the current state of {@param layout}.
+     */
+    public void put(CellLayout layout, int[] key, int keySize, int minSpanX, int minSpanY,
+            int spanX, int spanY, @Nullable View dragView, @Nullable ItemConfiguration solution) {
+        if (mKey.length < keySize) {
+            mKey = new int[keySize];
+        }
+        System.arraycopy(key, 0, mKey, 0, keySize);
+        mKeySize = keySize;
+        mMinSpanX = minSpanX;
+        mMinSpanY = minSpanY;
+        mSpanX = spanX;
+        mSpanY = spanY;
+        mDragView = dragView;
+        mHasSolution = solution != null;
+        if (solution != null) {
+            mSolution.set(solution);
+        } else {
+            mSolution.clear();
+        }
+        saveLayout(layout);
+        mValid = true;
+    }
+
+    /**
+     * Drops the stored solution, and the views it refers to.
+     */
+    public void invalidate() {
+        if (!mValid) {
+            return;
+        }
+        mValid = false;
+        mDragView = null;
+        mHasSolution = false;
+        mSolution.clear();
+        for (int i = 0; i < mChildCount; i++) {
+            mChildren[i] = null;
+        }
+        mChildCount = 0;
+    }
+
+    @VisibleForTesting
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    @VisibleForTesting
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    private boolean keyMatches(int[] key, int keySize) {
+        if (keySize != mKeySize) {
+            return false;
+        }
+        for (int i = 0; i < keySize; i++) {
+            if (key[i] != mKey[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean layoutMatches(CellLayout layout) {
+        ShortcutAndWidgetContainer container = layout.getShortcutsAndWidgets();
+        int childCount = container.getChildCount();
+        if (childCount != mChildCount || mOccupied == null
+                || !mOccupied.contentEquals(layout.getOccupied())) {
+            return false;
+        }
+        for (int i = 0; i < childCount; i++) {
+            View child = container.getChildAt(i);
+            CellLayoutLayoutParams lp = (CellLayoutLayoutParams) child.getLayoutParams();
+            int offset = i * CHILD_STRIDE;
+            if (mChildren[i] != child
+                    || mChildCells[offset] != lp.getCellX()
+                    || mChildCells[offset + 1] != lp.getCellY()
+                    || mChildCells[offset + 2] != lp.cellHSpan
+                    || mChildCells[offset + 3] != lp.cellVSpan
+                    || mChildCells[offset + 4] != (lp.canReorder ? 1 : 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void saveLayout(CellLayout layout) {
+        ShortcutAndWidgetContainer container = layout.getShortcutsAndWidgets();
+        int childCount = container.getChildCount();
+        if (mChildren.length < childCount) {
+            mChildren = new View[childCount];
+            mChildCells = new int[childCount * CHILD_STRIDE];
+        }
+        for (int i = 0; i < childCount; i++) {
+            View child = container.getChildAt(i);
+            CellLayoutLayoutParams lp = (CellLayoutLayoutParams) child.getLayoutParams();
+            int offset = i * CHILD_STRIDE;
+            mChildren[i] = child;
+            mChildCells[offset] = lp.getCellX();
+            mChildCells[offset + 1] = lp.getCellY();
+            mChildCells[offset + 2] = lp.cellHSpan;
+            mChildCells[offset + 3] = lp.cellVSpan;
+            mChildCells[offset + 4] = lp.canReorder ? 1 : 0;
+        }
+        for (int i = childCount; i < mChildCount; i++) {
+            mChildren[i] = null;
+        }
+        mChildCount = childCount;
+
+        GridOccupancy occupied = layout.getOccupied();
+        if (mOccupied == null || layout.getCountX() != mOccupiedCountX
+                || layout.getCountY() != mOccupiedCountY) {
+            mOccupiedCountX = layout.getCountX();
+            mOccupiedCountY = layout.getCountY();
+            mOccupied = new GridOccupancy(mOccupiedCountX, mOccupiedCountY);
+        }
+        occupied.copyTo(mOccupied);
+    }
+}
@@ -398,6 +398,14 @@ public final class FeatureFlags {
                     + "visible to the user before the rest rather than loading all of them at once."
     );
 
+    public static final BooleanFlag ENABLE_PARALLEL_LOADER_QUERIES = getDebugFlag(270397291,
+            "ENABLE_PARALLEL_LOADER_QUERIES", true, "Query apps, deep shortcuts and widget "
+                    + "providers on a worker pool while the workspace is being loaded.");
+
+    public static final BooleanFlag ENABLE_APP_SEARCH_INDEX = getDebugFlag(270397305,
+            "ENABLE_APP_SEARCH_INDEX", true, "Answer all apps search queries from an "
+                    + "incrementally maintained index instead of matching every app title.");
+
     public static final BooleanFlag ENABLE_GRID_ONLY_OVERVIEW = getDebugFlag(270397206,
             "ENABLE_GRID_ONLY_OVERVIEW", false,
             "Enable a grid-only overview without a focused task.");
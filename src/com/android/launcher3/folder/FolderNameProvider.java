@@ -33,6 +33,7 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.model.AllAppsList;
 import com.android.launcher3.model.BaseModelUpdateTask;
 import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.ModelTaskScheduler;
 import com.android.launcher3.model.StringCache;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.FolderInfo;
@@ -198,6 +199,12 @@ public class FolderNameProvider implements ResourceBasedOverride {
             mFolderInfos = dataModel.folders.clone();
             mAppInfos = Arrays.asList(apps.copyData());
         }
+
+        @Override
+        public int getPriority() {
+            // The suggestions are shown while the folder is being created
+            return ModelTaskScheduler.PRIORITY_INTERACTIVE;
+        }
     }
 
 }
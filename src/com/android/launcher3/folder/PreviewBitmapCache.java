@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.folder;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.graphics.IconShape;
+
+import java.util.function.Consumer;
+
+/**
+ * Composite bitmap of the resting preview items of a {@link FolderIcon}, so that a redraw of the
+ * icon draws a single bitmap instead of every preview item.
+ *
+ * Like {@link com.android.launcher3.dragndrop.FolderAdaptiveIcon}, the draw commands are recorded
+ * on the UI thread, and only rendered to a bitmap in the background. Until the bitmap is ready,
+ * the items are drawn directly. The bitmap is dropped when the items, their drawables, the icon
+ * size or the icon shape change.
+ */
+class PreviewBitmapCache {
+
+    private static final String TAG = "PreviewBitmapCache";
+
+    @Nullable private Bitmap mBitmap;
+    // Incremented on each change of the preview, to drop the renders started before
+    private int mGeneration;
+    private boolean mRenderPending;
+    private int mFailedGeneration = -1;
+
+    private int mWidth;
+    private int mHeight;
+    @Nullable private IconShape mShape;
+
+    /**
+     * Drops the bitmap, after a change of the preview items.
+     */
+    @UiThread
+    void invalidate() {
+        mGeneration++;
+        mBitmap = null;
+    }
+
+    /**
+     * Draws the cached preview of an icon of the given size on {@param canvas}.
+     *
+     * @return false if there is no bitmap of the current preview yet, in which case the caller
+     *         should draw the items itself. A bitmap is then rendered from {@param drawItems}, for
+     *         the next draws.
+     */
+    @UiThread
+    boolean draw(Canvas canvas, int width, int height, Consumer<Canvas> drawItems) {
+        if (width <= 0 || height <= 0 || !canvas.isHardwareAccelerated()) {
+            // Hardware bitmaps can't be drawn in software
+            return false;
+        }
+        IconShape shape = IconShape.getShape();
+        if (width != mWidth || height != mHeight || shape != mShape) {
+            mWidth = width;
+            mHeight = height;
+            mShape = shape;
+            invalidate();
+        }
+        if (mBitmap != null) {
+            canvas.drawBitmap(mBitmap, 0, 0, null);
+            return true;
+        }
+        if (!mRenderPending && mFailedGeneration != mGeneration) {
+            render(width, height, drawItems);
+        }
+        return false;
+    }
+
+    private void render(int width, int height, Consumer<Canvas> drawItems) {
+        Picture picture = new Picture();
+        drawItems.accept(picture.beginRecording(width, height));
+        picture.endRecording();
+
+        int generation = mGeneration;
+        mRenderPending = true;
+        UI_HELPER_EXECUTOR.execute(() -> {
+            Bitmap bitmap = null;
+            try {
+                bitmap = Bitmap.createBitmap(picture, width, height, Bitmap.Config.HARDWARE);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Unable to render folder preview", e);
+            }
+            Bitmap result = bitmap;
+            MAIN_EXECUTOR.execute(() -> {
+                mRenderPending = false;
+                if (result == null) {
+                    mFailedGeneration = generation;
+                } else if (generation == mGeneration) {
+                    // No need to redraw, the icon already shows the same preview
+                    mBitmap = result;
+                }
+            });
+        });
+    }
+}
@@ -31,7 +31,9 @@ import android.graphics.Canvas;
 import android.graphics.Path;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.util.FloatProperty;
 import android.util.Log;
 import android.view.View;
@@ -47,6 +49,7 @@ import com.android.launcher3.views.ActivityContext;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
@@ -93,6 +96,17 @@ public class PreviewItemManager {
     private float mCurrentPageItemsTransX = 0;
     private boolean mShouldSlideInFirstPage;
 
+    // Bitmap of the resting preview items, drawn instead of the items when nothing animates
+    private final PreviewBitmapCache mBitmapCache = new PreviewBitmapCache();
+    private final Consumer<Canvas> mDrawItems = this::drawItems;
+    private final PointF mTmpOffset = new PointF();
+
+    // A preview drawable which invalidated itself within this delay is considered animating
+    private static final long DRAWABLE_SETTLE_DELAY_MS = 200;
+    private long mLastDrawableInvalidationMs = -DRAWABLE_SETTLE_DELAY_MS;
+    private boolean mSettleCheckPending;
+    private final Runnable mCheckDrawablesSettled = this::checkDrawablesSettled;
+
     public static final int INITIAL_ITEM_ANIMATION_DURATION = 350;
     private static final int FINAL_ITEM_ANIMATION_DURATION = 200;
 
@@ -149,6 +163,7 @@ public class PreviewItemManager {
                     Utilities.isRtl(mIcon.getResources()));
 
             updatePreviewItems(false);
+            mBitmapCache.invalidate();
         }
     }
 
@@ -189,27 +204,78 @@ public class PreviewItemManager {
      * Draws the preview items on {@param canvas}.
      */
     public void draw(Canvas canvas) {
+        if (isAnimating()
+                || !mBitmapCache.draw(canvas, mIcon.getWidth(), mIcon.getHeight(), mDrawItems)) {
+            drawItems(canvas);
+        }
+    }
+
+    /**
+     * Returns true if the items are moving, in which case they are drawn one by one.
+     */
+    private boolean isAnimating() {
+        if (mIcon.mAnimating || !mCurrentPageParams.isEmpty() || mSettleCheckPending) {
+            return true;
+        }
+        for (int i = 0; i < mFirstPageParams.size(); i++) {
+            PreviewItemDrawingParams p = mFirstPageParams.get(i);
+            if (p.anim != null || p.drawable instanceof PreloadIconDrawable
+                    || (p.drawable instanceof Animatable
+                            && ((Animatable) p.drawable).isRunning())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drawItems(Canvas canvas) {
         int saveCount = canvas.getSaveCount();
         // The items are drawn in coordinates relative to the preview offset
         PreviewBackground bg = mIcon.getFolderBackground();
         Path clipPath = bg.getClipPath();
         float firstPageItemsTransX = 0;
         if (mShouldSlideInFirstPage) {
-            PointF firstPageOffset = new PointF(bg.basePreviewOffsetX + mCurrentPageItemsTransX,
+            mTmpOffset.set(bg.basePreviewOffsetX + mCurrentPageItemsTransX,
                     bg.basePreviewOffsetY);
             boolean shouldClip = mCurrentPageItemsTransX > mClipThreshold;
-            drawParams(canvas, mCurrentPageParams, firstPageOffset, shouldClip, clipPath);
+            drawParams(canvas, mCurrentPageParams, mTmpOffset, shouldClip, clipPath);
             firstPageItemsTransX = -ITEM_SLIDE_IN_OUT_DISTANCE_PX + mCurrentPageItemsTransX;
         }
 
-        PointF firstPageOffset = new PointF(bg.basePreviewOffsetX + firstPageItemsTransX,
-                bg.basePreviewOffsetY);
+        mTmpOffset.set(bg.basePreviewOffsetX + firstPageItemsTransX, bg.basePreviewOffsetY);
         boolean shouldClipFirstPage = firstPageItemsTransX < -mClipThreshold;
-        drawParams(canvas, mFirstPageParams, firstPageOffset, shouldClipFirstPage, clipPath);
+        drawParams(canvas, mFirstPageParams, mTmpOffset, shouldClipFirstPage, clipPath);
         canvas.restoreToCount(saveCount);
     }
 
     public void onParamsChanged() {
+        mBitmapCache.invalidate();
+        mIcon.invalidate();
+    }
+
+    /**
+     * Called when a preview drawable invalidates itself. The items are drawn live until the
+     * drawables stop changing, and the bitmap is rendered again after that, instead of on every
+     * frame of an animating drawable.
+     */
+    void onPreviewDrawableInvalidated() {
+        mBitmapCache.invalidate();
+        mLastDrawableInvalidationMs = SystemClock.uptimeMillis();
+        if (!mSettleCheckPending) {
+            mSettleCheckPending = true;
+            mIcon.postDelayed(mCheckDrawablesSettled, DRAWABLE_SETTLE_DELAY_MS);
+        }
+    }
+
+    private void checkDrawablesSettled() {
+        long remainingMs = mLastDrawableInvalidationMs + DRAWABLE_SETTLE_DELAY_MS
+                - SystemClock.uptimeMillis();
+        if (remainingMs > 0) {
+            mIcon.postDelayed(mCheckDrawablesSettled, remainingMs);
+            return;
+        }
+        mSettleCheckPending = false;
+        // Draw again, to render the bitmap of the settled preview
         mIcon.invalidate();
     }
 
@@ -251,10 +317,12 @@ public class PreviewItemManager {
                 mFirstPageParams.get(index) : null;
         if (params != null) {
             params.hidden = hidden;
+            mBitmapCache.invalidate();
         }
     }
 
     void buildParamsForPage(int page, ArrayList<PreviewItemDrawingParams> params, boolean animate) {
+        mBitmapCache.invalidate();
         List<WorkspaceItemInfo> items = mIcon.getPreviewItemsOnPage(page);
 
         // We adjust the size of the list to match the number of items in the preview.
@@ -341,6 +409,7 @@ public class PreviewItemManager {
             }
         }
         if (modified) {
+            mBitmapCache.invalidate();
             mIcon.invalidate();
         }
     }
@@ -373,6 +442,7 @@ public class PreviewItemManager {
         int numItems = newItems.size();
         final ArrayList<PreviewItemDrawingParams> params = mFirstPageParams;
         buildParamsForPage(0, params, false);
+        mBitmapCache.invalidate();
 
         // New preview items for items that are moving in (except for the dropped item).
         List<WorkspaceItemInfo> moveIn = new ArrayList<>();
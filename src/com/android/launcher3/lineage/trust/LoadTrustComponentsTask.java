@@ -30,6 +30,7 @@ import com.android.launcher3.lineage.trust.db.TrustDatabaseHelper;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 public class LoadTrustComponentsTask extends AsyncTask<Void, Integer, List<TrustComponent>> {
     @NonNull
@@ -59,6 +60,8 @@ public class LoadTrustComponentsTask extends AsyncTask<Void, Integer, List<Trust
         List<ResolveInfo> apps = mPackageManager.queryIntentActivities(filter,
                 PackageManager.GET_META_DATA);
 
+        Set<String> hiddenPackages = mDbHelper.getHiddenPackages();
+        Set<String> protectedPackages = mDbHelper.getProtectedPackages();
         int numPackages = apps.size();
         for (int i = 0; i < numPackages; i++) {
             ResolveInfo app = apps.get(i);
@@ -68,8 +71,8 @@ public class LoadTrustComponentsTask extends AsyncTask<Void, Integer, List<Trust
                         mPackageManager.getApplicationInfo(pkgName,
                                 PackageManager.GET_META_DATA)).toString();
                 Drawable icon = app.loadIcon(mPackageManager);
-                boolean isHidden = mDbHelper.isPackageHidden(pkgName);
-                boolean isProtected = mDbHelper.isPackageProtected(pkgName);
+                boolean isHidden = hiddenPackages.contains(pkgName);
+                boolean isProtected = protectedPackages.contains(pkgName);
 
                 list.add(new TrustComponent(pkgName, icon, label, isHidden, isProtected));
 
@@ -23,6 +23,11 @@ import android.database.sqlite.SQLiteOpenHelper;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 public class TrustDatabaseHelper extends SQLiteOpenHelper {
     private static final int DATABASE_VERSION = 1;
@@ -37,8 +42,19 @@ public class TrustDatabaseHelper extends SQLiteOpenHelper {
     @Nullable
     private static TrustDatabaseHelper sSingleton;
 
+    // Hidden and protected packages, read from the database on first use. Each change replaces
+    // the snapshot, so that it can be read from any thread without a query or a lock. It stays
+    // null until the database is read successfully.
+    @Nullable
+    private volatile Snapshot mSnapshot;
+
     private TrustDatabaseHelper(@NonNull Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    @VisibleForTesting
+    TrustDatabaseHelper(@NonNull Context context, @Nullable String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
     }
 
     public static synchronized TrustDatabaseHelper getInstance(@NonNull Context context) {
@@ -65,13 +81,14 @@ public class TrustDatabaseHelper extends SQLiteOpenHelper {
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
     }
 
-    public void addHiddenApp(@NonNull String packageName) {
+    public synchronized void addHiddenApp(@NonNull String packageName) {
         if (isPackageHidden(packageName)) {
             return;
         }
 
         SQLiteDatabase db = getWritableDatabase();
         db.beginTransaction();
+        boolean success = false;
 
         try {
             ContentValues values = new ContentValues();
@@ -79,26 +96,31 @@ public class TrustDatabaseHelper extends SQLiteOpenHelper {
             values.put(KEY_HIDDEN, 1);
 
             int rows = db.update(TABLE_NAME, values, KEY_PKGNAME + " = ?",
-                    new String[]{KEY_PKGNAME});
-            if (rows != 1) {
+                    new String[]{packageName});
+            if (rows == 0) {
                 // Entry doesn't exist, create a new one
                 db.insertOrThrow(TABLE_NAME, null, values);
             }
             db.setTransactionSuccessful();
+            success = true;
         } catch (Exception e) {
             // Ignored
         } finally {
             db.endTransaction();
         }
+        if (success && mSnapshot != null) {
+            mSnapshot = mSnapshot.withHidden(packageName, true);
+        }
     }
 
-    public void addProtectedApp(@NonNull String packageName) {
+    public synchronized void addProtectedApp(@NonNull String packageName) {
         if (isPackageProtected(packageName)) {
             return;
         }
 
         SQLiteDatabase db = getWritableDatabase();
         db.beginTransaction();
+        boolean success = false;
 
         try {
             ContentValues values = new ContentValues();
@@ -106,27 +128,32 @@ public class TrustDatabaseHelper extends SQLiteOpenHelper {
             values.put(KEY_PROTECTED, 1);
 
             int rows = db.update(TABLE_NAME, values, KEY_PKGNAME + " = ?",
-                    new String[]{KEY_PKGNAME});
-            if (rows != 1) {
+                    new String[]{packageName});
+            if (rows == 0) {
                 // Entry doesn't exist, create a new one
                 db.insertOrThrow(TABLE_NAME, null, values);
             }
             db.setTransactionSuccessful();
+            success = true;
         } catch (Exception e) {
             // Ignored
         } finally {
             db.endTransaction();
         }
+        if (success && mSnapshot != null) {
+            mSnapshot = mSnapshot.withProtected(packageName, true);
+        }
     }
 
 
-    public void removeHiddenApp(@NonNull String packageName) {
+    public synchronized void removeHiddenApp(@NonNull String packageName) {
         if (!isPackageHidden(packageName)) {
             return;
         }
 
         SQLiteDatabase db = getWritableDatabase();
         db.beginTransaction();
+        boolean success = false;
 
         try {
             ContentValues values = new ContentValues();
@@ -134,20 +161,25 @@ public class TrustDatabaseHelper extends SQLiteOpenHelper {
 
             db.update(TABLE_NAME, values, KEY_PKGNAME + " = ?", new String[]{packageName});
             db.setTransactionSuccessful();
+            success = true;
         } catch (Exception e) {
             // Ignored
         } finally {
             db.endTransaction();
         }
+        if (success && mSnapshot != null) {
+            mSnapshot = mSnapshot.withHidden(packageName, false);
+        }
     }
 
-    public void removeProtectedApp(@NonNull String packageName) {
+    public synchronized void removeProtectedApp(@NonNull String packageName) {
         if (!isPackageProtected(packageName)) {
             return;
         }
 
         SQLiteDatabase db = getWritableDatabase();
         db.beginTransaction();
+        boolean success = false;
 
         try {
             ContentValues values = new ContentValues();
@@ -155,48 +187,118 @@ public class TrustDatabaseHelper extends SQLiteOpenHelper {
 
             db.update(TABLE_NAME, values, KEY_PKGNAME + " = ?", new String[]{packageName});
             db.setTransactionSuccessful();
+            success = true;
         } catch (Exception e) {
             // Ignored
         } finally {
             db.endTransaction();
         }
+        if (success && mSnapshot != null) {
+            mSnapshot = mSnapshot.withProtected(packageName, false);
+        }
     }
 
     public boolean isPackageHidden(@NonNull String packageName) {
-        String query = String.format("SELECT * FROM %s WHERE %s = ? AND %s = ?", TABLE_NAME,
-                KEY_PKGNAME, KEY_HIDDEN);
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor cursor = db.rawQuery(query, new String[]{packageName, String.valueOf(1)});
-        boolean result = false;
-        try {
-            result = cursor.getCount() != 0;
-        } catch (Exception e) {
-            // Ignored
-        } finally {
-            if (cursor != null && !cursor.isClosed()) {
-                cursor.close();
+        return getSnapshot().hidden.contains(packageName);
+    }
+
+    public boolean isPackageProtected(@NonNull String packageName) {
+        return getSnapshot().protectedPackages.contains(packageName);
+    }
+
+    /**
+     * Returns the hidden packages. The set is not modified by later changes.
+     */
+    @NonNull
+    public Set<String> getHiddenPackages() {
+        return getSnapshot().hidden;
+    }
+
+    /**
+     * Returns the protected packages. The set is not modified by later changes.
+     */
+    @NonNull
+    public Set<String> getProtectedPackages() {
+        return getSnapshot().protectedPackages;
+    }
+
+    @NonNull
+    private Snapshot getSnapshot() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (mSnapshot == null) {
+                mSnapshot = loadSnapshot();
             }
+            // If the database can't be read, the load is tried again on the next call
+            return mSnapshot != null ? mSnapshot : Snapshot.EMPTY;
         }
-
-        return result;
     }
 
-    public boolean isPackageProtected(@NonNull String packageName) {
-        String query = String.format("SELECT * FROM %s WHERE %s = ? AND %s = ?", TABLE_NAME,
-                KEY_PKGNAME, KEY_PROTECTED);
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor cursor = db.rawQuery(query, new String[]{packageName, String.valueOf(1)});
-        boolean result = false;
+    /**
+     * Reads the hidden and protected packages, or returns null if the database can't be read.
+     */
+    @Nullable
+    private Snapshot loadSnapshot() {
+        Set<String> hidden = new HashSet<>();
+        Set<String> protectedPackages = new HashSet<>();
+        String query = "SELECT " + KEY_PKGNAME + ", " + KEY_HIDDEN + ", " + KEY_PROTECTED
+                + " FROM " + TABLE_NAME
+                + " WHERE " + KEY_HIDDEN + " = 1 OR " + KEY_PROTECTED + " = 1";
+        Cursor cursor = null;
         try {
-            result = cursor.getCount() != 0;
+            cursor = getReadableDatabase().rawQuery(query, null);
+            while (cursor.moveToNext()) {
+                String packageName = cursor.getString(0);
+                if (cursor.getInt(1) == 1) {
+                    hidden.add(packageName);
+                }
+                if (cursor.getInt(2) == 1) {
+                    protectedPackages.add(packageName);
+                }
+            }
         } catch (Exception e) {
-            // Ignored
+            return null;
         } finally {
             if (cursor != null && !cursor.isClosed()) {
                 cursor.close();
             }
         }
+        return new Snapshot(Collections.unmodifiableSet(hidden),
+                Collections.unmodifiableSet(protectedPackages));
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.emptySet(), Collections.emptySet());
+
+        @NonNull
+        final Set<String> hidden;
+        @NonNull
+        final Set<String> protectedPackages;
+
+        Snapshot(@NonNull Set<String> hidden, @NonNull Set<String> protectedPackages) {
+            this.hidden = hidden;
+            this.protectedPackages = protectedPackages;
+        }
+
+        Snapshot withHidden(@NonNull String packageName, boolean isHidden) {
+            return new Snapshot(with(hidden, packageName, isHidden), protectedPackages);
+        }
+
+        Snapshot withProtected(@NonNull String packageName, boolean isProtected) {
+            return new Snapshot(hidden, with(protectedPackages, packageName, isProtected));
+        }
 
-        return result;
+        private static Set<String> with(Set<String> packages, String packageName, boolean add) {
+            Set<String> result = new HashSet<>(packages);
+            if (add) {
+                result.add(packageName);
+            } else {
+                result.remove(packageName);
+            }
+            return Collections.unmodifiableSet(result);
+        }
     }
 }
@@ -1,27 +1,36 @@
 package com.android.launcher3.logging;
 
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 import static com.android.launcher3.util.Executors.createAndStartNewLooper;
 
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Message;
 import android.util.Log;
-import android.util.Pair;
 
 import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.util.IOUtils;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.text.DateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Wrapper around {@link Log} to allow writing to a file.
@@ -34,19 +43,29 @@ public final class FileLog {
 
     protected static final boolean ENABLED = true;
     private static final String FILE_NAME_PREFIX = "log-";
-    private static final DateFormat DATE_FORMAT =
-            DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
-
-    private static final long MAX_LOG_FILE_SIZE = 8 << 20;  // 4 mb
-
+    private static final String SEGMENT_SUFFIX = ".bin";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final String DECODED_DIR = "decoded";
+    private static final Pattern SEGMENT_PATTERN =
+            Pattern.compile("log-(\\d+)" + Pattern.quote(SEGMENT_SUFFIX) + "(\\.gz)?");
+    // Plain text files of the previous format, named after the day of the year
+    private static final Pattern LEGACY_PATTERN = Pattern.compile("log-\\d+");
+
+    private static final long MAX_LOG_FILE_SIZE = 8 << 20;  // 8 mb, for all the segments
+    private static final long MAX_SEGMENT_SIZE = 512 << 10;  // 512 kb, before compression
+
+    private static final Object LOCK = new Object();
     private static Handler sHandler = null;
     private static File sLogsDirectory = null;
+    // Number of segments being compressed, guarded by LOCK
+    private static int sPendingCompressions = 0;
 
+    /** Segments which were not written to for this many days are purged. */
     public static final int LOG_DAYS = 4;
 
     public static void setDir(File logsDir) {
         if (ENABLED) {
-            synchronized (DATE_FORMAT) {
+            synchronized (LOCK) {
                 // If the target directory changes, stop any active thread.
                 if (sHandler != null && !logsDir.equals(sLogsDirectory)) {
                     ((HandlerThread) sHandler.getLooper().getThread()).quit();
@@ -59,22 +78,22 @@ public final class FileLog {
 
     public static void d(String tag, String msg, Exception e) {
         Log.d(tag, msg, e);
-        print(tag, msg, e);
+        print(LogRecordCodec.LEVEL_DEBUG, tag, msg, e);
     }
 
     public static void d(String tag, String msg) {
         Log.d(tag, msg);
-        print(tag, msg);
+        print(LogRecordCodec.LEVEL_DEBUG, tag, msg, null);
     }
 
     public static void e(String tag, String msg, Exception e) {
         Log.e(tag, msg, e);
-        print(tag, msg, e);
+        print(LogRecordCodec.LEVEL_ERROR, tag, msg, e);
     }
 
     public static void e(String tag, String msg) {
         Log.e(tag, msg);
-        print(tag, msg);
+        print(LogRecordCodec.LEVEL_ERROR, tag, msg, null);
     }
 
     public static void print(String tag, String msg) {
@@ -82,19 +101,21 @@ public final class FileLog {
     }
 
     public static void print(String tag, String msg, Exception e) {
+        print(LogRecordCodec.LEVEL_INFO, tag, msg, e);
+    }
+
+    private static void print(byte level, String tag, String msg, Exception e) {
         if (!ENABLED) {
             return;
         }
-        String out = String.format("%s %s %s", DATE_FORMAT.format(new Date()), tag, msg);
-        if (e != null) {
-            out += "\n" + Log.getStackTraceString(e);
-        }
-        Message.obtain(getHandler(), LogWriterCallback.MSG_WRITE, out).sendToTarget();
+        // The record is only encoded on the logger thread
+        Message.obtain(getHandler(), LogWriterCallback.MSG_WRITE,
+                new LogRecord(System.currentTimeMillis(), level, tag, msg, e)).sendToTarget();
     }
 
     @VisibleForTesting
     static Handler getHandler() {
-        synchronized (DATE_FORMAT) {
+        synchronized (LOCK) {
             if (sHandler == null) {
                 sHandler = new Handler(createAndStartNewLooper("file-logger"),
                         new LogWriterCallback());
@@ -108,36 +129,163 @@ public final class FileLog {
      * @param out if not null, all the persisted logs are copied to the writer.
      */
     public static boolean flushAll(PrintWriter out) throws InterruptedException {
+        return flush(new FlushRequest(out, null), 2);
+    }
+
+    private static boolean flush(FlushRequest request, long timeoutSeconds)
+            throws InterruptedException {
         if (!ENABLED) {
             return false;
         }
-        CountDownLatch latch = new CountDownLatch(1);
-        Message.obtain(getHandler(), LogWriterCallback.MSG_FLUSH,
-                Pair.create(out, latch)).sendToTarget();
+        Message.obtain(getHandler(), LogWriterCallback.MSG_FLUSH, request).sendToTarget();
+
+        request.latch.await(timeoutSeconds, TimeUnit.SECONDS);
+        return request.latch.getCount() == 0;
+    }
 
-        latch.await(2, TimeUnit.SECONDS);
-        return latch.getCount() == 0;
+    private static class LogRecord {
+        final long time;
+        final byte level;
+        final String tag;
+        final String msg;
+        final Exception exception;
+
+        LogRecord(long time, byte level, String tag, String msg, Exception exception) {
+            this.time = time;
+            this.level = level;
+            this.tag = tag;
+            this.msg = msg;
+            this.exception = exception;
+        }
+    }
+
+    private static class FlushRequest {
+        final CountDownLatch latch = new CountDownLatch(1);
+        // Where to print the logs as text, if not null
+        final PrintWriter out;
+        // Where to decode the logs as text files, if not null
+        final File decodeDir;
+        File[] decodedFiles = new File[0];
+
+        FlushRequest(PrintWriter out, File decodeDir) {
+            this.out = out;
+            this.decodeDir = decodeDir;
+        }
     }
 
     /**
-     * Writes logs to the file.
-     * Log files are named log-0 for even days of the year and log-1 for odd days of the year.
-     * Logs older than 36 hours are purged.
+     * Writes binary records to size-bounded segments, named log-N.bin with increasing N.
+     * Records are encoded into a reusable buffer, which is written when full, shortly after
+     * logging, or right away for errors. Full segments are compressed in the background and the
+     * oldest segments are purged once they expire or exceed the total size.
      */
     private static class LogWriterCallback implements Handler.Callback {
 
         private static final long CLOSE_DELAY = 5000;  // 5 seconds
+        private static final long SYNC_DELAY = 1000;  // 1 second
+        private static final int BUFFER_SIZE = 32 << 10;
 
         private static final int MSG_WRITE = 1;
         private static final int MSG_CLOSE = 2;
         private static final int MSG_FLUSH = 3;
+        private static final int MSG_SYNC = 4;
+
+        private final LogRecordCodec mCodec = new LogRecordCodec();
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
 
-        private String mCurrentFileName = null;
-        private PrintWriter mCurrentWriter = null;
+        private FileChannel mChannel = null;
+        private File mSegmentFile = null;
+        private long mSegmentIndex = -1;
+        private long mSegmentSize;
+        private boolean mLeftoversCompressed;
 
         private void closeWriter() {
-            IOUtils.closeSilently(mCurrentWriter);
-            mCurrentWriter = null;
+            writeBuffer();
+            IOUtils.closeSilently(mChannel);
+            mChannel = null;
+        }
+
+        private void writeBuffer() {
+            if (mChannel == null || mBuffer.position() == 0) {
+                mBuffer.clear();
+                return;
+            }
+            mBuffer.flip();
+            try {
+                while (mBuffer.hasRemaining()) {
+                    mChannel.write(mBuffer);
+                }
+            } catch (IOException e) {
+                Log.e("FileLog", "Error writing logs to file", e);
+                // Close stream, will try reopening during next log
+                IOUtils.closeSilently(mChannel);
+                mChannel = null;
+            }
+            mBuffer.clear();
+        }
+
+        private void openWriter() throws IOException {
+            TreeMap<Long, File> segments = purgeSegments();
+            File lastSegment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            if (lastSegment != null && lastSegment.getName().endsWith(SEGMENT_SUFFIX)
+                    && lastSegment.length() < MAX_SEGMENT_SIZE) {
+                mSegmentIndex = segments.lastKey();
+                mSegmentFile = lastSegment;
+                mSegmentSize = lastSegment.length();
+                mChannel = new FileOutputStream(lastSegment, true).getChannel();
+            } else {
+                mSegmentIndex = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+                mSegmentFile = getSegmentFile(mSegmentIndex);
+                mChannel = new FileOutputStream(mSegmentFile, false).getChannel();
+                mBuffer.putInt(LogRecordCodec.MAGIC);
+                mSegmentSize = Integer.BYTES;
+            }
+            if (!mLeftoversCompressed) {
+                // Compress any full segment left by a previous process
+                mLeftoversCompressed = true;
+                segments.headMap(mSegmentIndex).values().forEach(f -> {
+                    if (f.getName().endsWith(SEGMENT_SUFFIX)) {
+                        compressAsync(f);
+                    }
+                });
+            }
+        }
+
+        private void write(LogRecord record) throws IOException {
+            if (mChannel == null) {
+                openWriter();
+            }
+            String stackTrace = record.exception == null
+                    ? null : Log.getStackTraceString(record.exception);
+            int start = mBuffer.position();
+            if (!mCodec.encode(mBuffer, record.time, record.level, record.tag, record.msg,
+                    stackTrace)) {
+                writeBuffer();
+                start = 0;
+                if (!mCodec.encode(mBuffer, record.time, record.level, record.tag, record.msg,
+                        stackTrace)) {
+                    // Larger than the buffer, use a one-off buffer
+                    ByteBuffer large = ByteBuffer.allocate(LogRecordCodec.maxEncodedSize(
+                            record.tag, record.msg, stackTrace));
+                    mCodec.encode(large, record.time, record.level, record.tag, record.msg,
+                            stackTrace);
+                    large.flip();
+                    mSegmentSize += large.remaining();
+                    while (large.hasRemaining()) {
+                        mChannel.write(large);
+                    }
+                }
+            }
+            mSegmentSize += mBuffer.position() - start;
+
+            if (mSegmentSize >= MAX_SEGMENT_SIZE) {
+                closeWriter();
+                compressAsync(mSegmentFile);
+            } else if (record.level == LogRecordCodec.LEVEL_ERROR) {
+                writeBuffer();
+            } else if (!sHandler.hasMessages(MSG_SYNC)) {
+                sHandler.sendEmptyMessageDelayed(MSG_SYNC, SYNC_DELAY);
+            }
         }
 
         @Override
@@ -147,35 +295,8 @@ public final class FileLog {
             }
             switch (msg.what) {
                 case MSG_WRITE: {
-                    Calendar cal = Calendar.getInstance();
-                    // suffix with 0 or 1 based on the day of the year.
-                    String fileName = FILE_NAME_PREFIX + (cal.get(Calendar.DAY_OF_YEAR) % LOG_DAYS);
-
-                    if (!fileName.equals(mCurrentFileName)) {
-                        closeWriter();
-                    }
-
                     try {
-                        if (mCurrentWriter == null) {
-                            mCurrentFileName = fileName;
-
-                            boolean append = false;
-                            File logFile = new File(sLogsDirectory, fileName);
-                            if (logFile.exists()) {
-                                Calendar modifiedTime = Calendar.getInstance();
-                                modifiedTime.setTimeInMillis(logFile.lastModified());
-
-                                // If the file was modified more that 36 hours ago, purge the file.
-                                // We use instead of 24 to account for day-365 followed by day-1
-                                modifiedTime.add(Calendar.HOUR, 36);
-                                append = cal.before(modifiedTime)
-                                        && logFile.length() < MAX_LOG_FILE_SIZE;
-                            }
-                            mCurrentWriter = new PrintWriter(new FileWriter(logFile, append));
-                        }
-
-                        mCurrentWriter.println((String) msg.obj);
-                        mCurrentWriter.flush();
+                        write((LogRecord) msg.obj);
 
                         // Auto close file stream after some time.
                         sHandler.removeMessages(MSG_CLOSE);
@@ -183,64 +304,210 @@ public final class FileLog {
                     } catch (Exception e) {
                         Log.e("FileLog", "Error writing logs to file", e);
                         // Close stream, will try reopening during next log
+                        mBuffer.clear();
                         closeWriter();
                     }
                     return true;
                 }
+                case MSG_SYNC: {
+                    writeBuffer();
+                    return true;
+                }
                 case MSG_CLOSE: {
                     closeWriter();
                     return true;
                 }
                 case MSG_FLUSH: {
                     closeWriter();
-                    Pair<PrintWriter, CountDownLatch> p =
-                            (Pair<PrintWriter, CountDownLatch>) msg.obj;
-
-                    if (p.first != null) {
-                        for (int i = 0; i < LOG_DAYS; i++) {
-                            dumpFile(p.first, FILE_NAME_PREFIX + i);
+                    FlushRequest request = (FlushRequest) msg.obj;
+                    if (request.out != null) {
+                        for (File segment : listSegments().values()) {
+                            request.out.println();
+                            request.out.println("--- logfile: " + segment.getName() + " ---");
+                            decodeSegment(segment, request.out);
+                            request.out.flush();
                         }
                     }
-                    p.second.countDown();
+                    if (request.decodeDir != null) {
+                        request.decodedFiles = decodeSegments(request.decodeDir);
+                    }
+                    request.latch.countDown();
                     return true;
                 }
             }
             return true;
         }
+
+        /**
+         * Deletes the expired segments and the oldest ones above the total size, and returns the
+         * remaining ones.
+         */
+        private TreeMap<Long, File> purgeSegments() {
+            TreeMap<Long, File> segments = listSegments();
+            long expiry = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(LOG_DAYS);
+            long totalSize = 0;
+            for (File f : segments.values()) {
+                totalSize += f.length();
+            }
+            while (!segments.isEmpty()) {
+                File oldest = segments.firstEntry().getValue();
+                if (oldest.lastModified() >= expiry && totalSize <= MAX_LOG_FILE_SIZE) {
+                    break;
+                }
+                totalSize -= oldest.length();
+                oldest.delete();
+                segments.pollFirstEntry();
+            }
+
+            File[] legacy = sLogsDirectory.listFiles(
+                    (dir, name) -> LEGACY_PATTERN.matcher(name).matches());
+            if (legacy != null) {
+                Arrays.stream(legacy).forEach(File::delete);
+            }
+            return segments;
+        }
     }
 
-    private static void dumpFile(PrintWriter out, String fileName) {
-        File logFile = new File(sLogsDirectory, fileName);
-        if (logFile.exists()) {
+    /**
+     * Returns the segments sorted by index. If a segment is both raw and compressed, which
+     * happens while it's being compressed, the compressed file is returned.
+     */
+    private static TreeMap<Long, File> listSegments() {
+        TreeMap<Long, File> segments = new TreeMap<>();
+        File[] files = sLogsDirectory.listFiles();
+        if (files == null) {
+            return segments;
+        }
+        for (File f : files) {
+            Matcher m = SEGMENT_PATTERN.matcher(f.getName());
+            if (!m.matches()) {
+                continue;
+            }
+            long index = Long.parseLong(m.group(1));
+            if (m.group(2) != null || !segments.containsKey(index)) {
+                segments.put(index, f);
+            }
+        }
+        return segments;
+    }
 
-            BufferedReader in = null;
-            try {
-                in = new BufferedReader(new FileReader(logFile));
-                out.println();
-                out.println("--- logfile: " + fileName + " ---");
-                String line;
-                while ((line = in.readLine()) != null) {
-                    out.println(line);
+    private static File getSegmentFile(long index) {
+        return new File(sLogsDirectory, FILE_NAME_PREFIX + index + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Blocks until the pending logs are written, and the full segments are compressed.
+     * @return false if it timed out
+     */
+    @VisibleForTesting
+    static boolean waitForCompressions(long timeoutMs) throws InterruptedException {
+        if (!flushAll(null)) {
+            return false;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (LOCK) {
+            while (sPendingCompressions > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
                 }
-            } catch (Exception e) {
-                // ignore
+                LOCK.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    private static void compressAsync(File segment) {
+        synchronized (LOCK) {
+            sPendingCompressions++;
+        }
+        THREAD_POOL_EXECUTOR.execute(() -> {
+            try {
+                compress(segment);
             } finally {
-                IOUtils.closeSilently(in);
+                synchronized (LOCK) {
+                    sPendingCompressions--;
+                    LOCK.notifyAll();
+                }
             }
+        });
+    }
+
+    private static void compress(File segment) {
+        File compressed = new File(segment.getPath() + COMPRESSED_SUFFIX);
+        File tmp = new File(compressed.getPath() + ".tmp");
+        try (InputStream in = new FileInputStream(segment);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp))) {
+            IOUtils.copy(in, out);
+        } catch (IOException e) {
+            // The segment may have been purged meanwhile
+            tmp.delete();
+            return;
+        }
+        if (tmp.renameTo(compressed)) {
+            segment.delete();
+        } else {
+            tmp.delete();
+        }
+    }
+
+    private static void decodeSegment(File segment, PrintWriter out) {
+        InputStream in = null;
+        try {
+            in = openSegment(segment);
+            new LogRecordCodec().decode(in, out);
+        } catch (Exception e) {
+            // ignore
+        } finally {
+            IOUtils.closeSilently(in);
         }
     }
 
+    private static InputStream openSegment(File segment) throws IOException {
+        if (segment.getName().endsWith(COMPRESSED_SUFFIX)) {
+            return new GZIPInputStream(new BufferedInputStream(new FileInputStream(segment)));
+        }
+        try {
+            return new BufferedInputStream(new FileInputStream(segment));
+        } catch (FileNotFoundException e) {
+            // It was compressed since it was listed
+            return openSegment(new File(segment.getPath() + COMPRESSED_SUFFIX));
+        }
+    }
+
+    private static File[] decodeSegments(File decodeDir) {
+        decodeDir.mkdirs();
+        File[] stale = decodeDir.listFiles();
+        if (stale != null) {
+            Arrays.stream(stale).forEach(File::delete);
+        }
+        return listSegments().entrySet().stream().map(entry -> {
+            File decoded = new File(decodeDir, FILE_NAME_PREFIX + entry.getKey());
+            try (PrintWriter out = new PrintWriter(decoded)) {
+                decodeSegment(entry.getValue(), out);
+            } catch (IOException e) {
+                return null;
+            }
+            return decoded;
+        }).filter(f -> f != null).toArray(File[]::new);
+    }
+
     /**
-     * Gets files used for FileLog
+     * Gets files used for FileLog, decoded as text.
      */
     public static File[] getLogFiles() {
+        if (sLogsDirectory == null) {
+            return new File[0];
+        }
+        FlushRequest request = new FlushRequest(null, new File(sLogsDirectory, DECODED_DIR));
         try {
-            flushAll(null);
-        } catch (InterruptedException e) { }
-        File[] files = new File[LOG_DAYS];
-        for (int i = 0; i < LOG_DAYS; i++) {
-            files[i] = new File(sLogsDirectory, FILE_NAME_PREFIX + i);
+            // The files are only safe to read once the writer released the latch
+            if (flush(request, 10)) {
+                return request.decodedFiles;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return files;
+        return new File[0];
     }
 }
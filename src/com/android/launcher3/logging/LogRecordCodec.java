@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.util.Date;
+
+/**
+ * Binary format of the {@link FileLog} segments.
+ *
+ * <p>A segment starts with {@link #MAGIC}, followed by records made of their length, the time,
+ * the level, the tag, the message and the optional stack trace. Strings are stored as their UTF-8
+ * length and bytes, with a length of -1 for null. A truncated trailing record, as left by a crash
+ * or read while being written, is ignored.
+ */
+final class LogRecordCodec {
+
+    static final int MAGIC = 0x464C4731; // FLG1
+
+    static final byte LEVEL_DEBUG = 'D';
+    static final byte LEVEL_INFO = 'I';
+    static final byte LEVEL_ERROR = 'E';
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Byte.BYTES;
+
+    private final DateFormat mDateFormat =
+            DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+    private final Date mDate = new Date();
+    private final CharsetEncoder mEncoder = StandardCharsets.UTF_8.newEncoder();
+
+    /**
+     * Encodes a record at the position of {@param out}.
+     *
+     * @return false if {@param out} is too small, in which case its position is unchanged.
+     */
+    boolean encode(ByteBuffer out, long time, byte level, String tag, String msg,
+            @Nullable String stackTrace) {
+        int start = out.position();
+        try {
+            out.position(start + Integer.BYTES);
+            out.putLong(time);
+            out.put(level);
+            if (putString(out, tag) && putString(out, msg) && putString(out, stackTrace)) {
+                out.putInt(start, out.position() - start - Integer.BYTES);
+                return true;
+            }
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            // Fall through
+        }
+        out.position(start);
+        return false;
+    }
+
+    private boolean putString(ByteBuffer out, @Nullable String value) {
+        int lengthPos = out.position();
+        if (value == null) {
+            out.putInt(-1);
+            return true;
+        }
+        out.position(lengthPos + Integer.BYTES);
+        mEncoder.reset();
+        CoderResult result = mEncoder.encode(CharBuffer.wrap(value), out, true);
+        if (result.isOverflow() || mEncoder.flush(out).isOverflow()) {
+            return false;
+        }
+        out.putInt(lengthPos, out.position() - lengthPos - Integer.BYTES);
+        return true;
+    }
+
+    /** Returns an upper bound of the encoded size of a record. */
+    static int maxEncodedSize(String tag, String msg, @Nullable String stackTrace) {
+        int chars = tag.length() + msg.length() + (stackTrace == null ? 0 : stackTrace.length());
+        // Each char takes at most 3 bytes in UTF-8
+        return HEADER_SIZE + 3 * Integer.BYTES + 3 * chars;
+    }
+
+    /**
+     * Decodes the segment read from {@param in} and prints its records as text to {@param out}.
+     */
+    void decode(InputStream in, PrintWriter out) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a log segment");
+        }
+        byte[] record = new byte[256];
+        while (true) {
+            int length;
+            try {
+                length = data.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (length < HEADER_SIZE - Integer.BYTES) {
+                return;
+            }
+            if (record.length < length) {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+            try {
+                data.readFully(record, 0, length);
+            } catch (EOFException e) {
+                return;
+            }
+            if (!printRecord(ByteBuffer.wrap(record, 0, length), out)) {
+                return;
+            }
+        }
+    }
+
+    private boolean printRecord(ByteBuffer record, PrintWriter out) {
+        try {
+            mDate.setTime(record.getLong());
+            record.get(); // level
+            String tag = getString(record);
+            String msg = getString(record);
+            String stackTrace = getString(record);
+            out.print(mDateFormat.format(mDate));
+            out.print(' ');
+            out.print(tag);
+            out.print(' ');
+            out.println(msg);
+            if (stackTrace != null) {
+                out.println(stackTrace);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // Corrupted record
+            return false;
+        }
+    }
+
+    @Nullable
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IllegalStateException("Invalid string length " + length);
+        }
+        String value = new String(
+                in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size ring buffer of timing events, always on, to diagnose slow loads after the fact.
+ *
+ * <p>Recording an event does not allocate: the events are stored in preallocated arrays and their
+ * names are interned once. The buffer can be dumped as text, or as a JSON trace which can be
+ * opened in Perfetto or chrome://tracing:
+ * <pre>
+ * $ adb shell dumpsys activity com.android.launcher3.Launcher --trace-json > trace.json
+ * </pre>
+ */
+public class TimingTraceBuffer {
+
+    public static final TimingTraceBuffer INSTANCE = new TimingTraceBuffer(2048);
+
+    private static final int DUMP_EVENTS = 100;
+
+    private final int mMask;
+    private final long[] mStartNs;
+    private final long[] mDurationNs;
+    private final int[] mNameIds;
+    private final int[] mThreadIds;
+    private final int[] mArgs;
+    // Index + 1 of the event in each slot, to skip the slots overwritten while reading
+    private final long[] mSequences;
+    private final AtomicLong mNextIndex = new AtomicLong();
+
+    private final ConcurrentHashMap<String, Integer> mNameIndex = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Integer> mClassNameIndex = new ConcurrentHashMap<>();
+    private final ArrayList<String> mNames = new ArrayList<>();
+
+    @VisibleForTesting
+    TimingTraceBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mMask = size - 1;
+        mStartNs = new long[size];
+        mDurationNs = new long[size];
+        mNameIds = new int[size];
+        mThreadIds = new int[size];
+        mArgs = new int[size];
+        mSequences = new long[size];
+    }
+
+    /** Returns the start time of an event, to be passed to {@link #record}. */
+    public static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /** Records an event named {@param name} which started at {@param startNs} and ends now. */
+    public void record(@NonNull String name, long startNs) {
+        record(getNameId(name), startNs, 0);
+    }
+
+    /**
+     * Records an event named {@param name} which started at {@param startNs} and ends now, with
+     * an argument such as a number of items.
+     */
+    public void record(@NonNull String name, long startNs, int arg) {
+        record(getNameId(name), startNs, arg);
+    }
+
+    /** Records an event named after {@param type} which started at {@param startNs}. */
+    public void record(@NonNull Class<?> type, long startNs) {
+        Integer id = mClassNameIndex.get(type);
+        if (id == null) {
+            id = getNameId(type.getSimpleName());
+            mClassNameIndex.put(type, id);
+        }
+        record(id, startNs, 0);
+    }
+
+    private void record(int nameId, long startNs, int arg) {
+        long endNs = now();
+        long index = mNextIndex.getAndIncrement();
+        int slot = (int) (index & mMask);
+        synchronized (this) {
+            mStartNs[slot] = startNs;
+            mDurationNs[slot] = endNs - startNs;
+            mNameIds[slot] = nameId;
+            mThreadIds[slot] = Process.myTid();
+            mArgs[slot] = arg;
+            mSequences[slot] = index + 1;
+        }
+    }
+
+    private int getNameId(String name) {
+        Integer id = mNameIndex.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (mNames) {
+            return mNameIndex.computeIfAbsent(name, n -> {
+                mNames.add(n);
+                return mNames.size() - 1;
+            });
+        }
+    }
+
+    private String getName(int id) {
+        synchronized (mNames) {
+            return mNames.get(id);
+        }
+    }
+
+    /** Calls {@param visitor} with the buffered events, from the oldest to the newest. */
+    private void forEachEvent(int maxEvents, EventVisitor visitor) {
+        long end = mNextIndex.get();
+        long start = Math.max(0, end - Math.min(mMask + 1, maxEvents));
+        for (long index = start; index < end; index++) {
+            int slot = (int) (index & mMask);
+            long startNs, durationNs;
+            int nameId, tid, arg;
+            synchronized (this) {
+                if (mSequences[slot] != index + 1) {
+                    // Overwritten or not fully written yet
+                    continue;
+                }
+                startNs = mStartNs[slot];
+                durationNs = mDurationNs[slot];
+                nameId = mNameIds[slot];
+                tid = mThreadIds[slot];
+                arg = mArgs[slot];
+            }
+            visitor.visit(startNs, durationNs, getName(nameId), tid, arg);
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        long count = mNextIndex.get();
+        writer.println(prefix + "TimingTraceBuffer: events=" + count
+                + " capacity=" + (mMask + 1) + ", last " + Math.min(count, DUMP_EVENTS) + ":");
+        long now = now();
+        forEachEvent(DUMP_EVENTS, (startNs, durationNs, name, tid, arg) -> writer.println(
+                prefix + "  -" + (now - startNs) / 1_000_000 + "ms " + name
+                        + " " + durationNs / 1_000 / 1000f + "ms tid=" + tid
+                        + (arg != 0 ? " arg=" + arg : "")));
+    }
+
+    /**
+     * Writes all the buffered events in the Trace Event JSON format, as complete events with
+     * microsecond timestamps.
+     */
+    public void exportJson(PrintWriter writer) {
+        int pid = Process.myPid();
+        writer.print("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean[] first = {true};
+        forEachEvent(Integer.MAX_VALUE, (startNs, durationNs, name, tid, arg) -> {
+            writer.print(first[0] ? "\n" : ",\n");
+            first[0] = false;
+            writer.print("{\"name\":\"");
+            writer.print(name.replace("\\", "\\\\").replace("\"", "\\\""));
+            writer.print("\",\"cat\":\"launcher\",\"ph\":\"X\",\"ts\":");
+            writer.print(startNs / 1000);
+            writer.print(",\"dur\":");
+            writer.print(durationNs / 1000);
+            writer.print(",\"pid\":");
+            writer.print(pid);
+            writer.print(",\"tid\":");
+            writer.print(tid);
+            writer.print(",\"args\":{\"arg\":");
+            writer.print(arg);
+            writer.print("}}");
+        });
+        writer.println("\n]}");
+        writer.flush();
+    }
+
+    private interface EventVisitor {
+        void visit(long startNs, long durationNs, String name, int tid, int arg);
+    }
+}
@@ -38,7 +38,9 @@ import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.pm.PackageInstallInfo;
+import com.android.launcher3.search.AppSearchIndex;
 import com.android.launcher3.util.FlagOp;
+import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.SafeCloseable;
 
@@ -74,6 +76,9 @@ public class AllAppsList {
     private Consumer<AppInfo> mRemoveListener = NO_OP_CONSUMER;
 
     private AlphabeticIndexCompat mIndex;
+    private LabelComparator mLabelComparator;
+
+    private final AppSearchIndex mSearchIndex = new AppSearchIndex();
 
     /**
      * @see Callbacks#FLAG_HAS_SHORTCUT_PERMISSION
@@ -89,6 +94,7 @@ public class AllAppsList {
         mIconCache = iconCache;
         mAppFilter = appFilter;
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
+        mLabelComparator = new LabelComparator();
     }
 
     /**
@@ -100,6 +106,13 @@ public class AllAppsList {
         return result;
     }
 
+    /**
+     * Returns the search index over {@link #data}, to be used on the model thread.
+     */
+    public AppSearchIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
     /**
      * Helper to checking {@link Callbacks#FLAG_HAS_SHORTCUT_PERMISSION}
      */
@@ -146,7 +159,7 @@ public class AllAppsList {
         }
         if (loadIcon) {
             mIconCache.getTitleAndIcon(info, activityInfo, false /* useLowResIcon */);
-            info.sectionName = mIndex.computeSectionName(info.title);
+            updateSectionName(info);
         } else {
             info.title = "";
         }
@@ -172,7 +185,7 @@ public class AllAppsList {
 
         if (loadIcon) {
             mIconCache.getTitleAndIcon(promiseAppInfo, promiseAppInfo.usingLowResIcon());
-            promiseAppInfo.sectionName = mIndex.computeSectionName(promiseAppInfo.title);
+            updateSectionName(promiseAppInfo);
         } else {
             promiseAppInfo.title = "";
         }
@@ -183,9 +196,13 @@ public class AllAppsList {
         return promiseAppInfo;
     }
 
+    /**
+     * Updates the section name and the sort keys of {@param appInfo}, after its title was set.
+     */
     public void updateSectionName(AppInfo appInfo) {
         appInfo.sectionName = mIndex.computeSectionName(appInfo.title);
-
+        appInfo.titleKey = mLabelComparator.getKey(appInfo.title);
+        appInfo.sectionKey = mLabelComparator.getKey(appInfo.sectionName);
     }
 
     /** Updates the given PackageInstallInfo's associated AppInfo's installation info. */
@@ -228,6 +245,7 @@ public class AllAppsList {
         mDataChanged = false;
         // Reset the index as locales might have changed
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
+        mLabelComparator = new LabelComparator();
     }
 
     /**
@@ -276,7 +294,7 @@ public class AllAppsList {
         for (AppInfo info : data) {
             if (info.user.equals(user) && packages.contains(info.componentName.getPackageName())) {
                 mIconCache.updateTitleAndIcon(info);
-                info.sectionName = mIndex.computeSectionName(info.title);
+                updateSectionName(info);
                 mDataChanged = true;
             }
         }
@@ -313,7 +331,7 @@ public class AllAppsList {
                     Intent launchIntent = AppInfo.makeLaunchIntent(info);
 
                     mIconCache.getTitleAndIcon(applicationInfo, info, false /* useLowResIcon */);
-                    applicationInfo.sectionName = mIndex.computeSectionName(applicationInfo.title);
+                    updateSectionName(applicationInfo);
                     applicationInfo.setProgressLevel(
                             PackageManagerHelper.getLoadingProgress(info),
                             PackageInstallInfo.STATUS_INSTALLED_DOWNLOADING);
@@ -29,6 +29,7 @@ import com.android.launcher3.LauncherModel.CallbackTask;
 import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.Workspace;
 import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.logging.TimingTraceBuffer;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
@@ -56,6 +57,7 @@ public abstract class BaseLauncherBinder {
 
     protected static final String TAG = "LauncherBinder";
     private static final int ITEMS_CHUNK = 6; // batch size for the workspace icons
+    private static final String TRACE_BIND_CALLBACKS = "bindCallbacks";
 
     protected final LooperExecutor mUiExecutor;
 
@@ -145,7 +147,8 @@ public abstract class BaseLauncherBinder {
         // shallow copy
         AppInfo[] apps = mBgAllAppsList.copyData();
         int flags = mBgAllAppsList.getFlags();
-        executeCallbacksTask(c -> c.bindAllApplications(apps, flags), mUiExecutor);
+        executeCallbacksTask("bindAllApplications", apps.length,
+                c -> c.bindAllApplications(apps, flags), mUiExecutor);
     }
 
     /**
@@ -190,14 +193,25 @@ public abstract class BaseLauncherBinder {
     }
 
     protected void executeCallbacksTask(CallbackTask task, Executor executor) {
+        executeCallbacksTask(TRACE_BIND_CALLBACKS, 0, task, executor);
+    }
+
+    /**
+     * Executes {@param task} on the callbacks, and records it in the {@link TimingTraceBuffer} as
+     * {@param traceName} with {@param traceArg}.
+     */
+    protected void executeCallbacksTask(String traceName, int traceArg, CallbackTask task,
+            Executor executor) {
         executor.execute(() -> {
             if (mMyBindingId != mBgDataModel.lastBindId) {
                 Log.d(TAG, "Too many consecutive reloads, skipping obsolete data-bind");
                 return;
             }
+            long startNs = TimingTraceBuffer.now();
             for (Callbacks cb : mCallbacksList) {
                 task.execute(cb);
             }
+            TimingTraceBuffer.INSTANCE.record(traceName, startNs, traceArg);
         });
     }
 
@@ -288,7 +302,8 @@ public abstract class BaseLauncherBinder {
             }, mUiExecutor);
 
             // Bind workspace screens
-            executeCallbacksTask(c -> c.bindScreens(mOrderedScreenIds), mUiExecutor);
+            executeCallbacksTask("bindScreens", mOrderedScreenIds.size(),
+                    c -> c.bindScreens(mOrderedScreenIds), mUiExecutor);
 
             // Load items on the current page.
             bindWorkspaceItems(currentWorkspaceItems, mUiExecutor);
@@ -327,7 +342,7 @@ public abstract class BaseLauncherBinder {
             for (int i = 0; i < count; i += ITEMS_CHUNK) {
                 final int start = i;
                 final int chunkSize = (i + ITEMS_CHUNK <= count) ? ITEMS_CHUNK : (count - i);
-                executeCallbacksTask(
+                executeCallbacksTask("bindItems", chunkSize,
                         c -> c.bindItems(workspaceItems.subList(start, start + chunkSize), false),
                         executor);
             }
@@ -338,18 +353,25 @@ public abstract class BaseLauncherBinder {
             int count = appWidgets.size();
             for (int i = 0; i < count; i++) {
                 final ItemInfo widget = appWidgets.get(i);
-                executeCallbacksTask(
+                executeCallbacksTask("bindAppWidget", 1,
                         c -> c.bindItems(Collections.singletonList(widget), false), executor);
             }
         }
 
         protected void executeCallbacksTask(CallbackTask task, Executor executor) {
+            executeCallbacksTask(TRACE_BIND_CALLBACKS, 0, task, executor);
+        }
+
+        protected void executeCallbacksTask(String traceName, int traceArg, CallbackTask task,
+                Executor executor) {
             executor.execute(() -> {
                 if (mMyBindingId != mBgDataModel.lastBindId) {
                     Log.d(TAG, "Too many consecutive reloads, skipping obsolete data-bind");
                     return;
                 }
+                long startNs = TimingTraceBuffer.now();
                 task.execute(mCallbacks);
+                TimingTraceBuffer.INSTANCE.record(traceName, startNs, traceArg);
             });
         }
     }
@@ -400,7 +422,8 @@ public abstract class BaseLauncherBinder {
             }, mUiExecutor);
 
             // Bind workspace screens
-            executeCallbacksTask(c -> c.bindScreens(mOrderedScreenIds), mUiExecutor);
+            executeCallbacksTask("bindScreens", mOrderedScreenIds.size(),
+                    c -> c.bindScreens(mOrderedScreenIds), mUiExecutor);
 
             bindWorkspaceItems(workspaceItems);
             bindAppWidgets(appWidgets);
@@ -447,7 +470,7 @@ public abstract class BaseLauncherBinder {
             for (int i = 0; i < count; i += ITEMS_CHUNK) {
                 final int start = i;
                 final int chunkSize = (i + ITEMS_CHUNK <= count) ? ITEMS_CHUNK : (count - i);
-                executeCallbacksTask(
+                executeCallbacksTask("bindItems", chunkSize,
                         c -> c.bindItems(workspaceItems.subList(start, start + chunkSize), false),
                         mUiExecutor);
             }
@@ -458,7 +481,7 @@ public abstract class BaseLauncherBinder {
             int count = appWidgets.size();
             for (int i = 0; i < count; i++) {
                 final ItemInfo widget = appWidgets.get(i);
-                executeCallbacksTask(
+                executeCallbacksTask("bindAppWidget", 1,
                         c -> c.bindItems(Collections.singletonList(widget), false),
                         mUiExecutor);
             }
@@ -25,6 +25,7 @@ import com.android.launcher3.LauncherModel;
 import com.android.launcher3.LauncherModel.CallbackTask;
 import com.android.launcher3.LauncherModel.ModelUpdateTask;
 import com.android.launcher3.celllayout.CellPosMapper;
+import com.android.launcher3.logging.TimingTraceBuffer;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
@@ -77,7 +78,11 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
             // Loader has not yet run.
             return;
         }
+        long startNs = TimingTraceBuffer.now();
+        // Tasks may read the db directly, make sure it is up to date.
+        mModel.getWriteQueue().flush();
         execute(mApp, mDataModel, mAllAppsList);
+        TimingTraceBuffer.INSTANCE.record(getClass(), startNs);
     }
 
     /**
@@ -23,6 +23,7 @@ import static com.android.launcher3.shortcuts.ShortcutRequest.PINNED;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.mapping;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.LauncherApps;
 import android.content.pm.ShortcutInfo;
@@ -50,6 +51,7 @@ import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.RunnableList;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 
@@ -125,6 +127,17 @@ public class BgDataModel {
      */
     public int lastBindId = 0;
 
+    /**
+     * Index of all the items in {@link #itemsIdMap} by their target component and by their target
+     * package (and icon resource package). Maintained incrementally by {@link #addItem},
+     * {@link #removeItem} and {@link #reindexItem}.
+     */
+    private final HashMap<ComponentKey, ArrayList<ItemInfo>> mComponentIndex = new HashMap<>();
+    private final HashMap<PackageUserKey, ArrayList<ItemInfo>> mPackageIndex = new HashMap<>();
+    // Keys under which each item id was indexed, so that it can be removed even if the target of
+    // the item has changed since.
+    private final IntSparseArrayMap<IndexKeys> mIndexedKeys = new IntSparseArrayMap<>();
+
     /**
      * Clears all the data
      */
@@ -135,6 +148,9 @@ public class BgDataModel {
         itemsIdMap.clear();
         deepShortcutMap.clear();
         extraItems.clear();
+        mComponentIndex.clear();
+        mPackageIndex.clear();
+        mIndexedKeys.clear();
     }
 
     /**
@@ -220,6 +236,7 @@ public class BgDataModel {
                     break;
             }
             itemsIdMap.remove(item.id);
+            unindexItem(item.id);
         }
         updatedDeepShortcuts.forEach(user -> updateShortcutPinnedState(context, user));
     }
@@ -238,6 +255,7 @@ public class BgDataModel {
                     /* stackTrace= */ null);
         }
         itemsIdMap.put(item.id, item);
+        reindexItem(item);
         switch (item.itemType) {
             case LauncherSettings.Favorites.ITEM_TYPE_FOLDER:
                 folders.put(item.id, (FolderInfo) item);
@@ -273,6 +291,94 @@ public class BgDataModel {
         }
     }
 
+    /**
+     * Updates the component and package index for the item. Needs to be called when the target
+     * of an item already in the model changes.
+     */
+    public synchronized void reindexItem(ItemInfo item) {
+        unindexItem(item.id);
+        if (item.user == null) {
+            return;
+        }
+        ComponentName cn = item.getTargetComponent();
+        String pkg = item.getTargetPackage();
+        String iconPkg = item instanceof WorkspaceItemInfo
+                && ((WorkspaceItemInfo) item).iconResource != null
+                ? ((WorkspaceItemInfo) item).iconResource.packageName : null;
+        if (TextUtils.equals(pkg, iconPkg)) {
+            iconPkg = null;
+        }
+        if (cn == null && pkg == null && iconPkg == null) {
+            // Folders and other items without a target are not indexed
+            return;
+        }
+        IndexKeys keys = new IndexKeys(
+                cn == null ? null : new ComponentKey(cn, item.user),
+                pkg == null ? null : new PackageUserKey(pkg, item.user),
+                iconPkg == null ? null : new PackageUserKey(iconPkg, item.user));
+        if (keys.component != null) {
+            mComponentIndex.computeIfAbsent(keys.component, k -> new ArrayList<>(1)).add(item);
+        }
+        if (keys.pkg != null) {
+            mPackageIndex.computeIfAbsent(keys.pkg, k -> new ArrayList<>(1)).add(item);
+        }
+        if (keys.iconPkg != null) {
+            mPackageIndex.computeIfAbsent(keys.iconPkg, k -> new ArrayList<>(1)).add(item);
+        }
+        mIndexedKeys.put(item.id, keys);
+    }
+
+    private void unindexItem(int id) {
+        IndexKeys keys = mIndexedKeys.get(id);
+        if (keys == null) {
+            return;
+        }
+        mIndexedKeys.remove(id);
+        removeFromIndex(mComponentIndex, keys.component, id);
+        removeFromIndex(mPackageIndex, keys.pkg, id);
+        removeFromIndex(mPackageIndex, keys.iconPkg, id);
+    }
+
+    private static <K> void removeFromIndex(
+            HashMap<K, ArrayList<ItemInfo>> index, @Nullable K key, int id) {
+        if (key == null) {
+            return;
+        }
+        ArrayList<ItemInfo> items = index.get(key);
+        if (items == null) {
+            return;
+        }
+        items.removeIf(info -> info.id == id);
+        if (items.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Returns true if any item in the model (on the workspace, hotseat or inside a folder) targets
+     * the provided component.
+     */
+    public synchronized boolean hasItemForComponent(ComponentKey key) {
+        return mComponentIndex.containsKey(key);
+    }
+
+    /**
+     * Returns all the items in the model targeting the provided component.
+     */
+    public synchronized List<ItemInfo> getItemsForComponent(ComponentKey key) {
+        ArrayList<ItemInfo> items = mComponentIndex.get(key);
+        return items == null ? Collections.emptyList() : new ArrayList<>(items);
+    }
+
+    /**
+     * Returns all the items in the model targeting the provided package, or using an icon
+     * resource from it.
+     */
+    public synchronized List<ItemInfo> getItemsForPackage(PackageUserKey key) {
+        ArrayList<ItemInfo> items = mPackageIndex.get(key);
+        return items == null ? Collections.emptyList() : new ArrayList<>(items);
+    }
+
     /**
      * Updates the deep shortucts state in system to match out internal model, pinning any missing
      * shortcuts and unpinning any extra shortcuts.
@@ -425,6 +531,61 @@ public class BgDataModel {
         }
     }
 
+    /**
+     * Same as {@link #forAllWorkspaceItemInfos(UserHandle, Consumer)} but only calls {@code op}
+     * for items which target one of the {@code packages} or use an icon resource from them.
+     * Persisted items are looked up through the package index instead of a full scan.
+     * Note the call is not synchronized over the model, that should be handled by the called.
+     */
+    public void forAllWorkspaceItemInfos(UserHandle userHandle, Set<String> packages,
+            Consumer<WorkspaceItemInfo> op) {
+        IntSet visited = new IntSet();
+        PackageUserKey key = new PackageUserKey(null, userHandle);
+        for (String pkg : packages) {
+            key.update(pkg, userHandle);
+            ArrayList<ItemInfo> items = mPackageIndex.get(key);
+            if (items == null) {
+                continue;
+            }
+            // Copy as the op is allowed to modify the item
+            for (ItemInfo info : items.toArray(new ItemInfo[items.size()])) {
+                if (info instanceof WorkspaceItemInfo && !visited.contains(info.id)) {
+                    visited.add(info.id);
+                    op.accept((WorkspaceItemInfo) info);
+                }
+            }
+        }
+
+        for (int i = extraItems.size() - 1; i >= 0; i--) {
+            for (ItemInfo info : extraItems.valueAt(i).items) {
+                if (info instanceof WorkspaceItemInfo && userHandle.equals(info.user)
+                        && matchesPackages((WorkspaceItemInfo) info, packages)) {
+                    op.accept((WorkspaceItemInfo) info);
+                }
+            }
+        }
+    }
+
+    private static boolean matchesPackages(WorkspaceItemInfo info, Set<String> packages) {
+        String pkg = info.getTargetPackage();
+        return (pkg != null && packages.contains(pkg))
+                || (info.iconResource != null
+                        && packages.contains(info.iconResource.packageName));
+    }
+
+    private static class IndexKeys {
+        @Nullable final ComponentKey component;
+        @Nullable final PackageUserKey pkg;
+        @Nullable final PackageUserKey iconPkg;
+
+        IndexKeys(@Nullable ComponentKey component, @Nullable PackageUserKey pkg,
+                @Nullable PackageUserKey iconPkg) {
+            this.component = component;
+            this.pkg = pkg;
+            this.iconPkg = iconPkg;
+        }
+    }
+
     /**
      * An object containing items corresponding to a fixed container
      */
@@ -17,6 +17,7 @@ package com.android.launcher3.model;
 
 import android.content.ComponentName;
 import android.os.UserHandle;
+import android.util.Pair;
 
 import androidx.annotation.NonNull;
 
@@ -24,9 +25,11 @@ import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.PackageUserKey;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Handles changes due to cache updates.
@@ -51,6 +54,21 @@ public class CacheDataUpdatedTask extends BaseModelUpdateTask {
         mPackages = packages;
     }
 
+    @Override
+    public int getPriority() {
+        // Only refreshes the icons and labels, which can wait for other updates
+        return ModelTaskScheduler.PRIORITY_BULK;
+    }
+
+    @Override
+    public Pair<? extends Set<?>, ?> getCoalesceKey() {
+        HashSet<PackageUserKey> targets = new HashSet<>();
+        for (String packageName : mPackages) {
+            targets.add(new PackageUserKey(packageName, mUser));
+        }
+        return Pair.create(targets, Pair.create(getClass(), mOp));
+    }
+
     @Override
     public void execute(@NonNull final LauncherAppState app, @NonNull final BgDataModel dataModel,
             @NonNull final AllAppsList apps) {
@@ -58,7 +76,7 @@ public class CacheDataUpdatedTask extends BaseModelUpdateTask {
         ArrayList<WorkspaceItemInfo> updatedShortcuts = new ArrayList<>();
 
         synchronized (dataModel) {
-            dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+            dataModel.forAllWorkspaceItemInfos(mUser, mPackages, si -> {
                 ComponentName cn = si.getTargetComponent();
                 if (si.itemType == LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
                         && isValidShortcut(si) && cn != null
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Records the duration of each phase of a {@link LoaderTask} run so that loader variants can be
+ * compared. Unlike {@link android.util.TimingLogger}, the result is always kept and can be dumped.
+ */
+public class LoaderPhaseTimer {
+
+    private final boolean mParallel;
+    private final long mStartTime;
+    private final ArrayList<String> mLabels = new ArrayList<>();
+    private final ArrayList<Long> mDurations = new ArrayList<>();
+
+    private long mLastSplitTime;
+
+    public LoaderPhaseTimer(boolean parallel) {
+        mParallel = parallel;
+        mStartTime = SystemClock.elapsedRealtime();
+        mLastSplitTime = mStartTime;
+    }
+
+    /**
+     * Records the time elapsed since the previous split under {@param label}.
+     */
+    public synchronized void split(String label) {
+        long now = SystemClock.elapsedRealtime();
+        mLabels.add(label);
+        mDurations.add(now - mLastSplitTime);
+        mLastSplitTime = now;
+    }
+
+    public synchronized long getTotalMs() {
+        return mLastSplitTime - mStartTime;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Loader phases (" + (mParallel ? "parallel" : "serial")
+                + "), total=" + getTotalMs() + "ms");
+        for (int i = 0; i < mLabels.size(); i++) {
+            writer.println(prefix + "  " + mLabels.get(i) + ": " + mDurations.get(i) + "ms");
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append(mParallel ? "parallel" : "serial")
+                .append(" total=").append(getTotalMs()).append("ms");
+        for (int i = 0; i < mLabels.size(); i++) {
+            sb.append(", ").append(mLabels.get(i)).append('=').append(mDurations.get(i));
+        }
+        return sb.toString();
+    }
+}
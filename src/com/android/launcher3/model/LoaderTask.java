@@ -73,6 +73,7 @@ import com.android.launcher3.icons.LauncherActivityCachingLogic;
 import com.android.launcher3.icons.ShortcutCachingLogic;
 import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
 import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.logging.TimingTraceBuffer;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.IconRequestInfo;
@@ -147,6 +148,12 @@ public class LoaderTask implements Runnable {
     private boolean mItemsDeleted = false;
     private String mDbName;
 
+    @Nullable
+    private ParallelLoaderQueries mParallelQueries;
+    @Nullable
+    private LoaderPhaseTimer mPhaseTimer;
+    private long mLastSplitNs;
+
     public LoaderTask(LauncherAppState app, AllAppsList bgAllAppsList, BgDataModel dataModel,
             ModelDelegate modelDelegate, LauncherBinder launcherBinder) {
         mApp = app;
@@ -201,9 +208,26 @@ public class LoaderTask implements Runnable {
         }
 
         Object traceToken = TraceHelper.INSTANCE.beginSection(TAG);
+        long runStartNs = TimingTraceBuffer.now();
+        mLastSplitNs = runStartNs;
         TimingLogger timingLogger = new TimingLogger(TAG, "run");
         LoaderMemoryLogger memoryLogger = new LoaderMemoryLogger();
+        boolean parallel = FeatureFlags.ENABLE_PARALLEL_LOADER_QUERIES.get();
+        mPhaseTimer = new LoaderPhaseTimer(parallel);
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
+            // Make sure any coalesced item update is persisted before reading the db.
+            mApp.getModel().getWriteQueue().flush();
+
+            if (parallel) {
+                // The apps, shortcuts and widgets queries do not depend on the workspace, start
+                // them now so that they are ready by the time the workspace is bound.
+                synchronized (this) {
+                    mParallelQueries = new ParallelLoaderQueries(mApp.getContext());
+                    mParallelQueries.start(mUserCache.getUserProfiles(),
+                            hasShortcutsPermission(mApp.getContext()));
+                }
+            }
+
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
             Trace.beginSection("LoadWorkspace");
             try {
@@ -291,8 +315,9 @@ public class LoaderTask implements Runnable {
             verifyNotStopped();
 
             // fourth step
-            List<ComponentWithLabelAndIcon> allWidgetsList =
-                    mBgDataModel.widgetsModel.update(mApp, null);
+            List<ComponentWithLabelAndIcon> allWidgetsList = mBgDataModel.widgetsModel.update(
+                    mApp, null, mParallelQueries == null
+                            ? null : mParallelQueries.getWidgetProviders());
             logASplit(timingLogger, "load widgets");
 
             verifyNotStopped();
@@ -315,6 +340,8 @@ public class LoaderTask implements Runnable {
             mModelDelegate.modelLoadComplete();
             transaction.commit();
             memoryLogger.clearLogs();
+            FileLog.d(TAG, "Loader phases: " + mPhaseTimer);
+            mApp.getModel().setLastLoaderPhaseTimer(mPhaseTimer);
         } catch (CancellationException e) {
             // Loader stopped, ignore
             logASplit(timingLogger, "Cancelled");
@@ -322,13 +349,23 @@ public class LoaderTask implements Runnable {
             memoryLogger.printLogs();
             throw e;
         } finally {
+            synchronized (this) {
+                if (mParallelQueries != null) {
+                    mParallelQueries.cancel();
+                    mParallelQueries = null;
+                }
+            }
             timingLogger.dumpToLog();
+            TimingTraceBuffer.INSTANCE.record(TAG, runStartNs);
         }
         TraceHelper.INSTANCE.endSection(traceToken);
     }
 
     public synchronized void stopLocked() {
         mStopped = true;
+        if (mParallelQueries != null) {
+            mParallelQueries.cancel();
+        }
         this.notify();
     }
 
@@ -869,6 +906,7 @@ public class LoaderTask implements Runnable {
             List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos) {
         if (FeatureFlags.ENABLE_BULK_WORKSPACE_ICON_LOADING.get()) {
             Trace.beginSection("LoadWorkspaceIconsInBulk");
+            long startNs = TimingTraceBuffer.now();
             try {
                 mIconCache.getTitlesAndIconsInBulk(iconRequestInfos);
                 for (IconRequestInfo<WorkspaceItemInfo> iconRequestInfo : iconRequestInfos) {
@@ -879,6 +917,8 @@ public class LoaderTask implements Runnable {
                 }
             } finally {
                 Trace.endSection();
+                TimingTraceBuffer.INSTANCE.record(
+                        "LoadWorkspaceIconsInBulk", startNs, iconRequestInfos.size());
             }
         }
     }
@@ -949,7 +989,11 @@ public class LoaderTask implements Runnable {
         List<IconRequestInfo<AppInfo>> iconRequestInfos = new ArrayList<>();
         for (UserHandle user : profiles) {
             // Query for the set of apps
-            final List<LauncherActivityInfo> apps = mLauncherApps.getActivityList(null, user);
+            List<LauncherActivityInfo> apps = mParallelQueries == null
+                    ? null : mParallelQueries.getActivityList(user);
+            if (apps == null) {
+                apps = mLauncherApps.getActivityList(null, user);
+            }
             // Fail if we don't have any apps
             // TODO: Fix this. Only fail for the current user.
             if (apps == null || apps.isEmpty()) {
@@ -990,12 +1034,15 @@ public class LoaderTask implements Runnable {
 
         if (FeatureFlags.ENABLE_BULK_ALL_APPS_ICON_LOADING.get()) {
             Trace.beginSection("LoadAllAppsIconsInBulk");
+            long startNs = TimingTraceBuffer.now();
             try {
                 mIconCache.getTitlesAndIconsInBulk(iconRequestInfos);
                 iconRequestInfos.forEach(iconRequestInfo ->
                         mBgAllAppsList.updateSectionName(iconRequestInfo.itemInfo));
             } finally {
                 Trace.endSection();
+                TimingTraceBuffer.INSTANCE.record(
+                        "LoadAllAppsIconsInBulk", startNs, iconRequestInfos.size());
             }
         }
 
@@ -1018,8 +1065,12 @@ public class LoaderTask implements Runnable {
         if (mBgAllAppsList.hasShortcutHostPermission()) {
             for (UserHandle user : mUserCache.getUserProfiles()) {
                 if (mUserManager.isUserUnlocked(user)) {
-                    List<ShortcutInfo> shortcuts = new ShortcutRequest(mApp.getContext(), user)
-                            .query(ShortcutRequest.ALL);
+                    List<ShortcutInfo> shortcuts = mParallelQueries == null
+                            ? null : mParallelQueries.getDeepShortcuts(user);
+                    if (shortcuts == null) {
+                        shortcuts = new ShortcutRequest(mApp.getContext(), user)
+                                .query(ShortcutRequest.ALL);
+                    }
                     allShortcuts.addAll(shortcuts);
                     mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts);
                 }
@@ -1096,7 +1147,12 @@ public class LoaderTask implements Runnable {
         FileLog.d(TAG, widgetDimension.toString());
     }
 
-    private static void logASplit(@Nullable TimingLogger timingLogger, String label) {
+    private void logASplit(@Nullable TimingLogger timingLogger, String label) {
+        if (mPhaseTimer != null) {
+            mPhaseTimer.split(label);
+        }
+        TimingTraceBuffer.INSTANCE.record(label, mLastSplitNs);
+        mLastSplitNs = TimingTraceBuffer.now();
         if (timingLogger != null) {
             timingLogger.addSplit(label);
             if (DEBUG) {
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Queue of the model tasks in front of the model thread.
+ *
+ * Pending tasks are run by priority, and in order within a priority: interactive tasks, such as
+ * search queries, are run before any pending bulk update. A single task can't be interrupted once
+ * it started though. Tasks posted directly to the model executor are not affected.
+ *
+ * A task with a coalesce key is dropped if a pending task has the same targets and kind of
+ * change, and no other task was scheduled for any of those targets in between, so that bursts of
+ * identical updates of a package run only once. The targets are tracked one by one, so that a
+ * task for an overlapping set of targets prevents the coalescing.
+ */
+public class ModelTaskScheduler {
+
+    public static final int PRIORITY_INTERACTIVE = 0;
+    public static final int PRIORITY_DEFAULT = 1;
+    public static final int PRIORITY_BULK = 2;
+
+    private final Handler mHandler;
+    private final Runnable mRunNext = this::runNext;
+
+    // All fields below are guarded by this
+    private final PriorityQueue<Entry> mQueue = new PriorityQueue<>();
+    // Latest pending entry of each target of the coalesce keys
+    private final HashMap<Object, Entry> mPendingTargets = new HashMap<>();
+    private final HashMap<String, TaskStats> mStats = new HashMap<>();
+    private long mNextSequence;
+    private long mScheduledCount;
+    private long mCoalescedCount;
+    private long mCancelledCount;
+    private int mMaxQueueDepth;
+
+    public ModelTaskScheduler(@NonNull Handler handler) {
+        mHandler = handler;
+    }
+
+    /**
+     * Schedules {@param task} to run on the handler thread.
+     *
+     * @param coalesceKey the targets and the kind of change of the task, or null if the task can
+     *                    not be coalesced.
+     */
+    public void schedule(@NonNull Runnable task, int priority,
+            @Nullable Pair<? extends Set<?>, ?> coalesceKey) {
+        synchronized (this) {
+            mScheduledCount++;
+            if (coalesceKey != null) {
+                Entry pending = getPendingEntry(coalesceKey.first);
+                if (pending != null && pending.coalesceKey.equals(coalesceKey)) {
+                    mCoalescedCount++;
+                    getStats(task).coalesced++;
+                    return;
+                }
+            }
+            Entry entry = new Entry(task, priority, mNextSequence++, coalesceKey,
+                    SystemClock.elapsedRealtimeNanos());
+            mQueue.add(entry);
+            if (coalesceKey != null) {
+                for (Object target : coalesceKey.first) {
+                    mPendingTargets.put(target, entry);
+                }
+            }
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, mQueue.size());
+        }
+        // One run is posted per entry, and each run picks the first pending entry
+        if (priority == PRIORITY_INTERACTIVE) {
+            mHandler.postAtFrontOfQueue(mRunNext);
+        } else {
+            mHandler.post(mRunNext);
+        }
+    }
+
+    /**
+     * Removes {@param task} if it did not start yet.
+     *
+     * @return true if the task was removed.
+     */
+    public boolean cancel(@NonNull Runnable task) {
+        synchronized (this) {
+            Iterator<Entry> it = mQueue.iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.task == task) {
+                    it.remove();
+                    removeTarget(entry);
+                    mCancelledCount++;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     */
+    public synchronized int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    @WorkerThread
+    private void runNext() {
+        Entry entry;
+        synchronized (this) {
+            entry = mQueue.poll();
+            if (entry == null) {
+                // Already run by a run posted at the front, or cancelled
+                return;
+            }
+            removeTarget(entry);
+        }
+        long startNs = SystemClock.elapsedRealtimeNanos();
+        try {
+            entry.task.run();
+        } finally {
+            long endNs = SystemClock.elapsedRealtimeNanos();
+            synchronized (this) {
+                getStats(entry.task).onRun(startNs - entry.scheduledNs, endNs - startNs);
+            }
+        }
+    }
+
+    /**
+     * Returns the latest pending entry of all of {@param targets}, or null if they don't have the
+     * same one.
+     */
+    @Nullable
+    private Entry getPendingEntry(Set<?> targets) {
+        Entry pending = null;
+        for (Object target : targets) {
+            Entry entry = mPendingTargets.get(target);
+            if (entry == null || (pending != null && entry != pending)) {
+                return null;
+            }
+            pending = entry;
+        }
+        return pending;
+    }
+
+    private void removeTarget(Entry entry) {
+        if (entry.coalesceKey == null) {
+            return;
+        }
+        for (Object target : entry.coalesceKey.first) {
+            if (mPendingTargets.get(target) == entry) {
+                mPendingTargets.remove(target);
+            }
+        }
+    }
+
+    private TaskStats getStats(Runnable task) {
+        String name = task.getClass().getName();
+        name = name.substring(name.lastIndexOf('.') + 1);
+        TaskStats stats = mStats.get(name);
+        if (stats == null) {
+            stats = new TaskStats();
+            mStats.put(name, stats);
+        }
+        return stats;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "ModelTaskScheduler: scheduled=" + mScheduledCount
+                + " coalesced=" + mCoalescedCount
+                + " cancelled=" + mCancelledCount
+                + " pending=" + mQueue.size()
+                + " maxPending=" + mMaxQueueDepth);
+        for (Map.Entry<String, TaskStats> e : mStats.entrySet()) {
+            TaskStats stats = e.getValue();
+            writer.println(prefix + "  " + e.getKey() + ": runs=" + stats.runs
+                    + " coalesced=" + stats.coalesced
+                    + " avgWait=" + toMs(stats.runs == 0 ? 0 : stats.totalWaitNs / stats.runs)
+                    + "ms maxWait=" + toMs(stats.maxWaitNs)
+                    + "ms avgRun=" + toMs(stats.runs == 0 ? 0 : stats.totalRunNs / stats.runs)
+                    + "ms maxRun=" + toMs(stats.maxRunNs) + "ms");
+        }
+    }
+
+    private static float toMs(long ns) {
+        return ns / 1_000 / 1000f;
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        final Runnable task;
+        final int priority;
+        final long sequence;
+        final Pair<? extends Set<?>, ?> coalesceKey;
+        final long scheduledNs;
+
+        Entry(Runnable task, int priority, long sequence,
+                Pair<? extends Set<?>, ?> coalesceKey, long scheduledNs) {
+            this.task = task;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.coalesceKey = coalesceKey;
+            this.scheduledNs = scheduledNs;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return priority != other.priority
+                    ? Integer.compare(priority, other.priority)
+                    : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class TaskStats {
+        long runs;
+        long coalesced;
+        long totalWaitNs;
+        long maxWaitNs;
+        long totalRunNs;
+        long maxRunNs;
+
+        void onRun(long waitNs, long runNs) {
+            runs++;
+            totalWaitNs += waitNs;
+            maxWaitNs = Math.max(maxWaitNs, waitNs);
+            totalRunNs += runNs;
+            maxRunNs = Math.max(maxRunNs, runNs);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherProvider;
+import com.android.launcher3.LauncherSettings.Favorites;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind queue for item updates made through {@link ModelWriter}.
+ *
+ * Updates to the same item id made within {@link #COALESCE_WINDOW_MS} are merged into a single
+ * update, and all pending updates are written in a single {@code applyBatch} transaction. The
+ * queue is always flushed on the model thread, before any other db operation made by
+ * {@link ModelWriter} or any model task, so that readers of the db never see a stale state.
+ */
+public class ModelWriteQueue {
+
+    private static final String TAG = "ModelWriteQueue";
+
+    private static final long COALESCE_WINDOW_MS = 150;
+
+    /**
+     * A pending update of a single item
+     */
+    public interface PendingWrite {
+
+        int getItemId();
+
+        /**
+         * Returns the values to write, called on the model thread at flush time.
+         */
+        ContentValues getValues();
+
+        /**
+         * Called on the model thread once the values have been written.
+         */
+        void onWritten();
+    }
+
+    private final Context mContext;
+    private final Runnable mFlushRunnable = this::flush;
+
+    // Pending writes grouped by item id, in the order of their first update
+    private final LinkedHashMap<Integer, ArrayList<PendingWrite>> mPendingWrites =
+            new LinkedHashMap<>();
+    private boolean mFlushScheduled;
+
+    private final AtomicLong mQueuedCount = new AtomicLong();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+    private final AtomicLong mFlushedCount = new AtomicLong();
+    private final AtomicLong mTransactionCount = new AtomicLong();
+
+    public ModelWriteQueue(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Adds an update to the queue and schedules a flush after the coalescing window.
+     */
+    public void enqueue(PendingWrite write) {
+        mQueuedCount.incrementAndGet();
+        synchronized (mPendingWrites) {
+            ArrayList<PendingWrite> writes = mPendingWrites.get(write.getItemId());
+            if (writes == null) {
+                writes = new ArrayList<>(1);
+                mPendingWrites.put(write.getItemId(), writes);
+            } else {
+                mCoalescedCount.incrementAndGet();
+            }
+            writes.add(write);
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                MODEL_EXECUTOR.getHandler().postDelayed(mFlushRunnable, COALESCE_WINDOW_MS);
+            }
+        }
+    }
+
+    /**
+     * Flushes any pending update on the model thread without waiting for the coalescing window,
+     * eg. when launcher is paused.
+     */
+    public void flushAsync() {
+        MODEL_EXECUTOR.execute(mFlushRunnable);
+    }
+
+    /**
+     * Writes all the pending updates in a single transaction.
+     */
+    @WorkerThread
+    public void flush() {
+        ArrayList<ArrayList<PendingWrite>> pending;
+        synchronized (mPendingWrites) {
+            if (mFlushScheduled) {
+                mFlushScheduled = false;
+                MODEL_EXECUTOR.getHandler().removeCallbacks(mFlushRunnable);
+            }
+            if (mPendingWrites.isEmpty()) {
+                return;
+            }
+            pending = new ArrayList<>(mPendingWrites.values());
+            mPendingWrites.clear();
+        }
+
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>(pending.size());
+        for (ArrayList<PendingWrite> writes : pending) {
+            // Later updates override the columns of earlier ones
+            ContentValues values = new ContentValues();
+            for (PendingWrite write : writes) {
+                values.putAll(write.getValues());
+            }
+            ops.add(ContentProviderOperation
+                    .newUpdate(Favorites.getContentUri(writes.get(0).getItemId()))
+                    .withValues(values)
+                    .build());
+        }
+        try {
+            mContext.getContentResolver().applyBatch(LauncherProvider.AUTHORITY, ops);
+            mTransactionCount.incrementAndGet();
+            mFlushedCount.addAndGet(ops.size());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to write " + ops.size() + " item updates", e);
+        }
+        for (ArrayList<PendingWrite> writes : pending) {
+            // The in-memory model only needs to be synced with the final state of the item
+            writes.get(writes.size() - 1).onWritten();
+        }
+    }
+
+    public long getQueuedCount() {
+        return mQueuedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    public long getFlushedCount() {
+        return mFlushedCount.get();
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        int pendingCount;
+        synchronized (mPendingWrites) {
+            pendingCount = mPendingWrites.size();
+        }
+        writer.println(prefix + "ModelWriteQueue: queued=" + mQueuedCount.get()
+                + " coalesced=" + mCoalescedCount.get()
+                + " flushed=" + mFlushedCount.get()
+                + " transactions=" + mTransactionCount.get()
+                + " pending=" + pendingCount);
+    }
+}
@@ -18,7 +18,6 @@ package com.android.launcher3.model;
 
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
-import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -32,7 +31,6 @@ import androidx.annotation.Nullable;
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.LauncherModel;
 import com.android.launcher3.LauncherModel.CallbackTask;
-import com.android.launcher3.LauncherProvider;
 import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.LauncherSettings.Settings;
@@ -42,6 +40,7 @@ import com.android.launcher3.celllayout.CellPosMapper.CellPos;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.BgDataModel.Callbacks;
+import com.android.launcher3.model.ModelWriteQueue.PendingWrite;
 import com.android.launcher3.model.data.FolderInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
@@ -175,13 +174,13 @@ public class ModelWriter {
         updateItemInfoProps(item, container, screenId, cellX, cellY);
         notifyItemModified(item);
 
-        enqueueDeleteRunnable(new UpdateItemRunnable(item, () ->
+        enqueueUpdate(new UpdateItemWrite(item, () ->
                 new ContentWriter(mContext)
                         .put(Favorites.CONTAINER, item.container)
                         .put(Favorites.CELLX, item.cellX)
                         .put(Favorites.CELLY, item.cellY)
                         .put(Favorites.RANK, item.rank)
-                        .put(Favorites.SCREEN, item.screenId)));
+                        .put(Favorites.SCREEN, item.screenId)), true /* undoable */);
     }
 
     /**
@@ -189,7 +188,6 @@ public class ModelWriter {
      * cellX, cellY have already been updated on the ItemInfos.
      */
     public void moveItemsInDatabase(final ArrayList<ItemInfo> items, int container, int screen) {
-        ArrayList<ContentValues> contentValues = new ArrayList<>();
         int count = items.size();
         notifyOtherCallbacks(c -> c.bindItemsModified(items));
 
@@ -204,9 +202,8 @@ public class ModelWriter {
             values.put(Favorites.RANK, item.rank);
             values.put(Favorites.SCREEN, item.screenId);
 
-            contentValues.add(values);
+            enqueueUpdate(new UpdateItemValuesWrite(item, values), true /* undoable */);
         }
-        enqueueDeleteRunnable(new UpdateItemsRunnable(items, contentValues));
     }
 
     /**
@@ -219,7 +216,7 @@ public class ModelWriter {
         item.spanY = spanY;
         notifyItemModified(item);
 
-        MODEL_EXECUTOR.execute(new UpdateItemRunnable(item, () ->
+        enqueueUpdate(new UpdateItemWrite(item, () ->
                 new ContentWriter(mContext)
                         .put(Favorites.CONTAINER, item.container)
                         .put(Favorites.CELLX, item.cellX)
@@ -227,7 +224,7 @@ public class ModelWriter {
                         .put(Favorites.RANK, item.rank)
                         .put(Favorites.SPANX, item.spanX)
                         .put(Favorites.SPANY, item.spanY)
-                        .put(Favorites.SCREEN, item.screenId)));
+                        .put(Favorites.SCREEN, item.screenId)), false /* undoable */);
     }
 
     /**
@@ -235,11 +232,24 @@ public class ModelWriter {
      */
     public void updateItemInDatabase(ItemInfo item) {
         notifyItemModified(item);
-        MODEL_EXECUTOR.execute(new UpdateItemRunnable(item, () -> {
+        enqueueUpdate(new UpdateItemWrite(item, () -> {
             ContentWriter writer = new ContentWriter(mContext);
             item.onAddToDatabase(writer);
             return writer;
-        }));
+        }), false /* undoable */);
+    }
+
+    /**
+     * Adds the update to the shared {@link ModelWriteQueue}. Undoable updates are held back
+     * until {@link #commitDelete()} if a delete operation is pending commit.
+     */
+    private void enqueueUpdate(PendingWrite write, boolean undoable) {
+        ModelWriteQueue writeQueue = mModel.getWriteQueue();
+        if (undoable && mPreparingToUndo) {
+            mDeleteRunnables.add(() -> writeQueue.enqueue(write));
+        } else {
+            writeQueue.enqueue(write);
+        }
     }
 
     private void notifyItemModified(ItemInfo item) {
@@ -261,6 +271,7 @@ public class ModelWriter {
         ModelVerifier verifier = new ModelVerifier();
         final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
         MODEL_EXECUTOR.execute(() -> {
+            mModel.getWriteQueue().flush();
             // Write the item on background thread, as some properties might have been updated in
             // the background.
             final ContentWriter writer = new ContentWriter(mContext);
@@ -306,6 +317,7 @@ public class ModelWriter {
                 + ". Reason: [" + (TextUtils.isEmpty(reason) ? "unknown" : reason) + "]");
         notifyDelete(items);
         enqueueDeleteRunnable(() -> {
+            mModel.getWriteQueue().flush();
             for (ItemInfo item : items) {
                 final Uri uri = Favorites.getContentUri(item.id);
                 mContext.getContentResolver().delete(uri, null, null);
@@ -324,6 +336,7 @@ public class ModelWriter {
         notifyDelete(Collections.singleton(info));
 
         enqueueDeleteRunnable(() -> {
+            mModel.getWriteQueue().flush();
             ContentResolver cr = mContext.getContentResolver();
             cr.delete(LauncherSettings.Favorites.getContentUri(),
                     LauncherSettings.Favorites.CONTAINER + "=" + info.id, null);
@@ -416,62 +429,54 @@ public class ModelWriter {
         });
     }
 
-    private class UpdateItemRunnable extends UpdateItemBaseRunnable {
-        private final ItemInfo mItem;
+    private class UpdateItemWrite extends UpdateItemBaseWrite {
         private final Supplier<ContentWriter> mWriter;
-        private final int mItemId;
 
-        UpdateItemRunnable(ItemInfo item, Supplier<ContentWriter> writer) {
-            mItem = item;
+        UpdateItemWrite(ItemInfo item, Supplier<ContentWriter> writer) {
+            super(item);
             mWriter = writer;
-            mItemId = item.id;
         }
 
         @Override
-        public void run() {
-            Uri uri = Favorites.getContentUri(mItemId);
-            mContext.getContentResolver().update(uri, mWriter.get().getValues(mContext),
-                    null, null);
-            updateItemArrays(mItem, mItemId);
+        public ContentValues getValues() {
+            return mWriter.get().getValues(mContext);
         }
     }
 
-    private class UpdateItemsRunnable extends UpdateItemBaseRunnable {
-        private final ArrayList<ContentValues> mValues;
-        private final ArrayList<ItemInfo> mItems;
+    private class UpdateItemValuesWrite extends UpdateItemBaseWrite {
+        private final ContentValues mValues;
 
-        UpdateItemsRunnable(ArrayList<ItemInfo> items, ArrayList<ContentValues> values) {
+        UpdateItemValuesWrite(ItemInfo item, ContentValues values) {
+            super(item);
             mValues = values;
-            mItems = items;
         }
 
         @Override
-        public void run() {
-            ArrayList<ContentProviderOperation> ops = new ArrayList<>();
-            int count = mItems.size();
-            for (int i = 0; i < count; i++) {
-                ItemInfo item = mItems.get(i);
-                final int itemId = item.id;
-                final Uri uri = Favorites.getContentUri(itemId);
-                ContentValues values = mValues.get(i);
-
-                ops.add(ContentProviderOperation.newUpdate(uri).withValues(values).build());
-                updateItemArrays(item, itemId);
-            }
-            try {
-                mContext.getContentResolver().applyBatch(LauncherProvider.AUTHORITY, ops);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        public ContentValues getValues() {
+            return mValues;
         }
     }
 
-    private abstract class UpdateItemBaseRunnable implements Runnable {
+    private abstract class UpdateItemBaseWrite implements PendingWrite {
         private final StackTraceElement[] mStackTrace;
         private final ModelVerifier mVerifier = new ModelVerifier();
+        private final ItemInfo mItem;
+        private final int mItemId;
 
-        UpdateItemBaseRunnable() {
+        UpdateItemBaseWrite(ItemInfo item) {
             mStackTrace = new Throwable().getStackTrace();
+            mItem = item;
+            mItemId = item.id;
+        }
+
+        @Override
+        public int getItemId() {
+            return mItemId;
+        }
+
+        @Override
+        public void onWritten() {
+            updateItemArrays(mItem, mItemId);
         }
 
         protected void updateItemArrays(ItemInfo item, int itemId) {
@@ -495,6 +500,10 @@ public class ModelWriter {
                 // as in Workspace.onDrop. Here, we just add/remove them from the list of items
                 // that are on the desktop, as appropriate
                 ItemInfo modelItem = mBgDataModel.itemsIdMap.get(itemId);
+                if (modelItem != null) {
+                    // The target of the item might have changed with this update
+                    mBgDataModel.reindexItem(modelItem);
+                }
                 if (modelItem != null &&
                         (modelItem.container == Favorites.CONTAINER_DESKTOP ||
                                 modelItem.container == Favorites.CONTAINER_HOTSEAT)) {
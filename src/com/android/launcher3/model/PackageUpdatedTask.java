@@ -28,6 +28,7 @@ import android.content.pm.ShortcutInfo;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.Log;
+import android.util.Pair;
 
 import androidx.annotation.NonNull;
 
@@ -52,6 +53,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.widget.WidgetPreviewCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -60,6 +62,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -96,11 +100,23 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
         mPackages = packages;
     }
 
+    @Override
+    public Pair<? extends Set<?>, ?> getCoalesceKey() {
+        // The package state is read when the task is run, so identical pending updates are
+        // redundant
+        HashSet<PackageUserKey> targets = new HashSet<>();
+        for (String packageName : mPackages) {
+            targets.add(new PackageUserKey(packageName, mUser));
+        }
+        return Pair.create(targets, Pair.create(getClass(), mOp));
+    }
+
     @Override
     public void execute(@NonNull final LauncherAppState app, @NonNull final BgDataModel dataModel,
             @NonNull final AllAppsList appsList) {
         final Context context = app.getContext();
         final IconCache iconCache = app.getIconCache();
+        final WidgetPreviewCache previewCache = WidgetPreviewCache.INSTANCE.get(context);
 
         final String[] packages = mPackages;
         final int N = packages.length;
@@ -132,6 +148,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                     for (int i = 0; i < N; i++) {
                         if (DEBUG) Log.d(TAG, "mAllAppsList.updatePackage " + packages[i]);
                         iconCache.updateIconsForPkg(packages[i], mUser);
+                        previewCache.invalidatePackage(packages[i], mUser);
                         activitiesLists.put(
                                 packages[i], appsList.updatePackage(context, packages[i], mUser));
 
@@ -151,6 +168,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                 for (int i = 0; i < N; i++) {
                     FileLog.d(TAG, "Removing app icon" + packages[i]);
                     iconCache.removeIconsForPkg(packages[i], mUser);
+                    previewCache.invalidatePackage(packages[i], mUser);
                 }
                 // Fall through
             }
@@ -199,7 +217,7 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
             // For system apps, package manager send OP_UPDATE when an app is enabled.
             final boolean isNewApkAvailable = mOp == OP_ADD || mOp == OP_UPDATE;
             synchronized (dataModel) {
-                dataModel.forAllWorkspaceItemInfos(mUser, si -> {
+                Consumer<WorkspaceItemInfo> updateOp = si -> {
 
                     boolean infoUpdated = false;
                     boolean shortcutUpdated = false;
@@ -297,7 +315,13 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
                     if (infoUpdated && si.id != ItemInfo.NO_ID) {
                         getModelWriter().updateItemInDatabase(si);
                     }
-                });
+                };
+                if (mOp == OP_USER_AVAILABILITY_CHANGE) {
+                    dataModel.forAllWorkspaceItemInfos(mUser, updateOp);
+                } else {
+                    // Only items of the updated packages can be affected
+                    dataModel.forAllWorkspaceItemInfos(mUser, packageSet, updateOp);
+                }
 
                 for (LauncherAppWidgetInfo widgetInfo : dataModel.appWidgets) {
                     if (mUser.equals(widgetInfo.user)
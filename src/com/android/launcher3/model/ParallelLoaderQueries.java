@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.ShortcutInfo;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.shortcuts.ShortcutRequest;
+import com.android.launcher3.shortcuts.ShortcutRequest.QueryResult;
+import com.android.launcher3.util.Executors.SimpleThreadFactory;
+import com.android.launcher3.widget.WidgetManagerHelper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues the binder queries needed by {@link LoaderTask} which do not depend on each other
+ * (activity list per user, deep shortcuts per user and widget providers) on a small worker pool,
+ * so that they overlap with the workspace load.
+ *
+ * Only the raw query results are produced here; all {@link BgDataModel} and {@link AllAppsList}
+ * mutations still happen on the loader thread, in the same order as before.
+ */
+public class ParallelLoaderQueries {
+
+    private static final String TAG = "ParallelLoaderQueries";
+
+    private static final int POOL_SIZE = 3;
+    private static final int KEEP_ALIVE_SECONDS = 5;
+
+    private static final ThreadPoolExecutor QUERY_EXECUTOR;
+
+    static {
+        QUERY_EXECUTOR = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new SimpleThreadFactory("launcher-loader-query-",
+                        Process.THREAD_PRIORITY_FOREGROUND));
+        QUERY_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final Context mContext;
+    private final Map<UserHandle, Future<List<LauncherActivityInfo>>> mActivityLists =
+            new ArrayMap<>();
+    private final Map<UserHandle, Future<QueryResult>> mDeepShortcuts = new ArrayMap<>();
+    @Nullable
+    private Future<List<AppWidgetProviderInfo>> mWidgetProviders;
+
+    public ParallelLoaderQueries(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Starts all the queries for the provided profiles.
+     *
+     * @param queryDeepShortcuts whether launcher can query deep shortcuts at all. Shortcuts are
+     *                           only queried for users which are currently unlocked.
+     */
+    public void start(List<UserHandle> profiles, boolean queryDeepShortcuts) {
+        LauncherApps launcherApps = mContext.getSystemService(LauncherApps.class);
+        UserManager userManager = mContext.getSystemService(UserManager.class);
+        for (UserHandle user : profiles) {
+            mActivityLists.put(user,
+                    QUERY_EXECUTOR.submit(() -> launcherApps.getActivityList(null, user)));
+            if (queryDeepShortcuts && userManager.isUserUnlocked(user)) {
+                mDeepShortcuts.put(user, QUERY_EXECUTOR.submit(() ->
+                        new ShortcutRequest(mContext, user).query(ShortcutRequest.ALL)));
+            }
+        }
+        mWidgetProviders = QUERY_EXECUTOR.submit(() ->
+                new WidgetManagerHelper(mContext).getAllProviders(null));
+    }
+
+    /**
+     * Returns the activity list for the user, or null if it was not queried or the query failed,
+     * in which case the caller should query it directly.
+     */
+    @WorkerThread
+    @Nullable
+    public List<LauncherActivityInfo> getActivityList(UserHandle user) {
+        return await(mActivityLists.get(user));
+    }
+
+    /**
+     * Returns the deep shortcuts for the user, or null if they were not queried or the query
+     * failed.
+     */
+    @WorkerThread
+    @Nullable
+    public QueryResult getDeepShortcuts(UserHandle user) {
+        return await(mDeepShortcuts.get(user));
+    }
+
+    /**
+     * Returns all widget providers, or null if the query failed.
+     */
+    @WorkerThread
+    @Nullable
+    public List<AppWidgetProviderInfo> getWidgetProviders() {
+        return await(mWidgetProviders);
+    }
+
+    /**
+     * Cancels any query which has not completed yet.
+     */
+    public void cancel() {
+        mActivityLists.values().forEach(f -> f.cancel(false));
+        mDeepShortcuts.values().forEach(f -> f.cancel(false));
+        if (mWidgetProviders != null) {
+            mWidgetProviders.cancel(false);
+        }
+    }
+
+    @Nullable
+    private static <T> T await(@Nullable Future<T> future) {
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // Keep the interrupt, so that the loader sees that it was cancelled
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted while waiting for parallel query", e);
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            Log.w(TAG, "Parallel query failed, falling back to direct query", e);
+            return null;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import androidx.annotation.VisibleForTesting;
 import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.pm.PackageInstallInfo;
+import com.android.launcher3.util.LabelComparator.LabelKey;
 import com.android.launcher3.util.PackageManagerHelper;
 
 import java.util.Comparator;
@@ -61,6 +62,13 @@ public class AppInfo extends ItemInfoWithIcon implements WorkspaceItemFactory {
     // Section name used for indexing.
     public String sectionName = "";
 
+    // Keys of the title and of the section name, for sorting. They are ignored once the title
+    // or the locale changed.
+    @Nullable
+    public LabelKey titleKey;
+    @Nullable
+    public LabelKey sectionKey;
+
     public AppInfo() {
         itemType = LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
     }
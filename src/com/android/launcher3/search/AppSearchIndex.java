@@ -0,0 +1,556 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.util.IntArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+/**
+ * Search index over app titles which gives the same results as matching every title with
+ * {@link StringMatcherUtility#matches}, without scanning all the apps on every query.
+ *
+ * <ul>
+ *   <li>Printable ASCII titles are indexed in a prefix trie of their lower-cased suffixes, one
+ *   for each word break defined by {@link StringMatcher#isBreak}. For these titles collator
+ *   matching at primary strength is equivalent to case insensitive matching, so an ASCII query
+ *   is answered by walking the trie.</li>
+ *   <li>All other titles (accents, CJK, Hiragana...) are kept in a residual list which is always
+ *   matched with the collator, to keep its exact semantics.</li>
+ *   <li>Queries with Han characters use a substring match in {@link StringMatcherUtility}, which
+ *   is answered by a unigram/bigram table of the non-ASCII titles.</li>
+ * </ul>
+ *
+ * The index is kept in sync with the app list incrementally: every query first walks the list
+ * comparing title references, and only re-indexes apps which were added, removed or renamed.
+ * The list order is preserved through a sequence number assigned when an app is first seen, as
+ * apps are only ever appended to or removed from the list.
+ */
+@WorkerThread
+public class AppSearchIndex {
+
+    // Maximum depth of the trie, longer queries are verified with the matcher
+    private static final int MAX_TRIE_DEPTH = 12;
+
+    // Only used for break points, which do not depend on the locale
+    private static final StringMatcher BREAK_MATCHER = StringMatcher.getInstance();
+
+    private final IdentityHashMap<AppInfo, Entry> mEntries = new IdentityHashMap<>();
+    private final SparseArray<Entry> mEntriesBySeq = new SparseArray<>();
+    private final TrieNode mTrieRoot = new TrieNode();
+    // Non-ASCII entries, sorted by sequence number
+    private final ArrayList<Entry> mResidual = new ArrayList<>();
+    // Unigrams and bigrams of non-ASCII titles
+    private final HashMap<Long, PostingList> mNgrams = new HashMap<>();
+
+    private int mNextSeq = 0;
+    private int mGeneration = 0;
+    private int mVersion = 0;
+
+    private StringMatcher mMatcher;
+    private Locale mMatcherLocale;
+    private boolean mTrieEnabled;
+
+    /**
+     * Returns up to {@param maxResults} apps, in the order of {@param apps}, whose title matches
+     * {@param query}, same as {@link StringMatcherUtility#matches}.
+     */
+    @NonNull
+    public List<AppInfo> search(List<AppInfo> apps, String query, int maxResults) {
+        sync(apps);
+        StringMatcher matcher = mMatcher;
+        query = query.toLowerCase();
+        ArrayList<AppInfo> result = new ArrayList<>();
+        if (query.isEmpty()) {
+            return result;
+        }
+        if (hasHanCharacter(query)) {
+            searchNgrams(query, maxResults, result);
+        } else if (mTrieEnabled && isIndexable(query)) {
+            searchTrie(query, maxResults, matcher, result);
+        } else {
+            // The collator can match non-ASCII queries with any title, eg. "é" with "e".
+            for (int i = 0, total = apps.size(); i < total && result.size() < maxResults; i++) {
+                AppInfo info = apps.get(i);
+                if (StringMatcherUtility.matches(query, info.title.toString(), matcher)) {
+                    result.add(info);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of apps in the index
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    private void searchTrie(String query, int maxResults, StringMatcher matcher,
+            ArrayList<AppInfo> result) {
+        TrieNode node = mTrieRoot;
+        int depth = Math.min(query.length(), MAX_TRIE_DEPTH);
+        for (int i = 0; i < depth && node != null; i++) {
+            node = node.getChild(query.charAt(i));
+        }
+        boolean needsVerification = query.length() > MAX_TRIE_DEPTH;
+
+        // Merge the trie matches with the residual entries, in list order
+        PostingList postings = node == null ? null : node.postings;
+        int postingCount = postings == null ? 0 : postings.size;
+        int residualCount = mResidual.size();
+        int p = 0;
+        int r = 0;
+        while (result.size() < maxResults && (p < postingCount || r < residualCount)) {
+            int postingSeq = p < postingCount ? postings.seqs[p] : Integer.MAX_VALUE;
+            Entry residual = r < residualCount ? mResidual.get(r) : null;
+            if (residual == null || postingSeq < residual.seq) {
+                Entry entry = mEntriesBySeq.get(postingSeq);
+                if (!needsVerification
+                        || StringMatcherUtility.matches(query, entry.title, matcher)) {
+                    result.add(entry.info);
+                }
+                p++;
+            } else {
+                if (StringMatcherUtility.matches(query, residual.title, matcher)) {
+                    result.add(residual.info);
+                }
+                r++;
+            }
+        }
+    }
+
+    private void searchNgrams(String query, int maxResults, ArrayList<AppInfo> result) {
+        int first = query.codePointAt(0);
+        int firstLength = Character.charCount(first);
+        PostingList postings = mNgrams.get(firstLength < query.length()
+                ? ngramKey(first, query.codePointAt(firstLength)) : ngramKey(first, -1));
+        if (postings == null) {
+            return;
+        }
+        for (int i = 0; i < postings.size && result.size() < maxResults; i++) {
+            Entry entry = mEntriesBySeq.get(postings.seqs[i]);
+            if (entry.title.length() >= query.length() && entry.lowerTitle.contains(query)) {
+                result.add(entry.info);
+            }
+        }
+    }
+
+    /**
+     * Returns the apps of {@param candidates} whose title matches {@param query}. Used to refine
+     * the result of a previous query, see {@link #canRefine}.
+     */
+    @NonNull
+    public List<AppInfo> refine(List<AppInfo> candidates, String query) {
+        query = query.toLowerCase();
+        StringMatcher matcher = getMatcher();
+        boolean useContains = hasHanCharacter(query);
+        ArrayList<AppInfo> result = new ArrayList<>();
+        for (int i = 0, total = candidates.size(); i < total; i++) {
+            AppInfo info = candidates.get(i);
+            String title = info.title.toString();
+            if (useContains ? title.length() >= query.length()
+                    && title.toLowerCase().contains(query)
+                    : StringMatcherUtility.matches(query, title, matcher)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if every app matching {@param query} also matches {@param previousQuery}, so
+     * that the result of the previous query can be refined instead of searching all apps.
+     */
+    public static boolean canRefine(String previousQuery, String query) {
+        // Queries with Han characters use a substring match, unlike the break aware match
+        return query.toLowerCase().startsWith(previousQuery.toLowerCase())
+                && hasHanCharacter(previousQuery) == hasHanCharacter(query);
+    }
+
+    /**
+     * Updates the index with the changes made to {@param apps} since the last call, and returns
+     * a version which changes every time the titles of the index change.
+     */
+    public int sync(List<AppInfo> apps) {
+        getMatcher();
+        syncEntries(apps);
+        return mVersion;
+    }
+
+    private void syncEntries(List<AppInfo> apps) {
+        int generation = ++mGeneration;
+        int lastSeq = -1;
+        boolean ordered = true;
+        for (int i = 0, total = apps.size(); i < total; i++) {
+            AppInfo info = apps.get(i);
+            Entry entry = mEntries.get(info);
+            if (entry == null) {
+                entry = new Entry(info, mNextSeq++, mTrieEnabled);
+                mEntries.put(info, entry);
+                mEntriesBySeq.put(entry.seq, entry);
+                addToIndex(entry);
+                mVersion++;
+            } else if (entry.titleRef != info.title) {
+                removeFromIndex(entry);
+                entry.setTitle(info.title, mTrieEnabled);
+                addToIndex(entry);
+                mVersion++;
+            }
+            entry.generation = generation;
+            ordered &= entry.seq > lastSeq;
+            lastSeq = entry.seq;
+        }
+
+        if (mEntries.size() != apps.size()) {
+            Iterator<Entry> it = mEntries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.generation != generation) {
+                    removeFromIndex(entry);
+                    mEntriesBySeq.remove(entry.seq);
+                    it.remove();
+                    mVersion++;
+                }
+            }
+        }
+
+        if (!ordered) {
+            // Apps were reordered, which is not expected. Rebuild to restore the list order.
+            clear();
+            syncEntries(apps);
+        }
+    }
+
+    private void clear() {
+        mVersion++;
+        mEntries.clear();
+        mEntriesBySeq.clear();
+        mTrieRoot.clear();
+        mResidual.clear();
+        mNgrams.clear();
+        mNextSeq = 0;
+    }
+
+    private void addToIndex(Entry entry) {
+        if (entry.indexable) {
+            IntArray breaks = entry.breaks;
+            for (int i = 0; i < breaks.size(); i++) {
+                TrieNode node = mTrieRoot;
+                int end = Math.min(entry.lowerTitle.length(), breaks.get(i) + MAX_TRIE_DEPTH);
+                for (int c = breaks.get(i); c < end; c++) {
+                    node = node.getOrCreateChild(entry.lowerTitle.charAt(c));
+                    node.postings.add(entry.seq);
+                }
+            }
+        } else {
+            int index = indexOfResidual(entry.seq);
+            mResidual.add(-index - 1, entry);
+            forEachNgram(entry.lowerTitle, key ->
+                    mNgrams.computeIfAbsent(key, k -> new PostingList()).add(entry.seq));
+        }
+    }
+
+    private void removeFromIndex(Entry entry) {
+        if (entry.indexable) {
+            IntArray breaks = entry.breaks;
+            for (int i = 0; i < breaks.size(); i++) {
+                TrieNode node = mTrieRoot;
+                int end = Math.min(entry.lowerTitle.length(), breaks.get(i) + MAX_TRIE_DEPTH);
+                for (int c = breaks.get(i); c < end && node != null; c++) {
+                    TrieNode child = node.getChild(entry.lowerTitle.charAt(c));
+                    if (child != null) {
+                        child.postings.remove(entry.seq);
+                        if (child.postings.size == 0) {
+                            node.removeChild(entry.lowerTitle.charAt(c));
+                        }
+                    }
+                    node = child;
+                }
+            }
+        } else {
+            int index = indexOfResidual(entry.seq);
+            if (index >= 0) {
+                mResidual.remove(index);
+            }
+            forEachNgram(entry.lowerTitle, key -> {
+                PostingList postings = mNgrams.get(key);
+                if (postings != null) {
+                    postings.remove(entry.seq);
+                    if (postings.size == 0) {
+                        mNgrams.remove(key);
+                    }
+                }
+            });
+        }
+    }
+
+    private int indexOfResidual(int seq) {
+        int low = 0;
+        int high = mResidual.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midSeq = mResidual.get(mid).seq;
+            if (midSeq < seq) {
+                low = mid + 1;
+            } else if (midSeq > seq) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private StringMatcher getMatcher() {
+        Locale locale = Locale.getDefault();
+        if (mMatcher == null || !locale.equals(mMatcherLocale)) {
+            mMatcher = StringMatcher.getInstance();
+            mMatcherLocale = locale;
+            boolean trieEnabled = isAsciiMatchingExact(mMatcher);
+            if (trieEnabled != mTrieEnabled) {
+                mTrieEnabled = trieEnabled;
+                // Entries need to move between the trie and the residual list
+                clear();
+            }
+        }
+        return mMatcher;
+    }
+
+    /**
+     * Returns true if the matcher compares printable ASCII characters case insensitively, without
+     * ignoring any character or treating different letters as equal. This is the case for the
+     * default collation, but a locale tailoring could differ, in which case the trie cannot be
+     * used and all titles are matched using the collator.
+     */
+    private static boolean isAsciiMatchingExact(StringMatcher matcher) {
+        for (char c = 0x20; c <= 0x7E; c++) {
+            String s = String.valueOf(c);
+            if (matcher.matches("a" + s, "a") || !matcher.matches(s, s.toLowerCase())) {
+                return false;
+            }
+            for (char d = (char) (c + 1); d <= 0x7E; d++) {
+                if (Character.toLowerCase(c) != Character.toLowerCase(d)
+                        && matcher.matches(s, String.valueOf(d))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the string only contains printable ASCII characters
+     */
+    static boolean isIndexable(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasHanCharacter(String s) {
+        for (int i = 0; i < s.length(); ) {
+            int codePoint = s.codePointAt(i);
+            if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+                return true;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return false;
+    }
+
+    private static long ngramKey(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private static void forEachNgram(String s, LongConsumer consumer) {
+        int prev = -1;
+        for (int i = 0; i < s.length(); ) {
+            int codePoint = s.codePointAt(i);
+            consumer.accept(ngramKey(codePoint, -1));
+            if (prev != -1) {
+                consumer.accept(ngramKey(prev, codePoint));
+            }
+            prev = codePoint;
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    private static class Entry {
+        final AppInfo info;
+        final int seq;
+        int generation;
+
+        CharSequence titleRef;
+        String title;
+        String lowerTitle;
+        boolean indexable;
+        IntArray breaks;
+
+        Entry(AppInfo info, int seq, boolean trieEnabled) {
+            this.info = info;
+            this.seq = seq;
+            setTitle(info.title, trieEnabled);
+        }
+
+        void setTitle(CharSequence title, boolean trieEnabled) {
+            titleRef = title;
+            this.title = title == null ? "" : title.toString();
+            lowerTitle = this.title.toLowerCase();
+            indexable = trieEnabled && isIndexable(this.title);
+            breaks = indexable ? getBreaks(this.title) : null;
+        }
+
+        /**
+         * Returns all the positions where a query can start to match, as defined by
+         * {@link StringMatcherUtility#matches}.
+         */
+        private static IntArray getBreaks(String target) {
+            IntArray breaks = new IntArray();
+            int length = target.length();
+            if (length == 0) {
+                return breaks;
+            }
+            StringMatcher matcher = BREAK_MATCHER;
+            int lastType;
+            int thisType = Character.UNASSIGNED;
+            int nextType = Character.getType(target.codePointAt(0));
+            for (int i = 0; i < length; i++) {
+                lastType = thisType;
+                thisType = nextType;
+                nextType = i < (length - 1)
+                        ? Character.getType(target.codePointAt(i + 1)) : Character.UNASSIGNED;
+                if (matcher.isBreak(thisType, lastType, nextType)) {
+                    breaks.add(i);
+                }
+            }
+            return breaks;
+        }
+    }
+
+    /**
+     * Sorted list of sequence numbers, with a ref count for each.
+     */
+    private static class PostingList {
+        int[] seqs = new int[2];
+        int[] counts = new int[2];
+        int size;
+
+        void add(int seq) {
+            int index = Arrays.binarySearch(seqs, 0, size, seq);
+            if (index >= 0) {
+                counts[index]++;
+                return;
+            }
+            index = -index - 1;
+            if (size == seqs.length) {
+                seqs = Arrays.copyOf(seqs, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            System.arraycopy(seqs, index, seqs, index + 1, size - index);
+            System.arraycopy(counts, index, counts, index + 1, size - index);
+            seqs[index] = seq;
+            counts[index] = 1;
+            size++;
+        }
+
+        void remove(int seq) {
+            int index = Arrays.binarySearch(seqs, 0, size, seq);
+            if (index < 0) {
+                return;
+            }
+            if (--counts[index] > 0) {
+                return;
+            }
+            System.arraycopy(seqs, index + 1, seqs, index, size - index - 1);
+            System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+            size--;
+        }
+    }
+
+    private static class TrieNode {
+        final PostingList postings = new PostingList();
+        char[] keys = new char[0];
+        TrieNode[] children = new TrieNode[0];
+
+        TrieNode getChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        TrieNode getOrCreateChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            int count = keys.length;
+            char[] newKeys = new char[count + 1];
+            TrieNode[] newChildren = new TrieNode[count + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, count - index);
+            System.arraycopy(children, index, newChildren, index + 1, count - index);
+            TrieNode child = new TrieNode();
+            newKeys[index] = c;
+            newChildren[index] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index < 0) {
+                return;
+            }
+            int count = keys.length;
+            char[] newKeys = new char[count - 1];
+            TrieNode[] newChildren = new TrieNode[count - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, count - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, count - index - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        void clear() {
+            keys = new char[0];
+            children = new TrieNode[0];
+            postings.size = 0;
+        }
+    }
+}
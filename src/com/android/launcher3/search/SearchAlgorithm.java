@@ -39,8 +39,47 @@ public interface SearchAlgorithm<T> {
      */
     void cancel(boolean interruptActiveRequests);
 
+    /**
+     * Starts a session for the consecutive queries typed in a search box. Unlike
+     * {@link #doSearch}, a session only runs the latest query and can reuse the results of the
+     * previous queries.
+     */
+    default SearchSession<T> startSession() {
+        return new SearchSession<T>() {
+            @Override
+            public void doSearch(String query, SearchCallback<T> callback) {
+                cancel(false);
+                SearchAlgorithm.this.doSearch(query, callback);
+            }
+
+            @Override
+            public void reset() {
+                cancel(true);
+            }
+        };
+    }
+
     /**
      * Cleans up after search is no longer needed.
      */
     default void destroy() {};
+
+    /**
+     * A sequence of queries where each query replaces the previous one.
+     *
+     * @param <T> Search Result type
+     */
+    interface SearchSession<T> {
+
+        /**
+         * Performs search and sends the result to {@link SearchCallback}, cancelling any query
+         * of this session which has not completed yet.
+         */
+        void doSearch(String query, SearchCallback<T> callback);
+
+        /**
+         * Cancels any active request and drops the results kept for the next queries.
+         */
+        void reset();
+    }
 }
@@ -4,20 +4,44 @@ import android.graphics.Rect;
 
 import com.android.launcher3.model.data.ItemInfo;
 
+import java.util.Arrays;
+
 /**
  * Utility object to manage the occupancy in a grid.
+ *
+ * Each row is stored as a bitmask, with the bit x set if the cell (x, y) is occupied, so that a
+ * whole span of a row is checked or marked at once. Grids are limited to 64 columns. Region
+ * queries are answered from a summed-area table, which is rebuilt on the first query after the
+ * grid changed.
  */
 public class GridOccupancy extends AbsGridOccupancy {
 
     private final int mCountX;
     private final int mCountY;
 
-    public final boolean[][] cells;
+    private final long[] mRows;
+
+    // Number of occupied cells above and to the left of each cell, with an extra empty first row
+    // and column, so that the occupied cells of any region can be counted in constant time.
+    private final int[] mAreaTable;
+    private boolean mAreaTableValid;
 
     public GridOccupancy(int countX, int countY) {
+        if (countX > Long.SIZE) {
+            throw new IllegalArgumentException("Too many columns: " + countX);
+        }
         mCountX = countX;
         mCountY = countY;
-        cells = new boolean[countX][countY];
+        mRows = new long[countY];
+        mAreaTable = new int[(countX + 1) * (countY + 1)];
+        mAreaTableValid = true;
+    }
+
+    /**
+     * Returns true if the cell at {@param x}, {@param y} is occupied.
+     */
+    public boolean isOccupied(int x, int y) {
+        return (mRows[y] & (1L << x)) != 0;
     }
 
     /**
@@ -30,15 +54,23 @@ public class GridOccupancy extends AbsGridOccupancy {
      * @return true if a vacant cell was found
      */
     public boolean findVacantCell(int[] vacantOut, int spanX, int spanY) {
-        return super.findVacantCell(vacantOut, cells, mCountX, mCountY, spanX, spanY);
+        return super.findVacantCell(vacantOut, mRows, mCountX, mCountY, spanX, spanY);
     }
 
+    /**
+     * Copies the occupied cells to {@param dest}, which must be at least as large as this grid.
+     */
     public void copyTo(GridOccupancy dest) {
-        for (int i = 0; i < mCountX; i++) {
-            for (int j = 0; j < mCountY; j++) {
-                dest.cells[i][j] = cells[i][j];
-            }
-        }
+        System.arraycopy(mRows, 0, dest.mRows, 0, mCountY);
+        dest.mAreaTableValid = false;
+    }
+
+    /**
+     * Returns true if {@param other} has the same size and the same occupied cells.
+     */
+    public boolean contentEquals(GridOccupancy other) {
+        return mCountX == other.mCountX && mCountY == other.mCountY
+                && Arrays.equals(mRows, other.mRows);
     }
 
     public boolean isRegionVacant(int x, int y, int spanX, int spanY) {
@@ -47,23 +79,62 @@ public class GridOccupancy extends AbsGridOccupancy {
         if (x < 0 || y < 0 || x2 >= mCountX || y2 >= mCountY) {
             return false;
         }
-        for (int i = x; i <= x2; i++) {
-            for (int j = y; j <= y2; j++) {
-                if (cells[i][j]) {
-                    return false;
-                }
+        if (spanX <= 0 || spanY <= 0) {
+            return true;
+        }
+        if (!mAreaTableValid) {
+            updateAreaTable();
+        }
+        int stride = mCountX + 1;
+        int x1 = x2 + 1;
+        int y1 = y2 + 1;
+        return mAreaTable[y1 * stride + x1] - mAreaTable[y * stride + x1]
+                - mAreaTable[y1 * stride + x] + mAreaTable[y * stride + x] == 0;
+    }
+
+    /**
+     * Returns true if {@param shape}, placed at {@param x}, {@param y}, is within the grid and
+     * none of its occupied cells are occupied in this grid.
+     */
+    public boolean isRegionVacant(int x, int y, GridOccupancy shape) {
+        if (x < 0 || y < 0 || x + shape.mCountX > mCountX || y + shape.mCountY > mCountY) {
+            return false;
+        }
+        for (int j = 0; j < shape.mCountY; j++) {
+            if (((mRows[y + j] >>> x) & shape.mRows[j]) != 0) {
+                return false;
             }
         }
         return true;
     }
 
+    private void updateAreaTable() {
+        int stride = mCountX + 1;
+        for (int y = 0; y < mCountY; y++) {
+            long row = mRows[y];
+            int rowCount = 0;
+            for (int x = 0; x < mCountX; x++) {
+                rowCount += (int) ((row >>> x) & 1);
+                mAreaTable[(y + 1) * stride + x + 1] = mAreaTable[y * stride + x + 1] + rowCount;
+            }
+        }
+        mAreaTableValid = true;
+    }
+
     public void markCells(int cellX, int cellY, int spanX, int spanY, boolean value) {
         if (cellX < 0 || cellY < 0) return;
-        for (int x = cellX; x < cellX + spanX && x < mCountX; x++) {
-            for (int y = cellY; y < cellY + spanY && y < mCountY; y++) {
-                cells[x][y] = value;
+        int endX = Math.min(cellX + spanX, mCountX);
+        int endY = Math.min(cellY + spanY, mCountY);
+        if (endX <= cellX || endY <= cellY) return;
+        long mask = spanMask(endX - cellX) << cellX;
+        for (int y = cellY; y < endY; y++) {
+            if (value) {
+                mRows[y] |= mask;
+            } else {
+                mRows[y] &= ~mask;
             }
         }
+        mAreaTableValid = false;
     }
 
     public void markCells(Rect r, boolean value) {
@@ -79,7 +150,15 @@ public class GridOccupancy extends AbsGridOccupancy {
     }
 
     public void clear() {
-        markCells(0, 0, mCountX, mCountY, false);
+        Arrays.fill(mRows, 0);
+        mAreaTableValid = false;
+    }
+
+    /**
+     * Returns a mask of the {@param span} lowest bits.
+     */
+    static long spanMask(int span) {
+        return span >= Long.SIZE ? -1L : (1L << span) - 1;
     }
 
     @Override
@@ -87,7 +166,7 @@ public class GridOccupancy extends AbsGridOccupancy {
         StringBuilder s = new StringBuilder("Grid: \n");
         for (int y = 0; y < mCountY; y++) {
             for (int x = 0; x < mCountX; x++) {
-                s.append(cells[x][y] ? 1 : 0).append(" ");
+                s.append(isOccupied(x, y) ? 1 : 0).append(" ");
             }
             s.append("\n");
         }
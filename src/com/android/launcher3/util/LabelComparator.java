@@ -15,8 +15,12 @@
  */
 package com.android.launcher3.util;
 
+import androidx.annotation.Nullable;
+
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.Comparator;
+import java.util.Locale;
 
 /**
  * Extension of {@link java.text.Collator} with special handling for digits. Used for comparing
@@ -24,16 +28,15 @@ import java.util.Comparator;
  */
 public class LabelComparator implements Comparator<String> {
 
-    private final Collator mCollator = Collator.getInstance();
+    private final Locale mLocale = Locale.getDefault();
+    private final Collator mCollator = Collator.getInstance(mLocale);
 
     @Override
     public int compare(String titleA, String titleB) {
         // Ensure that we de-prioritize any titles that don't start with a
         // linguistic letter or digit
-        boolean aStartsWithLetter = (titleA.length() > 0) &&
-                Character.isLetterOrDigit(titleA.codePointAt(0));
-        boolean bStartsWithLetter = (titleB.length() > 0) &&
-                Character.isLetterOrDigit(titleB.codePointAt(0));
+        boolean aStartsWithLetter = startsWithLetter(titleA);
+        boolean bStartsWithLetter = startsWithLetter(titleB);
         if (aStartsWithLetter && !bStartsWithLetter) {
             return -1;
         } else if (!aStartsWithLetter && bStartsWithLetter) {
@@ -43,4 +46,57 @@ public class LabelComparator implements Comparator<String> {
         // Order by the title in the current locale
         return mCollator.compare(titleA, titleB);
     }
+
+    /**
+     * Compares {@param labelA} and {@param labelB} like {@link #compare(String, String)}, with a
+     * null label being empty. The keys of the labels are compared instead if they are both keys
+     * of these labels in the locale of this comparator.
+     */
+    public int compare(@Nullable CharSequence labelA, @Nullable LabelKey keyA,
+            @Nullable CharSequence labelB, @Nullable LabelKey keyB) {
+        if (isKeyOf(keyA, labelA) && isKeyOf(keyB, labelB)) {
+            if (keyA.mStartsWithLetter != keyB.mStartsWithLetter) {
+                return keyA.mStartsWithLetter ? -1 : 1;
+            }
+            return keyA.mCollationKey.compareTo(keyB.mCollationKey);
+        }
+        return compare(labelA == null ? "" : labelA.toString(),
+                labelB == null ? "" : labelB.toString());
+    }
+
+    /**
+     * Returns the key of {@param label} in the current locale, which is compared faster than the
+     * label itself. The key is used as long as the label and the locale don't change.
+     */
+    public LabelKey getKey(@Nullable CharSequence label) {
+        String s = label == null ? "" : label.toString();
+        return new LabelKey(label, mLocale, startsWithLetter(s), mCollator.getCollationKey(s));
+    }
+
+    private boolean isKeyOf(@Nullable LabelKey key, @Nullable CharSequence label) {
+        return key != null && key.mLabel == label && key.mLocale.equals(mLocale);
+    }
+
+    private static boolean startsWithLetter(String label) {
+        return label.length() > 0 && Character.isLetterOrDigit(label.codePointAt(0));
+    }
+
+    /**
+     * Collation key of a label, see {@link #getKey(CharSequence)}.
+     */
+    public static final class LabelKey {
+
+        @Nullable private final CharSequence mLabel;
+        private final Locale mLocale;
+        private final boolean mStartsWithLetter;
+        private final CollationKey mCollationKey;
+
+        private LabelKey(@Nullable CharSequence label, Locale locale, boolean startsWithLetter,
+                CollationKey collationKey) {
+            mLabel = label;
+            mLocale = locale;
+            mStartsWithLetter = startsWithLetter;
+            mCollationKey = collationKey;
+        }
+    }
 }
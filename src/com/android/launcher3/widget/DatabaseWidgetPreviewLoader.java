@@ -27,12 +27,11 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
-import android.os.Handler;
 import android.util.Log;
 import android.util.Size;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.LauncherAppState;
@@ -41,23 +40,23 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.icons.BitmapRenderer;
 import com.android.launcher3.icons.LauncherIcons;
 import com.android.launcher3.icons.ShadowGenerator;
-import com.android.launcher3.icons.cache.HandlerRunnable;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.pm.ShortcutConfigActivityInfo;
-import com.android.launcher3.util.Executors;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.util.WidgetSizes;
 
 import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
-/** Utility class to load widget previews */
+/** Utility class to load widget previews, through the {@link WidgetPreviewCache} */
 public class DatabaseWidgetPreviewLoader {
 
     private static final String TAG = "WidgetPreviewLoader";
 
     private final Context mContext;
     private final float mPreviewBoxCornerRadius;
+    private final WidgetPreviewCache mPreviewCache;
+    private final WidgetPreviewScheduler mPreviewScheduler;
 
     public DatabaseWidgetPreviewLoader(Context context) {
         mContext = context;
@@ -65,26 +64,64 @@ public class DatabaseWidgetPreviewLoader {
         mPreviewBoxCornerRadius = previewCornerRadius > 0
                 ? previewCornerRadius
                 : mContext.getResources().getDimension(R.dimen.widget_preview_corner_radius);
+        mPreviewCache = WidgetPreviewCache.INSTANCE.get(context);
+        mPreviewScheduler = WidgetPreviewScheduler.INSTANCE.get(context);
     }
 
     /**
-     * Generates the widget preview on {@link AsyncTask#THREAD_POOL_EXECUTOR}. Must be
-     * called on UI thread.
+     * Returns the preview of {@param item} if it is already in memory, without loading it.
+     */
+    @Nullable
+    public Bitmap getCachedPreview(@NonNull WidgetItem item, @NonNull Size previewSize) {
+        return mPreviewCache.getFromMemory(getCacheKey(item, previewSize));
+    }
+
+    /**
+     * Loads the widget preview on the {@link WidgetPreviewScheduler} pool, ahead of the
+     * prefetched previews. Must be called on UI thread.
      *
-     * @return a request id which can be used to cancel the request.
+     * @return a request which can be used to cancel the request.
      */
     @NonNull
-    public HandlerRunnable loadPreview(
+    public WidgetPreviewScheduler.Request loadPreview(
             @NonNull WidgetItem item,
             @NonNull Size previewSize,
             @NonNull Consumer<Bitmap> callback) {
-        Handler handler = Executors.UI_HELPER_EXECUTOR.getHandler();
-        HandlerRunnable<Bitmap> request = new HandlerRunnable<>(handler,
-                () -> generatePreview(item, previewSize.getWidth(), previewSize.getHeight()),
-                MAIN_EXECUTOR,
-                callback);
-        Utilities.postAsyncCallback(handler, request);
-        return request;
+        return loadPreview(item, previewSize, WidgetPreviewScheduler.PRIORITY_VISIBLE, callback);
+    }
+
+    /**
+     * Loads the widget preview into the {@link WidgetPreviewCache} at a low priority, unless it
+     * is already in memory. Must be called on UI thread.
+     *
+     * @return a request which can be used to cancel the prefetch, or null if there is nothing to
+     * prefetch.
+     */
+    @Nullable
+    public WidgetPreviewScheduler.Request prefetchPreview(
+            @NonNull WidgetItem item, @NonNull Size previewSize) {
+        if (mPreviewCache.peek(getCacheKey(item, previewSize)) != null) {
+            return null;
+        }
+        return loadPreview(item, previewSize, WidgetPreviewScheduler.PRIORITY_PREFETCH, null);
+    }
+
+    private WidgetPreviewScheduler.Request loadPreview(WidgetItem item, Size previewSize,
+            int priority, @Nullable Consumer<Bitmap> callback) {
+        String key = getCacheKey(item, previewSize);
+        return mPreviewScheduler.load(key, priority, () -> {
+            Bitmap preview = mPreviewCache.get(key, item);
+            if (preview == null) {
+                preview = generatePreview(item, previewSize.getWidth(), previewSize.getHeight());
+                mPreviewCache.put(key, item, preview);
+            }
+            return preview;
+        }, callback);
+    }
+
+    private String getCacheKey(WidgetItem item, Size previewSize) {
+        return mPreviewCache.getKey(
+                item, previewSize, mContext.getResources().getConfiguration());
     }
 
     /**
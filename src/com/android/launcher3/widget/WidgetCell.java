@@ -52,7 +52,6 @@ import com.android.launcher3.Launcher;
 import com.android.launcher3.R;
 import com.android.launcher3.icons.FastBitmapDrawable;
 import com.android.launcher3.icons.RoundDrawableWrapper;
-import com.android.launcher3.icons.cache.HandlerRunnable;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.util.WidgetSizes;
@@ -123,7 +122,7 @@ public class WidgetCell extends LinearLayout {
 
     private final DatabaseWidgetPreviewLoader mWidgetPreviewLoader;
 
-    protected HandlerRunnable mActiveRequest;
+    protected WidgetPreviewScheduler.Request mActiveRequest;
     private boolean mAnimatePreview = true;
 
     protected final ActivityContext mActivity;
@@ -481,8 +480,13 @@ public class WidgetCell extends LinearLayout {
         if (mActiveRequest != null) {
             return;
         }
-        mActiveRequest = mWidgetPreviewLoader.loadPreview(
-                mItem, new Size(mTargetPreviewWidth, mTargetPreviewHeight), callback);
+        Size previewSize = new Size(mTargetPreviewWidth, mTargetPreviewHeight);
+        Bitmap preview = mWidgetPreviewLoader.getCachedPreview(mItem, previewSize);
+        if (preview != null) {
+            applyPreview(preview);
+            return;
+        }
+        mActiveRequest = mWidgetPreviewLoader.loadPreview(mItem, previewSize, callback);
     }
 
     @Override
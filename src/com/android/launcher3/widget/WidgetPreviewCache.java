@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.UserHandle;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.MainThreadInitializedObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Two-tier cache of the generated widget and shortcut previews.
+ *
+ * <p>Previews are kept in a memory cache bounded by the byte size of the bitmaps, backed by PNG
+ * files under the cache dir. A preview is keyed by its component, user, preview size and display
+ * configuration, and the files are additionally keyed by the version of the owning package so
+ * that an update never serves a stale preview. {@link #invalidatePackage} should be called when a
+ * package changes, to release the entries which can no longer be used.
+ */
+public class WidgetPreviewCache {
+
+    private static final String TAG = "WidgetPreviewCache";
+
+    public static final MainThreadInitializedObject<WidgetPreviewCache> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetPreviewCache::new);
+
+    private static final String CACHE_DIR = "widget_previews";
+    private static final String FILE_EXTENSION = ".png";
+    private static final String TMP_EXTENSION = ".tmp";
+
+    private static final long MAX_MEMORY_BYTES = 32 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 24 * 1024 * 1024;
+
+    private final PackageManager mPackageManager;
+    private final UserCache mUserCache;
+    private final File mCacheDir;
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    // Version of the packages, keyed by package and user. Guarded by itself.
+    private final HashMap<String, String> mPackageVersions = new HashMap<>();
+    private final Object mDiskLock = new Object();
+    private long mDiskBytes = -1;
+
+    private final AtomicInteger mMemoryHits = new AtomicInteger();
+    private final AtomicInteger mDiskHits = new AtomicInteger();
+    private final AtomicInteger mMisses = new AtomicInteger();
+    private final AtomicInteger mInvalidations = new AtomicInteger();
+
+    private WidgetPreviewCache(Context context) {
+        mPackageManager = context.getPackageManager();
+        mUserCache = UserCache.INSTANCE.get(context);
+        mCacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        int maxMemory = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_MEMORY_BYTES);
+        mMemoryCache = new LruCache<String, Bitmap>(maxMemory) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                // Hardware bitmaps do not report their allocation
+                return value.getWidth() * value.getHeight() * 4;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache key of the preview of {@param item} rendered at {@param size} with
+     * {@param config}.
+     */
+    @NonNull
+    public String getKey(@NonNull WidgetItem item, @NonNull Size size,
+            @NonNull Configuration config) {
+        return mUserCache.getSerialNumberForUser(item.user)
+                + "/" + item.componentName.getPackageName()
+                + "/" + item.componentName.getClassName()
+                + "_" + size.getWidth() + "x" + size.getHeight()
+                + "_" + config.densityDpi
+                + "_" + (config.uiMode & Configuration.UI_MODE_NIGHT_MASK);
+    }
+
+    /**
+     * Returns the preview for {@param key} if it is in memory. This never touches the disk and
+     * can be called on the main thread.
+     */
+    @Nullable
+    public Bitmap getFromMemory(@NonNull String key) {
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null) {
+            mMemoryHits.incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Same as {@link #getFromMemory} but not counted in the hit rate, for lookups which are not
+     * made on behalf of a cell.
+     */
+    @Nullable
+    public Bitmap peek(@NonNull String key) {
+        return mMemoryCache.get(key);
+    }
+
+    /**
+     * Returns the preview for {@param key} from memory or disk, or null if it needs to be
+     * generated.
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap get(@NonNull String key, @NonNull WidgetItem item) {
+        Bitmap bitmap = getFromMemory(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        File file = getFile(key, item);
+        if (file != null && file.exists()) {
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inPreferredConfig = Bitmap.Config.HARDWARE;
+            bitmap = BitmapFactory.decodeFile(file.getPath(), opts);
+            if (bitmap != null) {
+                mDiskHits.incrementAndGet();
+                mMemoryCache.put(key, bitmap);
+                // Keeps the most recently used files when trimming the disk cache
+                file.setLastModified(System.currentTimeMillis());
+                return bitmap;
+            }
+            Log.w(TAG, "Unable to decode cached preview " + file);
+            file.delete();
+        }
+        mMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Adds a generated preview to the cache. The preview is written to disk on a background
+     * thread.
+     */
+    public void put(@NonNull String key, @NonNull WidgetItem item, @NonNull Bitmap bitmap) {
+        mMemoryCache.put(key, bitmap);
+        THREAD_POOL_EXECUTOR.execute(() -> writeToDisk(key, item, bitmap));
+    }
+
+    @WorkerThread
+    private void writeToDisk(String key, WidgetItem item, Bitmap bitmap) {
+        File file = getFile(key, item);
+        if (file == null) {
+            return;
+        }
+        // Hardware bitmaps can't be compressed directly
+        Bitmap software = bitmap.getConfig() == Bitmap.Config.HARDWARE
+                ? bitmap.copy(Bitmap.Config.ARGB_8888, false) : bitmap;
+        if (software == null) {
+            return;
+        }
+        synchronized (mDiskLock) {
+            File dir = file.getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                return;
+            }
+            File tmp = new File(dir, file.getName() + TMP_EXTENSION);
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                software.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to write preview " + file, e);
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+            if (mDiskBytes < 0) {
+                mDiskBytes = computeDiskBytes();
+            } else {
+                mDiskBytes += file.length();
+            }
+            if (mDiskBytes > MAX_DISK_BYTES) {
+                trimDisk();
+            }
+        }
+        if (software != bitmap) {
+            software.recycle();
+        }
+    }
+
+    /**
+     * Removes the previews of {@param packageName} for {@param user}, from memory and disk.
+     */
+    public void invalidatePackage(@NonNull String packageName, @NonNull UserHandle user) {
+        mInvalidations.incrementAndGet();
+        String prefix = mUserCache.getSerialNumberForUser(user) + "/" + packageName + "/";
+        synchronized (mPackageVersions) {
+            mPackageVersions.remove(prefix);
+        }
+        for (String key : mMemoryCache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                mMemoryCache.remove(key);
+            }
+        }
+        THREAD_POOL_EXECUTOR.execute(() -> {
+            synchronized (mDiskLock) {
+                File[] files = new File(mCacheDir, prefix).listFiles();
+                if (files == null) {
+                    return;
+                }
+                for (File f : files) {
+                    f.delete();
+                }
+                mDiskBytes = -1;
+            }
+        });
+    }
+
+    /**
+     * Returns the file of the preview for {@param key}, or null if the package version is not
+     * known. The previews of a package live in their own directory, to be invalidated together.
+     */
+    @Nullable
+    private File getFile(String key, WidgetItem item) {
+        String packageName = item.componentName.getPackageName();
+        String packageKey = key.substring(0, key.indexOf('/') + packageName.length() + 2);
+        String version;
+        synchronized (mPackageVersions) {
+            version = mPackageVersions.get(packageKey);
+        }
+        if (version == null) {
+            try {
+                PackageInfo info = mPackageManager.getPackageInfo(packageName,
+                        PackageManager.MATCH_UNINSTALLED_PACKAGES);
+                version = info.getLongVersionCode() + "_" + info.lastUpdateTime;
+            } catch (NameNotFoundException e) {
+                return null;
+            }
+            synchronized (mPackageVersions) {
+                mPackageVersions.put(packageKey, version);
+            }
+        }
+        return new File(mCacheDir, key + "_" + version + FILE_EXTENSION);
+    }
+
+    private File[] listDiskFiles() {
+        File[] users = mCacheDir.listFiles();
+        if (users == null) {
+            return new File[0];
+        }
+        return Arrays.stream(users)
+                .map(File::listFiles).filter(packages -> packages != null)
+                .flatMap(Arrays::stream)
+                .map(File::listFiles).filter(files -> files != null)
+                .flatMap(Arrays::stream)
+                .toArray(File[]::new);
+    }
+
+    private long computeDiskBytes() {
+        long bytes = 0;
+        for (File f : listDiskFiles()) {
+            bytes += f.length();
+        }
+        return bytes;
+    }
+
+    /** Removes the least recently used files until the disk cache is within its budget. */
+    private void trimDisk() {
+        File[] files = listDiskFiles();
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long bytes = computeDiskBytes();
+        for (int i = 0; i < files.length && bytes > MAX_DISK_BYTES * 3 / 4; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                bytes -= length;
+            }
+        }
+        mDiskBytes = bytes;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        int memoryHits = mMemoryHits.get();
+        int diskHits = mDiskHits.get();
+        int lookups = memoryHits + diskHits + mMisses.get();
+        writer.println(prefix + "WidgetPreviewCache:"
+                + " memoryHits=" + memoryHits
+                + " diskHits=" + diskHits
+                + " misses=" + mMisses.get()
+                + " hitRate=" + (lookups == 0 ? 0 : (memoryHits + diskHits) * 100 / lookups) + "%"
+                + " invalidations=" + mInvalidations.get());
+        writer.println(prefix + "\tmemory=" + mMemoryCache.size() + "/" + mMemoryCache.maxSize()
+                + " bytes, entries=" + mMemoryCache.snapshot().size()
+                + " evictions=" + mMemoryCache.evictionCount()
+                + " disk=" + mDiskBytes + "/" + MAX_DISK_BYTES + " bytes");
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.util.Executors.SimpleThreadFactory;
+import com.android.launcher3.util.MainThreadInitializedObject;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Schedules the loading of widget previews on a small dedicated pool, so that they neither
+ * compete with nor wait behind the other work of {@code UI_HELPER_EXECUTOR}.
+ *
+ * <p>Previews for visible cells run before prefetched ones, and requests for the same preview
+ * share a single load. A load is dropped once all its requests are cancelled, e.g. when the cells
+ * are recycled or the prefetched rows are scrolled away. All the bookkeeping happens on the main
+ * thread.
+ */
+public class WidgetPreviewScheduler {
+
+    private static final String TAG = "WidgetPreviewScheduler";
+
+    public static final MainThreadInitializedObject<WidgetPreviewScheduler> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetPreviewScheduler::new);
+
+    /** Priority of a preview shown in a bound cell. */
+    public static final int PRIORITY_VISIBLE = 0;
+    /** Priority of a preview which is expected to be shown soon. */
+    public static final int PRIORITY_PREFETCH = 1;
+
+    private static final int POOL_SIZE = 2;
+    private static final int KEEP_ALIVE_SECONDS = 5;
+
+    private final ThreadPoolExecutor mPool;
+    private final Executor mCallbackExecutor;
+    private final HashMap<String, Task> mTasks = new HashMap<>();
+    private int mSequence;
+
+    private int mVisibleLoads;
+    private int mVisibleLoadsJoined;
+    private long mVisibleWaitMs;
+    private int mPrefetchLoads;
+    private int mCancelledLoads;
+
+    private WidgetPreviewScheduler(Context context) {
+        this(new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                new SimpleThreadFactory("widget-preview-", Process.THREAD_PRIORITY_DEFAULT)),
+                MAIN_EXECUTOR);
+    }
+
+    @VisibleForTesting
+    WidgetPreviewScheduler(ThreadPoolExecutor pool, Executor callbackExecutor) {
+        mPool = pool;
+        mPool.allowCoreThreadTimeOut(true);
+        mCallbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Loads the preview identified by {@param key} with {@param loader} on the preview pool, and
+     * delivers it to {@param callback} on the main thread. If the preview is already being
+     * loaded, the request joins that load and raises its priority if needed.
+     *
+     * @param callback the callback, or null to only warm up the caches
+     * @return a request which can be used to cancel the delivery
+     */
+    @UiThread
+    @NonNull
+    public Request load(@NonNull String key, int priority, @NonNull Supplier<Bitmap> loader,
+            @Nullable Consumer<Bitmap> callback) {
+        Task task = mTasks.get(key);
+        if (task == null) {
+            task = new Task(key, loader, priority, mSequence++);
+            mTasks.put(key, task);
+            if (priority == PRIORITY_VISIBLE) {
+                mVisibleLoads++;
+            } else {
+                mPrefetchLoads++;
+            }
+            mPool.execute(task);
+        } else if (priority < task.mPriority) {
+            if (priority == PRIORITY_VISIBLE) {
+                mVisibleLoadsJoined++;
+            }
+            // Tasks can't be reordered in place, re-queue it if it hasn't started yet
+            if (mPool.remove(task)) {
+                task.mPriority = priority;
+                task.mSequence = mSequence++;
+                mPool.execute(task);
+            } else {
+                task.mPriority = priority;
+            }
+        }
+        Request request = new Request(task, priority, callback);
+        task.mRequests.add(request);
+        return request;
+    }
+
+    @UiThread
+    private void onTaskComplete(Task task, @Nullable Bitmap bitmap) {
+        if (task.mCancelled) {
+            return;
+        }
+        if (mTasks.get(task.mKey) == task) {
+            mTasks.remove(task.mKey);
+        }
+        for (Request request : new ArrayList<>(task.mRequests)) {
+            request.mDone = true;
+            if (request.mPriority == PRIORITY_VISIBLE) {
+                mVisibleWaitMs += SystemClock.uptimeMillis() - request.mStartTime;
+            }
+            if (request.mCallback != null) {
+                request.mCallback.accept(bitmap);
+            }
+        }
+        task.mRequests.clear();
+    }
+
+    @UiThread
+    private void onRequestCancelled(Request request) {
+        request.mDone = true;
+        Task task = request.mTask;
+        if (!task.mRequests.remove(request) || !task.mRequests.isEmpty()) {
+            return;
+        }
+        task.mCancelled = true;
+        mPool.remove(task);
+        mCancelledLoads++;
+        if (mTasks.get(task.mKey) == task) {
+            mTasks.remove(task.mKey);
+        }
+    }
+
+    @VisibleForTesting
+    int getPendingCount() {
+        return mTasks.size();
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        int visibleLoads = mVisibleLoads + mVisibleLoadsJoined;
+        writer.println(prefix + "WidgetPreviewScheduler:"
+                + " visibleLoads=" + mVisibleLoads
+                + " joinedPrefetch=" + mVisibleLoadsJoined
+                + " avgVisibleWaitMs=" + (visibleLoads == 0 ? 0 : mVisibleWaitMs / visibleLoads)
+                + " prefetchLoads=" + mPrefetchLoads
+                + " cancelled=" + mCancelledLoads
+                + " pending=" + mTasks.size());
+    }
+
+    /** A request for a preview, which can be cancelled until the preview is delivered. */
+    public class Request {
+
+        private final Task mTask;
+        private final int mPriority;
+        private final Consumer<Bitmap> mCallback;
+        private final long mStartTime = SystemClock.uptimeMillis();
+        private boolean mDone;
+
+        private Request(Task task, int priority, Consumer<Bitmap> callback) {
+            mTask = task;
+            mPriority = priority;
+            mCallback = callback;
+        }
+
+        /** Cancels the delivery of the preview, and its loading if nobody else needs it. */
+        @UiThread
+        public void cancel() {
+            onRequestCancelled(this);
+        }
+
+        /** Returns whether the preview was delivered, or the request cancelled. */
+        @UiThread
+        public boolean isDone() {
+            return mDone;
+        }
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+
+        private final String mKey;
+        private final Supplier<Bitmap> mLoader;
+        private final ArrayList<Request> mRequests = new ArrayList<>();
+
+        // Only changed while the task is out of the queue
+        private int mPriority;
+        private int mSequence;
+
+        private volatile boolean mCancelled;
+
+        Task(String key, Supplier<Bitmap> loader, int priority, int sequence) {
+            mKey = key;
+            mLoader = loader;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            Bitmap bitmap = null;
+            try {
+                bitmap = mLoader.get();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Unable to load preview " + mKey, e);
+            }
+            Bitmap result = bitmap;
+            mCallbackExecutor.execute(() -> onTaskComplete(this, result));
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            return mPriority != other.mPriority
+                    ? Integer.compare(mPriority, other.mPriority)
+                    : Integer.compare(mSequence, other.mSequence);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget.picker;
+
+import android.content.Context;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.DatabaseWidgetPreviewLoader;
+import com.android.launcher3.widget.WidgetPreviewScheduler;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+import com.android.launcher3.widget.util.WidgetSizes;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefetches the previews of the widget rows just outside of the viewport of a
+ * {@link WidgetsRecyclerView}, mostly in the scroll direction, so that the cells are not blank
+ * when they are bound. Prefetches of the rows which leave that window are cancelled.
+ */
+final class WidgetsPreviewPrefetcher extends RecyclerView.OnScrollListener {
+
+    // Number of rows prefetched ahead of and behind the viewport, in the scroll direction
+    private static final int ROWS_AHEAD = 3;
+    private static final int ROWS_BEHIND = 1;
+
+    private final Context mContext;
+    private final DatabaseWidgetPreviewLoader mLoader;
+    private final HashMap<WidgetItem, WidgetPreviewScheduler.Request> mRequests = new HashMap<>();
+    private final HashSet<WidgetItem> mWindowItems = new HashSet<>();
+
+    private int mFirstVisible = RecyclerView.NO_POSITION;
+    private int mLastVisible = RecyclerView.NO_POSITION;
+    private boolean mScrollingUp;
+
+    WidgetsPreviewPrefetcher(Context context) {
+        mContext = context;
+        mLoader = new DatabaseWidgetPreviewLoader(context);
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy != 0) {
+            mScrollingUp = dy < 0;
+        }
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)
+                || !(recyclerView.getAdapter() instanceof WidgetsListAdapter)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        // A zero scroll is dispatched after each layout, when the entries may have changed
+        if (dy != 0 && first == mFirstVisible && last == mLastVisible) {
+            return;
+        }
+        mFirstVisible = first;
+        mLastVisible = last;
+        if (first == RecyclerView.NO_POSITION) {
+            clear();
+            return;
+        }
+
+        List<WidgetsListBaseEntry> entries =
+                ((WidgetsListAdapter) recyclerView.getAdapter()).getItems();
+        int before = mScrollingUp ? ROWS_AHEAD : ROWS_BEHIND;
+        int after = mScrollingUp ? ROWS_BEHIND : ROWS_AHEAD;
+        mWindowItems.clear();
+        for (int i = Math.max(0, first - before); i < first; i++) {
+            addWindowItems(entries.get(i));
+        }
+        for (int i = last + 1; i <= Math.min(entries.size() - 1, last + after); i++) {
+            addWindowItems(entries.get(i));
+        }
+
+        Iterator<Map.Entry<WidgetItem, WidgetPreviewScheduler.Request>> it =
+                mRequests.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<WidgetItem, WidgetPreviewScheduler.Request> entry = it.next();
+            if (entry.getValue().isDone()) {
+                // The preview is in the cache now, if it fits
+                it.remove();
+            } else if (!mWindowItems.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                it.remove();
+            }
+        }
+
+        DeviceProfile dp = ActivityContext.lookupContext(mContext).getDeviceProfile();
+        for (WidgetItem item : mWindowItems) {
+            if (mRequests.containsKey(item)) {
+                continue;
+            }
+            Size size = WidgetSizes.getWidgetItemSizePx(mContext, dp, item);
+            WidgetPreviewScheduler.Request request = mLoader.prefetchPreview(item, size);
+            if (request != null) {
+                mRequests.put(item, request);
+            }
+        }
+    }
+
+    private void addWindowItems(WidgetsListBaseEntry entry) {
+        if (!(entry instanceof WidgetsListContentEntry)) {
+            return;
+        }
+        for (WidgetItem item : entry.mWidgets) {
+            // Those are rendered from their layout instead of a bitmap
+            if (!item.hasPreviewLayout()) {
+                mWindowItems.add(item);
+            }
+        }
+    }
+
+    /** Cancels all the pending prefetches. */
+    void clear() {
+        mRequests.values().forEach(WidgetPreviewScheduler.Request::cancel);
+        mRequests.clear();
+        mFirstVisible = mLastVisible = RecyclerView.NO_POSITION;
+    }
+}
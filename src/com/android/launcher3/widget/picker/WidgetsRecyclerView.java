@@ -41,6 +41,7 @@ public class WidgetsRecyclerView extends FastScrollRecyclerView implements OnIte
     private final Point mFastScrollerOffset = new Point();
     private boolean mTouchDownOnScroller;
     private HeaderViewDimensionsProvider mHeaderViewDimensionsProvider;
+    private final WidgetsPreviewPrefetcher mPreviewPrefetcher;
 
     public WidgetsRecyclerView(Context context) {
         this(context, null);
@@ -55,6 +56,8 @@ public class WidgetsRecyclerView extends FastScrollRecyclerView implements OnIte
         super(context, attrs, defStyleAttr);
         mScrollbarTop = getResources().getDimensionPixelSize(R.dimen.dynamic_grid_edge_margin);
         addOnItemTouchListener(this);
+        mPreviewPrefetcher = new WidgetsPreviewPrefetcher(context);
+        addOnScrollListener(mPreviewPrefetcher);
     }
 
     @Override
@@ -67,6 +70,13 @@ public class WidgetsRecyclerView extends FastScrollRecyclerView implements OnIte
     public void setAdapter(Adapter adapter) {
         super.setAdapter(adapter);
         mAdapter = (WidgetsListAdapter) adapter;
+        mPreviewPrefetcher.clear();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mPreviewPrefetcher.clear();
     }
 
     /**
@@ -42,13 +42,15 @@ public class LauncherBinder extends BaseLauncherBinder {
         synchronized (mBgDataModel) {
             shortcutMapCopy = new HashMap<>(mBgDataModel.deepShortcutMap);
         }
-        executeCallbacksTask(c -> c.bindDeepShortcutMap(shortcutMapCopy), mUiExecutor);
+        executeCallbacksTask("bindDeepShortcutMap", shortcutMapCopy.size(),
+                c -> c.bindDeepShortcutMap(shortcutMapCopy), mUiExecutor);
     }
 
     @Override
     public void bindWidgets() {
         final List<WidgetsListBaseEntry> widgets =
                 mBgDataModel.widgetsModel.getWidgetsListForPicker(mApp.getContext());
-        executeCallbacksTask(c -> c.bindAllWidgets(widgets), mUiExecutor);
+        executeCallbacksTask("bindAllWidgets", widgets.size(),
+                c -> c.bindAllWidgets(widgets), mUiExecutor);
     }
 }
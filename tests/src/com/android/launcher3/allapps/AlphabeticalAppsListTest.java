@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.model.data.AppInfo.COMPONENT_KEY_COMPARATOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.allapps.AlphabeticalAppsList.FastScrollSectionInfo;
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.util.ActivityContextWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that the app updates applied incrementally by {@link AlphabeticalAppsList} give the same
+ * adapter items and fast scroller sections as a full rebuild.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AlphabeticalAppsListTest {
+
+    private ActivityContextWrapper mContext;
+    private AllAppsStore mStore;
+    private AlphabeticalAppsList<ActivityContextWrapper> mAppsList;
+
+    @Before
+    public void setUp() {
+        getInstrumentation().runOnMainSync(() -> {
+            mContext = new ActivityContextWrapper(getApplicationContext());
+            mStore = new AllAppsStore();
+            mAppsList = new AlphabeticalAppsList<>(mContext, mStore, null);
+        });
+    }
+
+    @Test
+    public void addFirstAppOfNewLetter() {
+        AppInfo alarm = createApp("alarm", "Alarm");
+        AppInfo calendar = createApp("calendar", "Calendar");
+        setApps(alarm, calendar, createApp("camera", "Camera"));
+        AdapterItem alarmItem = getItem(alarm);
+
+        setApps(alarm, createApp("browser", "Browser"), calendar, createApp("camera", "Camera"));
+
+        // The list was updated in place, not rebuilt
+        assertSame(alarmItem, getItem(alarm));
+        assertMatchesRebuild();
+        assertSections("A", 0, "B", 1, "C", 2);
+    }
+
+    @Test
+    public void removeLastAppOfSection() {
+        AppInfo alarm = createApp("alarm", "Alarm");
+        AppInfo calendar = createApp("calendar", "Calendar");
+        setApps(alarm, createApp("browser", "Browser"), calendar, createApp("camera", "Camera"));
+        AdapterItem alarmItem = getItem(alarm);
+
+        setApps(alarm, calendar, createApp("camera", "Camera"));
+
+        assertSame(alarmItem, getItem(alarm));
+        assertMatchesRebuild();
+        assertSections("A", 0, "C", 1);
+    }
+
+    @Test
+    public void removeFirstAppOfSection() {
+        AppInfo alarm = createApp("alarm", "Alarm");
+        AppInfo camera = createApp("camera", "Camera");
+        setApps(alarm, createApp("calendar", "Calendar"), camera, createApp("dialer", "Dialer"));
+        AdapterItem alarmItem = getItem(alarm);
+
+        setApps(alarm, camera, createApp("dialer", "Dialer"));
+
+        assertSame(alarmItem, getItem(alarm));
+        assertMatchesRebuild();
+        assertSections("A", 0, "C", 1, "D", 2);
+    }
+
+    @Test
+    public void moveAppOnLabelChange() {
+        AppInfo alarm = createApp("alarm", "Alarm");
+        AppInfo browser = createApp("browser", "Browser");
+        AppInfo calendar = createApp("calendar", "Calendar");
+        setApps(alarm, browser, calendar);
+        AdapterItem calendarItem = getItem(calendar);
+
+        // The apps of the store are changed in place
+        setTitle(alarm, "Zoo");
+        setApps(alarm, browser, calendar);
+
+        assertSame(calendarItem, getItem(calendar));
+        assertMatchesRebuild();
+        assertSections("B", 0, "C", 1, "Z", 2);
+    }
+
+    @Test
+    public void contentChangeKeepsOrder() {
+        AppInfo alarm = createApp("alarm", "Alarm");
+        AppInfo browser = createApp("browser", "Browser");
+        setApps(alarm, browser);
+        AdapterItem alarmItem = getItem(alarm);
+
+        AppInfo newBrowser = createApp("browser", "Browser");
+        newBrowser.runtimeStatusFlags = AppInfo.FLAG_DISABLED_SUSPENDED;
+        setApps(alarm, newBrowser);
+
+        assertSame(alarmItem, getItem(alarm));
+        assertSame(newBrowser, mAppsList.getAdapterItems().get(1).itemInfo);
+        assertMatchesRebuild();
+    }
+
+    @Test
+    public void mixedChangesShiftSections() {
+        AppInfo alarm = createApp("alarm", "Alarm");
+        AppInfo browser = createApp("browser", "Browser");
+        AppInfo calendar = createApp("calendar", "Calendar");
+        AppInfo dialer = createApp("dialer", "Dialer");
+        AppInfo email = createApp("email", "Email");
+        setApps(alarm, browser, calendar, dialer, email);
+        AdapterItem emailItem = getItem(email);
+
+        setTitle(calendar, "Xylophone");
+        setApps(createApp("amazon", "Amazon"), alarm, calendar, dialer, email,
+                createApp("files", "Files"), createApp("drive", "Drive"));
+
+        assertSame(emailItem, getItem(email));
+        assertMatchesRebuild();
+        assertSections("A", 0, "D", 2, "E", 4, "F", 5, "X", 6);
+    }
+
+    private void setApps(AppInfo... apps) {
+        AppInfo[] sorted = Arrays.copyOf(apps, apps.length);
+        Arrays.sort(sorted, COMPONENT_KEY_COMPARATOR);
+        getInstrumentation().runOnMainSync(() -> mStore.setApps(sorted, 0));
+    }
+
+    private AdapterItem getItem(AppInfo app) {
+        for (AdapterItem item : mAppsList.getAdapterItems()) {
+            if (item.itemInfo == app) {
+                return item;
+            }
+        }
+        throw new AssertionError("No item for " + app.title);
+    }
+
+    private void assertMatchesRebuild() {
+        AllAppsStore store = new AllAppsStore();
+        ArrayList<AlphabeticalAppsList<ActivityContextWrapper>> rebuilt = new ArrayList<>();
+        getInstrumentation().runOnMainSync(() -> {
+            rebuilt.add(new AlphabeticalAppsList<>(mContext, store, null));
+            store.setApps(mStore.getApps(), 0);
+        });
+        AlphabeticalAppsList<ActivityContextWrapper> expected = rebuilt.get(0);
+
+        List<AdapterItem> expectedItems = expected.getAdapterItems();
+        List<AdapterItem> items = mAppsList.getAdapterItems();
+        assertEquals(expectedItems.size(), items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertSame("Item " + i, expectedItems.get(i).itemInfo, items.get(i).itemInfo);
+            assertEquals("Item " + i, expectedItems.get(i).viewType, items.get(i).viewType);
+            assertEquals("Row of item " + i, expectedItems.get(i).rowIndex, items.get(i).rowIndex);
+            assertEquals("Row position of item " + i,
+                    expectedItems.get(i).rowAppIndex, items.get(i).rowAppIndex);
+        }
+        assertEquals(expected.getNumAppRows(), mAppsList.getNumAppRows());
+        assertEquals(expected.getNumFilteredApps(), mAppsList.getNumFilteredApps());
+
+        List<FastScrollSectionInfo> expectedSections = expected.getFastScrollerSections();
+        List<FastScrollSectionInfo> sections = mAppsList.getFastScrollerSections();
+        assertEquals(expectedSections.size(), sections.size());
+        for (int i = 0; i < sections.size(); i++) {
+            assertEquals(expectedSections.get(i).sectionName, sections.get(i).sectionName);
+            assertEquals(expectedSections.get(i).position, sections.get(i).position);
+        }
+    }
+
+    /**
+     * Checks the fast scroller sections, given as pairs of section name and position.
+     */
+    private void assertSections(Object... namesAndPositions) {
+        List<FastScrollSectionInfo> sections = mAppsList.getFastScrollerSections();
+        assertEquals(namesAndPositions.length / 2, sections.size());
+        for (int i = 0; i < sections.size(); i++) {
+            assertEquals(namesAndPositions[2 * i], sections.get(i).sectionName);
+            assertEquals(namesAndPositions[2 * i + 1], sections.get(i).position);
+        }
+    }
+
+    private static AppInfo createApp(String packageName, String title) {
+        AppInfo app = new AppInfo(new ComponentName(packageName, packageName + ".Main"), title,
+                Process.myUserHandle(), new Intent());
+        app.sectionName = title.substring(0, 1);
+        return app;
+    }
+
+    private static void setTitle(AppInfo app, String title) {
+        app.title = title;
+        app.sectionName = title.substring(0, 1);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.launcher3.CellLayout;
+import com.android.launcher3.CellLayout.ItemConfiguration;
+import com.android.launcher3.util.ActivityContextWrapper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Micro benchmark of {@link ReorderAlgorithm#findReorderSolution} on crowded grids, from phone
+ * to large tablet sizes.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ReorderAlgorithmBenchmark {
+
+    private static final String TAG = "ReorderAlgorithmBenchmark";
+
+    private static final int CELL_SIZE_PX = 100;
+    private static final int WARMUP_ITERATIONS = 100;
+    private static final int MEASURED_ITERATIONS = 500;
+
+    @Test
+    public void benchmarkPhone() {
+        runBenchmark(5, 6);
+    }
+
+    @Test
+    public void benchmarkTablet() {
+        runBenchmark(8, 6);
+    }
+
+    @Test
+    public void benchmarkLargeTablet() {
+        runBenchmark(12, 10);
+    }
+
+    private void runBenchmark(int countX, int countY) {
+        getInstrumentation().runOnMainSync(() -> {
+            CellLayout cellLayout = new CellLayout(
+                    new ActivityContextWrapper(getApplicationContext()));
+            cellLayout.setGridSize(countX, countY);
+            cellLayout.setCellDimensions(CELL_SIZE_PX, CELL_SIZE_PX);
+            ArrayList<View> widgets = fillGrid(cellLayout, new Random(countX * countY));
+
+            Random random = new Random(countX);
+            int[] direction = new int[2];
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                findReorderSolution(cellLayout, widgets, random, direction);
+            }
+            long totalNs = 0;
+            int solutions = 0;
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                long start = System.nanoTime();
+                if (findReorderSolution(cellLayout, widgets, random, direction)) {
+                    solutions++;
+                }
+                totalNs += System.nanoTime() - start;
+            }
+            Log.d(TAG, countX + "x" + countY + ": " + totalNs / MEASURED_ITERATIONS / 1000
+                    + "us/op, solutions=" + solutions + "/" + MEASURED_ITERATIONS);
+        });
+    }
+
+    private static boolean findReorderSolution(CellLayout cellLayout, ArrayList<View> widgets,
+            Random random, int[] direction) {
+        View dragView = widgets.get(random.nextInt(widgets.size()));
+        int pixelX = random.nextInt(cellLayout.getCountX() * CELL_SIZE_PX);
+        int pixelY = random.nextInt(cellLayout.getCountY() * CELL_SIZE_PX);
+        direction[0] = random.nextInt(3) - 1;
+        direction[1] = random.nextInt(3) - 1;
+        return cellLayout.createReorderAlgorithm().findReorderSolution(pixelX, pixelY, 1, 1,
+                2, 2, direction, dragView, true, new ItemConfiguration()).isSolution;
+    }
+
+    /**
+     * Fills about 80% of the grid with 2x2 widgets and icons, returning the widgets.
+     */
+    private static ArrayList<View> fillGrid(CellLayout cellLayout, Random random) {
+        ArrayList<View> widgets = new ArrayList<>();
+        int countX = cellLayout.getCountX();
+        int countY = cellLayout.getCountY();
+        int id = 0;
+        for (int y = 0; y < countY; y++) {
+            for (int x = 0; x < countX; x++) {
+                if (cellLayout.isOccupied(x, y) || random.nextInt(5) == 0) {
+                    continue;
+                }
+                boolean widget = random.nextBoolean()
+                        && cellLayout.isRegionVacant(x, y, 2, 2);
+                int span = widget ? 2 : 1;
+                View view = new View(cellLayout.getContext());
+                cellLayout.addViewToCellLayout(view, -1, id++,
+                        new CellLayoutLayoutParams(x, y, span, span), true);
+                if (widget) {
+                    widgets.add(view);
+                }
+            }
+        }
+        return widgets;
+    }
+}
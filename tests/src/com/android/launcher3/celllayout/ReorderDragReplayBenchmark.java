@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertTrue;
+
+import android.os.Debug;
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.launcher3.CellLayout;
+import com.android.launcher3.util.ActivityContextWrapper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Replays drag paths over a crowded 6x7 grid through {@link CellLayout#calculateReorder}, like
+ * the drag over events do, and reports the time and the allocations per evaluation.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ReorderDragReplayBenchmark {
+
+    private static final String TAG = "ReorderDragReplayBenchmark";
+
+    private static final int COUNT_X = 6;
+    private static final int COUNT_Y = 7;
+    private static final int CELL_SIZE_PX = 100;
+    private static final int REPLAYS = 20;
+
+    // Recorded drag paths, as points in cells, from the first to the last move event
+    private static final float[][] PATHS = {
+            // Slow drag along a row
+            {0.5f, 3.5f, 0.8f, 3.5f, 1.1f, 3.6f, 1.4f, 3.6f, 1.7f, 3.5f, 2.0f, 3.5f, 2.3f, 3.4f,
+                    2.6f, 3.4f, 2.9f, 3.5f, 3.2f, 3.5f, 3.5f, 3.5f, 3.8f, 3.6f, 4.1f, 3.6f,
+                    4.4f, 3.5f, 4.7f, 3.5f, 5.0f, 3.5f, 5.3f, 3.5f},
+            // Diagonal drag
+            {0.4f, 0.4f, 0.9f, 0.8f, 1.3f, 1.3f, 1.8f, 1.9f, 2.2f, 2.4f, 2.7f, 2.8f, 3.1f, 3.3f,
+                    3.6f, 3.9f, 4.0f, 4.4f, 4.5f, 4.8f, 4.9f, 5.3f, 5.4f, 5.9f, 5.5f, 6.4f},
+            // Finger resting over a cell, with small jitter
+            {2.5f, 2.5f, 2.52f, 2.48f, 2.55f, 2.5f, 2.49f, 2.53f, 2.5f, 2.56f, 2.47f, 2.5f,
+                    2.51f, 2.49f, 2.53f, 2.52f, 2.5f, 2.5f, 2.48f, 2.51f, 2.52f, 2.5f},
+    };
+
+    @Test
+    public void replayIconDrag() {
+        replay(1, 1);
+    }
+
+    @Test
+    public void replayWidgetDrag() {
+        replay(2, 2);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void replay(int spanX, int spanY) {
+        getInstrumentation().runOnMainSync(() -> {
+            CellLayout cellLayout = new CellLayout(
+                    new ActivityContextWrapper(getApplicationContext()));
+            cellLayout.setGridSize(COUNT_X, COUNT_Y);
+            cellLayout.setCellDimensions(CELL_SIZE_PX, CELL_SIZE_PX);
+            View dragView = fillGrid(cellLayout, spanX, spanY);
+
+            // Warm up
+            replayPaths(cellLayout, spanX, spanY, dragView);
+
+            ReorderSolutionCache cache = cellLayout.getReorderSolutionCache();
+            int hits = cache.getHitCount();
+            int misses = cache.getMissCount();
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
+            Debug.startAllocCounting();
+            long start = System.nanoTime();
+            int evaluations = 0;
+            for (int i = 0; i < REPLAYS; i++) {
+                evaluations += replayPaths(cellLayout, spanX, spanY, dragView);
+            }
+            long totalNs = System.nanoTime() - start;
+            Debug.stopAllocCounting();
+            int allocCount = Debug.getThreadAllocCount();
+            int allocSize = Debug.getThreadAllocSize();
+            hits = cache.getHitCount() - hits;
+            misses = cache.getMissCount() - misses;
+
+            Log.d(TAG, spanX + "x" + spanY + " drag: " + totalNs / evaluations / 1000
+                    + "us/evaluation, " + (float) allocCount / evaluations + " allocs/evaluation, "
+                    + allocSize / evaluations + " bytes/evaluation, hits=" + hits
+                    + " misses=" + misses);
+            assertTrue("Moves over the same cell should reuse the solution", hits > 0);
+        });
+    }
+
+    /**
+     * Replays all the paths, returning the number of evaluations.
+     */
+    private static int replayPaths(CellLayout cellLayout, int spanX, int spanY, View dragView) {
+        int evaluations = 0;
+        for (float[] path : PATHS) {
+            for (int i = 0; i < path.length; i += 2) {
+                int pixelX = (int) (path[i] * CELL_SIZE_PX);
+                int pixelY = (int) (path[i + 1] * CELL_SIZE_PX);
+                cellLayout.calculateReorder(pixelX, pixelY, 1, 1, spanX, spanY, dragView);
+                evaluations++;
+            }
+        }
+        return evaluations;
+    }
+
+    /**
+     * Fills the grid with rows of icons and 2x2 widgets, leaving a few cells free, and returns
+     * an item of the given span to drag.
+     */
+    private static View fillGrid(CellLayout cellLayout, int dragSpanX, int dragSpanY) {
+        View dragView = null;
+        int id = 0;
+        for (int y = 0; y < COUNT_Y; y++) {
+            for (int x = 0; x < COUNT_X; x++) {
+                if (cellLayout.isOccupied(x, y) || (x + y) % 5 == 4) {
+                    continue;
+                }
+                boolean widget = y % 3 == 0 && x % 3 == 0 && cellLayout.isRegionVacant(x, y, 2, 2);
+                int span = widget ? 2 : 1;
+                View view = new View(cellLayout.getContext());
+                cellLayout.addViewToCellLayout(view, -1, id++,
+                        new CellLayoutLayoutParams(x, y, span, span), true);
+                if (dragView == null && span == dragSpanX && span == dragSpanY) {
+                    dragView = view;
+                }
+            }
+        }
+        return dragView;
+    }
+}
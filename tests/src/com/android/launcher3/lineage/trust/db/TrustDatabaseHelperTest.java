@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.lineage.trust.db;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Set;
+
+/**
+ * Tests for the hidden and protected packages kept in memory by {@link TrustDatabaseHelper}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TrustDatabaseHelperTest {
+
+    private static final String TEST_DATABASE_NAME = "trust_apps_test_db";
+
+    @After
+    public void tearDown() {
+        getApplicationContext().deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @Test
+    public void writesUpdateSnapshot() {
+        TrustDatabaseHelper helper = new TrustDatabaseHelper(getApplicationContext(), null);
+        Set<String> hidden = helper.getHiddenPackages();
+
+        helper.addHiddenApp("com.example.hidden");
+        helper.addProtectedApp("com.example.protected");
+
+        assertTrue(helper.isPackageHidden("com.example.hidden"));
+        assertTrue(helper.isPackageProtected("com.example.protected"));
+        assertFalse(helper.isPackageHidden("com.example.protected"));
+        assertEquals(Set.of("com.example.hidden"), helper.getHiddenPackages());
+        // The sets returned before are not modified
+        assertTrue(hidden.isEmpty());
+
+        helper.removeHiddenApp("com.example.hidden");
+        helper.removeProtectedApp("com.example.protected");
+
+        assertTrue(helper.getHiddenPackages().isEmpty());
+        assertTrue(helper.getProtectedPackages().isEmpty());
+    }
+
+    @Test
+    public void snapshotIsReadFromDatabase() {
+        TrustDatabaseHelper helper = new TrustDatabaseHelper(
+                getApplicationContext(), TEST_DATABASE_NAME);
+        helper.addHiddenApp("com.example.hidden");
+        helper.addProtectedApp("com.example.hidden");
+        helper.addProtectedApp("com.example.protected");
+        helper.removeProtectedApp("com.example.protected");
+        helper.close();
+
+        TrustDatabaseHelper reopened = new TrustDatabaseHelper(
+                getApplicationContext(), TEST_DATABASE_NAME);
+        assertEquals(Set.of("com.example.hidden"), reopened.getHiddenPackages());
+        assertEquals(Set.of("com.example.hidden"), reopened.getProtectedPackages());
+        reopened.close();
+    }
+
+    @Test
+    public void failedLoadIsRetried() {
+        TrustDatabaseHelper helper = new TrustDatabaseHelper(getApplicationContext(), null);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.execSQL("DROP TABLE trust_apps");
+
+        assertTrue(helper.getHiddenPackages().isEmpty());
+
+        helper.onCreate(db);
+        ContentValues values = new ContentValues();
+        values.put("pkgname", "com.example.hidden");
+        values.put("hidden", 1);
+        db.insertOrThrow("trust_apps", null, values);
+
+        assertTrue(helper.isPackageHidden("com.example.hidden"));
+        helper.close();
+    }
+}
@@ -8,6 +8,8 @@ import static org.junit.Assert.assertTrue;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 
+import com.android.launcher3.util.IOUtils;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -16,6 +18,7 @@ import org.junit.runner.RunWith;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Calendar;
 
 /**
@@ -38,12 +41,22 @@ public class FileLogTest {
     }
 
     @After
-    public void tearDown() {
-        // Clear existing logs
-        for (int i = 0; i < FileLog.LOG_DAYS; i++) {
-            new File(mTempDir, "log-" + i).delete();
+    public void tearDown() throws Exception {
+        // Wait for the background compression before clearing existing logs
+        if (FileLog.ENABLED) {
+            assertTrue(FileLog.waitForCompressions(5000));
         }
-        mTempDir.delete();
+        deleteRecursively(mTempDir);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
     }
 
     @Test
@@ -77,10 +90,10 @@ public class FileLogTest {
         assertTrue(FileLog.flushAll(new PrintWriter(writer)));
         assertTrue(writer.toString().contains("hoolalala"));
 
-        Calendar threeDaysAgo = Calendar.getInstance();
-        threeDaysAgo.add(Calendar.HOUR, -72);
-        for (int i = 0; i < FileLog.LOG_DAYS; i++) {
-            new File(mTempDir, "log-" + i).setLastModified(threeDaysAgo.getTimeInMillis());
+        Calendar expired = Calendar.getInstance();
+        expired.add(Calendar.HOUR, -24 * FileLog.LOG_DAYS - 1);
+        for (File f : mTempDir.listFiles()) {
+            f.setLastModified(expired.getTimeInMillis());
         }
 
         FileLog.print("Testing", "abracadabra", new Exception("cat! cat!"));
@@ -93,4 +106,28 @@ public class FileLogTest {
         // Old logs have been truncated
         assertFalse(writer.toString().contains("hoolalala"));
     }
+
+    @Test
+    public void testSegmentsRotated() throws Exception {
+        if (!FileLog.ENABLED) {
+            return;
+        }
+        FileLog.print("Testing", "hoolalala");
+        char[] padding = new char[1024];
+        Arrays.fill(padding, 'x');
+        for (int i = 0; i < 1024; i++) {
+            FileLog.print("Testing", new String(padding));
+        }
+        FileLog.print("Testing", "abracadabra", new Exception("cat! cat!"));
+        StringWriter writer = new StringWriter();
+        assertTrue(FileLog.flushAll(new PrintWriter(writer)));
+        assertTrue(writer.toString().contains("hoolalala"));
+        assertTrue(writer.toString().contains("abracadabra"));
+        assertTrue(writer.toString().contains("cat! cat!"));
+
+        File[] files = FileLog.getLogFiles();
+        assertTrue(files.length > 1);
+        String lastFile = new String(IOUtils.toByteArray(files[files.length - 1]));
+        assertTrue(lastFile.contains("abracadabra"));
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public final class TimingTraceBufferTest {
+
+    @Test
+    public void exportJson_keepsOnlyLatestEvents() throws Exception {
+        TimingTraceBuffer buffer = new TimingTraceBuffer(4);
+        for (int i = 0; i < 6; i++) {
+            buffer.record("event" + i, TimingTraceBuffer.now(), i);
+        }
+
+        JSONArray events = exportJson(buffer).getJSONArray("traceEvents");
+
+        assertThat(events.length()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            JSONObject event = events.getJSONObject(i);
+            assertThat(event.getString("name")).isEqualTo("event" + (i + 2));
+            assertThat(event.getString("ph")).isEqualTo("X");
+            assertThat(event.getLong("dur")).isAtLeast(0);
+            assertThat(event.getJSONObject("args").getInt("arg")).isEqualTo(i + 2);
+        }
+    }
+
+    @Test
+    public void record_classNamedAfterSimpleName() throws Exception {
+        TimingTraceBuffer buffer = new TimingTraceBuffer(4);
+        buffer.record(TimingTraceBufferTest.class, TimingTraceBuffer.now());
+        buffer.record(TimingTraceBufferTest.class, TimingTraceBuffer.now());
+
+        JSONArray events = exportJson(buffer).getJSONArray("traceEvents");
+
+        assertThat(events.length()).isEqualTo(2);
+        assertThat(events.getJSONObject(1).getString("name"))
+                .isEqualTo(TimingTraceBufferTest.class.getSimpleName());
+    }
+
+    private static JSONObject exportJson(TimingTraceBuffer buffer) throws Exception {
+        StringWriter out = new StringWriter();
+        buffer.exportJson(new PrintWriter(out));
+        return new JSONObject(out.toString());
+    }
+}
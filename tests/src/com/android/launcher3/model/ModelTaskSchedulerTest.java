@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.model.ModelTaskScheduler.PRIORITY_BULK;
+import static com.android.launcher3.model.ModelTaskScheduler.PRIORITY_DEFAULT;
+import static com.android.launcher3.model.ModelTaskScheduler.PRIORITY_INTERACTIVE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Pair;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public final class ModelTaskSchedulerTest {
+
+    private final List<String> mRun = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch mGate = new CountDownLatch(1);
+
+    private HandlerThread mThread;
+    private Handler mHandler;
+    private ModelTaskScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mThread = new HandlerThread("ModelTaskSchedulerTest");
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mScheduler = new ModelTaskScheduler(mHandler);
+        // Keeps the thread busy until the test has scheduled its tasks
+        mHandler.post(() -> {
+            try {
+                mGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mGate.countDown();
+        mThread.quitSafely();
+    }
+
+    @Test
+    public void schedule_runsByPriorityThenInOrder() throws Exception {
+        mScheduler.schedule(task("bulk"), PRIORITY_BULK, null);
+        mScheduler.schedule(task("default1"), PRIORITY_DEFAULT, null);
+        mScheduler.schedule(task("default2"), PRIORITY_DEFAULT, null);
+        mScheduler.schedule(task("interactive"), PRIORITY_INTERACTIVE, null);
+
+        runAll();
+
+        assertThat(mRun).containsExactly("interactive", "default1", "default2", "bulk")
+                .inOrder();
+    }
+
+    @Test
+    public void schedule_sameKey_coalesced() throws Exception {
+        mScheduler.schedule(task("a1"), PRIORITY_DEFAULT, Pair.create(Set.of("a"), 1));
+        mScheduler.schedule(task("b1"), PRIORITY_DEFAULT, Pair.create(Set.of("b"), 1));
+        mScheduler.schedule(task("a1 again"), PRIORITY_DEFAULT, Pair.create(Set.of("a"), 1));
+
+        runAll();
+
+        assertThat(mRun).containsExactly("a1", "b1").inOrder();
+    }
+
+    @Test
+    public void schedule_otherKindInBetween_notCoalesced() throws Exception {
+        mScheduler.schedule(task("update"), PRIORITY_DEFAULT, Pair.create(Set.of("a"), 1));
+        mScheduler.schedule(task("remove"), PRIORITY_DEFAULT, Pair.create(Set.of("a"), 2));
+        mScheduler.schedule(task("update again"), PRIORITY_DEFAULT, Pair.create(Set.of("a"), 1));
+
+        runAll();
+
+        assertThat(mRun).containsExactly("update", "remove", "update again").inOrder();
+    }
+
+    @Test
+    public void schedule_overlappingTargetsInBetween_notCoalesced() throws Exception {
+        mScheduler.schedule(task("unsuspend a"), PRIORITY_DEFAULT, Pair.create(Set.of("a"), 1));
+        mScheduler.schedule(task("suspend a b"), PRIORITY_DEFAULT,
+                Pair.create(Set.of("a", "b"), 2));
+        mScheduler.schedule(task("unsuspend a again"), PRIORITY_DEFAULT,
+                Pair.create(Set.of("a"), 1));
+
+        runAll();
+
+        assertThat(mRun).containsExactly("unsuspend a", "suspend a b", "unsuspend a again")
+                .inOrder();
+    }
+
+    @Test
+    public void cancel_pendingTaskNotRun() throws Exception {
+        Runnable cancelled = task("cancelled");
+        mScheduler.schedule(cancelled, PRIORITY_DEFAULT, null);
+        mScheduler.schedule(task("kept"), PRIORITY_DEFAULT, null);
+
+        assertThat(mScheduler.cancel(cancelled)).isTrue();
+        runAll();
+
+        assertThat(mRun).containsExactly("kept");
+        assertThat(mScheduler.getQueueDepth()).isEqualTo(0);
+    }
+
+    private Runnable task(String name) {
+        return () -> mRun.add(name);
+    }
+
+    /** Releases the thread and waits for all the scheduled tasks to run. */
+    private void runAll() throws InterruptedException {
+        mGate.countDown();
+        CountDownLatch done = new CountDownLatch(1);
+        mHandler.post(done::countDown);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro benchmark comparing {@link AppSearchIndex} with matching every title using
+ * {@link StringMatcherUtility#matches}, on synthetic app titles.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class AppSearchIndexBenchmark {
+
+    private static final String TAG = "AppSearchIndexBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 200;
+    private static final int MAX_RESULTS = 5;
+
+    private static final String[] WORDS = new String[] {
+            "camera", "calendar", "clock", "contacts", "maps", "music", "messages", "notes",
+            "phone", "photos", "play", "store", "settings", "weather", "mail", "browser",
+            "files", "gallery", "video", "news", "radio", "wallet", "fit", "drive"
+    };
+    private static final String[] QUERIES = new String[] {
+            "c", "ca", "cam", "came", "camer", "camera", "zz", "store", "set", "m", "mu"
+    };
+
+    @Test
+    public void benchmark1k() {
+        runBenchmark(1_000);
+    }
+
+    @Test
+    public void benchmark10k() {
+        runBenchmark(10_000);
+    }
+
+    private void runBenchmark(int appCount) {
+        List<AppInfo> apps = createApps(appCount);
+        AppSearchIndex index = new AppSearchIndex();
+        StringMatcher matcher = StringMatcher.getInstance();
+
+        long start = System.nanoTime();
+        index.search(apps, "", MAX_RESULTS);
+        long buildNs = System.nanoTime() - start;
+
+        for (String query : QUERIES) {
+            assertEquals(query, linearSearch(apps, query, matcher),
+                    index.search(apps, query, MAX_RESULTS));
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            for (String query : QUERIES) {
+                linearSearch(apps, query, matcher);
+                index.search(apps, query, MAX_RESULTS);
+            }
+        }
+
+        long linearNs = 0;
+        long indexNs = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            for (String query : QUERIES) {
+                start = System.nanoTime();
+                linearSearch(apps, query, matcher);
+                linearNs += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                index.search(apps, query, MAX_RESULTS);
+                indexNs += System.nanoTime() - start;
+            }
+        }
+        int ops = MEASURED_ITERATIONS * QUERIES.length;
+        Log.d(TAG, appCount + " apps: build=" + buildNs / 1000 + "us"
+                + ", linear=" + linearNs / ops + "ns/op"
+                + ", index=" + indexNs / ops + "ns/op");
+    }
+
+    private static List<AppInfo> linearSearch(
+            List<AppInfo> apps, String query, StringMatcher matcher) {
+        ArrayList<AppInfo> result = new ArrayList<>();
+        for (int i = 0, total = apps.size(); i < total && result.size() < MAX_RESULTS; i++) {
+            AppInfo info = apps.get(i);
+            if (StringMatcherUtility.matches(query, info.title.toString(), matcher)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    private static List<AppInfo> createApps(int count) {
+        Random random = new Random(count);
+        ArrayList<AppInfo> apps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String first = WORDS[random.nextInt(WORDS.length)];
+            String second = WORDS[random.nextInt(WORDS.length)];
+            AppInfo info = new AppInfo();
+            info.title = Character.toUpperCase(first.charAt(0)) + first.substring(1)
+                    + (random.nextBoolean() ? " " + second : second + i);
+            apps.add(info);
+        }
+        return apps;
+    }
+}
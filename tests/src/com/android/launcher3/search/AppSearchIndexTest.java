@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link AppSearchIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppSearchIndexTest {
+
+    private static final String[] TITLES = new String[] {
+            "white cow", "whiteCow", "whiteCOW", "whitecowCOW", "white2cow", "whitecow",
+            "whitEcow", "whit ecowcow", "cats&dogs", "cats&Dogs", "2+43", "Q", "  Q",
+            "Elephant", "YouTube", "Play Store", "LEGO®Builder", "t-mobile", "Agar.io",
+            "电子邮件", "电子", "Bérénice", "Crème brûlée", "カメラ", "ひらがな", "Ænima", ""
+    };
+
+    private static final String[] QUERIES = new String[] {
+            "w", "white", "white ", "white c", "cow", "c", "dog", "&", "43", "3", "q", "e",
+            "el", "you", "tube", "out", "play", "store", "builder", "lego", "mobile", "io",
+            "电", "电子", "子", "邮件", "berenice", "bé", "creme", "brulee", "カ", "か", "ae",
+            "a very long query which is deeper than the trie", "whitecowcow"
+    };
+
+    private AppSearchIndex mIndex;
+    private ArrayList<AppInfo> mApps;
+
+    @Before
+    public void setup() {
+        mIndex = new AppSearchIndex();
+        mApps = new ArrayList<>();
+        for (String title : TITLES) {
+            mApps.add(newApp(title));
+        }
+    }
+
+    @Test
+    public void testSearch_sameAsMatcher() {
+        verifyAllQueries();
+    }
+
+    @Test
+    public void testSearch_limitsResultsInListOrder() {
+        List<AppInfo> result = mIndex.search(mApps, "white", 3);
+        assertEquals(3, result.size());
+        assertEquals(expected("white", 3), result);
+    }
+
+    @Test
+    public void testSearch_updatesOnListChanges() {
+        verifyAllQueries();
+
+        mApps.remove(0);
+        mApps.remove(mApps.size() - 5);
+        mApps.add(newApp("Camera"));
+        mApps.add(newApp("Calculator"));
+        mApps.get(3).title = "Renamed app";
+        verifyAllQueries();
+        assertEquals(mApps.size(), mIndex.size());
+
+        mApps.clear();
+        verifyAllQueries();
+        assertEquals(0, mIndex.size());
+    }
+
+    @Test
+    public void testSearch_reorderedList() {
+        verifyAllQueries();
+        AppInfo first = mApps.remove(0);
+        mApps.add(2, first);
+        verifyAllQueries();
+    }
+
+    @Test
+    public void testRefine_sameAsSearch() {
+        for (String previous : QUERIES) {
+            List<AppInfo> candidates = mIndex.search(mApps, previous, Integer.MAX_VALUE);
+            for (String query : QUERIES) {
+                if (AppSearchIndex.canRefine(previous, query)) {
+                    assertEquals(query, expected(query, Integer.MAX_VALUE),
+                            mIndex.refine(candidates, query));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCanRefine() {
+        assertTrue(AppSearchIndex.canRefine("cam", "came"));
+        assertTrue(AppSearchIndex.canRefine("cam", "cam"));
+        assertTrue(AppSearchIndex.canRefine("电", "电子"));
+        assertFalse(AppSearchIndex.canRefine("came", "cam"));
+        assertFalse(AppSearchIndex.canRefine("a", "a电"));
+    }
+
+    private void verifyAllQueries() {
+        for (String query : QUERIES) {
+            assertEquals(query, expected(query, Integer.MAX_VALUE),
+                    mIndex.search(mApps, query, Integer.MAX_VALUE));
+        }
+    }
+
+    private List<AppInfo> expected(String query, int maxResults) {
+        StringMatcher matcher = StringMatcher.getInstance();
+        ArrayList<AppInfo> result = new ArrayList<>();
+        for (AppInfo info : mApps) {
+            if (result.size() < maxResults
+                    && StringMatcherUtility.matches(query, info.title.toString(), matcher)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    private static AppInfo newApp(String title) {
+        AppInfo info = new AppInfo();
+        info.title = title;
+        return info;
+    }
+}
@@ -55,13 +55,68 @@ public class GridOccupancyTest {
         assertFalse(grid.isRegionVacant(0, 0, 2, 1));
     }
 
+    @Test
+    public void testIsRegionVacant_afterChanges() {
+        GridOccupancy grid = initGrid(2,
+                0, 0, 0,
+                0, 0, 0
+        );
+        assertTrue(grid.isRegionVacant(0, 0, 3, 2));
+
+        grid.markCells(1, 1, 1, 1, true);
+        assertFalse(grid.isRegionVacant(0, 0, 3, 2));
+        assertTrue(grid.isRegionVacant(0, 0, 3, 1));
+
+        GridOccupancy copy = new GridOccupancy(3, 2);
+        grid.copyTo(copy);
+        grid.clear();
+        assertTrue(grid.isRegionVacant(0, 0, 3, 2));
+        assertFalse(copy.isRegionVacant(1, 1, 1, 1));
+        assertTrue(copy.isRegionVacant(0, 0, 1, 2));
+    }
+
+    @Test
+    public void testIsRegionVacant_shape() {
+        GridOccupancy grid = initGrid(3,
+                1, 0, 0, 0,
+                0, 0, 0, 0,
+                0, 0, 0, 1
+        );
+        GridOccupancy shape = initGrid(2,
+                0, 1,
+                1, 1
+        );
+
+        assertTrue(grid.isRegionVacant(0, 0, shape));
+        assertTrue(grid.isRegionVacant(2, 0, shape));
+        assertTrue(grid.isRegionVacant(1, 1, shape));
+        assertFalse(grid.isRegionVacant(2, 1, shape));
+        assertFalse(grid.isRegionVacant(3, 0, shape));
+    }
+
+    @Test
+    public void testFindVacantCell_wideGrid() {
+        GridOccupancy grid = new GridOccupancy(64, 2);
+        grid.markCells(0, 0, 62, 1, true);
+        grid.markCells(0, 1, 10, 1, true);
+
+        int[] vacant = new int[2];
+        assertTrue(grid.findVacantCell(vacant, 2, 1));
+        assertEquals(62, vacant[0]);
+        assertEquals(0, vacant[1]);
+
+        assertTrue(grid.findVacantCell(vacant, 3, 1));
+        assertEquals(10, vacant[0]);
+        assertEquals(1, vacant[1]);
+    }
+
     private GridOccupancy initGrid(int rows, int... cells) {
         int cols = cells.length / rows;
         int i = 0;
         GridOccupancy grid = new GridOccupancy(cols, rows);
         for (int y = 0; y < rows; y++) {
             for (int x = 0; x < cols; x++) {
-                grid.cells[x][y] = cells[i] != 0;
+                grid.markCells(x, y, 1, 1, cells[i] != 0);
                 i++;
             }
         }
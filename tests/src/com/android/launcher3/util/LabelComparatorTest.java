@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.util.LabelComparator.LabelKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit tests for {@link LabelComparator}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LabelComparatorTest {
+
+    private static final String[] LABELS = {
+            "", "Calendar", "calculator", "Camera", "2048", "#hashtag", "\u00c9clair", "eclair",
+            "Zoo", "zoo", "\u00d6lfarbe", "\u65e5\u5386", " Maps",
+    };
+
+    @Test
+    public void keysCompareLikeLabels() {
+        LabelComparator comparator = new LabelComparator();
+        for (String a : LABELS) {
+            LabelKey keyA = comparator.getKey(a);
+            for (String b : LABELS) {
+                assertEquals(a + " vs " + b, Integer.signum(comparator.compare(a, b)),
+                        Integer.signum(comparator.compare(a, keyA, b, comparator.getKey(b))));
+            }
+        }
+    }
+
+    @Test
+    public void staleKeyIsIgnored() {
+        LabelComparator comparator = new LabelComparator();
+        LabelKey staleKey = comparator.getKey("Zoo");
+        String label = "Alarm";
+        assertEquals(-1, Integer.signum(
+                comparator.compare(label, staleKey, "Calendar", comparator.getKey("Calendar"))));
+    }
+
+    @Test
+    public void nullLabelIsEmpty() {
+        LabelComparator comparator = new LabelComparator();
+        assertEquals(Integer.signum(comparator.compare("", "Calendar")),
+                Integer.signum(comparator.compare(null, null, "Calendar", null)));
+        assertEquals(Integer.signum(comparator.compare("", "Calendar")), Integer.signum(
+                comparator.compare(null, comparator.getKey(null), "Calendar",
+                        comparator.getKey("Calendar"))));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static com.android.launcher3.widget.WidgetPreviewScheduler.PRIORITY_PREFETCH;
+import static com.android.launcher3.widget.WidgetPreviewScheduler.PRIORITY_VISIBLE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public final class WidgetPreviewSchedulerTest {
+
+    private final List<String> mLoaded = Collections.synchronizedList(new ArrayList<>());
+    private final LinkedBlockingQueue<Runnable> mCallbacks = new LinkedBlockingQueue<>();
+    private final CountDownLatch mGate = new CountDownLatch(1);
+
+    private ThreadPoolExecutor mPool;
+    private WidgetPreviewScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mPool = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+        mScheduler = new WidgetPreviewScheduler(mPool, mCallbacks::add);
+        // Keeps the only worker busy until the test has queued its requests
+        mScheduler.load("gate", PRIORITY_VISIBLE, () -> {
+            try {
+                mGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }, null);
+    }
+
+    @After
+    public void tearDown() {
+        mGate.countDown();
+        mPool.shutdownNow();
+    }
+
+    @Test
+    public void load_visibleRunsBeforePrefetch() throws Exception {
+        mScheduler.load("a", PRIORITY_PREFETCH, loader("a"), null);
+        mScheduler.load("b", PRIORITY_VISIBLE, loader("b"), null);
+
+        runAll(3);
+
+        assertThat(mLoaded).containsExactly("b", "a").inOrder();
+    }
+
+    @Test
+    public void load_sameKey_joinsAndRaisesPriority() throws Exception {
+        List<Bitmap> delivered = new ArrayList<>();
+        mScheduler.load("a", PRIORITY_PREFETCH, loader("a"), null);
+        mScheduler.load("b", PRIORITY_PREFETCH, loader("b"), null);
+        mScheduler.load("b", PRIORITY_VISIBLE, loader("b"), delivered::add);
+
+        runAll(3);
+
+        assertThat(mLoaded).containsExactly("b", "a").inOrder();
+        assertThat(delivered).hasSize(1);
+        assertThat(mScheduler.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void cancel_lastRequest_dropsLoad() throws Exception {
+        List<Bitmap> delivered = new ArrayList<>();
+        WidgetPreviewScheduler.Request request =
+                mScheduler.load("a", PRIORITY_VISIBLE, loader("a"), delivered::add);
+        request.cancel();
+
+        runAll(1);
+
+        assertThat(mLoaded).isEmpty();
+        assertThat(delivered).isEmpty();
+        assertThat(mScheduler.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void cancel_otherRequestStillDelivered() throws Exception {
+        List<Bitmap> delivered = new ArrayList<>();
+        WidgetPreviewScheduler.Request prefetch =
+                mScheduler.load("a", PRIORITY_PREFETCH, loader("a"), null);
+        mScheduler.load("a", PRIORITY_VISIBLE, loader("a"), delivered::add);
+        prefetch.cancel();
+
+        runAll(2);
+
+        assertThat(mLoaded).containsExactly("a");
+        assertThat(delivered).hasSize(1);
+    }
+
+    @Test
+    public void request_isDoneOnceDeliveredOrCancelled() throws Exception {
+        WidgetPreviewScheduler.Request delivered =
+                mScheduler.load("a", PRIORITY_PREFETCH, loader("a"), null);
+        WidgetPreviewScheduler.Request cancelled =
+                mScheduler.load("b", PRIORITY_PREFETCH, loader("b"), null);
+        cancelled.cancel();
+        assertThat(delivered.isDone()).isFalse();
+        assertThat(cancelled.isDone()).isTrue();
+
+        runAll(2);
+
+        assertThat(delivered.isDone()).isTrue();
+    }
+
+    private Supplier<Bitmap> loader(String key) {
+        return () -> {
+            mLoaded.add(key);
+            return Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        };
+    }
+
+    /** Releases the worker and runs the callbacks of {@param count} completed loads. */
+    private void runAll(int count) throws InterruptedException {
+        mGate.countDown();
+        for (int i = 0; i < count; i++) {
+            Runnable callback = mCallbacks.poll(5, TimeUnit.SECONDS);
+            assertThat(callback).isNotNull();
+            callback.run();
+        }
+    }
+}